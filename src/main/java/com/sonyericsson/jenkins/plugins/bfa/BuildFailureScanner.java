@@ -25,18 +25,30 @@
 
 package com.sonyericsson.jenkins.plugins.bfa;
 
+import com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase;
+import com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBaseChanges;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.ComputerGraphAction;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.ProjectGraphAction;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseBuildAction;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseDisplayData;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseMatrixBuildAction;
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseModification;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
 import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
 import com.sonyericsson.jenkins.plugins.bfa.model.ScannerJobProperty;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
-import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ChunkedLogScanner;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.IndicationQuarantine;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.LogLineSource;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.LogWindow;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.MultilineScanner;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanInput;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanPlan;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanResultCache;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.SpooledLog;
 import com.sonyericsson.jenkins.plugins.bfa.statistics.StatisticsLogger;
 import hudson.Extension;
 import hudson.Util;
@@ -52,20 +64,22 @@ import hudson.tasks.test.TestResult;
 import jenkins.model.Jenkins;
 
 import javax.annotation.Nonnull;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -88,10 +102,16 @@ public class BuildFailureScanner extends RunListener<Run> {
     private static final Logger logger = Logger.getLogger(BuildFailureScanner.class.getName());
     private static final String LOG_FILE_NAME = "log";
 
+    /**
+     * The smallest chunk a large log is split into when scanned in parallel.
+     */
+    private static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024;
+
     private static ThreadPoolExecutor threadPoolExecutor;
+    private static ExecutorService chunkExecutor;
 
     /**
-     * Creates the shared thread pool after extensions have been made available.
+     * Creates the shared thread pools after extensions have been made available.
      */
     @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
     @SuppressWarnings("unused")
@@ -99,6 +119,8 @@ public class BuildFailureScanner extends RunListener<Run> {
         threadPoolExecutor = (ThreadPoolExecutor)Executors.newFixedThreadPool(
                 PluginImpl.getInstance().getNrOfScanThreads()
         );
+        // Separate from the scan pool, since the scan threads wait for the chunks
+        chunkExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
 
     @Override
@@ -120,7 +142,7 @@ public class BuildFailureScanner extends RunListener<Run> {
         if (run instanceof AbstractBuild) {
             logger.entering(getClass().getName(), "onCompleted");
 
-            doScan(run);
+            queueOrScan(run);
         }
     }
 
@@ -129,11 +151,50 @@ public class BuildFailureScanner extends RunListener<Run> {
         if (!(run instanceof AbstractBuild)) {
             logger.entering(getClass().getName(), "onFinalized");
 
-            doScan(run);
+            queueOrScan(run);
         }
     }
 
-    private void doScan(Run build) {
+    /**
+     * Queues the scan of the build on the {@link ScanQueue}, or scans it right away if queueing is disabled, the
+     * queue is full or the build won't be scanned anyway.
+     *
+     * @param build the build.
+     */
+    private void queueOrScan(final Run build) {
+        if (PluginImpl.shouldScan(build) && ScanQueue.getInstance().offer(build, queuedScan(build))) {
+            return;
+        }
+        doScan(build);
+    }
+
+    /**
+     * The scan of a build in the {@link ScanQueue}.
+     * A queued build is saved once scanned, since Jenkins has already saved it by then.
+     *
+     * @param build the build.
+     * @return the scan.
+     */
+    static Runnable queuedScan(final Run build) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                doScan(build);
+                try {
+                    build.save();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to save " + build.getFullDisplayName(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Scans the build, writing to its scan log.
+     *
+     * @param build the build.
+     */
+    private static void doScan(Run build) {
         File file = new File(build.getRootDir(), ScanLogAction.FILE_NAME);
         try (
                 FileOutputStream fos = new FileOutputStream(file, true);
@@ -141,6 +202,8 @@ public class BuildFailureScanner extends RunListener<Run> {
         ) {
             if (PluginImpl.isSizeInLimit(build)) {
                 scanIfNotScanned(build, scanLog);
+            } else if (PluginImpl.getInstance().isPartialScanEnabled()) {
+                scanPartially(build, scanLog);
             } else {
                 logToScanLog(scanLog, "Log exceeds limit: " + PluginImpl.getInstance().getMaxLogSize() + "MB");
             }
@@ -149,6 +212,68 @@ public class BuildFailureScanner extends RunListener<Run> {
         }
     }
 
+    /**
+     * Scans only the start and the end of a log that exceeds the max log size, see {@link LogWindow}.
+     * The indications found are flagged with {@link FoundIndication#isPartialScan()}.
+     *
+     * @param build the build to scan
+     * @param scanLog log to write information to
+     * @throws IOException if the log can't be read
+     */
+    private static void scanPartially(Run build, PrintStream scanLog) throws IOException {
+        LogWindow window = createWindow(build, scanLog);
+        if (window == null) {
+            return;
+        }
+        ScanInput.attach(build, window);
+        try {
+            scanIfNotScanned(build, scanLog);
+        } finally {
+            ScanInput.detach(build);
+        }
+    }
+
+    /**
+     * Creates the window of the start and the end of a log that exceeds the max log size, see {@link LogWindow}.
+     *
+     * @param build the build
+     * @param scanLog log to write information to
+     * @return the window, or null if the log can't be scanned partially
+     * @throws IOException if the log can't be read
+     */
+    private static LogWindow createWindow(Run build, PrintStream scanLog) throws IOException {
+        PluginImpl plugin = PluginImpl.getInstance();
+        LogWindow window = LogWindow.create(build.getLogFile(), build.getCharset(),
+                plugin.getOversizedLogHeadBytes(), plugin.getOversizedLogTailBytes());
+        if (window == null) {
+            logToScanLog(scanLog, "Log exceeds limit: " + plugin.getMaxLogSize() + "MB"
+                    + " and can't be scanned partially");
+            return null;
+        }
+        logToScanLog(scanLog, "Log exceeds limit: " + plugin.getMaxLogSize() + "MB, scanning the first "
+                + window.getHeadSize() + " and the last " + window.getTailSize() + " bytes");
+        return window;
+    }
+
+    /**
+     * Flags the indications found with {@link FoundIndication#isPartialScan()} if the build is being scanned
+     * partially, and replaces their line numbers with the lines of the log, see {@link ScanInput#toLogLine(int)}.
+     *
+     * @param build the build
+     * @param found the causes found
+     */
+    private static void markPartialScan(Run build, List<FoundFailureCause> found) {
+        ScanInput input = ScanInput.get(build);
+        if (input != null && input.isPartial()) {
+            for (FoundFailureCause foundCause : found) {
+                for (FoundIndication foundIndication : foundCause.getIndications()) {
+                    foundIndication.setPartialScan(true);
+                    foundIndication.setMatchingLine(input.toLogLine(foundIndication.getMatchingLine()));
+                }
+            }
+        }
+    }
+
     /**
      * Scans the build if it should be scanned and it has not already been scanned. If configured, also reports
      * successful builds to the {@link StatisticsLogger}.
@@ -178,6 +303,155 @@ public class BuildFailureScanner extends RunListener<Run> {
         }
     }
 
+    /**
+     * Scans an already scanned build again, but only for the causes added or edited in the knowledge base since it
+     * was last scanned, and merges what is found into its {@link FailureCauseBuildAction} and statistics.
+     * The changes are read from {@link KnowledgeBase#getChangesSince(long)} when the revision of the last scan is
+     * known. Otherwise causes are considered edited when their latest modification is more recent than
+     * {@link FailureCauseBuildAction#getScannedAt()}, so causes without modification history are never rescanned.
+     * A build that has not been scanned is scanned in full by {@link #scanIfNotScanned(Run, PrintStream)}.
+     * The causes are taken from the shared {@link ScanSnapshot}, filtered to the changed ones, and a log that exceeds
+     * the max log size is scanned partially or not at all, like in a full scan.
+     *
+     * @param build the build to scan
+     * @param scanLog log to write information to
+     */
+    public static void rescanChanged(Run build, PrintStream scanLog) {
+        FailureCauseBuildAction action = build.getAction(FailureCauseBuildAction.class);
+        if (action == null) {
+            scanIfNotScanned(build, scanLog);
+            return;
+        }
+        long since = build.getStartTimeInMillis() + build.getDuration();
+        if (action.getScannedAt() != null) {
+            since = action.getScannedAt();
+        }
+        long scannedAt = System.currentTimeMillis();
+        try {
+            KnowledgeBase knowledgeBase = PluginImpl.getInstance().getKnowledgeBase();
+            ScanSnapshot snapshot = knowledgeBase.getScanSnapshot();
+            Long revision = snapshot.getRevision();
+            KnowledgeBaseChanges changes = null;
+            if (action.getKnowledgeBaseRevision() != null) {
+                changes = knowledgeBase.getChangesSince(action.getKnowledgeBaseRevision());
+            }
+            Set<String> knownIds = new HashSet<String>();
+            Set<String> changedIds = new HashSet<String>();
+            List<FailureCause> changed = new ArrayList<FailureCause>();
+            if (changes != null) {
+                changedIds.addAll(changes.getAddedOrModified());
+                for (FailureCause cause : snapshot.getCauses()) {
+                    knownIds.add(cause.getId());
+                    if (changedIds.contains(cause.getId())) {
+                        changed.add(cause);
+                    }
+                }
+                changedIds.addAll(changes.getRemoved());
+            } else {
+                for (FailureCause cause : snapshot.getCauses()) {
+                    knownIds.add(cause.getId());
+                    FailureCauseModification modification = cause.getLatestModification();
+                    if (modification != null && modification.getTime().getTime() > since) {
+                        changedIds.add(cause.getId());
+                        changed.add(cause);
+                    }
+                }
+            }
+            if (changedIds.isEmpty()) {
+                logToScanLog(scanLog, "No causes added or edited since the last scan");
+                action.setScannedAt(scannedAt);
+                action.setKnowledgeBaseRevision(revision);
+                return;
+            }
+            List<String> fallbackCategories = PluginImpl.getInstance().getFallbackCategories();
+            if (!fallbackCategories.isEmpty()) {
+                // A full scan drops the fallback causes it finds along with other causes, so they are not in the action
+                for (FailureCause cause : snapshot.getCauses()) {
+                    List<String> categories = cause.getCategories();
+                    if (categories != null && !Collections.disjoint(categories, fallbackCategories)
+                            && changedIds.add(cause.getId())) {
+                        changed.add(cause);
+                    }
+                }
+            }
+            List<FoundFailureCause> found = findChangedCauses(snapshot, changed, build, scanLog);
+            if (found == null) {
+                return;
+            }
+            List<FoundFailureCause> merged = action.merge(changedIds, found);
+            if (merged == null) {
+                action.setScannedAt(scannedAt);
+                action.setKnowledgeBaseRevision(revision);
+                return;
+            }
+            merged = removeFallbackCauses(merged, scanLog);
+            if (knowledgeBase.isEnableStatistics()) {
+                // Failed tests are not in the knowledge base, see scan()
+                List<FoundFailureCause> foundCauseListToLog =
+                        Collections.synchronizedList(new LinkedList<FoundFailureCause>());
+                for (FoundFailureCause cause : merged) {
+                    if (knownIds.contains(cause.getId())) {
+                        foundCauseListToLog.add(cause);
+                    }
+                }
+                StatisticsLogger.getInstance().logRescan(build, action.getStatisticsId(), scannedAt,
+                        foundCauseListToLog);
+            }
+            action.setFoundFailureCauses(merged);
+            action.setScannedAt(scannedAt);
+            action.setKnowledgeBaseRevision(revision);
+            if (PluginImpl.getInstance().isEnableBuildDescription() && !merged.isEmpty()) {
+                build.setDescription(generateDescriptionString(build, merged));
+            }
+            ProjectGraphAction.invalidateProjectGraphCache(build.getParent());
+            if (build instanceof AbstractBuild) {
+                ComputerGraphAction.invalidateNodeGraphCache(((AbstractBuild)build).getBuiltOn());
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Could not rescan build " + build, e);
+        }
+    }
+
+    /**
+     * Finds the changed causes in a build, within the max log size.
+     *
+     * @param snapshot the shared snapshot of all causes
+     * @param changed the changed causes
+     * @param build the build
+     * @param scanLog log to write information to
+     * @return the causes found, or null if the log exceeds the max log size and can't be scanned partially
+     * @throws IOException if the log can't be read
+     */
+    private static List<FoundFailureCause> findChangedCauses(ScanSnapshot snapshot, List<FailureCause> changed,
+                                                             Run build, PrintStream scanLog) throws IOException {
+        LogWindow window = null;
+        if (!PluginImpl.isSizeInLimit(build)) {
+            if (!PluginImpl.getInstance().isPartialScanEnabled()) {
+                logToScanLog(scanLog, "Log exceeds limit: " + PluginImpl.getInstance().getMaxLogSize() + "MB");
+                return null;
+            }
+            window = createWindow(build, scanLog);
+            if (window == null) {
+                return null;
+            }
+            ScanInput.attach(build, window);
+        }
+        try {
+            List<String> ids = new ArrayList<String>(changed.size());
+            for (FailureCause cause : changed) {
+                ids.add(cause.getId());
+            }
+            logToScanLog(scanLog, "Scanning for " + changed.size() + " causes added or edited since the last scan");
+            List<FoundFailureCause> found = findCauses(snapshot.filter(ids), build, scanLog);
+            markPartialScan(build, found);
+            return found;
+        } finally {
+            if (window != null) {
+                ScanInput.detach(build);
+            }
+        }
+    }
+
     /**
      * Performs a scan of the build, adds the {@link FailureCauseBuildAction} and reports to the
      * {@link StatisticsLogger}.
@@ -187,9 +461,13 @@ public class BuildFailureScanner extends RunListener<Run> {
      */
     public static void scan(Run build, PrintStream scanLog) {
         build.addOrReplaceAction(new ScanLogAction());
+        long scannedAt = System.currentTimeMillis();
         try {
-            Collection<FailureCause> causes = PluginImpl.getInstance().getKnowledgeBase().getCauses();
-            List<FoundFailureCause> foundCauseListToLog = findCauses(causes, build, scanLog);
+            KnowledgeBase knowledgeBase = PluginImpl.getInstance().getKnowledgeBase();
+            ScanSnapshot snapshot = knowledgeBase.getScanSnapshot();
+            Long revision = snapshot.getRevision();
+            List<FoundFailureCause> foundCauseListToLog = findCauses(snapshot, build, scanLog);
+            markPartialScan(build, foundCauseListToLog);
             List<FoundFailureCause> foundCauseList;
 
             /* Register failed test cases as foundCauses.
@@ -206,33 +484,12 @@ public class BuildFailureScanner extends RunListener<Run> {
                 foundCauseList = foundCauseListToLog;
             }
 
-            List<String> fallbackCategories = PluginImpl.getInstance().getFallbackCategories();
-
-            if (!fallbackCategories.isEmpty()) {
-                // move all generic cause from the list to a second list
-                List<FoundFailureCause> foundFallbackCauses = new ArrayList<>();
-
-                for (Iterator<FoundFailureCause> iterator = foundCauseList.iterator(); iterator.hasNext();) {
-                    FoundFailureCause cause = iterator.next();
-                    if (!Collections.disjoint(cause.getCategories(), fallbackCategories)) {
-                        iterator.remove();
-                        foundFallbackCauses.add(cause);
-                    }
-                }
-
-                if (!foundFallbackCauses.isEmpty()) {
-                    // we have at least one generic cause
-                    if (!foundCauseList.isEmpty()) {
-                        logToScanLog(scanLog, "Removing generic causes");
-                    } else {
-                        // we have ONLY generic causes
-                        foundCauseList = foundFallbackCauses;
-                    }
-                }
-            }
+            foundCauseList = removeFallbackCauses(foundCauseList, scanLog);
 
             FailureCauseBuildAction buildAction = new FailureCauseBuildAction(foundCauseList);
             buildAction.setBuild(build);
+            buildAction.setScannedAt(scannedAt);
+            buildAction.setKnowledgeBaseRevision(revision);
             build.addAction(buildAction);
             final FailureCauseDisplayData data = buildAction.getFailureCauseDisplayData();
             List<FailureCauseDisplayData> downstreamFailureCauses = data.getDownstreamFailureCauses();
@@ -256,7 +513,7 @@ public class BuildFailureScanner extends RunListener<Run> {
               build.setDescription(generateDescriptionString(build, foundCauseList));
             }
 
-            StatisticsLogger.getInstance().log(build, foundCauseListToLog);
+            buildAction.setStatisticsId(StatisticsLogger.getInstance().log(build, foundCauseListToLog));
 
             // Check slack plugin is installed
             if (Jenkins.getInstance().getPlugin("slack") != null) {
@@ -274,6 +531,43 @@ public class BuildFailureScanner extends RunListener<Run> {
         }
     }
 
+    /**
+     * Removes the causes in the fallback categories, see {@link PluginImpl#getFallbackCategories()}, from the causes
+     * found in a build, unless only such causes were found.
+     *
+     * @param foundCauseList the causes found, from which the fallback causes are removed.
+     * @param scanLog log to write information to.
+     * @return the causes to report.
+     */
+    private static List<FoundFailureCause> removeFallbackCauses(List<FoundFailureCause> foundCauseList,
+                                                                PrintStream scanLog) {
+        List<String> fallbackCategories = PluginImpl.getInstance().getFallbackCategories();
+
+        if (!fallbackCategories.isEmpty()) {
+            // move all generic cause from the list to a second list
+            List<FoundFailureCause> foundFallbackCauses = new ArrayList<>();
+
+            for (Iterator<FoundFailureCause> iterator = foundCauseList.iterator(); iterator.hasNext();) {
+                FoundFailureCause cause = iterator.next();
+                if (!Collections.disjoint(cause.getCategories(), fallbackCategories)) {
+                    iterator.remove();
+                    foundFallbackCauses.add(cause);
+                }
+            }
+
+            if (!foundFallbackCauses.isEmpty()) {
+                // we have at least one generic cause
+                if (!foundCauseList.isEmpty()) {
+                    logToScanLog(scanLog, "Removing generic causes");
+                } else {
+                    // we have ONLY generic causes
+                    return foundFallbackCauses;
+                }
+            }
+        }
+        return foundCauseList;
+    }
+
     /**
      * Function to create the message for Slack using build and BFA information.
      * @param foundCauseList - Build failure causes found in the build
@@ -393,19 +687,19 @@ public class BuildFailureScanner extends RunListener<Run> {
     /**
      * Finds the failure causes for this build.
      *
-     * @param causes   the list of possible causes.
+     * @param snapshot the compiled causes to look for.
      * @param build    the build to analyze.
      * @param scanLog the build log.
      * @return a list of found failure causes.
      */
-    private static List<FoundFailureCause> findCauses(final Collection<FailureCause> causes,
+    private static List<FoundFailureCause> findCauses(final ScanSnapshot snapshot,
                                                       final Run build, final PrintStream scanLog) {
         threadPoolExecutor.setCorePoolSize(PluginImpl.getInstance().getNrOfScanThreads());
         threadPoolExecutor.setMaximumPoolSize(PluginImpl.getInstance().getNrOfScanThreads());
 
         logToScanLog(scanLog, "Scanning build for known causes...");
         long start = System.currentTimeMillis();
-        final List<FoundFailureCause> foundFailureCauseList = findIndications(causes, build, scanLog);
+        final List<FoundFailureCause> foundFailureCauseList = findOrReuseIndications(snapshot, build, scanLog);
 
         long time = System.currentTimeMillis() - start;
         if (logger.isLoggable(Level.FINER)) {
@@ -437,65 +731,124 @@ public class BuildFailureScanner extends RunListener<Run> {
     }
 
     /**
+     * Reuses the result of an earlier scan of an identical log with the same causes, see {@link ScanResultCache},
+     * or finds indications for all causes and keeps the result for later builds.
+     * Logs scanned through a {@link ScanInput}, like partially scanned ones, and logs too large to be hashed, see
+     * {@link ScanResultCache#isCacheable(File)}, are always scanned.
      *
-     * Finds indications for all causes.
+     * @param snapshot the compiled causes to look for.
+     * @param build current build.
+     * @param scanLog build log for providing feedback.
+     * @return a list of found indications, could be empty.
+     */
+    private static List<FoundFailureCause> findOrReuseIndications(final ScanSnapshot snapshot,
+                                                                  final Run build,
+                                                                  final PrintStream scanLog) {
+        int capacity = PluginImpl.getInstance().getScanCacheSize();
+        File logFile = build.getLogFile();
+        if (capacity <= 0 || ScanInput.get(build) != null || logFile == null || !logFile.isFile()
+                || !ScanResultCache.isCacheable(logFile)) {
+            return findIndications(snapshot, build, scanLog);
+        }
+        ScanResultCache cache = ScanResultCache.getInstance();
+        String key;
+        try {
+            key = ScanResultCache.key(logFile, snapshot);
+        } catch (IOException e) {
+            logToScanLog(scanLog, "Could not hash the log: " + e);
+            return findIndications(snapshot, build, scanLog);
+        }
+        List<FoundFailureCause> found = cache.get(key, build);
+        if (found != null) {
+            logToScanLog(scanLog, "Reusing the result of an earlier build with an identical log");
+        } else {
+            found = findIndications(snapshot, build, scanLog);
+            cache.put(key, found, capacity);
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Scan result cache hit rate {0}% ({1} hits, {2} misses)",
+                    new Object[]{cache.getHitRate(), cache.getHits(), cache.getMisses(), });
+        }
+        return found;
+    }
+
+    /**
      *
-     * @param causes the list of possible causes.
+     * Finds indications for all causes, scanning the causes with single-line indications only and the other causes
+     * in parallel.
+     *
+     * @param snapshot the compiled causes to look for.
      * @param build current build.
      * @param scanLog build log for providing feedback.
      * @return a list of found indications, could be empty.
      */
-    private static List<FoundFailureCause> findIndications(final Collection<FailureCause> causes,
+    private static List<FoundFailureCause> findIndications(final ScanSnapshot snapshot,
                                                            final Run build,
                                                            final PrintStream scanLog) {
-        final List<FailureCause> singleLineCauses = new ArrayList<FailureCause>();
-        final List<FailureCause> notOnlySingleLineCauses = new ArrayList<FailureCause>();
-
-        splitCauses(causes, singleLineCauses, notOnlySingleLineCauses);
-
-        final List<Future<?>> scanningTasks = new ArrayList<Future<?>>(notOnlySingleLineCauses.size() + 1);
+        final List<Future<?>> scanningTasks = new ArrayList<Future<?>>(2);
         final List<FoundFailureCause> foundFailureCauses = Collections.synchronizedList(
                 new ArrayList<FoundFailureCause>());
 
-        if (!singleLineCauses.isEmpty()) {
-            scanningTasks.add(threadPoolExecutor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    foundFailureCauses.addAll(parseSingleLineCauses(build, scanLog, singleLineCauses));
-                    Thread.currentThread().setName("BFA-scanner-" + build.getFullDisplayName());
-                }
-            }));
-        }
-
-        for (final FailureCause cause : notOnlySingleLineCauses) {
-            scanningTasks.add(threadPoolExecutor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    final List<FoundIndication> foundIndications = new ArrayList<FoundIndication>();
-                    for (final Indication indication : cause.getIndications()) {
-                        Thread.currentThread().setName("BFA-scanner-"
-                                + build.getFullDisplayName() + ": "
-                                + cause.getName() + "-"
-                                + indication.getUserProvidedExpression());
-
-                        FoundIndication foundIndication = parseIndication(build, scanLog, indication, cause.getName());
-                        if (foundIndication != null) {
-                            foundIndications.add(foundIndication);
-                        }
+        final SpooledLog spool = spool(build, scanLog);
+        try {
+            if (!snapshot.getSingleLineCauses().isEmpty()) {
+                scanningTasks.add(threadPoolExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        foundFailureCauses.addAll(parseSingleLineCauses(build, scanLog, snapshot.getSingleLinePlan()));
+                        Thread.currentThread().setName("BFA-scanner-" + build.getFullDisplayName());
                     }
+                }));
+            }
 
-                    if (!foundIndications.isEmpty()) {
-                        foundFailureCauses.add(new FoundFailureCause(cause, foundIndications));
+            if (!snapshot.getNotOnlySingleLineCauses().isEmpty()) {
+                scanningTasks.add(threadPoolExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        Thread.currentThread().setName("BFA-scanner-" + build.getFullDisplayName() + ": multiline");
+                        foundFailureCauses.addAll(
+                                parseNotOnlySingleLineCauses(build, scanLog, snapshot));
                     }
+                }));
+            }
+
+            waitAllTasks(scanLog, scanningTasks);
+        } finally {
+            if (spool != null) {
+                ScanInput.detach(build);
+                try {
+                    spool.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to remove the decompressed log. ", e);
                 }
-            }));
+            }
         }
 
-        waitAllTasks(scanLog, scanningTasks);
-
         return foundFailureCauses;
     }
 
+    /**
+     * Decompresses a compressed log once for all the scanning tasks, see {@link SpooledLog}, unless the build
+     * already has another {@link ScanInput}.
+     *
+     * @param build current build.
+     * @param scanLog build log for providing feedback.
+     * @return the decompressed log attached to the build, or null if the log is read as it is.
+     */
+    private static SpooledLog spool(Run build, PrintStream scanLog) {
+        if (ScanInput.get(build) != null || !SpooledLog.isCompressed(build)) {
+            return null;
+        }
+        try {
+            SpooledLog spool = SpooledLog.inflate(build);
+            ScanInput.attach(build, spool);
+            return spool;
+        } catch (IOException e) {
+            logToScanLog(scanLog, "Could not decompress the log, reading it directly: " + e);
+            return null;
+        }
+    }
+
     /**
      *
      * Wait all scanning tasks to be completed. Cancel all of them if InterruptedException happened.
@@ -521,34 +874,6 @@ public class BuildFailureScanner extends RunListener<Run> {
         }
     }
 
-    /**
-     *
-     * Split list of causes in two part: causes with single line indication only and others.
-     *
-     * @param causes All causes.
-     * @param singleLineCauses Collection to put list of causes with single line indication.
-     * @param notOnlySingleLineCauses Collection to put other causes.
-     */
-    private static void splitCauses(Collection<FailureCause> causes,
-                                    List<FailureCause> singleLineCauses,
-                                    List<FailureCause> notOnlySingleLineCauses) {
-        for (FailureCause cause : causes) {
-            boolean atLeastOneNonSignalLine = false;
-            for (Indication indication : cause.getIndications()) {
-                if (indication instanceof MultilineBuildLogIndication) {
-                    atLeastOneNonSignalLine = true;
-                    break;
-                }
-            }
-
-            if (atLeastOneNonSignalLine) {
-                notOnlySingleLineCauses.add(cause);
-            } else {
-                singleLineCauses.add(cause);
-            }
-        }
-    }
-
     /**
      *
      * Parse any indication.
@@ -580,27 +905,87 @@ public class BuildFailureScanner extends RunListener<Run> {
     /**
      *
      * Parses all causes with only single line indications.
+     * Large logs are split into chunks that are scanned in parallel, see {@link PluginImpl#isParallelScanSize(long)}.
      *
      * @param build current build.
      * @param scanLog build log for providing feedback.
-     * @param singleLineCauses list of causes to be found.
+     * @param plan the compiled indications of the causes to be found.
      * @return a list of causes with found indication, could be empty.
      */
     private static List<FoundFailureCause> parseSingleLineCauses(Run build,
                                               PrintStream scanLog,
-                                              List<FailureCause> singleLineCauses) {
+                                              ScanPlan plan) {
         final List<FoundFailureCause> foundFailureCauses = new ArrayList<FoundFailureCause>();
-        BufferedReader reader = null;
+        File logFile = build.getLogFile();
+        ScanInput input = ScanInput.get(build);
+        if (input != null) {
+            logFile = input.getFile();
+        }
+        if (chunkExecutor != null && logFile != null
+                && logFile.isFile() && !logFile.getName().endsWith(".gz")
+                && PluginImpl.isParallelScanSize(logFile.length())
+                && ChunkedLogScanner.isLineAligned(build.getCharset())) {
+            long chunkSize = Math.max(MIN_CHUNK_SIZE,
+                    logFile.length() / Runtime.getRuntime().availableProcessors());
+            try {
+                foundFailureCauses.addAll(new ChunkedLogScanner(chunkExecutor, chunkSize).scan(
+                        plan, build, logFile, build.getCharset(), LOG_FILE_NAME));
+            } catch (IOException e) {
+                logToScanLog(scanLog, "Exception during parsing file: " + e);
+            } catch (InterruptedException e) {
+                logToScanLog(scanLog, "Interrupted during parsing file: " + e);
+                Thread.currentThread().interrupt();
+            }
+            return foundFailureCauses;
+        }
+        LogLineSource lines = null;
         try {
-            reader = new BufferedReader(build.getLogReader());
+            lines = LogLineSource.open(build);
             foundFailureCauses.addAll(
                     FailureReader.scanSingleLinePatterns(
-                            singleLineCauses,
+                            plan,
                             build,
-                            reader,
+                            lines,
                             LOG_FILE_NAME));
         } catch (IOException e) {
             logToScanLog(scanLog, "Exception during parsing file: " + e);
+        } finally {
+            if (lines != null) {
+                try {
+                    lines.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to close the reader. ", e);
+                }
+            }
+        }
+        return foundFailureCauses;
+    }
+
+    /**
+     *
+     * Parses all causes with at least one multi-line indication. The log is read once for all multi-line
+     * indications, each window of it being evaluated against every indication not found yet,
+     * see {@link FailureReader#scanMultiLinePatterns(MultilineScanner, Reader, String)}.
+     * Quarantined indications are skipped, and the timeouts of the multi-line indications are reported to the
+     * {@link IndicationQuarantine}.
+     *
+     * @param build current build.
+     * @param scanLog build log for providing feedback.
+     * @param snapshot the compiled causes, of which the ones with multi-line indications are to be found.
+     * @return a list of causes with found indication, could be empty.
+     */
+    private static List<FoundFailureCause> parseNotOnlySingleLineCauses(Run build,
+                                                                        PrintStream scanLog,
+                                                                        ScanSnapshot snapshot) {
+        final IndicationQuarantine quarantine = IndicationQuarantine.getInstance();
+        final List<Indication> multilineIndications = snapshot.getMultilineIndications();
+        final MultilineScanner scanner = new MultilineScanner(build, LOG_FILE_NAME, multilineIndications);
+        Reader reader = null;
+        try {
+            reader = LogLineSource.openReader(build);
+            FailureReader.scanMultiLinePatterns(scanner, reader, LOG_FILE_NAME);
+        } catch (IOException e) {
+            logToScanLog(scanLog, "Exception during parsing file: " + e);
         } finally {
             if (reader != null) {
                 try {
@@ -610,6 +995,34 @@ public class BuildFailureScanner extends RunListener<Run> {
                 }
             }
         }
+
+        // An interrupted scan tells nothing about whether the indications time out
+        final boolean interrupted = scanner.isInterrupted() || Thread.currentThread().isInterrupted();
+        final List<FoundFailureCause> foundFailureCauses = new ArrayList<FoundFailureCause>();
+        int multilineIndex = 0;
+        for (FailureCause cause : snapshot.getNotOnlySingleLineCauses()) {
+            final List<FoundIndication> foundIndications = new ArrayList<FoundIndication>();
+            for (Indication indication : cause.getIndications()) {
+                FoundIndication foundIndication;
+                if (multilineIndex < multilineIndications.size()
+                        && multilineIndications.get(multilineIndex) == indication) {
+                    if (!interrupted) {
+                        quarantine.record(cause, indication, scanner.isTimedOut(multilineIndex));
+                    }
+                    foundIndication = scanner.getFound(multilineIndex++);
+                } else if (quarantine.isQuarantined(cause, indication)) {
+                    continue;
+                } else {
+                    foundIndication = parseIndication(build, scanLog, indication, cause.getName());
+                }
+                if (foundIndication != null) {
+                    foundIndications.add(foundIndication);
+                }
+            }
+            if (!foundIndications.isEmpty()) {
+                foundFailureCauses.add(new FoundFailureCause(cause, foundIndications));
+            }
+        }
         return foundFailureCauses;
     }
 
@@ -25,6 +25,7 @@
 
 package com.sonyericsson.jenkins.plugins.bfa;
 
+import com.sonyericsson.jenkins.plugins.bfa.db.StatisticsIndexes;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.BFAGraph;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.BarChart;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.GraphFilterBuilder;
@@ -34,6 +35,9 @@ import com.sonyericsson.jenkins.plugins.bfa.graphs.TimeSeriesChart;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.TimeSeriesUnkownFailuresChart;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.IndicationQuarantine;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanResultCache;
+import com.sonyericsson.jenkins.plugins.bfa.statistics.StatisticsWriter;
 import com.sonyericsson.jenkins.plugins.bfa.utils.BfaUtils;
 
 import hudson.Extension;
@@ -55,6 +59,7 @@ import org.kohsuke.stapler.StaplerResponse;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -173,6 +178,67 @@ public class CauseManagement extends BfaGraphAction {
         return returnValue;
     }
 
+    /**
+     * The patterns of the indications of a cause that are skipped by the scanner because they kept timing out.
+     * For jelly convenience.
+     *
+     * @param id the id of the cause.
+     * @return the quarantined patterns, empty if there are none.
+     *
+     * @see IndicationQuarantine
+     */
+    public List<String> getQuarantinedPatterns(String id) {
+        return IndicationQuarantine.getInstance().getQuarantinedPatterns(id);
+    }
+
+    /**
+     * The number of builds waiting to be scanned in the background. For jelly convenience.
+     *
+     * @return the depth of the scan queue.
+     *
+     * @see ScanQueue
+     */
+    public int getScanQueueSize() {
+        return ScanQueue.getInstance().getQueueSize();
+    }
+
+    /**
+     * The cache of scan results, for its hit rate. For jelly convenience.
+     *
+     * @return the cache.
+     */
+    public ScanResultCache getScanResultCache() {
+        return ScanResultCache.getInstance();
+    }
+
+    /**
+     * Tells why the knowledge base is running degraded. For jelly convenience.
+     *
+     * @return the reason, or null if the knowledge base is fully available.
+     */
+    public String getDegradedReason() {
+        return PluginImpl.getInstance().getKnowledgeBase().getDegradedReason();
+    }
+
+    /**
+     * The writer of the statistics, for its queue and throughput. For jelly convenience.
+     *
+     * @return the writer.
+     */
+    public StatisticsWriter getStatisticsWriter() {
+        return StatisticsWriter.getInstance();
+    }
+
+    /**
+     * The indexes of the statistics, with their usage and the indexes that are missing. For jelly convenience.
+     *
+     * @return the status of the indexes, or null if the knowledge base doesn't manage indexes.
+     * @throws Exception if the knowledge base can't be reached.
+     */
+    public List<StatisticsIndexes.IndexStatus> getStatisticsIndexes() throws Exception {
+        return PluginImpl.getInstance().getKnowledgeBase().getStatisticsIndexes();
+    }
+
     /**
      * Sets an error message as an attribute to the current request.
      *
@@ -238,6 +304,7 @@ public class CauseManagement extends BfaGraphAction {
         if (id != null) {
             try {
                 FailureCause cause = PluginImpl.getInstance().getKnowledgeBase().removeCause(id);
+                IndicationQuarantine.getInstance().release(id);
                 if (cause != null) {
                     request.getSession(true).setAttribute(SESSION_REMOVED_FAILURE_CAUSE, cause);
                 }
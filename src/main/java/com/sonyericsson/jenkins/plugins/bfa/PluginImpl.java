@@ -31,6 +31,7 @@ import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
 import com.sonyericsson.jenkins.plugins.bfa.model.ScannerJobProperty;
 import com.sonyericsson.jenkins.plugins.bfa.sod.ScanOnDemandQueue;
 import com.sonyericsson.jenkins.plugins.bfa.sod.ScanOnDemandVariables;
+import com.sonyericsson.jenkins.plugins.bfa.statistics.StatisticsWriter;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.Util;
@@ -94,6 +95,26 @@ public class PluginImpl extends GlobalConfiguration {
      */
     public static final int DEFAULT_MAX_LOG_SIZE = 0;
 
+    /**
+     * Default size of log from which it is scanned in parallel chunks ('0' disables parallel scanning).
+     */
+    public static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 0;
+
+    /**
+     * Default number of builds waiting to be scanned in the background ('0' scans builds as they complete).
+     */
+    public static final int DEFAULT_SCAN_QUEUE_SIZE = 0;
+
+    /**
+     * Default size of the start and of the end of an oversized log that is scanned ('0' for both skips the log).
+     */
+    public static final int DEFAULT_OVERSIZED_LOG_PART_SIZE = 0;
+
+    /**
+     * Default number of scan results kept for reuse by builds with identical logs ('0' disables the cache).
+     */
+    public static final int DEFAULT_SCAN_CACHE_SIZE = 0;
+
     private static final int BYTES_IN_MEGABYTE = 1024 * 1024;
 
     /**
@@ -161,6 +182,11 @@ public class PluginImpl extends GlobalConfiguration {
 
     private int nrOfScanThreads;
     private int maxLogSize;
+    private int oversizedLogHeadSize;
+    private int oversizedLogTailSize;
+    private int parallelScanThreshold;
+    private int scanQueueSize;
+    private int scanCacheSize;
     private Boolean enableBuildDescription;
 
     private Boolean graphsEnabled;
@@ -233,6 +259,15 @@ public class PluginImpl extends GlobalConfiguration {
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Could not initialize the knowledge base: ", e);
         }
+        StatisticsWriter.getInstance().resume();
+    }
+
+    /**
+     * Queues the builds that were waiting to be scanned when Jenkins was shut down, once the jobs are loaded.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public void resumeScans() {
+        ScanQueue.getInstance().resume();
     }
 
     /**
@@ -241,6 +276,8 @@ public class PluginImpl extends GlobalConfiguration {
     @Terminator
     public void stop() {
         ScanOnDemandQueue.shutdown();
+        ScanQueue.getInstance().shutdown();
+        StatisticsWriter.getInstance().shutdown();
         knowledgeBase.stop();
     }
 
@@ -680,6 +717,162 @@ public class PluginImpl extends GlobalConfiguration {
         return maxLogSize;
     }
 
+    /**
+     * Set how much of the start of a log exceeding {@link #getMaxLogSize()} is scanned, in MB.
+     *
+     * @param oversizedLogHeadSize value, 0 to not scan the start.
+     */
+    @DataBoundSetter
+    public void setOversizedLogHeadSize(int oversizedLogHeadSize) {
+        this.oversizedLogHeadSize = oversizedLogHeadSize;
+    }
+
+    /**
+     * Returns how much of the start of a log exceeding {@link #getMaxLogSize()} is scanned, in MB.
+     *
+     * @return value, 0 if the start is not scanned.
+     */
+    public int getOversizedLogHeadSize() {
+        if (oversizedLogHeadSize < 0) {
+            return DEFAULT_OVERSIZED_LOG_PART_SIZE;
+        }
+
+        return oversizedLogHeadSize;
+    }
+
+    /**
+     * Set how much of the end of a log exceeding {@link #getMaxLogSize()} is scanned, in MB.
+     *
+     * @param oversizedLogTailSize value, 0 to not scan the end.
+     */
+    @DataBoundSetter
+    public void setOversizedLogTailSize(int oversizedLogTailSize) {
+        this.oversizedLogTailSize = oversizedLogTailSize;
+    }
+
+    /**
+     * Returns how much of the end of a log exceeding {@link #getMaxLogSize()} is scanned, in MB.
+     *
+     * @return value, 0 if the end is not scanned.
+     */
+    public int getOversizedLogTailSize() {
+        if (oversizedLogTailSize < 0) {
+            return DEFAULT_OVERSIZED_LOG_PART_SIZE;
+        }
+
+        return oversizedLogTailSize;
+    }
+
+    /**
+     * Tells if the start and the end of logs exceeding {@link #getMaxLogSize()} are scanned, instead of skipping
+     * those logs altogether.
+     *
+     * @return true if oversized logs are scanned partially.
+     */
+    public boolean isPartialScanEnabled() {
+        return getOversizedLogHeadSize() > 0 || getOversizedLogTailSize() > 0;
+    }
+
+    /**
+     * The size in bytes of {@link #getOversizedLogHeadSize()}.
+     *
+     * @return the number of bytes.
+     */
+    public long getOversizedLogHeadBytes() {
+        return (long)getOversizedLogHeadSize() * BYTES_IN_MEGABYTE;
+    }
+
+    /**
+     * The size in bytes of {@link #getOversizedLogTailSize()}.
+     *
+     * @return the number of bytes.
+     */
+    public long getOversizedLogTailBytes() {
+        return (long)getOversizedLogTailSize() * BYTES_IN_MEGABYTE;
+    }
+
+    /**
+     * Set the log size in MB from which the single line indications are scanned in parallel chunks.
+     *
+     * @param parallelScanThreshold value, 0 to never scan in parallel.
+     */
+    @DataBoundSetter
+    public void setParallelScanThreshold(int parallelScanThreshold) {
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    /**
+     * Returns the log size in MB from which the single line indications are scanned in parallel chunks.
+     *
+     * @return value, 0 if logs should never be scanned in parallel.
+     */
+    public int getParallelScanThreshold() {
+        if (parallelScanThreshold < 0) {
+            return DEFAULT_PARALLEL_SCAN_THRESHOLD;
+        }
+
+        return parallelScanThreshold;
+    }
+
+    /**
+     * Set the maximum number of completed builds waiting to be scanned in the background, see {@link ScanQueue}.
+     *
+     * @param scanQueueSize value, 0 to scan builds as they complete.
+     */
+    @DataBoundSetter
+    public void setScanQueueSize(int scanQueueSize) {
+        this.scanQueueSize = scanQueueSize;
+    }
+
+    /**
+     * Returns the maximum number of completed builds waiting to be scanned in the background.
+     *
+     * @return value, 0 if builds are scanned as they complete.
+     */
+    public int getScanQueueSize() {
+        if (scanQueueSize < 0) {
+            return DEFAULT_SCAN_QUEUE_SIZE;
+        }
+
+        return scanQueueSize;
+    }
+
+    /**
+     * Set the number of scan results kept for reuse by builds with identical logs,
+     * see {@link com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanResultCache}.
+     *
+     * @param scanCacheSize value, 0 to disable the cache.
+     */
+    @DataBoundSetter
+    public void setScanCacheSize(int scanCacheSize) {
+        this.scanCacheSize = scanCacheSize;
+    }
+
+    /**
+     * Returns the number of scan results kept for reuse by builds with identical logs.
+     *
+     * @return value, 0 if the cache is disabled.
+     */
+    public int getScanCacheSize() {
+        if (scanCacheSize < 0) {
+            return DEFAULT_SCAN_CACHE_SIZE;
+        }
+
+        return scanCacheSize;
+    }
+
+    /**
+     * Checks if the log of the build is large enough to be scanned in parallel chunks,
+     * see {@link #getParallelScanThreshold()}.
+     *
+     * @param logSize the size of the log in bytes.
+     * @return true if it should be scanned in parallel.
+     */
+    public static boolean isParallelScanSize(long logSize) {
+        int threshold = getInstance().getParallelScanThreshold();
+        return threshold > 0 && logSize / BYTES_IN_MEGABYTE >= threshold;
+    }
+
 
     /**
      * Set option to append failure causes to job's build description.
@@ -736,7 +929,22 @@ public class PluginImpl extends GlobalConfiguration {
      */
     public static boolean isSizeInLimit(Run build) {
         return getInstance().getMaxLogSize() == 0
-                || getInstance().getMaxLogSize() > (build.getLogText().length() / BYTES_IN_MEGABYTE);
+                || getInstance().getMaxLogSize() > (getLogSize(build) / BYTES_IN_MEGABYTE);
+    }
+
+    /**
+     * The size of the log of the build, taken from the file when the log is a plain file, so that the log doesn't
+     * have to be opened.
+     *
+     * @param build the build
+     * @return the size in bytes.
+     */
+    private static long getLogSize(Run build) {
+        File file = build.getLogFile();
+        if (file != null && file.isFile() && !file.getName().endsWith(".gz")) {
+            return file.length();
+        }
+        return build.getLogText().length();
     }
 
     /**
@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.ScanPendingAction;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Run;
+import jenkins.model.TransientActionFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Adds a {@link ScanPendingAction} to the builds whose scan is pending in the {@link ScanQueue}.
+ */
+@Extension
+public class ScanPendingActionProvider extends TransientActionFactory<Run> {
+
+    @Override
+    public Class<Run> type() {
+        return Run.class;
+    }
+
+    @Override
+    public Collection<? extends Action> createFor(Run target) {
+        if (ScanQueue.getInstance().isPending(target)) {
+            return Collections.singleton(new ScanPendingAction());
+        } else {
+            return Collections.emptyList();
+        }
+    }
+}
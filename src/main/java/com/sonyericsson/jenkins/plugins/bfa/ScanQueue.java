@@ -0,0 +1,354 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseBuildAction;
+import hudson.model.Result;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue of completed builds waiting to be scanned in the background, so that the completion of a build doesn't wait
+ * for its scan.
+ *
+ * Failed builds are scanned before unstable ones and those before the rest, otherwise builds are scanned in the
+ * order they were queued. The queue holds at most {@link PluginImpl#getScanQueueSize()} builds. When it is full,
+ * {@link #offer(Run, Runnable)} refuses the build and the caller scans it right away, which slows the completion of
+ * builds down to the pace of the scanning instead of letting the queue grow without bounds.
+ *
+ * A build is pending from the moment it is queued until its scan is done, see {@link #isPending(Run)}.
+ *
+ * On shutdown the queue is given {@link #SHUTDOWN_TIMEOUT} to finish, the builds still pending after that are written
+ * to {@link #FILE_NAME} and queued again by {@link #resume()} on the next start, unless they have been scanned by
+ * then. Since builds in the queue are scanned after their completion listeners have run, listeners ordered after
+ * {@link BuildFailureScanner#ORDINAL} can't count on finding the {@link FailureCauseBuildAction} of those builds.
+ */
+public final class ScanQueue {
+
+    private static final Logger logger = Logger.getLogger(ScanQueue.class.getName());
+
+    /**
+     * How long an idle worker thread is kept, in seconds.
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * How long the shutdown waits for the queue to finish, in milliseconds.
+     */
+    static final long SHUTDOWN_TIMEOUT = 10000;
+
+    /**
+     * The file in the Jenkins root directory holding the builds that were pending on shutdown.
+     */
+    static final String FILE_NAME = "bfa-scan-queue.txt";
+
+    private static final ScanQueue INSTANCE = new ScanQueue();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ThreadPoolExecutor executor = null;
+    private File file;
+    private final long shutdownTimeout;
+
+    /**
+     * Package private for tests, use {@link #getInstance()}.
+     */
+    ScanQueue() {
+        this(null, SHUTDOWN_TIMEOUT);
+    }
+
+    /**
+     * Package private for tests, use {@link #getInstance()}.
+     *
+     * @param file the file holding the builds that were pending on shutdown, null for {@link #FILE_NAME} in the
+     *             Jenkins root directory.
+     * @param shutdownTimeout how long the shutdown waits for the queue to finish, in milliseconds.
+     */
+    ScanQueue(File file, long shutdownTimeout) {
+        this.file = file;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * The queue used for all builds.
+     *
+     * @return the queue.
+     */
+    public static ScanQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The number of builds waiting to be scanned, not counting the ones being scanned.
+     *
+     * @return the queue depth.
+     */
+    public synchronized int getQueueSize() {
+        if (executor == null) {
+            return 0;
+        }
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Tells if the build is waiting to be scanned or being scanned by the queue.
+     *
+     * @param run the build.
+     * @return true if the scan of the build is not done yet.
+     */
+    public boolean isPending(Run run) {
+        return pending.contains(run.getExternalizableId());
+    }
+
+    /**
+     * Queues the scan of a build, unless queueing is disabled or the queue is full.
+     *
+     * @param run the build.
+     * @param scan the scan of the build.
+     * @return true if the scan was queued, false if the caller should scan the build itself.
+     */
+    public boolean offer(Run run, Runnable scan) {
+        PluginImpl plugin = PluginImpl.getInstance();
+        return offer(run, scan, plugin.getScanQueueSize(), plugin.getNrOfScanThreads());
+    }
+
+    /**
+     * Queues the scan of a build, unless queueing is disabled or the queue is full.
+     *
+     * @param run the build.
+     * @param scan the scan of the build.
+     * @param capacity the maximum number of builds waiting, 0 to not queue at all.
+     * @param threads the number of builds to scan at the same time.
+     * @return true if the scan was queued, false if the caller should scan the build itself.
+     */
+    synchronized boolean offer(Run run, Runnable scan, int capacity, int threads) {
+        if (capacity <= 0) {
+            return false;
+        }
+        start(threads);
+        String id = run.getExternalizableId();
+        if (executor.getQueue().size() >= capacity) {
+            logger.log(Level.FINE, "Scan queue full, scanning {0} right away", id);
+            return false;
+        }
+        pending.add(id);
+        executor.execute(new Task(id, rank(run.getResult()), sequence.getAndIncrement(), scan));
+        return true;
+    }
+
+    /**
+     * The order in which builds with the given result are scanned, lower first.
+     *
+     * @param result the result of the build.
+     * @return the rank.
+     */
+    static int rank(Result result) {
+        if (Result.FAILURE.equals(result)) {
+            return 0;
+        } else if (Result.UNSTABLE.equals(result)) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+
+    /**
+     * Starts the workers the first time a build is queued, or adjusts the number of workers if it has changed.
+     *
+     * @param threads the number of workers.
+     */
+    private void start(int threads) {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "BFA-scan-queue-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        } else if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else if (threads < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * Stops the workers. The queue is given some time to finish, after that the scans in progress are interrupted
+     * and the builds still pending are saved, to be queued again by {@link #resume()}.
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Set<String> left = new TreeSet<String>(pending);
+            executor.shutdownNow();
+            executor = null;
+            pending.clear();
+            if (!left.isEmpty()) {
+                try {
+                    Files.write(getFile().toPath(), left, StandardCharsets.UTF_8);
+                    logger.log(Level.INFO, "{0} builds will be scanned after the restart", left.size());
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, left.size() + " builds were not scanned because of the shutdown", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the builds that were pending on the last shutdown and haven't been scanned since, see
+     * {@link #shutdown()}. They are queued even if the queue is full or disabled, to not hold up the start.
+     */
+    public void resume() {
+        PluginImpl plugin = PluginImpl.getInstance();
+        for (String id : takeUnscanned()) {
+            Run run = Run.fromExternalizableId(id);
+            if (run != null && run.getAction(FailureCauseBuildAction.class) == null) {
+                offer(run, BuildFailureScanner.queuedScan(run), Integer.MAX_VALUE, plugin.getNrOfScanThreads());
+            }
+        }
+    }
+
+    /**
+     * Reads and removes the builds saved by {@link #shutdown()}.
+     *
+     * @return the externalizable ids of the builds, empty if none were saved.
+     */
+    synchronized List<String> takeUnscanned() {
+        File saved = getFile();
+        if (!saved.isFile()) {
+            return Collections.emptyList();
+        }
+        List<String> ids = new ArrayList<String>();
+        try {
+            for (String line : Files.readAllLines(saved.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    ids.add(line.trim());
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not read the builds pending on the last shutdown", e);
+        }
+        if (!saved.delete()) {
+            logger.log(Level.WARNING, "Could not delete {0}", saved);
+        }
+        return ids;
+    }
+
+    /**
+     * The file holding the builds that were pending on shutdown.
+     *
+     * @return the file.
+     */
+    private File getFile() {
+        if (file == null) {
+            file = new File(Jenkins.getInstance().getRootDir(), FILE_NAME);
+        }
+        return file;
+    }
+
+    /**
+     * The scan of one build, ordered by the rank of its result and then by when it was queued.
+     */
+    private final class Task implements Runnable, Comparable<Task> {
+        private final String id;
+        private final int rank;
+        private final long sequence;
+        private final Runnable scan;
+
+        /**
+         * Standard constructor.
+         *
+         * @param id the externalizable id of the build.
+         * @param rank the rank of the result of the build.
+         * @param sequence the number of builds queued before this one.
+         * @param scan the scan.
+         */
+        Task(String id, int rank, long sequence, Runnable scan) {
+            this.id = id;
+            this.rank = rank;
+            this.sequence = sequence;
+            this.scan = scan;
+        }
+
+        @Override
+        public void run() {
+            try {
+                scan.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Could not scan " + id, e);
+            } finally {
+                pending.remove(id);
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (rank != other.rank) {
+                return Integer.compare(rank, other.rank);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Task && ((Task)other).sequence == sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sequence);
+        }
+    }
+}
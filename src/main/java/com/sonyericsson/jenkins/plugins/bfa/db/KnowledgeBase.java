@@ -27,6 +27,7 @@ package com.sonyericsson.jenkins.plugins.bfa.db;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.FailureCauseTimeInterval;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.GraphFilterBuilder;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
 import com.sonyericsson.jenkins.plugins.bfa.statistics.Statistics;
 import com.sonyericsson.jenkins.plugins.bfa.utils.ObjectCountPair;
 import hudson.ExtensionList;
@@ -39,9 +40,11 @@ import jenkins.model.Jenkins;
 import org.jfree.data.time.TimePeriod;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -143,14 +146,32 @@ public abstract class KnowledgeBase implements Describable<KnowledgeBase>, Seria
     /**
      * Does a full copy of the data in the old one to this one. Using the public api, can be used by implementations of
      * {@link #convertFrom(KnowledgeBase)} to handle conversion from an unknown source type.
+     * A knowledge base running degraded, see {@link #getDegradedReason()}, may only have partial causes to give, so
+     * the copy fails instead of saving them, before any cause is saved if it is degraded from the start.
      *
      * @param oldKnowledgeBase the old one.
      * @see #convertFrom(KnowledgeBase)
      * @throws Exception if anything goes wrong in the KnowledgeBase handling.
      */
     protected void convertFromAbstract(KnowledgeBase oldKnowledgeBase) throws Exception {
+        checkNotDegraded(oldKnowledgeBase);
         for (FailureCause cause : oldKnowledgeBase.getCauseNames()) {
-            saveCause(oldKnowledgeBase.getCause(cause.getId()));
+            FailureCause complete = oldKnowledgeBase.getCause(cause.getId());
+            checkNotDegraded(oldKnowledgeBase);
+            saveCause(complete);
+        }
+    }
+
+    /**
+     * Fails if the knowledge base is running degraded.
+     *
+     * @param knowledgeBase the knowledge base to copy causes from.
+     * @throws IllegalStateException if it is degraded.
+     */
+    private static void checkNotDegraded(KnowledgeBase knowledgeBase) {
+        String reason = knowledgeBase.getDegradedReason();
+        if (reason != null) {
+            throw new IllegalStateException("Can not copy the causes of a degraded knowledge base: " + reason);
         }
     }
 
@@ -189,12 +210,24 @@ public abstract class KnowledgeBase implements Describable<KnowledgeBase>, Seria
     public abstract boolean isSuccessfulLogging();
 
     /**
-     * Saves the Statistics.
+     * Saves the Statistics. Statistics of a build scanned again, see {@link Statistics#getRescannedAt()}, replace the
+     * Statistics with the same id, or those of the same build if they have no id, unless those are from a later scan.
      * @param stat the Statistics.
      * @throws Exception if something in the KnowledgeBase handling goes wrong.
      */
     public abstract void saveStatistics(Statistics stat) throws Exception;
 
+    /**
+     * Saves several Statistics at once. Override to save them in bulk, the default saves them one by one.
+     * @param stats the Statistics.
+     * @throws Exception if something in the KnowledgeBase handling goes wrong.
+     */
+    public void saveStatistics(List<Statistics> stats) throws Exception {
+        for (Statistics stat : stats) {
+            saveStatistics(stat);
+        }
+    }
+
     /**
      * Gets Statistics data. This method needs to be implemented in subclass for graph support.
      * @param filter the filter to use when fetching data
@@ -331,6 +364,27 @@ public abstract class KnowledgeBase implements Describable<KnowledgeBase>, Seria
         return;
     }
 
+    /**
+     * Set the time at which each of several FailureCauses last occurred.
+     * Override to update them in bulk, the default calls {@link #updateLastSeen(List, Date)} once per distinct time.
+     *
+     * @param lastSeen  the time at which each FailureCause occurred, by FailureCause id.
+     */
+    public void updateLastSeen(Map<String, Date> lastSeen) {
+        Map<Date, List<String>> idsBySeen = new HashMap<Date, List<String>>();
+        for (Map.Entry<String, Date> entry : lastSeen.entrySet()) {
+            List<String> ids = idsBySeen.get(entry.getValue());
+            if (ids == null) {
+                ids = new ArrayList<String>();
+                idsBySeen.put(entry.getValue(), ids);
+            }
+            ids.add(entry.getKey());
+        }
+        for (Map.Entry<Date, List<String>> entry : idsBySeen.entrySet()) {
+            updateLastSeen(entry.getValue(), entry.getKey());
+        }
+    }
+
     /**
      * Find out when the FailureCause identified by id was first created.
      * This method needs to be implemented in subclass if last modified-functionality is to work correctly
@@ -343,6 +397,73 @@ public abstract class KnowledgeBase implements Describable<KnowledgeBase>, Seria
         return new Date(0);
     }
 
+    /**
+     * The current revision of the knowledge base. The revision goes up every time a cause is added, saved or removed,
+     * so a cache or a scan that remembers it can tell what has changed since with {@link #getChangesSince(long)}.
+     * Revisions of different knowledge bases can't be compared.
+     * This method needs to be implemented in subclass for the change feed to be supported.
+     *
+     * @return the revision, 0 if the knowledge base doesn't keep track of changes.
+     * @throws Exception if something in the KnowledgeBase handling goes wrong.
+     */
+    public long getRevision() throws Exception {
+        return 0;
+    }
+
+    /**
+     * The causes added, modified or removed after the given revision.
+     * This method needs to be implemented in subclass for the change feed to be supported.
+     *
+     * @param revision the revision, as returned by {@link #getRevision()} or
+     *                 {@link KnowledgeBaseChanges#getRevision()}.
+     * @return the changes, or null if they are not known, in which case any cause may have changed.
+     * @throws Exception if something in the KnowledgeBase handling goes wrong.
+     */
+    public KnowledgeBaseChanges getChangesSince(long revision) throws Exception {
+        return null;
+    }
+
+    /**
+     * The causes compiled for scanning, see {@link ScanSnapshot}. A scan gets the snapshot once and uses it for its
+     * whole duration.
+     * The default implementation compiles a new snapshot on every call. Knowledge bases that know when their causes
+     * change should override it to return the same snapshot until then, compiled outside of the scans if possible.
+     *
+     * @return the snapshot.
+     * @throws Exception if something in the KnowledgeBase handling goes wrong.
+     */
+    public ScanSnapshot getScanSnapshot() throws Exception {
+        Long revision;
+        try {
+            // Read before the causes, so that causes changed meanwhile are seen as changed after the revision
+            revision = getRevision();
+        } catch (Exception e) {
+            // The revision is only needed by incremental scans, scan without it
+            revision = null;
+        }
+        return ScanSnapshot.compile(getCauses(), revision);
+    }
+
+    /**
+     * Tells why the knowledge base is running degraded, for the cause management page.
+     *
+     * @return the reason, or null if the knowledge base is fully available.
+     */
+    public String getDegradedReason() {
+        return null;
+    }
+
+    /**
+     * The indexes of the statistics, with their usage and the indexes that are missing, for the cause management
+     * page.
+     *
+     * @return the status of the indexes, or null if the knowledge base doesn't manage indexes.
+     * @throws Exception if something in the KnowledgeBase handling goes wrong.
+     */
+    public List<StatisticsIndexes.IndexStatus> getStatisticsIndexes() throws Exception {
+        return null;
+    }
+
     /**
      * Removes the build failure cause of particular build.
      * @param build the build.
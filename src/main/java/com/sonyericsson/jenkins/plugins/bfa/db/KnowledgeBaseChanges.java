@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.db;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The causes added, modified and removed in a {@link KnowledgeBase} after some revision, see
+ * {@link KnowledgeBase#getChangesSince(long)}.
+ *
+ * A cause that was both added and modified is only added, and a cause that was removed is only removed.
+ *
+ * Changes may take their revisions in one order and be written in another, so the changes can come with revisions
+ * that no cause carries yet, see {@link #getMissing()}.
+ */
+public final class KnowledgeBaseChanges {
+
+    private final long revision;
+    private final Set<String> added;
+    private final Set<String> modified;
+    private final Set<String> removed;
+    private final SortedSet<Long> missing;
+
+    /**
+     * Constructor for changes without missing revisions.
+     *
+     * @param revision the revision of the knowledge base the changes go up to.
+     * @param added the ids of the added causes.
+     * @param modified the ids of the modified causes.
+     * @param removed the ids of the removed causes.
+     */
+    public KnowledgeBaseChanges(long revision, Set<String> added, Set<String> modified, Set<String> removed) {
+        this(revision, added, modified, removed, Collections.<Long>emptySet());
+    }
+
+    /**
+     * Standard constructor.
+     *
+     * @param revision the revision of the knowledge base the changes go up to.
+     * @param added the ids of the added causes.
+     * @param modified the ids of the modified causes.
+     * @param removed the ids of the removed causes.
+     * @param missing the revisions up to the revision that no cause carries.
+     */
+    public KnowledgeBaseChanges(long revision, Set<String> added, Set<String> modified, Set<String> removed,
+                                Set<Long> missing) {
+        this.revision = revision;
+        this.added = Collections.unmodifiableSet(new HashSet<String>(added));
+        this.modified = Collections.unmodifiableSet(new HashSet<String>(modified));
+        this.removed = Collections.unmodifiableSet(new HashSet<String>(removed));
+        this.missing = Collections.unmodifiableSortedSet(new TreeSet<Long>(missing));
+    }
+
+    /**
+     * The revision of the knowledge base the changes go up to, to ask for the changes since next time.
+     *
+     * @return the revision.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * The ids of the causes added.
+     *
+     * @return the ids.
+     */
+    public Set<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * The ids of the causes modified.
+     *
+     * @return the ids.
+     */
+    public Set<String> getModified() {
+        return modified;
+    }
+
+    /**
+     * The ids of the causes removed.
+     *
+     * @return the ids.
+     */
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * The revisions up to {@link #getRevision()} that no cause carries. Either a change has taken the revision but
+     * not written its cause yet, or a later change of the same cause has overwritten it. The two can't be told apart,
+     * so a consumer that must not skip a change asks for the changes since the revision below the lowest missing one
+     * again, until it has waited long enough for a change in flight to be written.
+     *
+     * @return the revisions, lowest first.
+     */
+    public SortedSet<Long> getMissing() {
+        return missing;
+    }
+
+    /**
+     * The ids of the causes added or modified, the ones that need to be read again.
+     *
+     * @return the ids.
+     */
+    public Set<String> getAddedOrModified() {
+        Set<String> ids = new HashSet<String>(added);
+        ids.addAll(modified);
+        return ids;
+    }
+
+    /**
+     * Tells if nothing has changed.
+     *
+     * @return true if no cause was added, modified or removed.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+    }
+}
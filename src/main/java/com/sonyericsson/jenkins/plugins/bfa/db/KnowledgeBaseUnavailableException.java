@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.db;
+
+import com.mongodb.MongoException;
+
+/**
+ * Thrown right away, instead of waiting out the timeouts of the driver, by the operations of a
+ * {@link MongoDBKnowledgeBase} whose database is known to be unreachable, see {@link MongoCircuitBreaker}.
+ */
+public class KnowledgeBaseUnavailableException extends MongoException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Standard constructor.
+     *
+     * @param message the reason.
+     */
+    public KnowledgeBaseUnavailableException(String message) {
+        super(message);
+    }
+}
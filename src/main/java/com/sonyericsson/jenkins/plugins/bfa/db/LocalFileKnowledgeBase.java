@@ -39,6 +39,7 @@ import java.util.UUID;
 import com.sonyericsson.jenkins.plugins.bfa.Messages;
 import com.sonyericsson.jenkins.plugins.bfa.PluginImpl;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
 import com.sonyericsson.jenkins.plugins.bfa.statistics.Statistics;
 import hudson.Extension;
 import hudson.model.Descriptor;
@@ -55,6 +56,19 @@ import org.kohsuke.stapler.DataBoundConstructor;
 public class LocalFileKnowledgeBase extends KnowledgeBase {
 
     private Map<String, FailureCause> causes;
+    private long revision;
+    /**
+     * The revision each cause was last added, saved or removed in, by id.
+     */
+    private Map<String, Long> revisions;
+    /**
+     * The revision each cause was added in, by id.
+     */
+    private Map<String, Long> addedRevisions;
+    /**
+     * The snapshot of the current revision, compiled by the first scan after a change.
+     */
+    private transient volatile ScanSnapshot scanSnapshot;
 
     /**
      * Standard constructor. Used for legacy conversion.
@@ -112,6 +126,7 @@ public class LocalFileKnowledgeBase extends KnowledgeBase {
     public FailureCause addCause(FailureCause cause) throws IOException {
         cause.setId(UUID.randomUUID().toString());
         causes.put(cause.getId(), cause);
+        touch(cause.getId(), true);
         PluginImpl.getInstance().save();
         return cause;
     }
@@ -119,6 +134,9 @@ public class LocalFileKnowledgeBase extends KnowledgeBase {
     @Override
     public FailureCause removeCause(String id) throws Exception {
         FailureCause remove = causes.remove(id);
+        if (remove != null) {
+            touch(id, false);
+        }
         PluginImpl.getInstance().save();
         return remove;
     }
@@ -128,7 +146,8 @@ public class LocalFileKnowledgeBase extends KnowledgeBase {
         if (fixEmpty(cause.getId()) == null) {
             return addCause(cause);
         } else {
-            causes.put(cause.getId(), cause);
+            FailureCause previous = causes.put(cause.getId(), cause);
+            touch(cause.getId(), previous == null);
             PluginImpl.getInstance().save();
             return cause;
         }
@@ -139,7 +158,84 @@ public class LocalFileKnowledgeBase extends KnowledgeBase {
      * @param cause the cause to put.
      */
     protected void put(FailureCause cause) {
-        causes.put(cause.getId(), cause);
+        FailureCause previous = causes.put(cause.getId(), cause);
+        touch(cause.getId(), previous == null);
+    }
+
+    /**
+     * Records that a cause was added, saved or removed in a new revision.
+     *
+     * @param id the id of the cause.
+     * @param added true if the cause was added.
+     */
+    private synchronized void touch(String id, boolean added) {
+        if (revisions == null) {
+            revisions = new HashMap<String, Long>();
+            addedRevisions = new HashMap<String, Long>();
+        }
+        revision++;
+        revisions.put(id, revision);
+        if (added) {
+            addedRevisions.put(id, revision);
+        } else if (!causes.containsKey(id)) {
+            addedRevisions.remove(id);
+        }
+    }
+
+    @Override
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    @Override
+    public synchronized KnowledgeBaseChanges getChangesSince(long since) {
+        if (since > revision) {
+            // Not a revision of this knowledge base
+            return null;
+        }
+        Set<String> added = new HashSet<String>();
+        Set<String> modified = new HashSet<String>();
+        Set<String> removed = new HashSet<String>();
+        if (revisions != null) {
+            for (Map.Entry<String, Long> entry : revisions.entrySet()) {
+                if (entry.getValue() <= since) {
+                    continue;
+                }
+                String id = entry.getKey();
+                Long addedRevision = addedRevisions.get(id);
+                if (!causes.containsKey(id)) {
+                    removed.add(id);
+                } else if (addedRevision != null && addedRevision > since) {
+                    added.add(id);
+                } else {
+                    modified.add(id);
+                }
+            }
+        }
+        return new KnowledgeBaseChanges(revision, added, modified, removed);
+    }
+
+    @Override
+    public ScanSnapshot getScanSnapshot() {
+        ScanSnapshot snapshot = scanSnapshot;
+        if (snapshot != null && snapshot.getRevision() == getRevision() && snapshot.isCurrent()) {
+            return snapshot;
+        }
+        return compileScanSnapshot();
+    }
+
+    /**
+     * Compiles the snapshot of the current revision, unless another scan already did.
+     *
+     * @return the snapshot.
+     */
+    private synchronized ScanSnapshot compileScanSnapshot() {
+        ScanSnapshot snapshot = scanSnapshot;
+        if (snapshot == null || snapshot.getRevision() != revision || !snapshot.isCurrent()) {
+            snapshot = ScanSnapshot.compile(causes.values(), revision);
+            scanSnapshot = snapshot;
+        }
+        return snapshot;
     }
 
     @Override
@@ -147,6 +243,10 @@ public class LocalFileKnowledgeBase extends KnowledgeBase {
         if (oldKnowledgeBase instanceof LocalFileKnowledgeBase) {
             LocalFileKnowledgeBase lfkb = (LocalFileKnowledgeBase)oldKnowledgeBase;
             causes = lfkb.causes;
+            revision = lfkb.revision;
+            revisions = lfkb.revisions;
+            addedRevisions = lfkb.addedRevisions;
+            scanSnapshot = null;
         } else {
             convertFromAbstract(oldKnowledgeBase);
         }
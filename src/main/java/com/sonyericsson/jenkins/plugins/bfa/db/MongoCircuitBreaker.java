@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.db;
+
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ServerDescription;
+import com.mongodb.event.ClusterClosedEvent;
+import com.mongodb.event.ClusterDescriptionChangedEvent;
+import com.mongodb.event.ClusterListener;
+import com.mongodb.event.ClusterOpeningEvent;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tells the operations of a {@link MongoDBKnowledgeBase} to fail right away while its database is unreachable,
+ * instead of each of them blocking for the connect and server selection timeouts.
+ *
+ * The health of the database is probed by the monitor threads of the driver, which check every server in the
+ * background and report each change to this listener. The circuit opens when no server can be reached, and closes
+ * as soon as one answers again. While the circuit is open, {@link #check()} throws a
+ * {@link KnowledgeBaseUnavailableException}.
+ */
+public class MongoCircuitBreaker implements ClusterListener {
+
+    private static final Logger logger = Logger.getLogger(MongoCircuitBreaker.class.getName());
+
+    private volatile boolean open = false;
+    private volatile Date openedSince = null;
+    private volatile String reason = null;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Fails fast if the database is unreachable.
+     *
+     * @throws KnowledgeBaseUnavailableException if the circuit is open.
+     */
+    public void check() {
+        if (open) {
+            rejected.incrementAndGet();
+            throw new KnowledgeBaseUnavailableException("The MongoDB knowledge base is unreachable since "
+                    + openedSince + ": " + reason);
+        }
+    }
+
+    /**
+     * Tells if the database is unreachable.
+     *
+     * @return true if the circuit is open.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * When the database was found unreachable.
+     *
+     * @return the time, null if the circuit is closed.
+     */
+    public Date getOpenedSince() {
+        if (openedSince == null) {
+            return null;
+        }
+        return new Date(openedSince.getTime());
+    }
+
+    /**
+     * Why the database is unreachable.
+     *
+     * @return the error of the driver, null if the circuit is closed.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * The number of operations that failed fast so far.
+     *
+     * @return the count.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public void clusterOpening(ClusterOpeningEvent event) {
+    }
+
+    @Override
+    public void clusterClosed(ClusterClosedEvent event) {
+    }
+
+    @Override
+    public void clusterDescriptionChanged(ClusterDescriptionChangedEvent event) {
+        update(event.getNewDescription());
+    }
+
+    /**
+     * Opens the circuit if no server can be reached, or closes it if one can. A server that has not been probed yet
+     * changes nothing.
+     *
+     * @param description what the driver knows of the servers.
+     */
+    synchronized void update(ClusterDescription description) {
+        Throwable error = null;
+        for (ServerDescription server : description.getServerDescriptions()) {
+            if (server.isOk()) {
+                if (open) {
+                    logger.log(Level.INFO, "The MongoDB knowledge base is reachable again, {0} operations failed "
+                            + "fast meanwhile", rejected.get());
+                }
+                open = false;
+                openedSince = null;
+                reason = null;
+                return;
+            }
+            if (server.getException() != null) {
+                error = server.getException();
+            }
+        }
+        if (error != null && !open) {
+            logger.log(Level.WARNING, "The MongoDB knowledge base is unreachable, failing fast until it is back",
+                    error);
+            reason = String.valueOf(error.getMessage());
+            openedSince = new Date();
+            open = true;
+        }
+    }
+}
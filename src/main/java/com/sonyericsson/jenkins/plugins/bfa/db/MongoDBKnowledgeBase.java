@@ -28,10 +28,14 @@ import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.mongodb.AggregationOutput;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 import com.mongodb.DBRef;
+import com.mongodb.DuplicateKeyException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
@@ -42,6 +46,7 @@ import com.sonyericsson.jenkins.plugins.bfa.graphs.FailureCauseTimeInterval;
 import com.sonyericsson.jenkins.plugins.bfa.graphs.GraphFilterBuilder;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
 import com.sonyericsson.jenkins.plugins.bfa.statistics.FailureCauseStatistics;
 import com.sonyericsson.jenkins.plugins.bfa.statistics.Statistics;
 import com.sonyericsson.jenkins.plugins.bfa.utils.BfaUtils;
@@ -56,6 +61,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -98,6 +104,18 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     public static final String COLLECTION_NAME = "failureCauses";
     /**The name of the statistics collection in the database.*/
     public static final String STATISTICS_COLLECTION_NAME = "statistics";
+    /**The name of the collection in the database holding the revision counter of the causes.*/
+    public static final String COUNTERS_COLLECTION_NAME = "counters";
+    /**The field of a cause document holding the revision it was last added, saved or removed in.*/
+    static final String REVISION = "revision";
+    /**The field of a cause document holding the revision it was added in.*/
+    static final String ADDED_REVISION = "addedRevision";
+    /**
+     * The number of revisions below the counter that {@link #getChangesSince(long)} reports as missing at most.
+     * A change takes its revision right before writing its cause, so a change still in flight is always among the
+     * latest revisions.
+     */
+    static final int MAX_MISSING_REVISIONS = 100;
     private static final int MONGO_DEFAULT_PORT = 27017;
     /**
      * Query to single out documents that doesn't have a "removed" property
@@ -106,6 +124,10 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     private static final Logger logger = Logger.getLogger(MongoDBKnowledgeBase.class.getName());
     private static final int CONNECT_TIMEOUT = 5000;
     private static final int SERVER_SELECTION_TIMEOUT = 5000;
+    /**The error code of a write that would duplicate a unique key.*/
+    private static final int DUPLICATE_KEY = 11000;
+    /**The field of a statistics document holding when its build was scanned again.*/
+    private static final String RESCANNED_AT = "rescannedAt";
 
     private static final TypeFactory TYPE_FACTORY = TypeFactory.defaultInstance()
             .withClassLoader(MongoDBKnowledgeBase.class.getClassLoader());
@@ -118,9 +140,11 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     private transient DB db;
     private transient DBCollection collection;
     private transient DBCollection statisticsCollection;
+    private transient DBCollection countersCollection;
     private transient JacksonDBCollection<FailureCause, String> jacksonCollection;
     private transient JacksonDBCollection<Statistics, String> jacksonStatisticsCollection;
     private transient MongoDBKnowledgeBaseCache cache;
+    private transient MongoCircuitBreaker circuitBreaker;
 
     private String host;
     private int port;
@@ -214,6 +238,36 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     @Override
     public synchronized void start() {
         initCache();
+        if (enableStatistics) {
+            ensureStatisticsIndexes();
+        }
+    }
+
+    /**
+     * Creates the missing indexes of the statistics collection on a thread of its own, since building an index on
+     * a large collection can take long.
+     */
+    private void ensureStatisticsIndexes() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    StatisticsIndexes.ensure(getStatisticsCollection());
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Could not check the indexes of the statistics", e);
+                }
+            }
+        }, "BFA statistics indexes");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public List<StatisticsIndexes.IndexStatus> getStatisticsIndexes() throws Exception {
+        if (!enableStatistics) {
+            return null;
+        }
+        return StatisticsIndexes.getStatus(getStatisticsCollection());
     }
 
     @Override
@@ -224,12 +278,45 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         }
     }
 
+    /**
+     * The causes of the cache while the database is unreachable.
+     *
+     * @return the cached causes, or null if the database is reachable or nothing is cached.
+     */
+    private List<FailureCause> getDegradedCauses() {
+        if (!getCircuitBreaker().isOpen() || cache == null) {
+            return null;
+        }
+        return cache.getCauses();
+    }
+
+    /**
+     * The circuit breaker that makes the operations fail fast while the database is unreachable.
+     *
+     * @return the circuit breaker.
+     */
+    synchronized MongoCircuitBreaker getCircuitBreaker() {
+        if (circuitBreaker == null) {
+            circuitBreaker = new MongoCircuitBreaker();
+        }
+        return circuitBreaker;
+    }
+
+    @Override
+    public String getDegradedReason() {
+        MongoCircuitBreaker breaker = getCircuitBreaker();
+        if (!breaker.isOpen()) {
+            return null;
+        }
+        return breaker.getReason();
+    }
+
     /**
      * Initializes the cache if it is null.
      */
     private void initCache() {
         if (cache == null) {
-            cache = new MongoDBKnowledgeBaseCache(getJacksonCollection());
+            cache = new MongoDBKnowledgeBaseCache(getJacksonCollection(), this);
             cache.start();
         }
     }
@@ -237,6 +324,9 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     /**
      * @see KnowledgeBase#getCauses()
      * Can throw MongoException if unknown fields exist in the database.
+     * The causes come from the cache, which leaves out what the scans don't need: the comment and all but the
+     * latest modification, see {@link MongoDBKnowledgeBaseCache}. Use {@link #getCause(String)} for the complete
+     * cause, and never save one of these.
      * @return the full list of causes.
      */
     @Override
@@ -245,6 +335,23 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         return cache.getCauses();
     }
 
+    /**
+     * The snapshot compiled by the cache whenever it reads changed causes, so the scans don't compile it.
+     *
+     * @return the snapshot.
+     * @throws Exception if something in the KnowledgeBase handling goes wrong.
+     */
+    @Override
+    public ScanSnapshot getScanSnapshot() throws Exception {
+        initCache();
+        ScanSnapshot snapshot = cache.getScanSnapshot();
+        if (snapshot == null) {
+            // The cache has not been filled yet, or the causes did not compile
+            return super.getScanSnapshot();
+        }
+        return snapshot;
+    }
+
     /**
      * @see KnowledgeBase#getCauseNames()
      * Can throw MongoException if unknown fields exist in the database.
@@ -252,6 +359,10 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
      */
     @Override
     public Collection<FailureCause> getCauseNames() {
+        List<FailureCause> cached = getDegradedCauses();
+        if (cached != null) {
+            return cached;
+        }
         List<FailureCause> list = new LinkedList<FailureCause>();
         DBObject keys = new BasicDBObject();
         keys.put("name", 1);
@@ -263,8 +374,24 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
 
     }
 
+    /**
+     * @see KnowledgeBase#getShallowCauses()
+     * While the database is unreachable, the causes come from the cache, without their comments.
+     * @return the shallow causes, sorted by name.
+     */
     @Override
     public Collection<FailureCause> getShallowCauses() {
+        List<FailureCause> cached = getDegradedCauses();
+        if (cached != null) {
+            List<FailureCause> sorted = new ArrayList<FailureCause>(cached);
+            Collections.sort(sorted, new Comparator<FailureCause>() {
+                @Override
+                public int compare(FailureCause first, FailureCause second) {
+                    return String.valueOf(first.getName()).compareTo(String.valueOf(second.getName()));
+                }
+            });
+            return sorted;
+        }
         List<FailureCause> list = new LinkedList<>();
         DBObject keys = new BasicDBObject();
         keys.put("name", 1);
@@ -282,8 +409,18 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         return list;
     }
 
+    /**
+     * @see KnowledgeBase#getCause(String)
+     * While the database is unreachable, the cause comes from the cache, without its comment and older
+     * modifications, so it must not be saved anywhere, see {@link KnowledgeBase#convertFromAbstract(KnowledgeBase)}.
+     * @param id the id of the cause.
+     * @return the cause, or null if there is none with the id.
+     */
     @Override
     public FailureCause getCause(String id) {
+        if (getDegradedCauses() != null) {
+            return cache.getCause(id);
+        }
         FailureCause returnCase = null;
         try {
             returnCase = getJacksonCollection().findOneById(id);
@@ -304,7 +441,9 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         BasicDBObject idq = new BasicDBObject("_id", new ObjectId(id));
         BasicDBObject removedInfo = new BasicDBObject("timestamp", new Date());
         removedInfo.put("by", Jenkins.getAuthentication().getName());
-        BasicDBObject update = new BasicDBObject("$set", new BasicDBObject("_removed", removedInfo));
+        BasicDBObject fields = new BasicDBObject("_removed", removedInfo);
+        fields.put(REVISION, nextRevision());
+        BasicDBObject update = new BasicDBObject("$set", fields);
         FailureCause modified = getJacksonCollection().findAndModify(idq, null, null, false, update, true, false);
         initCache();
         cache.updateCache();
@@ -323,6 +462,9 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
      * @see MongoDBKnowledgeBase#addCause(FailureCause)
      */
     public FailureCause addCause(FailureCause cause, boolean doUpdate) {
+        long revision = nextRevision();
+        cause.setRevision(revision);
+        cause.setAddedRevision(revision);
         WriteResult<FailureCause, String> result = getJacksonCollection().insert(cause);
         if (doUpdate) {
             initCache();
@@ -348,6 +490,17 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
      * @see MongoDBKnowledgeBase#saveCause(FailureCause)
      */
     public FailureCause saveCause(FailureCause cause, boolean doUpdate) {
+        Long addedRevision = null;
+        if (cause.getId() != null) {
+            addedRevision = getAddedRevision(cause.getId());
+        }
+        long revision = nextRevision();
+        if (addedRevision == null) {
+            addedRevision = revision;
+        }
+        // Written with the cause, so that no one reads the revision without the cause or the other way around
+        cause.setRevision(revision);
+        cause.setAddedRevision(addedRevision);
         WriteResult<FailureCause, String> result =  getJacksonCollection().save(cause);
         if (doUpdate) {
             initCache();
@@ -356,6 +509,210 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         return result.getSavedObject();
     }
 
+    /**
+     * The current revision, as counted by the counter in the database shared by all controllers using it.
+     * Updates of when causes were last seen don't change the revision.
+     *
+     * @return the revision.
+     */
+    @Override
+    public long getRevision() {
+        DBObject counter = getCountersCollection().findOne(new BasicDBObject("_id", COLLECTION_NAME));
+        if (counter == null) {
+            return 0;
+        }
+        return ((Number)counter.get(REVISION)).longValue();
+    }
+
+    /**
+     * The causes added, modified or removed after the given revision, according to the revision fields of the cause
+     * documents. Causes last saved before the revisions were introduced are never reported.
+     *
+     * The changes go up to the counter. A change takes its revision from the counter before it writes its document,
+     * and changes taken in one order may be written in another, so the latest revisions that no document carries are
+     * reported as missing, see {@link KnowledgeBaseChanges#getMissing()}. A revision is also missing once a later
+     * change of the same cause has overwritten it.
+     *
+     * @param since the revision.
+     * @return the changes, or null if the revision is ahead of the counter in the database.
+     */
+    @Override
+    public KnowledgeBaseChanges getChangesSince(long since) {
+        long revision = getRevision();
+        if (since > revision) {
+            // Not a revision of this database
+            return null;
+        }
+        Set<String> added = new HashSet<String>();
+        Set<String> modified = new HashSet<String>();
+        Set<String> removed = new HashSet<String>();
+        DBObject query = new BasicDBObject(REVISION, new BasicDBObject("$gt", since));
+        DBObject keys = new BasicDBObject(REVISION, 1);
+        keys.put(ADDED_REVISION, 1);
+        keys.put("_removed", 1);
+        Set<Long> missing = new HashSet<Long>();
+        long checkedFrom = Math.max(since, revision - MAX_MISSING_REVISIONS);
+        for (long missingRevision = checkedFrom + 1; missingRevision <= revision; missingRevision++) {
+            missing.add(missingRevision);
+        }
+        com.mongodb.DBCursor cursor = getJacksonCollection().getDbCollection().find(query, keys);
+        try {
+            while (cursor.hasNext()) {
+                DBObject object = cursor.next();
+                String id = object.get("_id").toString();
+                Object changedRevision = object.get(REVISION);
+                if (changedRevision instanceof Number) {
+                    missing.remove(((Number)changedRevision).longValue());
+                }
+                Object addedRevision = object.get(ADDED_REVISION);
+                if (object.get("_removed") != null) {
+                    removed.add(id);
+                } else if (addedRevision instanceof Number && ((Number)addedRevision).longValue() > since) {
+                    added.add(id);
+                } else {
+                    modified.add(id);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return new KnowledgeBaseChanges(revision, added, modified, removed, missing);
+    }
+
+    /**
+     * Takes the next revision from the counter in the database.
+     *
+     * @return the revision.
+     */
+    private long nextRevision() {
+        DBObject counter = getCountersCollection().findAndModify(new BasicDBObject("_id", COLLECTION_NAME),
+                null, null, false, new BasicDBObject("$inc", new BasicDBObject(REVISION, 1L)), true, true);
+        return ((Number)counter.get(REVISION)).longValue();
+    }
+
+    /**
+     * The revision a cause was added in, read before saving it since saving replaces the whole document.
+     *
+     * @param id the id of the cause.
+     * @return the revision, 0 if the cause was added before the revisions were introduced, or null if the cause
+     *         isn't in the database.
+     */
+    private Long getAddedRevision(String id) {
+        DBObject existing = getJacksonCollection().getDbCollection().findOne(idQuery(id),
+                new BasicDBObject(ADDED_REVISION, 1));
+        if (existing == null) {
+            return null;
+        }
+        Object addedRevision = existing.get(ADDED_REVISION);
+        if (addedRevision instanceof Number) {
+            return ((Number)addedRevision).longValue();
+        }
+        return 0L;
+    }
+
+    /**
+     * A query for the document of a cause.
+     *
+     * @param id the id of the cause.
+     * @return the query.
+     */
+    private static DBObject idQuery(String id) {
+        return new BasicDBObject("_id", toDbId(id));
+    }
+
+    /**
+     * The _id of the document of a cause.
+     *
+     * @param id the id of the cause.
+     * @return the _id, an ObjectId unless the cause was given some other kind of id.
+     */
+    static Object toDbId(String id) {
+        if (ObjectId.isValid(id)) {
+            return new ObjectId(id);
+        }
+        return id;
+    }
+
+    /**
+     * Resolves the ids of many causes at once, for the statistics queries. Causes are taken from the cache when it
+     * has them, the others, like removed causes, are read with one query holding only their names and categories.
+     *
+     * @param ids the ids of the causes.
+     * @return the causes found, by id.
+     */
+    Map<String, FailureCause> resolveCauses(Collection<String> ids) {
+        Map<String, FailureCause> causes = new HashMap<String, FailureCause>();
+        List<Object> missing = new ArrayList<Object>();
+        for (String id : ids) {
+            FailureCause cause = null;
+            if (cache != null) {
+                cause = cache.getCause(id);
+            }
+            if (cause != null) {
+                causes.put(id, cause);
+            } else if (!causes.containsKey(id)) {
+                missing.add(toDbId(id));
+            }
+        }
+        if (!missing.isEmpty()) {
+            DBObject keys = new BasicDBObject();
+            keys.put("name", 1);
+            keys.put("categories", 1);
+            DBCursor<FailureCause> dbCauses = getJacksonCollection().find(
+                    new BasicDBObject("_id", new BasicDBObject("$in", missing)), keys);
+            while (dbCauses.hasNext()) {
+                FailureCause cause = dbCauses.next();
+                causes.put(cause.getId(), cause);
+            }
+        }
+        return causes;
+    }
+
+    /**
+     * The ids of the counted causes.
+     *
+     * @param countPairs the counts per cause id.
+     * @return the ids.
+     */
+    private static Set<String> getIds(List<ObjectCountPair<String>> countPairs) {
+        Set<String> ids = new HashSet<String>();
+        for (ObjectCountPair<String> countPair : countPairs) {
+            ids.add(countPair.getObject());
+        }
+        return ids;
+    }
+
+    /**
+     * Reads the results of an aggregation into a list, so that they can be iterated more than once.
+     *
+     * @param results the results.
+     * @return the list.
+     */
+    private static List<DBObject> toList(Iterable<DBObject> results) {
+        List<DBObject> list = new ArrayList<DBObject>();
+        for (DBObject result : results) {
+            list.add(result);
+        }
+        return list;
+    }
+
+    /**
+     * The ids of the causes referenced by the aggregation results.
+     *
+     * @param results the results.
+     * @param field the field of the results holding the list of references.
+     * @return the ids.
+     */
+    private static Set<String> getReferencedIds(List<DBObject> results, String field) {
+        Set<String> ids = new HashSet<String>();
+        for (DBObject result : results) {
+            for (Object o : (BasicDBList)result.get(field)) {
+                ids.add(((DBRef)o).getId().toString());
+            }
+        }
+        return ids;
+    }
+
     @Override
     public void convertFrom(KnowledgeBase oldKnowledgeBase) throws Exception {
         if (oldKnowledgeBase instanceof MongoDBKnowledgeBase) {
@@ -483,7 +840,98 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
 
     @Override
     public void saveStatistics(Statistics stat) {
+        try {
+            if (stat.getRescannedAt() > 0) {
+                getStatisticsCollection().update(replacedQuery(stat), toDBObject(stat), hasId(stat), false);
+            } else {
+                getStatisticsCollection().insert(toDBObject(stat));
+            }
+        } catch (DuplicateKeyException e) {
+            logger.log(Level.FINE, "Statistics {0} already saved", stat.getId());
+        }
+    }
+
+    /**
+     * Saves the Statistics with one unordered bulk write. Statistics that are already saved, because an earlier
+     * attempt failed part of the way, are skipped. Statistics of a build scanned again replace the earlier ones, see
+     * {@link #replacedQuery(Statistics)}.
+     *
+     * @param stats the Statistics.
+     */
+    @Override
+    public void saveStatistics(List<Statistics> stats) {
+        if (stats.isEmpty()) {
+            return;
+        }
+        BulkWriteOperation bulk = getStatisticsCollection().initializeUnorderedBulkOperation();
+        for (Statistics stat : stats) {
+            if (stat.getRescannedAt() <= 0) {
+                bulk.insert(toDBObject(stat));
+            } else if (hasId(stat)) {
+                bulk.find(replacedQuery(stat)).upsert().replaceOne(toDBObject(stat));
+            } else {
+                bulk.find(replacedQuery(stat)).replaceOne(toDBObject(stat));
+            }
+        }
+        try {
+            bulk.execute();
+        } catch (BulkWriteException e) {
+            if (e.getWriteConcernError() != null) {
+                throw e;
+            }
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            logger.log(Level.FINE, "{0} statistics were already saved", e.getWriteErrors().size());
+        }
+    }
+
+    /**
+     * The query for the saved Statistics that the Statistics of a build scanned again replace: the ones with the
+     * same id, or of the same build if the build was scanned before Statistics had ids, and not from a later scan.
+     * Statistics with an id are saved with an upsert, so that they are saved even before the ones they replace. The
+     * upsert of Statistics older than the saved ones fails on the duplicate id, and so does the insert of the
+     * Statistics of the first scan once they have been replaced, and both are skipped.
+     *
+     * @param stat the Statistics of the build scanned again.
+     * @return the query.
+     */
+    private static DBObject replacedQuery(Statistics stat) {
+        BasicDBObject query = new BasicDBObject();
+        if (hasId(stat)) {
+            query.put("_id", new ObjectId(stat.getId()));
+        } else {
+            query.put("projectName", stat.getProjectName());
+            query.put("buildNumber", stat.getBuildNumber());
+            query.put("master", stat.getMaster());
+        }
+        query.put(RESCANNED_AT, new BasicDBObject("$not", new BasicDBObject("$gte", stat.getRescannedAt())));
+        return query;
+    }
+
+    /**
+     * Tells if Statistics are saved with their own id.
+     *
+     * @param stat the Statistics.
+     * @return true if they have a valid id.
+     */
+    private static boolean hasId(Statistics stat) {
+        return stat.getId() != null && ObjectId.isValid(stat.getId());
+    }
+
+    /**
+     * Converts Statistics to the document saved in the statistics collection.
+     *
+     * @param stat the Statistics.
+     * @return the document.
+     */
+    private DBObject toDBObject(Statistics stat) {
         DBObject object = new BasicDBObject();
+        if (hasId(stat)) {
+            object.put("_id", new ObjectId(stat.getId()));
+        }
         object.put("projectName", stat.getProjectName());
         object.put("buildNumber", stat.getBuildNumber());
         object.put("displayName", stat.getDisplayName());
@@ -502,11 +950,13 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         }
         object.put("upstreamCause", cause);
         object.put("result", stat.getResult());
+        if (stat.getRescannedAt() > 0) {
+            object.put(RESCANNED_AT, stat.getRescannedAt());
+        }
         List<FailureCauseStatistics> failureCauseStatisticsList = stat.getFailureCauseStatisticsList();
         addFailureCausesToDBObject(object, failureCauseStatisticsList);
-
-        getStatisticsCollection().insert(object);
-       }
+        return object;
+    }
 
     @Override
     public List<Statistics> getStatistics(GraphFilterBuilder filter, int limit) {
@@ -659,6 +1109,8 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
                     return startingTime;
                 }
             }
+        } catch (KnowledgeBaseUnavailableException e) {
+            logger.log(Level.FINE, "Not getting latest failure of cause", e);
         } catch (Exception e) {
             logger.log(Level.WARNING, "Failed getting latest failure of cause", e);
         }
@@ -691,6 +1143,25 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         getJacksonCollection().updateMulti(match, set);
     }
 
+    /**
+     * Updates the FailureCauses with one unordered bulk write. A FailureCause already seen later than the given
+     * time keeps its time.
+     *
+     * @param lastSeen  the time at which each FailureCause occurred, by FailureCause id.
+     */
+    @Override
+    public void updateLastSeen(Map<String, Date> lastSeen) {
+        if (lastSeen.isEmpty()) {
+            return;
+        }
+        BulkWriteOperation bulk = getJacksonCollection().getDbCollection().initializeUnorderedBulkOperation();
+        for (Entry<String, Date> entry : lastSeen.entrySet()) {
+            bulk.find(new BasicDBObject("_id", new ObjectId(entry.getKey())))
+                    .updateOne(new BasicDBObject("$max", new BasicDBObject("lastOccurred", entry.getValue())));
+        }
+        bulk.execute();
+    }
+
     /**
      * Generates a DBObject used for matching data as part of a MongoDb
      * aggregation query.
@@ -759,10 +1230,11 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         List<ObjectCountPair<String>> nbrOfFailureCausesPerId = getNbrOfFailureCausesPerId(filter, 0);
         List<ObjectCountPair<FailureCause>> nbrOfFailureCauses = new ArrayList<ObjectCountPair<FailureCause>>();
         try {
+            Map<String, FailureCause> failureCauses = resolveCauses(getIds(nbrOfFailureCausesPerId));
             for (ObjectCountPair<String> countPair : nbrOfFailureCausesPerId) {
                 String id = countPair.getObject();
                 int count = countPair.getCount();
-                FailureCause failureCause = getCause(id);
+                FailureCause failureCause = failureCauses.get(id);
                 if (failureCause != null) {
                     nbrOfFailureCauses.add(new ObjectCountPair<FailureCause>(failureCause, count));
                 }
@@ -803,15 +1275,16 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
         AggregationOutput output;
         try {
             output = getStatisticsCollection().aggregate(match, unwind, group, sort);
-            for (DBObject result : output.results()) {
+            List<DBObject> results = toList(output.results());
+            Map<String, FailureCause> causes = resolveCauses(getReferencedIds(results, "failureCauses"));
+            for (DBObject result : results) {
                 List<FailureCause> failureCauses = new ArrayList<FailureCause>();
                 Integer buildNumber = (Integer)result.get("_id");
                 BasicDBList failureCauseRefs = (BasicDBList)result.get("failureCauses");
                 for (Object o : failureCauseRefs) {
                     DBRef failureRef = (DBRef)o;
                     String id = failureRef.getId().toString();
-                    FailureCause failureCause = getCause(id);
-                    failureCauses.add(failureCause);
+                    failureCauses.add(causes.get(id));
                 }
 
                 nbrOfFailureCausesPerBuild.put(buildNumber, failureCauses);
@@ -900,7 +1373,14 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
 
         AggregationOutput output;
         output = getStatisticsCollection().aggregate(match, unwind, group);
-        for (DBObject result : output.results()) {
+        List<DBObject> results = toList(output.results());
+        Set<String> ids = new HashSet<String>();
+        for (DBObject result : results) {
+            DBRef failureRef = (DBRef)((BasicDBObject)result.get("_id")).get("failureCause");
+            ids.add(failureRef.getId().toString());
+        }
+        Map<String, FailureCause> causes = resolveCauses(ids);
+        for (DBObject result : results) {
             int number = (Integer)result.get("number");
 
             TimePeriod period = generateTimePeriodFromResult(result, intervalSize);
@@ -908,7 +1388,7 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
             BasicDBObject groupedAttrs = (BasicDBObject)result.get("_id");
             DBRef failureRef = (DBRef)groupedAttrs.get("failureCause");
             String id = failureRef.getId().toString();
-            FailureCause failureCause = getCause(id);
+            FailureCause failureCause = causes.get(id);
 
             if (byCategories) {
                 if (failureCause.getCategories() != null) {
@@ -939,17 +1419,18 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
 
         List<ObjectCountPair<String>> nbrOfFailureCausesPerId = getNbrOfFailureCausesPerId(filter, 0);
         Map<String, Integer> nbrOfFailureCategoriesPerName = new HashMap<String, Integer>();
+        Map<String, FailureCause> failureCauses = Collections.emptyMap();
+        try {
+            failureCauses = resolveCauses(getIds(nbrOfFailureCausesPerId));
+        } catch (Exception e) {
+            logger.fine("Unable to count failure causes by name");
+            e.printStackTrace();
+        }
 
         for (ObjectCountPair<String> countPair : nbrOfFailureCausesPerId) {
             String id = countPair.getObject();
             int count = countPair.getCount();
-            FailureCause failureCause = null;
-            try {
-                failureCause = getCause(id);
-            } catch (Exception e) {
-                logger.fine("Unable to count failure causes by name");
-                e.printStackTrace();
-            }
+            FailureCause failureCause = failureCauses.get(id);
             if (failureCause != null) {
                 if (failureCause.getCategories() == null) {
                     Integer currentNbr = nbrOfFailureCategoriesPerName.get(null);
@@ -1060,6 +1541,7 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
                     .connectTimeout(CONNECT_TIMEOUT)
                     .serverSelectionTimeout(SERVER_SELECTION_TIMEOUT)
                     .sslEnabled(tls)
+                    .addClusterListener(getCircuitBreaker())
                     .build();
             if (password != null && Util.fixEmpty(password.getPlainText()) != null) {
                 char[] pwd = password.getPlainText().toCharArray();
@@ -1091,8 +1573,10 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     /**
      * Gets the DBCollection.
      * @return The db collection.
+     * @throws KnowledgeBaseUnavailableException if the database is unreachable.
      */
     private DBCollection getCollection() {
+        getCircuitBreaker().check();
         if (collection == null) {
             collection = getDb().getCollection(COLLECTION_NAME);
         }
@@ -1102,19 +1586,36 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     /**
      * Gets the Statistics DBCollection.
      * @return The statistics db collection.
+     * @throws KnowledgeBaseUnavailableException if the database is unreachable.
      */
     private synchronized DBCollection getStatisticsCollection() {
+        getCircuitBreaker().check();
         if (statisticsCollection == null) {
             statisticsCollection = getDb().getCollection(STATISTICS_COLLECTION_NAME);
         }
         return statisticsCollection;
     }
 
+    /**
+     * Gets the counters DBCollection.
+     * @return The counters db collection.
+     * @throws KnowledgeBaseUnavailableException if the database is unreachable.
+     */
+    private synchronized DBCollection getCountersCollection() {
+        getCircuitBreaker().check();
+        if (countersCollection == null) {
+            countersCollection = getDb().getCollection(COUNTERS_COLLECTION_NAME);
+        }
+        return countersCollection;
+    }
+
     /**
      * Gets the JacksonDBCollection for FailureCauses.
      * @return The jackson db collection.
+     * @throws KnowledgeBaseUnavailableException if the database is unreachable.
      */
     private synchronized JacksonDBCollection<FailureCause, String> getJacksonCollection() {
+        getCircuitBreaker().check();
         if (jacksonCollection == null) {
             if (collection == null) {
                 collection = getCollection();
@@ -1127,8 +1628,10 @@ public class MongoDBKnowledgeBase extends KnowledgeBase {
     /**
      * Gets the JacksonDBCollection for Statistics.
      * @return The jackson db collection.
+     * @throws KnowledgeBaseUnavailableException if the database is unreachable.
      */
     private synchronized JacksonDBCollection<Statistics, String> getJacksonStatisticsCollection() {
+        getCircuitBreaker().check();
         if (jacksonStatisticsCollection == null) {
             if (statisticsCollection == null) {
                 statisticsCollection = getStatisticsCollection();
@@ -24,15 +24,26 @@
 
 package com.sonyericsson.jenkins.plugins.bfa.db;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.mongodb.BasicDBObject;
 import com.mongodb.MongoException;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
 import org.mongojack.DBCursor;
 import org.mongojack.JacksonDBCollection;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +52,25 @@ import static com.sonyericsson.jenkins.plugins.bfa.db.MongoDBKnowledgeBase.NOT_R
 /**
  * Cache for the MongoDBKnowledgeBase.
  *
+ * The cache is refreshed every {@link #CACHE_UPDATE_INTERVAL} and after every change made through this controller.
+ * A refresh first compares the revision of the knowledge base and the number of causes with the cached ones, and
+ * does nothing more if neither has changed. Otherwise only the causes in the change feed of the knowledge base are
+ * read again, see {@link KnowledgeBase#getChangesSince(long)}. The whole collection is only read when the cache
+ * starts, when the change feed can't tell what changed, and every {@link #FULL_RELOAD_INTERVAL} refreshes to pick up
+ * changes made by controllers running an older version of the plugin.
+ *
+ * The cached revision only goes up to the revision below the lowest revision missing from the changes, see
+ * {@link KnowledgeBaseChanges#getMissing()}, so a change that took its revision before a change that was written
+ * first is still read. A revision that stays missing for {@link #MISSING_REVISION_TIMEOUT} was overwritten by a later
+ * change of the same cause, or its change failed, and is not waited for any longer.
+ *
+ * The cache only holds what the scans need. The comment and all but the latest modification of each cause are left
+ * out by a field projection, see {@link #SCAN_PROJECTION}, and the categories, which most causes share, are
+ * interned. The UI reads complete causes from the database, see {@link MongoDBKnowledgeBase#getCause(String)}.
+ *
+ * Every refresh that changes the causes also compiles a new {@link ScanSnapshot} of them on the updater thread,
+ * so that scans don't compile regular expressions, and publishes it at once, see {@link #getScanSnapshot()}.
+ *
  * @author Tomas Westling &lt;tomas.westling@sonyericsson.com&gt;
  */
 public class MongoDBKnowledgeBaseCache {
@@ -49,19 +79,59 @@ public class MongoDBKnowledgeBaseCache {
     private UpdateThread updaterThread;
     private Timer timer;
     private TimerTask timerTask;
-    private List<FailureCause> cachedFailureCauses;
-    private List<String> categories;
+    private volatile List<FailureCause> cachedFailureCauses;
+    private volatile List<String> categories;
+    private final AtomicReference<ScanSnapshot> scanSnapshot = new AtomicReference<ScanSnapshot>();
     private JacksonDBCollection<FailureCause, String> jacksonCollection;
+    private MongoDBKnowledgeBase knowledgeBase;
+
+    /**
+     * The cached causes by id. Replaced by the updater thread, never modified.
+     */
+    private volatile Map<String, FailureCause> causesById;
+    private long revision;
+    private int refreshesSinceReload;
+    /**
+     * The revisions missing from the changes, with the time they were first found missing.
+     * Only used by the updater thread.
+     */
+    private Map<Long, Long> missingSince = new HashMap<Long, Long>();
 
     private static final long CACHE_UPDATE_INTERVAL = 60000;
+    /**
+     * The fields of the causes read into the cache: all but the comment, and only the latest modification, which
+     * is the first one in the list, see {@link FailureCause#getLatestModification()}.
+     */
+    static final BasicDBObject SCAN_PROJECTION = new BasicDBObject("comment", 0)
+            .append("modifications", new BasicDBObject("$slice", 1));
+    private static final Interner<String> STRINGS = Interners.newWeakInterner();
+    /**
+     * The number of refreshes between two reads of the whole collection.
+     */
+    static final int FULL_RELOAD_INTERVAL = 60;
+    /**
+     * The time in milliseconds a revision missing from the changes is waited for.
+     */
+    static final long MISSING_REVISION_TIMEOUT = 30000;
     private static final Logger logger = Logger.getLogger(MongoDBKnowledgeBase.class.getName());
 
     /**
-     * Standard constructor.
+     * Constructor for a cache that reads the whole collection on every refresh.
      * @param jacksonCollection the JacksonDBCollection, used for accessing the database.
      */
     public MongoDBKnowledgeBaseCache(JacksonDBCollection<FailureCause, String> jacksonCollection) {
+        this(jacksonCollection, null);
+    }
+
+    /**
+     * Standard constructor.
+     * @param jacksonCollection the JacksonDBCollection, used for accessing the database.
+     * @param knowledgeBase the knowledge base, used for its revision and change feed.
+     */
+    public MongoDBKnowledgeBaseCache(JacksonDBCollection<FailureCause, String> jacksonCollection,
+                                     MongoDBKnowledgeBase knowledgeBase) {
         this.jacksonCollection = jacksonCollection;
+        this.knowledgeBase = knowledgeBase;
     }
 
     /**
@@ -109,6 +179,20 @@ public class MongoDBKnowledgeBaseCache {
         return cachedFailureCauses;
     }
 
+    /**
+     * Gets a cached cause.
+     *
+     * @param id the id of the cause.
+     * @return the cause, or null if it is not in the cache.
+     */
+    public FailureCause getCause(String id) {
+        Map<String, FailureCause> map = causesById;
+        if (map == null) {
+            return null;
+        }
+        return map.get(id);
+    }
+
     /**
      * Getter for the categories of all FailureCauses.
      * @return the categories.
@@ -117,6 +201,211 @@ public class MongoDBKnowledgeBaseCache {
         return categories;
     }
 
+    /**
+     * The compiled snapshot of the cached causes.
+     * The snapshot is compiled again here if the quarantined indications have changed since it was compiled,
+     * which is rare.
+     *
+     * @return the snapshot, or null if the cache has not been filled yet.
+     */
+    public ScanSnapshot getScanSnapshot() {
+        ScanSnapshot snapshot = scanSnapshot.get();
+        if (snapshot != null && !snapshot.isCurrent()) {
+            ScanSnapshot recompiled = snapshot.recompile();
+            // Unless the updater thread has published a newer one meanwhile
+            scanSnapshot.compareAndSet(snapshot, recompiled);
+            return recompiled;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Publishes the causes together with their compiled snapshot. Should the snapshot not compile, the scans
+     * compile the causes themselves, see {@link MongoDBKnowledgeBase#getScanSnapshot()}.
+     *
+     * @param causes the causes.
+     * @param currentRevision the revision they were read in.
+     */
+    private void publish(List<FailureCause> causes, long currentRevision) {
+        Long snapshotRevision = null;
+        if (knowledgeBase != null) {
+            snapshotRevision = currentRevision;
+        }
+        ScanSnapshot snapshot;
+        try {
+            snapshot = ScanSnapshot.compile(causes, snapshotRevision);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not compile the causes for scanning", e);
+            snapshot = null;
+        }
+        cachedFailureCauses = causes;
+        scanSnapshot.set(snapshot);
+    }
+
+    /**
+     * Brings the cache up to date with the database.
+     */
+    void refresh() {
+        if (knowledgeBase == null || causesById == null || refreshesSinceReload >= FULL_RELOAD_INTERVAL) {
+            reload();
+            return;
+        }
+        refreshesSinceReload++;
+        long currentRevision = knowledgeBase.getRevision();
+        if (currentRevision == revision && jacksonCollection.getCount(NOT_REMOVED_QUERY) == causesById.size()) {
+            return;
+        }
+        KnowledgeBaseChanges changes = knowledgeBase.getChangesSince(revision);
+        if (changes == null || (changes.isEmpty() && changes.getMissing().isEmpty())) {
+            // Changed without a revision, by an older version of the plugin or by hand
+            reload();
+        } else {
+            patch(changes);
+        }
+    }
+
+    /**
+     * Reads the whole collection.
+     */
+    private void reload() {
+        long currentRevision = 0;
+        if (knowledgeBase != null) {
+            // Read before the causes, so that changes made meanwhile are read again by the next refresh
+            currentRevision = knowledgeBase.getRevision();
+        }
+        // A change in flight has taken one of the latest revisions, and the removed causes are not read
+        Set<Long> missing = new HashSet<Long>();
+        long checkedFrom = Math.max(revision, currentRevision - MongoDBKnowledgeBase.MAX_MISSING_REVISIONS);
+        for (long missingRevision = checkedFrom + 1; missingRevision <= currentRevision; missingRevision++) {
+            missing.add(missingRevision);
+        }
+        Map<String, FailureCause> map = new LinkedHashMap<String, FailureCause>();
+        DBCursor<FailureCause> dbCauses =  jacksonCollection.find(NOT_REMOVED_QUERY, SCAN_PROJECTION);
+        while (dbCauses.hasNext()) {
+            FailureCause cause = compact(dbCauses.next());
+            map.put(cause.getId(), cause);
+            missing.remove(cause.getRevision());
+        }
+        causesById = map;
+        revision = settle(currentRevision, missing);
+        refreshesSinceReload = 0;
+        publish(new LinkedList<FailureCause>(map.values()), revision);
+        categories = intern(jacksonCollection.distinct("categories"));
+        logger.log(Level.FINE, "Read all {0} causes into the cache", map.size());
+    }
+
+    /**
+     * The revision the cache can go up to: the revision below the lowest missing revision that is still waited for,
+     * or the given revision if there is none.
+     *
+     * @param changedRevision the revision the changes go up to.
+     * @param missing the revisions missing from the changes.
+     * @return the revision.
+     */
+    private long settle(long changedRevision, Set<Long> missing) {
+        long now = System.currentTimeMillis();
+        Map<Long, Long> stillMissing = new HashMap<Long, Long>();
+        long settled = changedRevision;
+        for (Long missingRevision : missing) {
+            Long since = missingSince.get(missingRevision);
+            if (since == null) {
+                since = now;
+            }
+            if (now - since < MISSING_REVISION_TIMEOUT) {
+                stillMissing.put(missingRevision, since);
+                settled = Math.min(settled, missingRevision - 1);
+            }
+        }
+        missingSince = stillMissing;
+        return settled;
+    }
+
+    /**
+     * Reads only the causes that have changed.
+     *
+     * @param changes the changes since the cached revision.
+     */
+    private void patch(KnowledgeBaseChanges changes) {
+        Map<String, FailureCause> map = new LinkedHashMap<String, FailureCause>(causesById);
+        for (String id : changes.getRemoved()) {
+            map.remove(id);
+        }
+        Set<String> ids = changes.getAddedOrModified();
+        Set<String> newCategories = new HashSet<String>();
+        if (!ids.isEmpty()) {
+            List<Object> dbIds = new ArrayList<Object>();
+            for (String id : ids) {
+                dbIds.add(MongoDBKnowledgeBase.toDbId(id));
+            }
+            BasicDBObject query = new BasicDBObject("_id", new BasicDBObject("$in", dbIds));
+            query.putAll(NOT_REMOVED_QUERY);
+            Set<String> found = new HashSet<String>();
+            DBCursor<FailureCause> dbCauses = jacksonCollection.find(query, SCAN_PROJECTION);
+            while (dbCauses.hasNext()) {
+                FailureCause cause = compact(dbCauses.next());
+                map.put(cause.getId(), cause);
+                found.add(cause.getId());
+                if (cause.getCategories() != null) {
+                    newCategories.addAll(cause.getCategories());
+                }
+            }
+            for (String id : ids) {
+                if (!found.contains(id)) {
+                    // Removed after the changes were read
+                    map.remove(id);
+                }
+            }
+        }
+        causesById = map;
+        revision = settle(changes.getRevision(), changes.getMissing());
+        publish(new LinkedList<FailureCause>(map.values()), revision);
+        List<String> currentCategories = categories;
+        if (currentCategories != null) {
+            newCategories.removeAll(currentCategories);
+        }
+        if (!newCategories.isEmpty()) {
+            List<String> list = new LinkedList<String>();
+            if (currentCategories != null) {
+                list.addAll(currentCategories);
+            }
+            list.addAll(newCategories);
+            categories = list;
+        }
+        logger.log(Level.FINE, "Read {0} changed causes into the cache", ids.size());
+    }
+
+    /**
+     * Shares the strings of a cause that are equal in many causes.
+     *
+     * @param cause the cause read from the database.
+     * @return the same cause.
+     */
+    private static FailureCause compact(FailureCause cause) {
+        cause.setCategories(intern(cause.getCategories()));
+        return cause;
+    }
+
+    /**
+     * Interns the strings of a list.
+     *
+     * @param strings the strings, may be null.
+     * @return a new list of exactly the needed size holding the interned strings, or null if the list was null.
+     */
+    static List<String> intern(List<String> strings) {
+        if (strings == null) {
+            return null;
+        }
+        List<String> interned = new ArrayList<String>(strings.size());
+        for (String string : strings) {
+            if (string == null) {
+                interned.add(null);
+            } else {
+                interned.add(STRINGS.intern(string));
+            }
+        }
+        return interned;
+    }
+
     /**
      * The thread responsible for updating the MongoDB cache.
      */
@@ -130,13 +419,9 @@ public class MongoDBKnowledgeBaseCache {
                         if (stop) {
                             break;
                         }
-                        List<FailureCause> list = new LinkedList<FailureCause>();
-                        DBCursor<FailureCause> dbCauses =  jacksonCollection.find(NOT_REMOVED_QUERY);
-                        while (dbCauses.hasNext()) {
-                            list.add(dbCauses.next());
-                        }
-                        cachedFailureCauses = list;
-                        categories = jacksonCollection.distinct("categories");
+                        refresh();
+                    } catch (KnowledgeBaseUnavailableException e) {
+                        logger.log(Level.FINE, "Not updating the cache while the database is unreachable", e);
                     } catch (MongoException e) {
                         logger.log(Level.SEVERE, "MongoException caught when updating cache: ", e);
                     } catch (InterruptedException e) {
@@ -0,0 +1,343 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.db;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The indexes that the plugin manages on the statistics collection, one for each shape of query that
+ * {@link MongoDBKnowledgeBase} runs against it.
+ *
+ * The indexes are created in the background when the knowledge base starts, see {@link #ensure(DBCollection)}. An
+ * index with the same keys that already exists is left alone, whatever its name. {@link #getStatus(DBCollection)}
+ * tells how much each index of the collection is used and which managed indexes are missing, for the cause
+ * management page.
+ */
+public final class StatisticsIndexes {
+
+    private static final Logger logger = Logger.getLogger(StatisticsIndexes.class.getName());
+
+    /**
+     * The managed indexes, ordered by the fields the queries test for equality, then the fields they sort on, then
+     * the fields they test a range on.
+     */
+    static final List<Index> MANAGED = Collections.unmodifiableList(Arrays.asList(
+            // removeBuildfailurecause and the graphs of a project, which filter on build numbers
+            new Index("bfa_project_build", new BasicDBObject("projectName", 1).append("buildNumber", 1)
+                    .append("master", 1)),
+            // The graphs of a project over time
+            new Index("bfa_project_time", new BasicDBObject("projectName", 1).append("startingTime", 1)),
+            // The graphs of a node over time
+            new Index("bfa_node_time", new BasicDBObject("slaveHostName", 1).append("startingTime", 1)),
+            // The graphs of a master over time
+            new Index("bfa_master_time", new BasicDBObject("master", 1).append("startingTime", 1)),
+            // getLatestFailureForCause, latest first
+            new Index("bfa_cause_time", new BasicDBObject("failureCauses.failureCause.$id", 1)
+                    .append("startingTime", -1))));
+
+    /**
+     * Utility class.
+     */
+    private StatisticsIndexes() {
+    }
+
+    /**
+     * Creates the managed indexes that the collection doesn't have yet. Indexes are built in the background, so the
+     * collection stays usable meanwhile, but the call returns only once they are built.
+     *
+     * @param collection the statistics collection.
+     * @return the number of indexes created.
+     * @throws MongoException if the existing indexes can't be listed.
+     */
+    public static int ensure(DBCollection collection) {
+        List<DBObject> existing = collection.getIndexInfo();
+        int created = 0;
+        for (Index index : MANAGED) {
+            if (find(existing, index.getKeys()) != null) {
+                continue;
+            }
+            try {
+                logger.log(Level.INFO, "Creating index {0} on the statistics", index.getName());
+                collection.createIndex(index.getKeys(),
+                        new BasicDBObject("name", index.getName()).append("background", true));
+                created++;
+            } catch (MongoException e) {
+                // Typically missing privileges, the queries still work without the index
+                logger.log(Level.WARNING, "Could not create index " + index.getName() + " on the statistics", e);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * The indexes of the collection with their usage since the database server started, followed by the managed
+     * indexes that are missing.
+     *
+     * @param collection the statistics collection.
+     * @return the status of the indexes.
+     * @throws MongoException if the existing indexes can't be listed.
+     */
+    public static List<IndexStatus> getStatus(DBCollection collection) {
+        List<DBObject> existing = collection.getIndexInfo();
+        Map<String, Long> ops = new HashMap<String, Long>();
+        Map<String, Date> since = new HashMap<String, Date>();
+        try {
+            Iterable<DBObject> stats = collection.aggregate(
+                    new BasicDBObject("$indexStats", new BasicDBObject())).results();
+            for (DBObject stat : stats) {
+                String name = (String)stat.get("name");
+                DBObject accesses = (DBObject)stat.get("accesses");
+                if (name == null || accesses == null) {
+                    continue;
+                }
+                // One document per server of a replica set or sharded cluster
+                Number count = (Number)accesses.get("ops");
+                Long previous = ops.get(name);
+                if (previous == null) {
+                    previous = 0L;
+                }
+                if (count != null) {
+                    ops.put(name, previous + count.longValue());
+                }
+                Date from = (Date)accesses.get("since");
+                if (from != null && (!since.containsKey(name) || from.before(since.get(name)))) {
+                    since.put(name, from);
+                }
+            }
+        } catch (MongoException e) {
+            // Servers before 3.2 or users without the indexStats privilege, list the indexes without their usage
+            logger.log(Level.FINE, "Could not read the usage of the statistics indexes", e);
+        }
+
+        List<IndexStatus> status = new ArrayList<IndexStatus>();
+        for (DBObject info : existing) {
+            String name = (String)info.get("name");
+            DBObject keys = (DBObject)info.get("key");
+            status.add(new IndexStatus(name, String.valueOf(keys), isManaged(keys), true,
+                    ops.get(name), since.get(name)));
+        }
+        for (Index index : MANAGED) {
+            if (find(existing, index.getKeys()) == null) {
+                status.add(new IndexStatus(index.getName(), index.getKeys().toString(), true, false, null, null));
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Tells if the keys are those of a managed index.
+     *
+     * @param keys the keys.
+     * @return true if so.
+     */
+    private static boolean isManaged(DBObject keys) {
+        for (Index index : MANAGED) {
+            if (sameKeys(index.getKeys(), keys)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the existing index with the given keys.
+     *
+     * @param existing the existing indexes, as listed by {@link DBCollection#getIndexInfo()}.
+     * @param keys the keys.
+     * @return the index, or null if there is none.
+     */
+    private static DBObject find(List<DBObject> existing, DBObject keys) {
+        for (DBObject info : existing) {
+            if (sameKeys(keys, (DBObject)info.get("key"))) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells if two index key documents have the same fields in the same order and directions. Numbers are compared
+     * by their sign only, since the shell stores them as doubles.
+     *
+     * @param keys the keys of one index.
+     * @param other the keys of the other index.
+     * @return true if they index the same way.
+     */
+    static boolean sameKeys(DBObject keys, DBObject other) {
+        if (keys == null || other == null) {
+            return false;
+        }
+        List<String> fields = new ArrayList<String>(keys.keySet());
+        if (!fields.equals(new ArrayList<String>(other.keySet()))) {
+            return false;
+        }
+        for (String field : fields) {
+            Object value = keys.get(field);
+            Object otherValue = other.get(field);
+            if (value instanceof Number && otherValue instanceof Number) {
+                if (Math.signum(((Number)value).doubleValue()) != Math.signum(((Number)otherValue).doubleValue())) {
+                    return false;
+                }
+            } else if (value == null || !value.equals(otherValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An index managed by the plugin.
+     */
+    static final class Index {
+        private final String name;
+        private final DBObject keys;
+
+        /**
+         * Standard constructor.
+         *
+         * @param name the name of the index.
+         * @param keys the keys of the index.
+         */
+        Index(String name, DBObject keys) {
+            this.name = name;
+            this.keys = keys;
+        }
+
+        /**
+         * The name of the index.
+         *
+         * @return the name.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * The keys of the index.
+         *
+         * @return the keys.
+         */
+        DBObject getKeys() {
+            return keys;
+        }
+    }
+
+    /**
+     * The status of one index of the statistics collection.
+     */
+    public static final class IndexStatus {
+        private final String name;
+        private final String keys;
+        private final boolean managed;
+        private final boolean present;
+        private final Long ops;
+        private final Date since;
+
+        /**
+         * Standard constructor.
+         *
+         * @param name the name of the index.
+         * @param keys the keys of the index.
+         * @param managed true if the index is one of those managed by the plugin.
+         * @param present true if the index exists.
+         * @param ops the number of times the index was used, null if unknown.
+         * @param since when the counting of the uses started, null if unknown.
+         */
+        IndexStatus(String name, String keys, boolean managed, boolean present, Long ops, Date since) {
+            this.name = name;
+            this.keys = keys;
+            this.managed = managed;
+            this.present = present;
+            this.ops = ops;
+            this.since = since;
+        }
+
+        /**
+         * The name of the index.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The keys of the index.
+         *
+         * @return the keys, as JSON.
+         */
+        public String getKeys() {
+            return keys;
+        }
+
+        /**
+         * Tells if the index is one of those managed by the plugin.
+         *
+         * @return true if so.
+         */
+        public boolean isManaged() {
+            return managed;
+        }
+
+        /**
+         * Tells if the index exists. Only managed indexes can be missing.
+         *
+         * @return true if so.
+         */
+        public boolean isPresent() {
+            return present;
+        }
+
+        /**
+         * The number of times the index was used since {@link #getSince()}.
+         *
+         * @return the count, null if unknown.
+         */
+        public Long getOps() {
+            return ops;
+        }
+
+        /**
+         * When the counting of the uses of the index started, usually when the database server started.
+         *
+         * @return the date, null if unknown.
+         */
+        public Date getSince() {
+            return since;
+        }
+    }
+}
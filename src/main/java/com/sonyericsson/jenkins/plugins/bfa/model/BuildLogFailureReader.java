@@ -26,9 +26,9 @@ package com.sonyericsson.jenkins.plugins.bfa.model;
 
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.LogLineSource;
 import hudson.model.Run;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -63,16 +63,16 @@ public class BuildLogFailureReader extends FailureReader {
      */
     @Override
     public FoundIndication scan(Run build) throws IOException {
-        BufferedReader reader = null;
+        LogLineSource lines = null;
         try {
-            reader = new BufferedReader(build.getLogReader());
+            lines = LogLineSource.open(build);
             List<FailureCause> causes = new ArrayList<FailureCause>(1);
             FailureCause fc = new FailureCause("somename", "somedescription");
             causes.add(fc);
             fc.addIndication(indication);
             List<FoundFailureCause> foundFailureCauses = FailureReader.scanSingleLinePatterns(causes,
                                                                                               build,
-                                                                                              reader,
+                                                                                              lines,
                                                                                               "log");
             if (foundFailureCauses.isEmpty()) {
                 return null;
@@ -80,9 +80,9 @@ public class BuildLogFailureReader extends FailureReader {
                 return foundFailureCauses.get(0).getIndications().get(0);
             }
         } finally {
-            if (reader != null) {
+            if (lines != null) {
                 try {
-                    reader.close();
+                    lines.close();
                 } catch (IOException e) {
                     logger.log(Level.WARNING, "Failed to close the reader. ", e);
                 }
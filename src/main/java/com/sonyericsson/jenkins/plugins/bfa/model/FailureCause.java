@@ -27,11 +27,14 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.sonyericsson.jenkins.plugins.bfa.CauseManagement;
 import com.sonyericsson.jenkins.plugins.bfa.PluginImpl;
 import com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.BacktrackingAnalyzer;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.IndicationQuarantine;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.Action;
@@ -79,6 +82,12 @@ public class FailureCause implements Serializable, Action, Describable<FailureCa
     private List<String> categories;
     private List<Indication> indications;
     private List<FailureCauseModification> modifications;
+    /**
+     * The revisions of the knowledge base the cause was last saved and added in, written together with the cause by
+     * knowledge bases that keep track of their changes, see {@link KnowledgeBase#getChangesSince(long)}.
+     */
+    private transient Long revision;
+    private transient Long addedRevision;
 
     /**
      * Standard data bound constructor.
@@ -282,6 +291,13 @@ public class FailureCause implements Serializable, Action, Describable<FailureCa
         if (validation.kind != FormValidation.Kind.OK) {
             throw validation;
         }
+        for (Indication indication : newIndications) {
+            List<String> findings = BacktrackingAnalyzer.analyze(indication.getUserProvidedExpression());
+            if (!findings.isEmpty()) {
+                logger.log(Level.WARNING, "Indication ''{0}'' of cause {1} may take very long to match: {2}",
+                        new Object[]{indication.getUserProvidedExpression(), newName, findings, });
+            }
+        }
         this.name = newName;
         this.description = newDescription;
         this.comment = newComment;
@@ -299,6 +315,8 @@ public class FailureCause implements Serializable, Action, Describable<FailureCa
             PluginImpl.getInstance().getKnowledgeBase().addCause(this);
         } else {
             PluginImpl.getInstance().getKnowledgeBase().saveCause(this);
+            // Edited, so give the indications another chance
+            IndicationQuarantine.getInstance().release(newId);
         }
 
         response.sendRedirect2("../");
@@ -432,6 +450,48 @@ public class FailureCause implements Serializable, Action, Describable<FailureCa
         return modifications;
     }
 
+    /**
+     * The revision of the knowledge base the cause was last added, saved or removed in.
+     *
+     * @return the revision, or null if the knowledge base doesn't keep track of changes.
+     */
+    @JsonProperty("revision")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Setter for the revision, used by the knowledge base when it writes the cause.
+     *
+     * @param revision the revision.
+     */
+    @JsonProperty("revision")
+    public void setRevision(Long revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * The revision of the knowledge base the cause was added in.
+     *
+     * @return the revision, or null if the knowledge base doesn't keep track of changes.
+     */
+    @JsonProperty("addedRevision")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getAddedRevision() {
+        return addedRevision;
+    }
+
+    /**
+     * Setter for the revision the cause was added in, used by the knowledge base when it writes the cause.
+     *
+     * @param addedRevision the revision.
+     */
+    @JsonProperty("addedRevision")
+    public void setAddedRevision(Long addedRevision) {
+        this.addedRevision = addedRevision;
+    }
+
     /**
      * Getter for the categories.
      *
@@ -38,6 +38,7 @@ import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
@@ -55,6 +56,9 @@ import java.util.logging.Logger;
 public class FailureCauseBuildAction implements BuildBadgeAction {
     private transient List<FailureCause> failureCauses;
     private List<FoundFailureCause> foundFailureCauses;
+    private Long scannedAt;
+    private Long knowledgeBaseRevision;
+    private String statisticsId;
     /**
      * The url of this action.
      */
@@ -105,6 +109,99 @@ public class FailureCauseBuildAction implements BuildBadgeAction {
         return foundFailureCauses;
     }
 
+    /**
+     * Replaces the found causes.
+     *
+     * @param foundFailureCauses the FoundFailureCauses.
+     */
+    public synchronized void setFoundFailureCauses(List<FoundFailureCause> foundFailureCauses) {
+        this.foundFailureCauses = foundFailureCauses;
+    }
+
+    /**
+     * Merges what was found when scanning the build again for only the causes with the given ids into the found
+     * causes: the found causes with those ids are replaced, the others are kept as they are. The found causes of this
+     * action are left as they are, see {@link #setFoundFailureCauses(List)}.
+     *
+     * @param rescannedIds the ids of the causes the build was scanned again for.
+     * @param found the causes found in that scan.
+     * @return the merged causes, or null if no found cause would be replaced, removed or added.
+     */
+    public synchronized List<FoundFailureCause> merge(Collection<String> rescannedIds, List<FoundFailureCause> found) {
+        List<FoundFailureCause> merged = new LinkedList<FoundFailureCause>();
+        boolean changed = false;
+        for (FoundFailureCause cause : foundFailureCauses) {
+            if (rescannedIds.contains(cause.getId())) {
+                changed = true;
+            } else {
+                merged.add(cause);
+            }
+        }
+        if (!changed && found.isEmpty()) {
+            return null;
+        }
+        merged.addAll(found);
+        return merged;
+    }
+
+    /**
+     * When the build was last scanned, in milliseconds since the epoch. Causes added or edited in the knowledge base
+     * after this time have not been scanned for.
+     *
+     * @return the time, or null if the build was scanned before the time was recorded.
+     */
+    public Long getScannedAt() {
+        return scannedAt;
+    }
+
+    /**
+     * Records when the build was scanned.
+     *
+     * @param scannedAt the time in milliseconds since the epoch.
+     * @see #getScannedAt()
+     */
+    public void setScannedAt(long scannedAt) {
+        this.scannedAt = scannedAt;
+    }
+
+    /**
+     * The revision of the knowledge base when the build was last scanned, see
+     * {@link com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase#getChangesSince(long)}.
+     *
+     * @return the revision, or null if it isn't known.
+     */
+    public Long getKnowledgeBaseRevision() {
+        return knowledgeBaseRevision;
+    }
+
+    /**
+     * Records the revision of the knowledge base the build was scanned with.
+     *
+     * @param knowledgeBaseRevision the revision, null if it isn't known.
+     */
+    public void setKnowledgeBaseRevision(Long knowledgeBaseRevision) {
+        this.knowledgeBaseRevision = knowledgeBaseRevision;
+    }
+
+    /**
+     * The id of the statistics logged for the build, which the statistics of a scan again replace, see
+     * {@link com.sonyericsson.jenkins.plugins.bfa.statistics.Statistics#getId()}.
+     *
+     * @return the id, or null if no statistics were logged or the build was scanned before they had ids.
+     */
+    public String getStatisticsId() {
+        return statisticsId;
+    }
+
+    /**
+     * Records the id of the statistics logged for the build.
+     *
+     * @param statisticsId the id, null if no statistics were logged.
+     */
+    public void setStatisticsId(String statisticsId) {
+        this.statisticsId = statisticsId;
+    }
+
     /**
      * Gets the image url for the summary page.
      *
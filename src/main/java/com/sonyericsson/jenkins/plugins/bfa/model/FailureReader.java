@@ -25,26 +25,24 @@
 package com.sonyericsson.jenkins.plugins.bfa.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreType;
-import com.google.common.base.Joiner;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.LogLineSource;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.MultilineScanner;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanPlan;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanWatchdog;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.SearchWindow;
 import hudson.Util;
-import hudson.console.ConsoleNote;
 import hudson.model.AbstractBuild;
 import hudson.model.Run;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.Reader;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Reader used to find indications of a failure cause.
@@ -59,7 +57,6 @@ public abstract class FailureReader {
     private static final long TIMEOUT_BLOCK = 2000;
     private static final long TIMEOUT_FILE = 10000;
     private static final long TIMEOUT_LINE = 1000;
-    private static final long SLEEPTIME = 200;
 
     /**
      * Overlapping bytes when moving the sliding window searching area.
@@ -68,9 +65,10 @@ public abstract class FailureReader {
      * Used when scanning for
      * {@link com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication}.
      *
-     * Can never be larger than BUF_SIZE_BYTES.
+     * Can never be larger than BUF_SIZE_BYTES. Patterns whose span can be bounded use a smaller overlap, and
+     * patterns can declare a larger one, see {@link MultilineScanner}.
      */
-    private static final int OVERLAP_BYTES = 5000;
+    public static final int OVERLAP_BYTES = 5000;
 
     /**
      * The read buffer size for scanMultiLineOneFile(). This is also the size
@@ -78,7 +76,7 @@ public abstract class FailureReader {
      * the buildlog. Used when scanning for
      * {@link com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication}.
      */
-    private static final int BUF_SIZE_BYTES = 15000;
+    public static final int BUF_SIZE_BYTES = 15000;
 
     /** The indication we are looking for. */
     protected Indication indication;
@@ -152,7 +150,7 @@ public abstract class FailureReader {
     }
 
     /**
-     * Checks all patterns one-by-one for entire file.
+     * Checks all patterns for entire file, evaluating each line once against a {@link ScanPlan} of all patterns.
      *
      * @param causes list of failure causes that we a looking for.
      * @param build current build.
@@ -161,153 +159,97 @@ public abstract class FailureReader {
      * @return found indications.
      * @throws IOException Exception.
      */
-   public static List<FoundFailureCause> scanSingleLinePatterns(List<FailureCause> causes,
-                                                              Run build,
-                                                              BufferedReader reader,
-                                                              String currentFile) throws IOException {
-        TimerThread timerThread = new TimerThread(Thread.currentThread(), TIMEOUT_LINE);
-        final long adjustedFileTimeout = TIMEOUT_FILE * getTotalNumberOfPatterns(causes);
-
-        Map<FailureCause, List<FoundIndication>> resultMap = new HashMap<FailureCause, List<FoundIndication>>();
-        Map<FailureCause, List<Indication>> firstOccurrences = new HashMap<FailureCause, List<Indication>>();
-
-        timerThread.start();
-        try {
-            long startTime = System.currentTimeMillis();
-            int currentLine = 1;
-            String line;
-            while ((line = reader.readLine()) != null) {
-                for (FailureCause cause : causes) {
-                    for (Indication indication : cause.getIndications()) {
-                        try {
-                            List<Indication> wasBefore = firstOccurrences.get(cause);
-                            if (wasBefore == null || !wasBefore.contains(indication)) {
-                                if (processIndication(build, currentFile, resultMap, line, cause, indication,
-                                        currentLine)) {
-                                    wasBefore = new ArrayList<Indication>();
-                                    wasBefore.add(indication);
-                                    firstOccurrences.put(cause, wasBefore);
-                                }
-                            }
-                        } catch (RuntimeException e) {
-                            if (e.getCause() instanceof InterruptedException) {
-                                logger.warning("Timeout scanning for indication '" + indication.toString() + "'"
-                                        + " for file " + currentFile + ":" + currentLine);
-                            } else {
-                                // This is not a timeout exception
-                                throw e;
-                            }
-                        }
-                        currentLine++;
-                        timerThread.touch();
-                        if (System.currentTimeMillis() - startTime > adjustedFileTimeout) {
-                            logger.warning("File timeout scanning for indication '" + indication.toString() + "'"
-                                    + " for file " + currentFile + ":" + currentLine);
-                            return convertToFoundFailureCauses(resultMap);
-                        }
-                    }
-                }
-            }
-            return convertToFoundFailureCauses(resultMap);
-        } finally {
-            timerThread.requestStop();
-            timerThread.interrupt();
-            try {
-                timerThread.join();
-                //CS IGNORE EmptyBlock FOR NEXT 2 LINES. REASON: unimportant exception
-            } catch (InterruptedException eIgnore) {
-            }
-            // reset the interrupt
-            Thread.interrupted();
-        }
+    public static List<FoundFailureCause> scanSingleLinePatterns(List<FailureCause> causes,
+                                                               Run build,
+                                                               BufferedReader reader,
+                                                               String currentFile) throws IOException {
+        return scanSingleLinePatterns(causes, build, new LogLineSource.BufferedReaderLineSource(reader), currentFile);
     }
 
     /**
-     * Calculates total number of patterns in list of causes.
+     * Checks all patterns for entire file, evaluating each line once against a {@link ScanPlan} of all patterns.
      *
      * @param causes list of failure causes that we a looking for.
-     * @return total number of patterns.
+     * @param build current build.
+     * @param lines the lines of the file, see {@link LogLineSource#open(Run)}.
+     * @param currentFile file name.
+     * @return found indications.
+     * @throws IOException Exception.
      */
-    private static int getTotalNumberOfPatterns(List<FailureCause> causes) {
-        int total = 0;
-        for (FailureCause cause : causes) {
-            total += cause.getIndications().size();
-        }
-        return total;
+    public static List<FoundFailureCause> scanSingleLinePatterns(List<FailureCause> causes,
+                                                               Run build,
+                                                               LogLineSource lines,
+                                                               String currentFile) throws IOException {
+        return scanSingleLinePatterns(ScanPlan.compile(causes), build, lines, currentFile);
     }
 
     /**
+     * Checks all patterns of an already compiled {@link ScanPlan} for entire file, evaluating each line once.
      *
-     * Updates map of found failure causes if pattern matches the line
-     *
-     * @param build current build
-     * @param currentFile current file
-     * @param causeIndicationsMap result map
-     * @param line line with content
-     * @param cause current cause
-     * @param indication indication that should be checked
-     * @param lineNumber The line number of the indication
-     * @return true if new indication was found
-     */
-    private static boolean processIndication(Run build,
-                                             String currentFile,
-                                             Map<FailureCause, List<FoundIndication>> causeIndicationsMap,
-                                             String line,
-                                             FailureCause cause,
-                                             Indication indication,
-                                             int lineNumber) {
-        Pattern pattern = indication.getPattern();
-
-        if (pattern.matcher(new InterruptibleCharSequence(line)).matches()) {
-            FoundIndication foundIndication = new FoundIndication(
-                                                    build,
-                                                    pattern.toString(),
-                                                    currentFile,
-                                                    ConsoleNote.removeNotes(line),
-                                                    lineNumber);
-
-
-            putToMapWithList(causeIndicationsMap, cause, foundIndication);
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * Put FoundIndication to List of according FailureCause
-     * @param causeIndicationsMap result map
-     * @param cause Failure cause that would be used as key
-     * @param foundIndication Found indication that would be pushed to map
+     * @param plan the plan of the indications that we are looking for.
+     * @param build current build.
+     * @param lines the lines of the file, see {@link LogLineSource#open(Run)}.
+     * @param currentFile file name.
+     * @return found indications.
+     * @throws IOException Exception.
      */
-    private static void putToMapWithList(Map<FailureCause,
-                                         List<FoundIndication>> causeIndicationsMap,
-                                         FailureCause cause,
-                                         FoundIndication foundIndication) {
-        if (causeIndicationsMap.containsKey(cause)) {
-            causeIndicationsMap.get(cause).add(foundIndication);
-        } else {
-            List<FoundIndication> foundIndications = new ArrayList<FoundIndication>();
-            foundIndications.add(foundIndication);
-            causeIndicationsMap.put(cause, foundIndications);
-        }
+    public static List<FoundFailureCause> scanSingleLinePatterns(ScanPlan plan,
+                                                               Run build,
+                                                               LogLineSource lines,
+                                                               String currentFile) throws IOException {
+        ScanPlan.Session session = plan.newSession(build, currentFile);
+        scanSingleLinePatterns(session, lines, currentFile);
+        plan.recordTimeouts(Collections.singletonList(session));
+        return session.getFoundFailureCauses();
     }
 
     /**
-     * Converts from a map with a FailureCause as key
-     * and a list of FoundIndications as value
-     * to a list of FoundFailureCauses
+     * Feeds the lines to a scan session, with the same timeouts as
+     * {@link #scanSingleLinePatterns(List, Run, BufferedReader, String)}. Line numbers start at 1 for the first line
+     * of the source. The session is marked as having reached the end unless the scan stopped early because everything
+     * was found, the file timeout expired, the session was abandoned or the thread was interrupted, in which case it
+     * is marked as interrupted instead.
      *
-     * @param causes input data
-     * @return List of FoundFailureCauses that was generated from input data
+     * @param session the session to feed.
+     * @param lines the lines of the file.
+     * @param currentFile file name, for logging.
+     * @throws IOException Exception.
      */
-    private static List<FoundFailureCause> convertToFoundFailureCauses(Map<FailureCause, List<FoundIndication>> causes) {
-        List<FoundFailureCause> foundFailureCauses = new ArrayList<FoundFailureCause>(causes.size());
-
-        for (Map.Entry<FailureCause, List<FoundIndication>> entry : causes.entrySet()) {
-            foundFailureCauses.add(new FoundFailureCause(entry.getKey(), entry.getValue()));
+    public static void scanSingleLinePatterns(final ScanPlan.Session session,
+                                              LogLineSource lines,
+                                              String currentFile) throws IOException {
+        final int size = session.getPlan().size();
+        final long adjustedFileTimeout = TIMEOUT_FILE * size;
+        final ScanWatchdog.Deadline deadline = ScanWatchdog.getInstance().watch(TIMEOUT_LINE);
+        session.setDeadline(deadline);
+        try {
+            long startTime = System.currentTimeMillis();
+            int currentLine = 1;
+            CharSequence line;
+            while ((line = lines.readLine()) != null) {
+                if (session.matchLine(lines, line, currentLine)) {
+                    // every indication has been found, no need to read further
+                    return;
+                }
+                if (System.currentTimeMillis() - startTime > adjustedFileTimeout) {
+                    logger.warning("File timeout scanning for " + size + " indications"
+                            + " for file " + currentFile + ":" + currentLine);
+                    return;
+                }
+                if (session.isAbandoned()) {
+                    return;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    session.markInterrupted();
+                    return;
+                }
+                currentLine++;
+            }
+            session.markEndReached();
+        } finally {
+            session.setDeadline(null);
+            deadline.close();
         }
-
-        return foundFailureCauses;
     }
 
     /**
@@ -320,75 +262,44 @@ public abstract class FailureReader {
      */
     protected FoundIndication scanMultiLineOneFile(Run build, BufferedReader reader, String currentFile)
             throws IOException {
-        TimerThread timerThread = new TimerThread(Thread.currentThread(), TIMEOUT_BLOCK);
-        FoundIndication foundIndication = null;
-        final Pattern pattern = indication.getPattern();
-        timerThread.start();
-        try {
-            long startTime = System.currentTimeMillis();
-            char[] buf = new char[BUF_SIZE_BYTES];
-            StringBuilder searchBuffer = new StringBuilder();
-            int read;
-            boolean firstRead = true;
-            //CS IGNORE AvoidInlineConditionals FOR NEXT 1 LINES. REASON: Split up makes code less reasable.
-            while ((read = reader.read(buf, 0, BUF_SIZE_BYTES - (firstRead ? 0 : OVERLAP_BYTES))) != -1) {
-                try {
-                    firstRead = false;
-                    searchBuffer.append(buf, 0, read);
-                    Matcher matcher = pattern.matcher(new InterruptibleCharSequence(searchBuffer.toString()));
-                    if (matcher.find()) {
-                        foundIndication = new FoundIndication(build, pattern.pattern(), currentFile,
-                                removeConsoleNotes(matcher.group()), -1);
-                        break;
-                    }
-                    searchBuffer.delete(0, BUF_SIZE_BYTES - OVERLAP_BYTES);
-                } catch (RuntimeException e) {
-                    if (e.getCause() instanceof InterruptedException) {
-                        logger.warning("Timeout scanning for indication '" + indication.toString() + "' for file "
-                                + currentFile);
-                    } else {
-                        // This is not a timeout exception
-                        throw e;
-                    }
-                }
-                timerThread.touch();
-                if (System.currentTimeMillis() - startTime > TIMEOUT_FILE) {
-                    logger.warning("File timeout scanning for indication '" + indication.toString() + "' for file "
-                            + currentFile);
-                    break;
-                }
-            }
-            return foundIndication;
-        } finally {
-            timerThread.requestStop();
-            timerThread.interrupt();
-            try {
-                timerThread.join();
-                //CS IGNORE EmptyBlock FOR NEXT 2 LINES. REASON: unimportant exception
-            } catch (InterruptedException eIgnore) {
-            }
-            // reset the interrupt
-            Thread.interrupted();
-        }
+        MultilineScanner scanner = new MultilineScanner(build, currentFile, Collections.singletonList(indication));
+        scanMultiLinePatterns(scanner, reader, currentFile);
+        return scanner.getFound(0);
     }
 
     /**
-     * @param input the input string from which to remove any console notes
-     * @return the input string less console notes. Note the returned string may not contain the same line endings
-     * as the input string.
+     * Streams a file once through a sliding window, evaluating all multi-line patterns of the scanner against
+     * each window, until all of them have been found.
+     *
+     * @param scanner the scanner holding the patterns.
+     * @param reader the reader to read from.
+     * @param currentFile the file path of the file we want to scan, for logging.
+     * @throws IOException if problems occur in the reader handling.
      */
-    private String removeConsoleNotes(final String input) {
-        final List<String> cleanLines = new LinkedList<String>();
-        final Scanner lineTokenizer = new Scanner(input);
+    public static void scanMultiLinePatterns(MultilineScanner scanner, Reader reader, String currentFile)
+            throws IOException {
+        final long adjustedFileTimeout = TIMEOUT_FILE * scanner.size();
+        final ScanWatchdog.Deadline deadline = ScanWatchdog.getInstance().watch(TIMEOUT_BLOCK);
+        scanner.setDeadline(deadline);
         try {
-            lineTokenizer.useDelimiter(Pattern.compile("[\\n\\r]"));
-            while (lineTokenizer.hasNext()) {
-                cleanLines.add(ConsoleNote.removeNotes(lineTokenizer.next()));
+            long startTime = System.currentTimeMillis();
+            // Every window holds this many new chars, plus the overlap of the previous window
+            SearchWindow window = new SearchWindow(BUF_SIZE_BYTES - OVERLAP_BYTES + scanner.getMaxOverlap());
+            while (window.fill(reader) != -1) {
+                if (scanner.matchWindow(window) || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                window.keepLast(scanner.getMaxOverlap());
+                if (System.currentTimeMillis() - startTime > adjustedFileTimeout) {
+                    logger.warning("File timeout scanning for " + scanner.size() + " multi-line indications"
+                            + " for file " + currentFile);
+                    break;
+                }
             }
         } finally {
-            lineTokenizer.close();
+            scanner.setDeadline(null);
+            deadline.close();
         }
-        return Joiner.on('\n').join(cleanLines);
     }
 
     /**
@@ -430,58 +341,4 @@ public abstract class FailureReader {
             return inner.toString();
         }
     }
-
-    /**
-     * TimerThread interrupting a monitored thread unless TimerThread is touched within the
-     * specified timeout value
-     */
-    static class TimerThread extends Thread {
-
-        private Thread monitorThread;
-        private boolean stop = false;
-        private long timeout;
-        private long lastTouched;
-
-        /**
-       * Standard constructor.
-       * @param monitorThread The thread to monitor and interrupt after the timeout.
-       * @param timeout The timeout in ms.
-         */
-        TimerThread(Thread monitorThread, long timeout) {
-            this.monitorThread = monitorThread;
-            this.timeout = timeout;
-        }
-
-        @Override
-        public void run() {
-            lastTouched = System.currentTimeMillis();
-            while (!stop) {
-                try {
-                    Thread.sleep(SLEEPTIME);
-                    if (System.currentTimeMillis() - lastTouched >= timeout) {
-                        monitorThread.interrupt();
-                        // timeout met, interrupt the launcherThread
-                    }
-                //CS IGNORE EmptyBlock FOR NEXT 5 LINES. REASON: timeout exception
-                } catch (InterruptedException eRestartSleep) {
-                    // My thread was interrupted so continue loop and
-                    // check if I'm stopped and otherwise just restart sleep
-                }
-            }
-        }
-
-        /**
-        * Touch, i.e. reset countdown timer.
-        */
-        public void touch() {
-            lastTouched = System.currentTimeMillis();
-        }
-
-        /**
-         * Set stop flag to stop executing
-         */
-        public void requestStop() {
-            stop = true;
-        }
-    }
 }
@@ -24,6 +24,7 @@
 package com.sonyericsson.jenkins.plugins.bfa.model;
 
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import hudson.model.Run;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
@@ -78,6 +79,35 @@ public class FoundFailureCause {
         this.description = buildFormattedDescription(originalCause, this.indications, originalCause.getDescription());
     }
 
+    /**
+     * Copy constructor, see {@link #rebase(Run)}.
+     *
+     * @param other the cause to copy.
+     * @param indications the indications of the copy.
+     */
+    private FoundFailureCause(final FoundFailureCause other, final List<FoundIndication> indications) {
+        this.id = other.id;
+        this.name = other.name;
+        this.categories = other.categories;
+        this.description = other.description;
+        this.indications = indications;
+    }
+
+    /**
+     * Copies this cause and its indications for another build with the same log, so that the result of a scan can
+     * be reused without scanning again.
+     *
+     * @param build the other build, or null for a copy that doesn't belong to any build.
+     * @return the copy.
+     */
+    public FoundFailureCause rebase(Run build) {
+        List<FoundIndication> copies = new LinkedList<FoundIndication>();
+        for (FoundIndication indication : getIndications()) {
+            copies.add(indication.rebase(build));
+        }
+        return new FoundFailureCause(this, copies);
+    }
+
     /**
      * Getter for the id.
      *
@@ -32,6 +32,7 @@ import java.util.logging.Logger;
 
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.LogLineSource;
 import hudson.model.Run;
 
 
@@ -64,7 +65,7 @@ public class MultilineBuildLogFailureReader extends FailureReader {
     public FoundIndication scan(Run build) throws IOException {
         BufferedReader reader = null;
         try {
-            reader = new BufferedReader(build.getLogReader());
+            reader = new BufferedReader(LogLineSource.openReader(build));
             return scanMultiLineOneFile(build, reader, "log");
         } finally {
             if (reader != null) {
@@ -91,7 +92,7 @@ public class MultilineBuildLogFailureReader extends FailureReader {
         BufferedReader reader = null;
         long start = System.currentTimeMillis();
         try {
-            reader = new BufferedReader(build.getLogReader());
+            reader = new BufferedReader(LogLineSource.openReader(build));
             foundIndication = scanMultiLineOneFile(build, reader, "log");
         } catch (IOException ioe) {
             logger.log(Level.SEVERE, "[BFA] I/O problems during indication analysis: ", ioe);
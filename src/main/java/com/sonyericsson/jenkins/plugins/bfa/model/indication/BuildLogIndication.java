@@ -33,6 +33,9 @@ import com.sonyericsson.jenkins.plugins.bfa.Messages;
 import com.sonyericsson.jenkins.plugins.bfa.PluginImpl;
 import com.sonyericsson.jenkins.plugins.bfa.model.BuildLogFailureReader;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.IndicationMatcher;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.LiteralExtractor;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.PatternClassifier;
 import hudson.Extension;
 import hudson.matrix.MatrixConfiguration;
 import hudson.matrix.MatrixProject;
@@ -63,6 +66,10 @@ public class BuildLogIndication extends Indication {
 
     private static final long serialVersionUID = -2889792693081908532L;
     private transient Pattern compiled = null;
+    private transient String requiredLiteral = null;
+    private transient boolean literalExtracted = false;
+    private transient IndicationMatcher specializedMatcher = null;
+    private transient boolean classified = false;
 
     /**
      * Standard constructor.
@@ -90,6 +97,48 @@ public class BuildLogIndication extends Indication {
         return compiled;
     }
 
+    /**
+     * The literal text that every line matching this indication must contain, if one can be found in the
+     * pattern. Lines not containing it are skipped without evaluating the regular expression.
+     *
+     * @return the required literal, or null if the pattern has none.
+     * @see LiteralExtractor
+     */
+    @JsonIgnore
+    public String getRequiredLiteral() {
+        if (!literalExtracted) {
+            requiredLiteral = LiteralExtractor.extract(getPattern());
+            literalExtracted = true;
+        }
+        return requiredLiteral;
+    }
+
+    /**
+     * A matcher using plain string operations instead of the regular expression, if the pattern is a literal
+     * with a trivial shape like <code>.*literal.*</code>.
+     *
+     * @return the thread safe matcher, or null if the pattern needs the regular expression engine.
+     * @see PatternClassifier
+     */
+    @JsonIgnore
+    public IndicationMatcher getSpecializedMatcher() {
+        if (!classified) {
+            specializedMatcher = PatternClassifier.getSpecializedMatcher(getPattern());
+            classified = true;
+        }
+        return specializedMatcher;
+    }
+
+    /**
+     * If the scan can skip lines for this indication using its {@link #getRequiredLiteral()}.
+     *
+     * @return true if the pattern has a required literal.
+     */
+    @JsonIgnore
+    public boolean isPrefilterable() {
+        return getRequiredLiteral() != null;
+    }
+
     @Override
     @JsonIgnore
     public IndicationDescriptor getDescriptor() {
@@ -53,6 +53,7 @@ public class FoundIndication {
     private Run build;
     private String matchingString;
     private Integer matchingLine;
+    private Boolean partialScan;
 
     /**
      * Standard constructor.
@@ -122,6 +123,18 @@ public class FoundIndication {
         this.matchingLine = matchingLine;
     }
 
+    /**
+     * Copies this indication for another build with the same log.
+     *
+     * @param otherBuild the other build, or null for a copy that doesn't belong to any build.
+     * @return the copy.
+     */
+    public FoundIndication rebase(Run otherBuild) {
+        FoundIndication copy = new FoundIndication(otherBuild, pattern, matchingFile, matchingString, matchingLine);
+        copy.partialScan = partialScan;
+        return copy;
+    }
+
     /**
      * Getter for the matching file.
      *
@@ -212,6 +225,34 @@ public class FoundIndication {
         }
     }
 
+    /**
+     * Sets the matching line number.
+     *
+     * @param matchingLine the line number, -1 if it is not known.
+     */
+    public void setMatchingLine(int matchingLine) {
+        this.matchingLine = matchingLine;
+    }
+
+    /**
+     * Tells if this indication was found by scanning only the start and the end of a log that was too large to be
+     * scanned in full, in which case {@link #getMatchingLine()} is -1 for the lines of the end.
+     *
+     * @return true if found in a partial scan.
+     */
+    public boolean isPartialScan() {
+        return partialScan != null && partialScan;
+    }
+
+    /**
+     * Marks this indication as found in a partial scan, see {@link #isPartialScan()}.
+     *
+     * @param partialScan true if found in a partial scan.
+     */
+    public void setPartialScan(boolean partialScan) {
+        this.partialScan = partialScan;
+    }
+
     /**
      * The hash-code of the {@link #matchingString}.
      * Convenience method mostly for jelly.
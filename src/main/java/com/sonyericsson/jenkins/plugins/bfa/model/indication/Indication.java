@@ -29,7 +29,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreType;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.google.common.base.Joiner;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.BacktrackingAnalyzer;
 import hudson.ExtensionList;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
@@ -38,6 +40,7 @@ import hudson.util.FormValidation;
 import org.kohsuke.stapler.QueryParameter;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -146,6 +149,38 @@ public abstract class Indication implements Describable<Indication>, Serializabl
         public FormValidation doCheckPattern(@QueryParameter String value) {
             return checkPattern(value);
         }
+
+        /**
+         * Warns about constructs in the pattern that may make it take very long to match some lines.
+         * Such patterns are still valid, but risk timing out and getting quarantined.
+         *
+         * @param value the pattern to check.
+         * @return a warning if something was found, otherwise {@link hudson.util.FormValidation#ok()}.
+         * @see BacktrackingAnalyzer
+         */
+        public static FormValidation checkBacktracking(String value) {
+            List<String> findings = BacktrackingAnalyzer.analyze(value);
+            if (findings.isEmpty()) {
+                return FormValidation.ok();
+            }
+            return FormValidation.warning("This pattern may take very long to match some lines: "
+                    + Joiner.on("; ").join(findings));
+        }
+
+        /**
+         * Checks the pattern in the configuration form, see {@link #checkPattern(String)} and
+         * {@link #checkBacktracking(String)}.
+         *
+         * @param value the pattern to check.
+         * @return {@link hudson.util.FormValidation#ok()} if everything is well.
+         */
+        public FormValidation doCheckUserProvidedExpression(@QueryParameter String value) {
+            FormValidation validation = checkPattern(value);
+            if (validation.kind != FormValidation.Kind.OK) {
+                return validation;
+            }
+            return checkBacktracking(value);
+        }
     }
 
 }
@@ -23,15 +23,18 @@
  */
 package com.sonyericsson.jenkins.plugins.bfa.model.indication;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.sonyericsson.jenkins.plugins.bfa.Messages;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
 import com.sonyericsson.jenkins.plugins.bfa.model.MultilineBuildLogFailureReader;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.SpanAnalyzer;
 import hudson.Extension;
 import hudson.model.Hudson;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.util.regex.Pattern;
 
@@ -46,6 +49,8 @@ public class MultilineBuildLogIndication extends BuildLogIndication {
 
     private static final long serialVersionUID = 8436383594898812087L;
     private transient Pattern compiled = null;
+    private transient Integer expressionSpan = null;
+    private int maxSpan = 0;
 
     /**
      * Standard constructor.
@@ -57,6 +62,44 @@ public class MultilineBuildLogIndication extends BuildLogIndication {
         super(pattern);
     }
 
+    /**
+     * The maximum number of characters a match of this indication can span, including the rest of its first and last
+     * lines, as declared by the user. Patterns spanning more than the default search window need to declare it.
+     *
+     * @return the declared span, or 0 if none is declared.
+     */
+    @JsonProperty("maxSpan")
+    public int getMaxSpan() {
+        return maxSpan;
+    }
+
+    /**
+     * Declares the maximum number of characters a match of this indication can span.
+     *
+     * @param maxSpan the span, 0 to not declare any.
+     * @see #getMaxSpan()
+     */
+    @DataBoundSetter
+    @JsonProperty("maxSpan")
+    public void setMaxSpan(int maxSpan) {
+        this.maxSpan = Math.max(0, maxSpan);
+    }
+
+    /**
+     * The maximum number of characters a match of the user-provided expression can span, not counting the rest of
+     * the first and last lines that the compiled pattern adds.
+     *
+     * @return the span, or {@link SpanAnalyzer#UNBOUNDED}.
+     * @see SpanAnalyzer
+     */
+    @JsonIgnore
+    public int getExpressionSpan() {
+        if (expressionSpan == null) {
+            expressionSpan = SpanAnalyzer.maxSpan(getUserProvidedExpression());
+        }
+        return expressionSpan;
+    }
+
     @Override
     public FailureReader getReader() {
         return new MultilineBuildLogFailureReader(this);
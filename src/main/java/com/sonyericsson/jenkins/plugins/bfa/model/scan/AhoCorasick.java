@@ -0,0 +1,261 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton finding which of a set of literals occur in a text, in a single pass over the text.
+ *
+ * Immutable once built and safe to share between threads.
+ */
+public final class AhoCorasick {
+
+    /**
+     * Number of characters for which the root state has a direct lookup table.
+     */
+    private static final int ROOT_TABLE_SIZE = 128;
+
+    private final int literalCount;
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    private final int[][] outputs;
+    private final int[] rootTable;
+
+    /**
+     * Private constructor, use {@link #build(List)}.
+     *
+     * @param literalCount the number of literals.
+     * @param keys the sorted transition characters of each state.
+     * @param targets the target states of the transitions of each state.
+     * @param fail the failure link of each state.
+     * @param outputs the literals recognized in each state, or null.
+     */
+    private AhoCorasick(int literalCount, char[][] keys, int[][] targets, int[] fail, int[][] outputs) {
+        this.literalCount = literalCount;
+        this.keys = keys;
+        this.targets = targets;
+        this.fail = fail;
+        this.outputs = outputs;
+        this.rootTable = new int[ROOT_TABLE_SIZE];
+        for (char c = 0; c < ROOT_TABLE_SIZE; c++) {
+            rootTable[c] = Math.max(child(0, c), 0);
+        }
+    }
+
+    /**
+     * Builds an automaton for the given literals. The index of a literal in the list is its id.
+     *
+     * @param literals the literals, none of them empty.
+     * @return the automaton.
+     */
+    public static AhoCorasick build(List<String> literals) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+        List<List<Integer>> found = new ArrayList<List<Integer>>();
+        trie.add(new TreeMap<Character, Integer>());
+        found.add(null);
+        for (int id = 0; id < literals.size(); id++) {
+            String literal = literals.get(id);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Empty literal");
+            }
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                Integer next = trie.get(state).get(literal.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    found.add(null);
+                    trie.get(state).put(literal.charAt(i), next);
+                }
+                state = next;
+            }
+            if (found.get(state) == null) {
+                found.set(state, new ArrayList<Integer>());
+            }
+            found.get(state).add(id);
+        }
+
+        int size = trie.size();
+        char[][] keys = new char[size][];
+        int[][] targets = new int[size][];
+        for (int state = 0; state < size; state++) {
+            TreeMap<Character, Integer> children = trie.get(state);
+            keys[state] = new char[children.size()];
+            targets[state] = new int[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> child : children.entrySet()) {
+                keys[state][i] = child.getKey();
+                targets[state][i] = child.getValue();
+                i++;
+            }
+        }
+
+        // Breadth first, so that the failure link of a state is done before the state itself
+        int[] fail = new int[size];
+        int[][] outputs = new int[size][];
+        Queue<Integer> queue = new ArrayDeque<Integer>();
+        for (int child : targets[0]) {
+            fail[child] = 0;
+            outputs[child] = toArray(found.get(child), null);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < keys[state].length; i++) {
+                char c = keys[state][i];
+                int child = targets[state][i];
+                int f = fail[state];
+                int next = find(keys, targets, f, c);
+                while (next < 0 && f != 0) {
+                    f = fail[f];
+                    next = find(keys, targets, f, c);
+                }
+                if (next < 0) {
+                    next = 0;
+                }
+                fail[child] = next;
+                outputs[child] = toArray(found.get(child), outputs[next]);
+                queue.add(child);
+            }
+        }
+        return new AhoCorasick(literals.size(), keys, targets, fail, outputs);
+    }
+
+    /**
+     * Merges the literals of a state with the ones recognized through its failure link.
+     *
+     * @param own the literals ending in the state, or null.
+     * @param inherited the literals of the failure link, or null.
+     * @return the merged array, or null if empty.
+     */
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        if (own == null) {
+            return inherited;
+        }
+        int[] result;
+        if (inherited == null) {
+            result = new int[own.size()];
+        } else {
+            result = Arrays.copyOf(inherited, inherited.length + own.size());
+        }
+        int i = result.length - own.size();
+        for (Integer id : own) {
+            result[i++] = id;
+        }
+        return result;
+    }
+
+    /**
+     * Finds a transition.
+     *
+     * @param keys the transition characters.
+     * @param targets the transition targets.
+     * @param state the state.
+     * @param c the character.
+     * @return the target state, or -1 if there is none.
+     */
+    private static int find(char[][] keys, int[][] targets, int state, char c) {
+        int i = Arrays.binarySearch(keys[state], c);
+        if (i < 0) {
+            return -1;
+        }
+        return targets[state][i];
+    }
+
+    /**
+     * Finds a transition of this automaton.
+     *
+     * @param state the state.
+     * @param c the character.
+     * @return the target state, or -1 if there is none.
+     */
+    private int child(int state, char c) {
+        return find(keys, targets, state, c);
+    }
+
+    /**
+     * The number of literals of this automaton.
+     *
+     * @return the number of literals.
+     */
+    public int getLiteralCount() {
+        return literalCount;
+    }
+
+    /**
+     * Finds all literals occurring in the text.
+     *
+     * @param text the text to search.
+     * @param hits where the ids of the found literals are set. Not cleared before the search.
+     * @return true if any literal was found.
+     */
+    public boolean search(CharSequence text, BitSet hits) {
+        boolean any = false;
+        int state = 0;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            state = next(state, c);
+            int[] out = outputs[state];
+            if (out != null) {
+                any = true;
+                for (int id : out) {
+                    hits.set(id);
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Follows the automaton one character.
+     *
+     * @param state the current state.
+     * @param c the character.
+     * @return the next state.
+     */
+    private int next(int state, char c) {
+        int s = state;
+        while (s != 0) {
+            int n = child(s, c);
+            if (n >= 0) {
+                return n;
+            }
+            s = fail[s];
+        }
+        if (c < ROOT_TABLE_SIZE) {
+            return rootTable[c];
+        }
+        return Math.max(child(0, c), 0);
+    }
+}
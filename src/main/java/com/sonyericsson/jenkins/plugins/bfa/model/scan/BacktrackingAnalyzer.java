@@ -0,0 +1,536 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the constructs of a regular expression that can make the backtracking matcher take exponential time on
+ * lines that almost match.
+ *
+ * Two shapes are reported: a repeated group that itself contains a repetition, like <code>(.*a)+</code> or
+ * <code>(\w+\s?)*</code>, and a repeated alternation whose alternatives can start with the same character, like
+ * <code>(\w|\d)+</code>. In both the matcher can split the same text between the iterations in exponentially many
+ * ways, and tries them all before concluding that a line doesn't match. Possessive quantifiers and atomic groups
+ * don't backtrack and are not reported.
+ *
+ * The analysis is a heuristic meant for warning the user: it may report expressions that are fast in practice and
+ * expressions it can't parse are not reported at all, {@link java.util.regex.Pattern} reports those.
+ */
+public final class BacktrackingAnalyzer {
+
+    /**
+     * Utility class.
+     */
+    private BacktrackingAnalyzer() {
+    }
+
+    /**
+     * Finds the constructs of the regular expression that may backtrack catastrophically.
+     *
+     * @param regex the regular expression.
+     * @return a description of each construct found, empty if there are none.
+     */
+    public static List<String> analyze(String regex) {
+        if (regex == null) {
+            return Collections.emptyList();
+        }
+        Parser parser = new Parser(regex);
+        try {
+            parser.alternation();
+            return parser.findings;
+        } catch (UnsupportedOperationException e) {
+            return Collections.emptyList();
+        } catch (StringIndexOutOfBoundsException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * What the parser knows about a part of the expression.
+     */
+    private static final class Node {
+        /**
+         * The characters a match can start with, null for any character.
+         */
+        private Set<Integer> first = new HashSet<Integer>();
+        /**
+         * If the part can match the empty string.
+         */
+        private boolean nullable = true;
+        /**
+         * If the part contains a quantifier that can backtrack over a varying number of iterations.
+         */
+        private boolean varying = false;
+        /**
+         * If the part is an alternation of which two alternatives can match at the same position.
+         */
+        private boolean ambiguous = false;
+        /**
+         * If a construct in the part has been reported already, so that enclosing repetitions aren't.
+         */
+        private boolean reported = false;
+
+        /**
+         * A node matching one character out of the given ones.
+         *
+         * @param c the character, or null for any character.
+         * @return the node.
+         */
+        static Node character(Integer c) {
+            Node node = new Node();
+            if (c == null) {
+                node.first = null;
+            } else {
+                node.first.add(Character.toLowerCase(c));
+            }
+            node.nullable = false;
+            return node;
+        }
+
+        /**
+         * Adds the characters of another node to the characters a match can start with.
+         *
+         * @param other the other node.
+         */
+        void addFirst(Node other) {
+            if (first == null || other.first == null) {
+                first = null;
+            } else {
+                first.addAll(other.first);
+            }
+        }
+
+        /**
+         * Tells if this node and another can start matching at the same character.
+         *
+         * @param other the other node.
+         * @return true if they overlap.
+         */
+        boolean overlaps(Node other) {
+            if (nullable || other.nullable) {
+                return true;
+            }
+            if (first == null || other.first == null) {
+                return true;
+            }
+            for (Integer c : first) {
+                if (other.first.contains(c)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Recursive descent over the expression, following the same structure as {@link SpanAnalyzer}.
+     * Throws {@link UnsupportedOperationException} when the expression can't be analyzed.
+     */
+    private static final class Parser {
+        private final String regex;
+        private final List<String> findings = new ArrayList<String>();
+        private int pos = 0;
+
+        /**
+         * Standard constructor.
+         *
+         * @param regex the expression to parse.
+         */
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * Parses alternatives up to the end of the expression or of the current group.
+         *
+         * @return the node of the alternation.
+         */
+        Node alternation() {
+            List<Node> alternatives = new ArrayList<Node>();
+            alternatives.add(sequence());
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                alternatives.add(sequence());
+            }
+            if (alternatives.size() == 1) {
+                return alternatives.get(0);
+            }
+            Node node = new Node();
+            node.nullable = false;
+            for (int i = 0; i < alternatives.size(); i++) {
+                Node alternative = alternatives.get(i);
+                node.addFirst(alternative);
+                node.nullable |= alternative.nullable;
+                node.varying |= alternative.varying;
+                node.reported |= alternative.reported;
+                for (int j = 0; j < i; j++) {
+                    node.ambiguous |= alternative.overlaps(alternatives.get(j));
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Parses a sequence of quantified atoms.
+         *
+         * @return the node of the sequence.
+         */
+        private Node sequence() {
+            Node node = new Node();
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                int start = pos;
+                Node atom = quantified(start, atom());
+                if (node.nullable) {
+                    node.addFirst(atom);
+                    node.nullable = atom.nullable;
+                }
+                node.varying |= atom.varying;
+                node.reported |= atom.reported;
+            }
+            return node;
+        }
+
+        /**
+         * Parses one atom.
+         *
+         * @return the node of the atom.
+         */
+        private Node atom() {
+            char c = regex.charAt(pos);
+            switch (c) {
+                case '\\':
+                    return escape();
+                case '[':
+                    skipClass();
+                    return Node.character(null);
+                case '(':
+                    return group();
+                case '^':
+                case '$':
+                    pos++;
+                    return new Node();
+                case '.':
+                    pos++;
+                    return Node.character(null);
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    // A quantifier without an atom
+                    throw new UnsupportedOperationException();
+                default:
+                    int cp = regex.codePointAt(pos);
+                    pos += Character.charCount(cp);
+                    return Node.character(cp);
+            }
+        }
+
+        /**
+         * Parses a group, including lookarounds, atomic groups and inline flags.
+         *
+         * @return the node of the group.
+         */
+        private Node group() {
+            pos++;
+            boolean lookaround = false;
+            boolean atomic = false;
+            if (regex.startsWith("?", pos)) {
+                pos++;
+                if (regex.startsWith("<=", pos) || regex.startsWith("<!", pos)) {
+                    lookaround = true;
+                    pos += 2;
+                } else if (regex.startsWith("<", pos)) {
+                    // Named group
+                    skipPast('>');
+                } else if (regex.startsWith("=", pos) || regex.startsWith("!", pos)) {
+                    lookaround = true;
+                    pos++;
+                } else if (regex.startsWith(">", pos)) {
+                    atomic = true;
+                    pos++;
+                } else if (regex.startsWith(":", pos)) {
+                    pos++;
+                } else if (flags()) {
+                    return new Node();
+                }
+            }
+            Node node = alternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw new UnsupportedOperationException();
+            }
+            pos++;
+            if (lookaround) {
+                return new Node();
+            }
+            if (atomic) {
+                node.varying = false;
+                node.ambiguous = false;
+            }
+            return node;
+        }
+
+        /**
+         * Parses inline flags after the (?, (?i) or the start of (?i:...).
+         *
+         * @return true if the flags are not followed by a group, i.e. they are complete.
+         */
+        private boolean flags() {
+            while (pos < regex.length() && (Character.isLetter(regex.charAt(pos)) || regex.charAt(pos) == '-')) {
+                if (regex.charAt(pos) == 'x') {
+                    // Comments mode changes the meaning of white space and #
+                    throw new UnsupportedOperationException();
+                }
+                pos++;
+            }
+            if (pos >= regex.length()) {
+                throw new UnsupportedOperationException();
+            }
+            char c = regex.charAt(pos++);
+            if (c == ')') {
+                return true;
+            }
+            if (c != ':') {
+                throw new UnsupportedOperationException();
+            }
+            return false;
+        }
+
+        /**
+         * Parses an escape sequence.
+         *
+         * @return the node of the escape.
+         */
+        private Node escape() {
+            if (pos + 1 >= regex.length()) {
+                throw new UnsupportedOperationException();
+            }
+            char e = regex.charAt(pos + 1);
+            pos += 2;
+            if (e == 'Q') {
+                int end = regex.indexOf("\\E", pos);
+                if (end < 0) {
+                    end = regex.length();
+                }
+                Node node = new Node();
+                if (end > pos) {
+                    node = Node.character(regex.codePointAt(pos));
+                }
+                pos = Math.min(end + 2, regex.length());
+                return node;
+            }
+            if (e < '\u0080' && !Character.isLetterOrDigit(e)) {
+                return Node.character((int)e);
+            }
+            switch (e) {
+                case 't':
+                    return Node.character((int)'\t');
+                case 'n':
+                    return Node.character((int)'\n');
+                case 'r':
+                    return Node.character((int)'\r');
+                case 'f':
+                    return Node.character((int)'\f');
+                case 'b': case 'B': case 'A': case 'G': case 'Z': case 'z':
+                    return new Node();
+                case 'p':
+                case 'P':
+                case 'x':
+                    if (pos < regex.length() && regex.charAt(pos) == '{') {
+                        skipPast('}');
+                    } else if (e == 'x') {
+                        pos += 2;
+                    } else {
+                        pos++;
+                    }
+                    return Node.character(null);
+                case 'u':
+                    pos += 4;
+                    return Node.character(null);
+                case 'c':
+                    pos++;
+                    return Node.character(null);
+                case '0':
+                    while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') {
+                        pos++;
+                    }
+                    return Node.character(null);
+                default:
+                    // Character classes and back references
+                    while (Character.isDigit(e) && pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                        pos++;
+                    }
+                    if (e == 'k') {
+                        skipPast('>');
+                    }
+                    return Node.character(null);
+            }
+        }
+
+        /**
+         * Moves past the next occurrence of the given character.
+         *
+         * @param c the character.
+         */
+        private void skipPast(char c) {
+            int end = regex.indexOf(c, pos);
+            if (end < 0) {
+                throw new UnsupportedOperationException();
+            }
+            pos = end + 1;
+        }
+
+        /**
+         * Moves past a character class, including nested classes.
+         */
+        private void skipClass() {
+            int depth = 0;
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                if (c == '\\') {
+                    if (pos + 1 < regex.length() && regex.charAt(pos + 1) == 'Q') {
+                        int end = regex.indexOf("\\E", pos + 2);
+                        if (end < 0) {
+                            throw new UnsupportedOperationException();
+                        }
+                        pos = end + 2;
+                        continue;
+                    }
+                    pos += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    depth++;
+                    pos++;
+                    // A ] directly after the opening bracket (or its negation) is a literal
+                    if (pos < regex.length() && regex.charAt(pos) == '^') {
+                        pos++;
+                    }
+                    if (pos < regex.length() && regex.charAt(pos) == ']') {
+                        pos++;
+                    }
+                    continue;
+                }
+                pos++;
+                if (c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Applies the quantifier following an atom, if any, reporting the atom if repeating it may backtrack
+         * catastrophically.
+         *
+         * @param start the position of the atom in the expression.
+         * @param atom the node of the atom.
+         * @return the node of the quantified atom.
+         */
+        private Node quantified(int start, Node atom) {
+            if (pos >= regex.length()) {
+                return atom;
+            }
+            int min;
+            int max;
+            char c = regex.charAt(pos);
+            if (c == '?') {
+                min = 0;
+                max = 1;
+                pos++;
+            } else if (c == '*' || c == '+') {
+                min = 0;
+                if (c == '+') {
+                    min = 1;
+                }
+                max = Integer.MAX_VALUE;
+                pos++;
+            } else if (c == '{') {
+                int end = regex.indexOf('}', pos);
+                if (end < 0) {
+                    throw new UnsupportedOperationException();
+                }
+                String bounds = regex.substring(pos + 1, end);
+                int comma = bounds.indexOf(',');
+                try {
+                    if (comma < 0) {
+                        min = Integer.parseInt(bounds.trim());
+                        max = min;
+                    } else {
+                        min = Integer.parseInt(bounds.substring(0, comma).trim());
+                        String upper = bounds.substring(comma + 1).trim();
+                        max = Integer.MAX_VALUE;
+                        if (!upper.isEmpty()) {
+                            max = Integer.parseInt(upper);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedOperationException();
+                }
+                pos = end + 1;
+            } else {
+                return atom;
+            }
+            boolean possessive = false;
+            if (pos < regex.length() && regex.charAt(pos) == '+') {
+                possessive = true;
+                pos++;
+            } else if (pos < regex.length() && regex.charAt(pos) == '?') {
+                pos++;
+            }
+            if (possessive) {
+                // Gives back nothing, so it is never retried with another number of iterations
+                atom.varying = false;
+                atom.ambiguous = false;
+                return atom;
+            }
+            if (max > 1 && !atom.reported) {
+                // Only the innermost repetition is reported
+                if (atom.varying) {
+                    findings.add("Nested quantifier: " + regex.substring(start, pos));
+                    atom.reported = true;
+                } else if (atom.ambiguous) {
+                    findings.add("Repeated alternatives that can match the same text: "
+                            + regex.substring(start, pos));
+                    atom.reported = true;
+                }
+            }
+            atom.ambiguous = false;
+            if (max > min && max > 1) {
+                atom.varying = true;
+            }
+            if (min == 0) {
+                atom.nullable = true;
+            }
+            return atom;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * CharSequence that makes a regular expression evaluated against it give up once the deadline of the scan has
+ * expired, see {@link ScanWatchdog}, or the scanning thread has been interrupted.
+ *
+ * Unlike {@link com.sonyericsson.jenkins.plugins.bfa.model.FailureReader.InterruptibleCharSequence} it doesn't
+ * check on every access: it counts the accesses and only checks every {@link #STEPS} of them. The regular
+ * expression then gives up by throwing a RuntimeException, caused by a TimeoutException if the deadline has expired,
+ * see {@link #isTimeout(RuntimeException)}, or by an InterruptedException if the thread has been interrupted, like
+ * it does for the InterruptibleCharSequence, see {@link #isInterrupt(RuntimeException)}. Only the first counts as a
+ * timeout of the expression. The interrupt status of the thread is left as it is.
+ */
+public final class BudgetedCharSequence implements CharSequence {
+
+    /**
+     * The number of accesses between two checks.
+     */
+    static final int STEPS = 1024;
+
+    private CharSequence inner;
+    private ScanWatchdog.Deadline deadline;
+    private int steps = 0;
+
+    /**
+     * Standard constructor.
+     *
+     * @param inner the sequence to wrap, not copied, so it must not change while in use.
+     * @param deadline the deadline of the scan, or null to only give up on interrupts.
+     */
+    public BudgetedCharSequence(CharSequence inner, ScanWatchdog.Deadline deadline) {
+        this.inner = inner;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Makes this sequence wrap another CharSequence, so that one instance can be reused for many lines.
+     *
+     * @param sequence the sequence to wrap.
+     * @return this sequence.
+     */
+    public BudgetedCharSequence reset(CharSequence sequence) {
+        this.inner = sequence;
+        return this;
+    }
+
+    /**
+     * Sets the deadline checked by this sequence.
+     *
+     * @param deadline the deadline, or null to only give up on interrupts.
+     */
+    public void setDeadline(ScanWatchdog.Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Tells if an exception thrown while evaluating a regular expression against this sequence means that the
+     * deadline expired.
+     *
+     * @param e the exception.
+     * @return true if the expression timed out.
+     */
+    public static boolean isTimeout(RuntimeException e) {
+        return e.getCause() instanceof TimeoutException;
+    }
+
+    /**
+     * Tells if an exception thrown while evaluating a regular expression against this sequence means that the
+     * thread was interrupted.
+     *
+     * @param e the exception.
+     * @return true if the scan was interrupted.
+     */
+    public static boolean isInterrupt(RuntimeException e) {
+        return e.getCause() instanceof InterruptedException;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++steps >= STEPS) {
+            steps = 0;
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException(new InterruptedException());
+            }
+            if (deadline != null && deadline.isExpired()) {
+                throw new RuntimeException(new TimeoutException());
+            }
+        }
+        return inner.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return inner.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new BudgetedCharSequence(inner.subSequence(start, end), deadline);
+    }
+
+    @Override
+    public String toString() {
+        return inner.toString();
+    }
+}
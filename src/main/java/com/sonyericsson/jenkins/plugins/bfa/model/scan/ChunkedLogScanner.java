@@ -0,0 +1,286 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
+import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import hudson.Functions;
+import hudson.model.Run;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Scans a large log file for single-line indications by splitting it into line aligned chunks that are scanned in
+ * parallel, each with its own {@link ScanPlan.Session}.
+ *
+ * The results are merged with {@link ScanPlan#merge(List)}, so they are the same as if the file had been scanned
+ * from start to end by one thread: every indication is reported at its first occurrence with its line number in
+ * the whole file, and a chunk that stops early (because of the file timeout) ends the scan like it would have done
+ * for a sequential scan.
+ */
+public class ChunkedLogScanner {
+
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int SEEK_BUFFER_SIZE = 8192;
+
+    private final ExecutorService executor;
+    private final long chunkSize;
+
+    /**
+     * Standard constructor.
+     *
+     * @param executor the executor to scan the chunks with.
+     *                 Should not be the executor running the calling thread, since it waits for the chunks.
+     * @param chunkSize the approximate size in bytes of each chunk.
+     */
+    public ChunkedLogScanner(ExecutorService executor, long chunkSize) {
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Tells if a file in the given charset can be split at '\n' bytes without splitting a character,
+     * i.e. if the bytes of '\n' and '\r' never appear inside another character.
+     *
+     * @param charset the charset of the file.
+     * @return true if the file can be split into chunks.
+     */
+    public static boolean isLineAligned(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        if ("UTF-8".equals(charset.name())) {
+            return true;
+        }
+        return charset.newEncoder().maxBytesPerChar() == 1
+                && Arrays.equals(new byte[]{NEW_LINE}, "\n".getBytes(charset))
+                && Arrays.equals(new byte[]{CARRIAGE_RETURN}, "\r".getBytes(charset));
+    }
+
+    /**
+     * Scans the file.
+     *
+     * @param plan the plan to scan with.
+     * @param build the build the file belongs to.
+     * @param file the file.
+     * @param charset the charset of the file, see {@link #isLineAligned(Charset)}.
+     * @param fileName the name of the file to report in the found indications.
+     * @return the found failure causes.
+     * @throws IOException if the file can't be read.
+     * @throws InterruptedException if interrupted while waiting for the chunks.
+     */
+    public List<FoundFailureCause> scan(ScanPlan plan, Run build, File file, Charset charset, String fileName)
+            throws IOException, InterruptedException {
+        long[] boundaries = findBoundaries(file);
+        List<ScanPlan.Session> sessions = new ArrayList<ScanPlan.Session>();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            ScanPlan.Session session = plan.newSession(build, fileName);
+            sessions.add(session);
+            futures.add(executor.submit(new ChunkTask(session, file, charset, fileName,
+                    boundaries[i], boundaries[i + 1])));
+        }
+        int scanned = sessions.size();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).get();
+                if (!sessions.get(i).isEndReached()) {
+                    // The scan ends in this chunk, nothing after it is needed
+                    abandon(sessions, futures, i + 1);
+                    scanned = i + 1;
+                    break;
+                }
+            }
+        } catch (ExecutionException e) {
+            abandon(sessions, futures, 0);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            abandon(sessions, futures, 0);
+            throw e;
+        }
+        // Abandoned chunks may still be running, only the finished ones are looked at, unless one was interrupted
+        plan.recordTimeouts(sessions.subList(0, scanned));
+        return plan.merge(sessions);
+    }
+
+    /**
+     * Stops the scanning of chunks that are no longer needed.
+     *
+     * @param sessions the sessions of all chunks.
+     * @param futures the tasks of all chunks.
+     * @param from the first chunk to stop.
+     */
+    private static void abandon(List<ScanPlan.Session> sessions, List<Future<Void>> futures, int from) {
+        for (int i = from; i < futures.size(); i++) {
+            sessions.get(i).abandon();
+            futures.get(i).cancel(false);
+        }
+    }
+
+    /**
+     * Splits the file into chunks of about {@link #chunkSize} bytes, each ending right after a '\n'
+     * (except the last one, which ends at the end of the file).
+     *
+     * @param file the file.
+     * @return the start offsets of the chunks, followed by the length of the file.
+     * @throws IOException if the file can't be read.
+     */
+    long[] findBoundaries(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return findBoundaries(raf, 0, raf.length(), chunkSize);
+        }
+    }
+
+    /**
+     * Splits a part of a file into chunks of about the given size, each ending right after a '\n'
+     * (except the last one, which ends at the end of the part).
+     *
+     * @param raf the file.
+     * @param start the start of the part.
+     * @param end the end of the part.
+     * @param chunkSize the approximate size of the chunks.
+     * @return the start offsets of the chunks, followed by the end of the part.
+     * @throws IOException if the file can't be read.
+     */
+    static long[] findBoundaries(RandomAccessFile raf, long start, long end, long chunkSize) throws IOException {
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(start);
+        byte[] buffer = new byte[SEEK_BUFFER_SIZE];
+        long previous = start;
+        while (previous + chunkSize < end) {
+            long boundary = nextLineStart(raf, previous + chunkSize, end, buffer);
+            if (boundary >= end) {
+                break;
+            }
+            boundaries.add(boundary);
+            previous = boundary;
+        }
+        boundaries.add(end);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the start of the first line beginning at or after the given position.
+     *
+     * @param raf the file.
+     * @param position where to start looking, must be larger than 0.
+     * @param length where to stop looking.
+     * @param buffer a buffer to read into.
+     * @return the offset right after the first '\n' at or after position - 1, or length.
+     * @throws IOException if the file can't be read.
+     */
+    static long nextLineStart(RandomAccessFile raf, long position, long length, byte[] buffer)
+            throws IOException {
+        long offset = position - 1;
+        raf.seek(offset);
+        while (offset < length) {
+            int read = raf.read(buffer, 0, (int)Math.min(buffer.length, length - offset));
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == NEW_LINE) {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return length;
+    }
+
+    /**
+     * Scans one chunk of the file.
+     */
+    private static class ChunkTask implements Callable<Void> {
+        private final ScanPlan.Session session;
+        private final File file;
+        private final Charset charset;
+        private final String fileName;
+        private final long start;
+        private final long end;
+
+        /**
+         * Standard constructor.
+         *
+         * @param session the session to scan with.
+         * @param file the file.
+         * @param charset the charset of the file.
+         * @param fileName the name of the file for logging.
+         * @param start the offset of the first byte of the chunk.
+         * @param end the offset after the last byte of the chunk.
+         */
+        ChunkTask(ScanPlan.Session session, File file, Charset charset, String fileName, long start, long end) {
+            this.session = session;
+            this.file = file;
+            this.charset = charset;
+            this.fileName = fileName;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            if (session.isAbandoned()) {
+                return null;
+            }
+            if (Functions.isWindows()) {
+                // See MappedLogFile#open, mapped files can't be deleted on Windows
+                try (FileInputStream in = new FileInputStream(file)) {
+                    in.getChannel().position(start);
+                    InputStream chunk = new BoundedInputStream(in, end - start);
+                    LogLineSource lines = new LogLineSource.ReaderLineSource(new InputStreamReader(chunk, charset));
+                    FailureReader.scanSingleLinePatterns(session, lines, fileName);
+                }
+                return null;
+            }
+            try (LogLineSource lines = MappedLogFile.map(file, charset, start, end).lines()) {
+                FailureReader.scanSingleLinePatterns(session, lines, fileName);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+/**
+ * Decides if a single log line matches an indication.
+ *
+ * A matcher gives exactly the same answer as {@link java.util.regex.Matcher#matches()} of the pattern it was made
+ * from would. Implementations that keep state, like the reusable {@link java.util.regex.Matcher} of
+ * {@link RegexIndicationMatcher}, are not thread safe; see {@link #isThreadSafe()}.
+ */
+public abstract class IndicationMatcher {
+
+    /**
+     * Tells if the whole line matches.
+     *
+     * @param line the line, without line terminator.
+     * @return true if it matches.
+     */
+    public abstract boolean matches(CharSequence line);
+
+    /**
+     * Tells if the same instance may be used by several scans at the same time.
+     *
+     * @return true if it may be shared.
+     */
+    public abstract boolean isThreadSafe();
+}
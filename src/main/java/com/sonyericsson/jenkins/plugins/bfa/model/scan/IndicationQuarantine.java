@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the indications that time out while scanning, and quarantines the ones that keep doing so.
+ *
+ * Every scan reports, for each indication it evaluated, whether the indication timed out on some line or window.
+ * An indication that times out in {@link #STRIKES} scans in a row is quarantined: the scanners skip it, and the
+ * cause management page flags its cause, until the cause is edited or removed, see {@link #release(String)}.
+ * A scan in which the indication doesn't time out starts the count over.
+ *
+ * Indications are identified by the id of their cause and their pattern, so causes that have not been saved to the
+ * knowledge base are never quarantined. The state is kept in memory only.
+ *
+ * The {@link #getGeneration()} goes up every time an indication is quarantined or released, which tells a
+ * precompiled {@link ScanSnapshot} that it has to be compiled again.
+ */
+public final class IndicationQuarantine {
+
+    private static final Logger logger = Logger.getLogger(IndicationQuarantine.class.getName());
+
+    /**
+     * The number of scans in a row an indication must time out in to be quarantined.
+     */
+    public static final int STRIKES = 3;
+
+    private static final IndicationQuarantine INSTANCE = new IndicationQuarantine();
+
+    /**
+     * Strikes per pattern per cause id.
+     */
+    private final Map<String, Map<String, Integer>> strikes = new HashMap<String, Map<String, Integer>>();
+    private long generation = 0;
+
+    /**
+     * Package private for tests, use {@link #getInstance()}.
+     */
+    IndicationQuarantine() {
+    }
+
+    /**
+     * The quarantine used by all scans.
+     *
+     * @return the quarantine.
+     */
+    public static IndicationQuarantine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Tells if the indication is quarantined and should not be scanned for.
+     *
+     * @param cause the cause of the indication.
+     * @param indication the indication.
+     * @return true if it is quarantined.
+     */
+    public synchronized boolean isQuarantined(FailureCause cause, Indication indication) {
+        Map<String, Integer> patterns = strikes.get(cause.getId());
+        if (patterns == null) {
+            return false;
+        }
+        Integer count = patterns.get(indication.getUserProvidedExpression());
+        return count != null && count >= STRIKES;
+    }
+
+    /**
+     * Tells if any indication of the cause is quarantined.
+     *
+     * @param causeId the id of the cause.
+     * @return true if some indication is quarantined.
+     */
+    public boolean isQuarantined(String causeId) {
+        return !getQuarantinedPatterns(causeId).isEmpty();
+    }
+
+    /**
+     * The patterns of the quarantined indications of the cause.
+     *
+     * @param causeId the id of the cause.
+     * @return the patterns, empty if none is quarantined.
+     */
+    public synchronized List<String> getQuarantinedPatterns(String causeId) {
+        Map<String, Integer> patterns = strikes.get(causeId);
+        if (patterns == null) {
+            return Collections.emptyList();
+        }
+        List<String> quarantined = new ArrayList<String>();
+        for (Map.Entry<String, Integer> entry : patterns.entrySet()) {
+            if (entry.getValue() >= STRIKES) {
+                quarantined.add(entry.getKey());
+            }
+        }
+        return quarantined;
+    }
+
+    /**
+     * The number of times the set of quarantined indications has changed.
+     *
+     * @return the generation.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Records the outcome of one scan for an indication.
+     *
+     * @param cause the cause of the indication.
+     * @param indication the indication.
+     * @param timedOut true if the indication timed out during the scan.
+     */
+    public synchronized void record(FailureCause cause, Indication indication, boolean timedOut) {
+        String id = cause.getId();
+        if (id == null) {
+            return;
+        }
+        String pattern = indication.getUserProvidedExpression();
+        Map<String, Integer> patterns = strikes.get(id);
+        if (!timedOut) {
+            if (patterns == null) {
+                return;
+            }
+            Integer previous = patterns.remove(pattern);
+            if (previous != null && previous >= STRIKES) {
+                generation++;
+            }
+            if (patterns.isEmpty()) {
+                strikes.remove(id);
+            }
+            return;
+        }
+        if (patterns == null) {
+            patterns = new HashMap<String, Integer>();
+            strikes.put(id, patterns);
+        }
+        Integer count = patterns.get(pattern);
+        if (count == null) {
+            count = 0;
+        }
+        if (count < STRIKES) {
+            patterns.put(pattern, count + 1);
+            if (count + 1 == STRIKES) {
+                generation++;
+                logger.warning("Indication '" + pattern + "' of cause " + cause.getName() + " timed out in "
+                        + STRIKES + " scans in a row, skipping it until the cause is edited");
+            }
+        }
+    }
+
+    /**
+     * Forgets everything recorded for the indications of a cause, which makes them scanned again.
+     *
+     * @param causeId the id of the cause.
+     */
+    public synchronized void release(String causeId) {
+        Map<String, Integer> patterns = strikes.remove(causeId);
+        if (patterns != null && patterns.containsValue(STRIKES)) {
+            generation++;
+        }
+    }
+}
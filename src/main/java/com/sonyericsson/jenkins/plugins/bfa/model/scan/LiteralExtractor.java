@@ -0,0 +1,406 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.util.regex.Pattern;
+
+/**
+ * Finds a literal string that must be part of every text a regular expression matches.
+ *
+ * The analysis is deliberately conservative: it only looks at the top level of the expression and gives up on
+ * anything it does not fully understand, like alternations, inline flags or unusual escapes. When no literal is
+ * returned the expression simply has to be evaluated on every line, as before.
+ */
+public final class LiteralExtractor {
+
+    /**
+     * Utility class.
+     */
+    private LiteralExtractor() {
+    }
+
+    /**
+     * Finds the longest literal that every match of the pattern contains.
+     *
+     * @param pattern the pattern.
+     * @return the literal, or null if none could be found.
+     */
+    public static String extract(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return null;
+        }
+        return extract(pattern.pattern());
+    }
+
+    /**
+     * Finds the longest literal that every match of the regular expression contains.
+     *
+     * @param regex the regular expression.
+     * @return the literal, or null if none could be found.
+     */
+    public static String extract(String regex) {
+        Parser parser = new Parser(regex);
+        try {
+            return parser.parse();
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Walks the top level of an expression, keeping track of the current and the longest literal run.
+     * Throws {@link UnsupportedOperationException} when the expression can't be analyzed.
+     */
+    private static final class Parser {
+        private final String regex;
+        private int pos = 0;
+        private final StringBuilder run = new StringBuilder();
+        private String best = null;
+
+        /**
+         * Standard constructor.
+         *
+         * @param regex the expression to parse.
+         */
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * Parses the expression.
+         *
+         * @return the longest literal or null.
+         */
+        String parse() {
+            while (pos < regex.length()) {
+                String literal = nextAtom();
+                Quantifier quantifier = nextQuantifier();
+                if (literal == null) {
+                    endRun();
+                } else if (quantifier == Quantifier.NONE) {
+                    run.append(literal);
+                } else {
+                    // The quantifier only applies to the last code point of the literal
+                    int last = literal.offsetByCodePoints(literal.length(), -1);
+                    run.append(literal, 0, last);
+                    if (quantifier == Quantifier.AT_LEAST_ONCE) {
+                        run.append(literal, last, literal.length());
+                    }
+                    endRun();
+                }
+            }
+            endRun();
+            return best;
+        }
+
+        /**
+         * Ends the current run, remembering it if it is the longest so far.
+         */
+        private void endRun() {
+            if (run.length() > 0 && (best == null || run.length() > best.length())) {
+                best = run.toString();
+            }
+            run.setLength(0);
+        }
+
+        /**
+         * Reads the next atom of the expression.
+         *
+         * @return the literal text the atom matches, or null if it isn't a literal.
+         */
+        private String nextAtom() {
+            char c = regex.charAt(pos);
+            switch (c) {
+                case '\\':
+                    return escape();
+                case '[':
+                    skipClass();
+                    return null;
+                case '(':
+                    skipGroup();
+                    return null;
+                case '.':
+                case '^':
+                case '$':
+                    pos++;
+                    return null;
+                case '|':
+                case ')':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    // Top level alternation or something we don't understand
+                    throw new UnsupportedOperationException();
+                default:
+                    int cp = regex.codePointAt(pos);
+                    pos += Character.charCount(cp);
+                    return new String(Character.toChars(cp));
+            }
+        }
+
+        /**
+         * Reads an escape sequence.
+         *
+         * @return the literal text of the escape, or null if it isn't a literal.
+         */
+        private String escape() {
+            if (pos + 1 >= regex.length()) {
+                throw new UnsupportedOperationException();
+            }
+            char e = regex.charAt(pos + 1);
+            pos += 2;
+            if (e == 'Q') {
+                int end = regex.indexOf("\\E", pos);
+                String quoted;
+                if (end < 0) {
+                    quoted = regex.substring(pos);
+                    pos = regex.length();
+                } else {
+                    quoted = regex.substring(pos, end);
+                    pos = end + 2;
+                }
+                if (quoted.isEmpty()) {
+                    return null;
+                }
+                return quoted;
+            }
+            if (e < '\u0080' && !Character.isLetterOrDigit(e)) {
+                return String.valueOf(e);
+            }
+            switch (e) {
+                case 't':
+                    return "\t";
+                case 'n':
+                    return "\n";
+                case 'r':
+                    return "\r";
+                case 'f':
+                    return "\f";
+                case 'a':
+                    return "\u0007";
+                case 'e':
+                    return "\u001B";
+                case 'd': case 'D': case 's': case 'S': case 'w': case 'W':
+                case 'b': case 'B': case 'A': case 'G': case 'Z': case 'z':
+                case 'h': case 'H': case 'v': case 'V': case 'R': case 'X':
+                    return null;
+                case 'p':
+                case 'P':
+                    if (pos < regex.length() && regex.charAt(pos) == '{') {
+                        skipPast('}');
+                    } else {
+                        pos++;
+                    }
+                    return null;
+                case 'k':
+                    skipPast('>');
+                    return null;
+                default:
+                    if (e >= '1' && e <= '9') {
+                        while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                            pos++;
+                        }
+                        return null;
+                    }
+                    // Octal, hex, unicode, control and named characters are rare enough to not bother with
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        /**
+         * Moves past the next occurrence of the given character.
+         *
+         * @param c the character.
+         */
+        private void skipPast(char c) {
+            int end = regex.indexOf(c, pos);
+            if (end < 0) {
+                throw new UnsupportedOperationException();
+            }
+            pos = end + 1;
+        }
+
+        /**
+         * Moves past a character class, including nested classes.
+         */
+        private void skipClass() {
+            int depth = 0;
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                if (c == '\\') {
+                    if (pos + 1 < regex.length() && regex.charAt(pos + 1) == 'Q') {
+                        skipQuote();
+                        continue;
+                    }
+                    pos += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    depth++;
+                    pos++;
+                    // A ] directly after the opening bracket (or its negation) is a literal
+                    if (pos < regex.length() && regex.charAt(pos) == '^') {
+                        pos++;
+                    }
+                    if (pos < regex.length() && regex.charAt(pos) == ']') {
+                        pos++;
+                    }
+                    continue;
+                }
+                pos++;
+                if (c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Moves past a \Q...\E quote.
+         */
+        private void skipQuote() {
+            int end = regex.indexOf("\\E", pos + 2);
+            if (end < 0) {
+                pos = regex.length();
+            } else {
+                pos = end + 2;
+            }
+        }
+
+        /**
+         * Moves past a group, failing on inline flags that would change the rest of the expression.
+         */
+        private void skipGroup() {
+            int close = pos + 1;
+            if (regex.startsWith("(?", pos)) {
+                while (close + 1 < regex.length() && isFlagChar(regex.charAt(close + 1))) {
+                    close++;
+                }
+                if (close + 1 < regex.length() && regex.charAt(close + 1) == ')') {
+                    // (?i) and friends, applies to the rest of the expression
+                    throw new UnsupportedOperationException();
+                }
+            }
+            int depth = 0;
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                if (c == '\\') {
+                    if (pos + 1 < regex.length() && regex.charAt(pos + 1) == 'Q') {
+                        skipQuote();
+                        continue;
+                    }
+                    pos += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    skipClass();
+                    continue;
+                }
+                pos++;
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Tells if the character can be part of an inline flag group like (?i-s).
+         *
+         * @param c the character.
+         * @return true if it is a flag character.
+         */
+        private static boolean isFlagChar(char c) {
+            return c == '-' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        /**
+         * Reads the quantifier following an atom, if any, including a lazy or possessive modifier.
+         *
+         * @return the kind of quantifier.
+         */
+        private Quantifier nextQuantifier() {
+            if (pos >= regex.length()) {
+                return Quantifier.NONE;
+            }
+            Quantifier quantifier;
+            char c = regex.charAt(pos);
+            if (c == '*' || c == '?') {
+                quantifier = Quantifier.OPTIONAL;
+                pos++;
+            } else if (c == '+') {
+                quantifier = Quantifier.AT_LEAST_ONCE;
+                pos++;
+            } else if (c == '{') {
+                int end = regex.indexOf('}', pos);
+                if (end < 0) {
+                    throw new UnsupportedOperationException();
+                }
+                String bounds = regex.substring(pos + 1, end);
+                int comma = bounds.indexOf(',');
+                String min = bounds;
+                if (comma >= 0) {
+                    min = bounds.substring(0, comma);
+                }
+                try {
+                    if (Integer.parseInt(min.trim()) > 0) {
+                        quantifier = Quantifier.AT_LEAST_ONCE;
+                    } else {
+                        quantifier = Quantifier.OPTIONAL;
+                    }
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedOperationException();
+                }
+                pos = end + 1;
+            } else {
+                return Quantifier.NONE;
+            }
+            if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                pos++;
+            }
+            return quantifier;
+        }
+    }
+
+    /**
+     * What a quantifier means for the atom before it.
+     */
+    private enum Quantifier {
+        /** No quantifier, the atom appears exactly once. */
+        NONE,
+        /** The atom may be absent. */
+        OPTIONAL,
+        /** The atom appears at least once, possibly repeated. */
+        AT_LEAST_ONCE
+    }
+}
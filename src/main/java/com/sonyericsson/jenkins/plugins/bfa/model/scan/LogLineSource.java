@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * The lines of a log, as read by the scanner.
+ *
+ * Unlike {@link BufferedReader#readLine()}, the returned line may be a view that is only valid until the next line
+ * is read, so that implementations don't have to create a String for every line. A String is only created, with
+ * {@link #getMatchingText()}, for the lines that match an indication.
+ */
+public abstract class LogLineSource implements Closeable {
+
+    /**
+     * Reads the next line, without its line terminator. Lines are terminated like for
+     * {@link BufferedReader#readLine()}.
+     *
+     * @return the line, only valid until the next call, or null at the end of the log.
+     * @throws IOException if the log can't be read.
+     */
+    public abstract CharSequence readLine() throws IOException;
+
+    /**
+     * The last read line as a String, without any console notes, to report as the matching string.
+     *
+     * @return the text of the line.
+     */
+    public abstract String getMatchingText();
+
+    /**
+     * Opens the log of the build, memory mapped if possible, see {@link MappedLogFile#open(Run)}. The
+     * {@link ScanInput} of the build is read instead if it has one.
+     *
+     * @param build the build.
+     * @return the lines of the log.
+     * @throws IOException if the log can't be opened.
+     */
+    public static LogLineSource open(Run build) throws IOException {
+        ScanInput input = ScanInput.get(build);
+        if (input != null) {
+            return input.lines();
+        }
+        MappedLogFile file = MappedLogFile.open(build);
+        if (file != null) {
+            return file.lines();
+        }
+        return new ReaderLineSource(build.getLogReader());
+    }
+
+    /**
+     * Opens the log of the build as a stream of characters, memory mapped if possible,
+     * see {@link MappedLogFile#open(Run)}. The {@link ScanInput} of the build is read instead if it has one.
+     *
+     * @param build the build.
+     * @return a reader of the log.
+     * @throws IOException if the log can't be opened.
+     */
+    public static Reader openReader(Run build) throws IOException {
+        ScanInput input = ScanInput.get(build);
+        if (input != null) {
+            return input.reader();
+        }
+        MappedLogFile file = MappedLogFile.open(build);
+        if (file != null) {
+            return file.reader();
+        }
+        return build.getLogReader();
+    }
+
+    /**
+     * Lines read from a {@link Reader}, decoded into one shared buffer that the returned lines are views of.
+     */
+    public static class ReaderLineSource extends LogLineSource {
+        private static final int BUFFER_SIZE = 8192;
+
+        private final Reader reader;
+        private char[] buffer = new char[BUFFER_SIZE];
+        private CharBuffer view = CharBuffer.wrap(buffer);
+        private int position = 0;
+        private int limit = 0;
+        private int lineStart = 0;
+        private int lineEnd = 0;
+        private boolean skipLineFeed = false;
+
+        /**
+         * Standard constructor.
+         *
+         * @param reader the reader, closed when this source is closed.
+         */
+        public ReaderLineSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public CharSequence readLine() throws IOException {
+            if (skipLineFeed) {
+                // The previous line ended with \r, a following \n belongs to the same line terminator
+                if (position == limit && !fill()) {
+                    return null;
+                }
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+                skipLineFeed = false;
+            }
+            int i = position;
+            while (true) {
+                while (i < limit) {
+                    char c = buffer[i];
+                    if (c == '\n' || c == '\r') {
+                        skipLineFeed = c == '\r';
+                        return endLine(i, i + 1);
+                    }
+                    i++;
+                }
+                int scanned = i - position;
+                if (!fill()) {
+                    if (position == limit) {
+                        return null;
+                    }
+                    return endLine(limit, limit);
+                }
+                i = position + scanned;
+            }
+        }
+
+        /**
+         * Ends the current line.
+         *
+         * @param end the index after the last character of the line.
+         * @param next the index of the first character of the next line.
+         * @return a view of the line.
+         */
+        private CharSequence endLine(int end, int next) {
+            lineStart = position;
+            lineEnd = end;
+            position = next;
+            view.limit(lineEnd);
+            view.position(lineStart);
+            return view;
+        }
+
+        /**
+         * Reads more characters, moving the unread ones to the start of the buffer and growing it if it is full.
+         *
+         * @return false at the end of the reader.
+         * @throws IOException if the reader fails.
+         */
+        private boolean fill() throws IOException {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                view = CharBuffer.wrap(buffer);
+            }
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+            return true;
+        }
+
+        @Override
+        public String getMatchingText() {
+            return ConsoleNote.removeNotes(new String(buffer, lineStart, lineEnd - lineStart));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Lines read with {@link BufferedReader#readLine()}, one String per line, for callers that hand over a
+     * BufferedReader and may depend on how it splits lines.
+     */
+    public static class BufferedReaderLineSource extends LogLineSource {
+        private final BufferedReader reader;
+        private String line = null;
+
+        /**
+         * Standard constructor.
+         *
+         * @param reader the reader, closed when this source is closed.
+         */
+        public BufferedReaderLineSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public CharSequence readLine() throws IOException {
+            line = reader.readLine();
+            return line;
+        }
+
+        @Override
+        public String getMatchingText() {
+            return ConsoleNote.removeNotes(line);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
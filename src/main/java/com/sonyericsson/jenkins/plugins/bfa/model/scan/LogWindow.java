@@ -0,0 +1,281 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+
+/**
+ * The start and the end of a log that is too large to be scanned in full.
+ *
+ * Both parts are read straight from the file, seeking over the middle of it, so the cost of scanning the log doesn't
+ * depend on its size. The start ends and the end starts at line starts, so the lines read are whole lines of the
+ * log. The lines of the end are numbered as if they followed right after the start, so their numbers are not the
+ * lines of the log and are reported as not known, see {@link #toLogLine(int)}.
+ *
+ * While a build is being scanned partially its window is attached as its {@link ScanInput}.
+ */
+public final class LogWindow extends ScanInput {
+
+    private static final int SEEK_BUFFER_SIZE = 8192;
+    private static final int BYTE_MASK = 0xff;
+
+    private final File file;
+    private final Charset charset;
+    private final long headEnd;
+    private final long tailStart;
+    private final long length;
+    private long headLines = -1;
+
+    /**
+     * Private constructor, use {@link #create(File, Charset, long, long)}.
+     *
+     * @param file the log file.
+     * @param charset the charset of the file.
+     * @param headEnd the offset after the last byte of the start.
+     * @param tailStart the offset of the first byte of the end.
+     * @param length the length of the file.
+     */
+    private LogWindow(File file, Charset charset, long headEnd, long tailStart, long length) {
+        this.file = file;
+        this.charset = charset;
+        this.headEnd = headEnd;
+        this.tailStart = tailStart;
+        this.length = length;
+    }
+
+    /**
+     * Creates the window over a log file. The start is extended and the end shortened to the next line start.
+     *
+     * @param file the log file.
+     * @param charset the charset of the file.
+     * @param headSize the number of bytes at the start of the file to read.
+     * @param tailSize the number of bytes at the end of the file to read.
+     * @return the window, or null if the log is compressed, not a file or in a charset that can't be split into lines
+     * at byte level, see {@link ChunkedLogScanner#isLineAligned(Charset)}.
+     * @throws IOException if the file can't be read.
+     */
+    public static LogWindow create(File file, Charset charset, long headSize, long tailSize) throws IOException {
+        if (file == null || !file.isFile() || file.getName().endsWith(".gz")
+                || !ChunkedLogScanner.isLineAligned(charset)) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            byte[] buffer = new byte[SEEK_BUFFER_SIZE];
+            long headEnd = 0;
+            if (headSize >= length) {
+                headEnd = length;
+            } else if (headSize > 0) {
+                headEnd = ChunkedLogScanner.nextLineStart(raf, headSize, length, buffer);
+            }
+            long tailStart = length;
+            if (tailSize > 0 && headEnd < length - tailSize) {
+                tailStart = ChunkedLogScanner.nextLineStart(raf, length - tailSize, length, buffer);
+            } else if (tailSize > 0) {
+                tailStart = headEnd;
+            }
+            return new LogWindow(file, charset, headEnd, tailStart, length);
+        }
+    }
+
+    /**
+     * Tells if some part of the log is left out of the window.
+     *
+     * @return true if the middle of the log is skipped.
+     */
+    @Override
+    public boolean isPartial() {
+        return headEnd < tailStart;
+    }
+
+    /**
+     * The number of bytes read from the start of the log.
+     *
+     * @return the size of the start.
+     */
+    public long getHeadSize() {
+        return headEnd;
+    }
+
+    /**
+     * The number of bytes read from the end of the log.
+     *
+     * @return the size of the end.
+     */
+    public long getTailSize() {
+        return length - tailStart;
+    }
+
+    /**
+     * The lines of the start keep their numbers, the lines of the end have no known line in the log.
+     *
+     * @param line the 1-based number of the line in the window, or -1 if not known.
+     * @return the number of the line in the log, or -1 if it is in the end or not known.
+     */
+    @Override
+    public int toLogLine(int line) {
+        if (line < 0 || !isPartial()) {
+            return line;
+        }
+        try {
+            if (line <= getHeadLines()) {
+                return line;
+            }
+        } catch (IOException e) {
+            // The line can't be placed, which is the same as a line of the end
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * The number of lines in the start, counted the first time it is asked for. Line terminators are counted like
+     * {@link LogLineSource} splits lines, the start ends right after a '\n'.
+     *
+     * @return the number of lines.
+     * @throws IOException if the file can't be read.
+     */
+    synchronized long getHeadLines() throws IOException {
+        if (headLines < 0) {
+            long count = 0;
+            boolean carriageReturn = false;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                byte[] buffer = new byte[SEEK_BUFFER_SIZE];
+                long position = 0;
+                while (position < headEnd) {
+                    int read = raf.read(buffer, 0, (int)Math.min(buffer.length, headEnd - position));
+                    if (read < 0) {
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] == '\n') {
+                            // Ends a line, also when it follows a '\r'
+                            count++;
+                            carriageReturn = false;
+                        } else {
+                            if (carriageReturn) {
+                                count++;
+                            }
+                            carriageReturn = buffer[i] == '\r';
+                        }
+                    }
+                    position += read;
+                }
+            }
+            if (carriageReturn) {
+                count++;
+            }
+            headLines = count;
+        }
+        return headLines;
+    }
+
+    /**
+     * The characters of the window, the start directly followed by the end.
+     *
+     * @return a reader, to be closed by the caller.
+     * @throws IOException if the file can't be opened.
+     */
+    @Override
+    public Reader reader() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        // The start ends right after a line terminator, so no character is split between the two parts
+        return new InputStreamReader(new SequenceInputStream(new Range(raf, 0, headEnd, false),
+                new Range(raf, tailStart, length, true)), charset);
+    }
+
+    /**
+     * The lines of the window, the start directly followed by the end.
+     *
+     * @return the lines, to be closed by the caller.
+     * @throws IOException if the file can't be opened.
+     */
+    @Override
+    public LogLineSource lines() throws IOException {
+        return new LogLineSource.ReaderLineSource(reader());
+    }
+
+    /**
+     * The bytes of a part of the file, read by seeking to them.
+     */
+    private static final class Range extends InputStream {
+        private final RandomAccessFile raf;
+        private final long end;
+        private final boolean last;
+        private long position;
+
+        /**
+         * Standard constructor.
+         *
+         * @param raf the file, shared by the ranges of one reader.
+         * @param start the offset of the first byte.
+         * @param end the offset after the last byte.
+         * @param last true if this is the last range, which closes the file. The ranges are closed in order, each
+         *             one as soon as it has been read.
+         */
+        Range(RandomAccessFile raf, long start, long end, boolean last) {
+            this.raf = raf;
+            this.position = start;
+            this.end = end;
+            this.last = last;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            if (read(one, 0, 1) < 0) {
+                return -1;
+            }
+            return one[0] & BYTE_MASK;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            raf.seek(position);
+            int read = raf.read(bytes, offset, (int)Math.min(count, end - position));
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            position = end;
+            if (last) {
+                raf.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import hudson.Functions;
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A log file, or a line aligned part of it, mapped into memory.
+ *
+ * The file is mapped in segments that start at line starts, so that no line and no character crosses a segment.
+ * All segments are mapped up front and the file is closed right away; the mapping stays valid until it is garbage
+ * collected. This also keeps the scanning threads, which may get interrupted when a scan is cancelled, away from
+ * the interruptible file channel.
+ */
+public final class MappedLogFile {
+
+    /**
+     * The approximate size of each mapped segment, well below the 2GB limit of a single mapping.
+     */
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte[] PREAMBLE = ConsoleNote.PREAMBLE_STR.getBytes(Charset.forName("US-ASCII"));
+    private static final byte[] POSTAMBLE = ConsoleNote.POSTAMBLE_STR.getBytes(Charset.forName("US-ASCII"));
+
+    private final ByteBuffer[] segments;
+    private final Charset charset;
+
+    /**
+     * Private constructor, use {@link #map(File, Charset, long, long)}.
+     *
+     * @param segments the mapped segments.
+     * @param charset the charset of the file.
+     */
+    private MappedLogFile(ByteBuffer[] segments, Charset charset) {
+        this.segments = segments;
+        this.charset = charset;
+    }
+
+    /**
+     * Maps the log of the build, if it is a plain file in a charset that can be split into lines at byte level.
+     * Compressed logs, logs that are not files and all logs on Windows, where a mapped file can't be deleted until
+     * the mapping is garbage collected, are not mapped.
+     *
+     * @param build the build.
+     * @return the mapped log, or null if it should be read through {@link Run#getLogReader()}.
+     * @throws IOException if the file can't be mapped.
+     */
+    public static MappedLogFile open(Run build) throws IOException {
+        if (Functions.isWindows()) {
+            return null;
+        }
+        File file = build.getLogFile();
+        if (file == null || !file.isFile() || file.getName().endsWith(".gz")
+                || !ChunkedLogScanner.isLineAligned(build.getCharset())) {
+            return null;
+        }
+        return map(file, build.getCharset(), 0, file.length());
+    }
+
+    /**
+     * Maps a part of a file.
+     *
+     * @param file the file.
+     * @param charset the charset of the file, see {@link ChunkedLogScanner#isLineAligned(Charset)}.
+     * @param start the offset of the first byte to map, at the start of a line.
+     * @param end the offset after the last byte to map, at the start of a line or the end of the file.
+     * @return the mapped file.
+     * @throws IOException if the file can't be mapped.
+     */
+    public static MappedLogFile map(File file, Charset charset, long start, long end) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long[] boundaries = ChunkedLogScanner.findBoundaries(raf, start, end, SEGMENT_SIZE);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer[] segments = new ByteBuffer[boundaries.length - 1];
+            for (int i = 0; i < segments.length; i++) {
+                long size = boundaries[i + 1] - boundaries[i];
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Line too long to be mapped in " + file);
+                }
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], size);
+            }
+            return new MappedLogFile(segments, charset);
+        }
+    }
+
+    /**
+     * The lines of the mapped file. Each call returns a new source, starting at the first line.
+     *
+     * @return the lines.
+     */
+    public LogLineSource lines() {
+        return new Lines();
+    }
+
+    /**
+     * The characters of the mapped file. Each call returns a new reader, starting at the first character.
+     *
+     * @return a reader.
+     */
+    public Reader reader() {
+        return new DecodingReader();
+    }
+
+    /**
+     * Creates a decoder for the charset of the file, replacing bad input like an {@link java.io.InputStreamReader}.
+     *
+     * @return the decoder.
+     */
+    private CharsetDecoder newDecoder() {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Finds the next occurrence of some bytes in a buffer.
+     *
+     * @param buffer the buffer.
+     * @param bytes the bytes to find.
+     * @param from the index to start at.
+     * @param to the index to stop at.
+     * @return the index of the first byte of the occurrence, or -1.
+     */
+    private static int indexOf(ByteBuffer buffer, byte[] bytes, int from, int to) {
+        for (int i = from; i <= to - bytes.length; i++) {
+            int j = 0;
+            while (j < bytes.length && buffer.get(i + j) == bytes[j]) {
+                j++;
+            }
+            if (j == bytes.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lines sliced from the mapped segments, decoded into one reused buffer.
+     */
+    private final class Lines extends LogLineSource {
+        private final CharsetDecoder decoder = newDecoder();
+        private CharBuffer chars = CharBuffer.allocate(0);
+        private int segment = 0;
+        private ByteBuffer bytes = null;
+        private int position = 0;
+        private int lineStart = 0;
+        private int lineEnd = 0;
+
+        /**
+         * Standard constructor.
+         */
+        Lines() {
+            if (segments.length > 0) {
+                bytes = segments[0].duplicate();
+            }
+        }
+
+        @Override
+        public CharSequence readLine() {
+            while (bytes != null && position >= bytes.limit()) {
+                segment++;
+                position = 0;
+                if (segment < segments.length) {
+                    bytes = segments[segment].duplicate();
+                } else {
+                    bytes = null;
+                }
+            }
+            if (bytes == null) {
+                return null;
+            }
+            final int limit = bytes.limit();
+            int i = position;
+            byte b = 0;
+            while (i < limit) {
+                b = bytes.get(i);
+                if (b == LINE_FEED || b == CARRIAGE_RETURN) {
+                    break;
+                }
+                i++;
+            }
+            lineStart = position;
+            lineEnd = i;
+            position = i + 1;
+            if (b == CARRIAGE_RETURN && position < limit && bytes.get(position) == LINE_FEED) {
+                position++;
+            }
+            return decode();
+        }
+
+        /**
+         * Decodes the current line into {@link #chars}.
+         *
+         * @return the decoded line.
+         */
+        private CharBuffer decode() {
+            int length = lineEnd - lineStart;
+            int capacity = (int)Math.ceil(length * (double)decoder.maxCharsPerByte());
+            if (chars.capacity() < capacity) {
+                chars = CharBuffer.allocate(Math.max(capacity, chars.capacity() * 2));
+            }
+            chars.clear();
+            bytes.limit(lineEnd).position(lineStart);
+            decoder.reset();
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (result.isUnderflow()) {
+                decoder.flush(chars);
+            }
+            bytes.limit(bytes.capacity());
+            chars.flip();
+            return chars;
+        }
+
+        @Override
+        public String getMatchingText() {
+            byte[] text = new byte[lineEnd - lineStart];
+            int length = 0;
+            int from = lineStart;
+            while (from < lineEnd) {
+                int note = indexOf(bytes, PREAMBLE, from, lineEnd);
+                if (note < 0) {
+                    break;
+                }
+                int noteEnd = indexOf(bytes, POSTAMBLE, note + PREAMBLE.length, lineEnd);
+                if (noteEnd < 0) {
+                    break;
+                }
+                length = copy(from, note, text, length);
+                from = noteEnd + POSTAMBLE.length;
+            }
+            length = copy(from, lineEnd, text, length);
+            return new String(text, 0, length, charset);
+        }
+
+        /**
+         * Copies bytes of the current segment.
+         *
+         * @param from the index of the first byte to copy.
+         * @param to the index after the last byte to copy.
+         * @param target where to copy to.
+         * @param offset where in the target to copy to.
+         * @return the offset after the copied bytes.
+         */
+        private int copy(int from, int to, byte[] target, int offset) {
+            for (int i = from; i < to; i++) {
+                target[offset + i - from] = bytes.get(i);
+            }
+            return offset + to - from;
+        }
+
+        @Override
+        public void close() {
+            bytes = null;
+            segment = segments.length;
+        }
+    }
+
+    /**
+     * A reader decoding the mapped segments one after the other.
+     */
+    private final class DecodingReader extends Reader {
+        private final CharsetDecoder decoder = newDecoder();
+        private int segment = -1;
+        private ByteBuffer bytes = null;
+        private boolean flushed = true;
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            CharBuffer target = CharBuffer.wrap(cbuf, off, len);
+            while (target.position() == off) {
+                if (flushed) {
+                    segment++;
+                    if (segment >= segments.length) {
+                        return -1;
+                    }
+                    bytes = segments[segment].duplicate();
+                    decoder.reset();
+                    flushed = false;
+                }
+                // Segments end at line ends, so no character is split between two of them
+                CoderResult result = decoder.decode(bytes, target, true);
+                if (result.isUnderflow() && decoder.flush(target).isUnderflow()) {
+                    flushed = true;
+                }
+            }
+            return target.position() - off;
+        }
+
+        @Override
+        public void close() {
+            segment = segments.length;
+            flushed = true;
+        }
+    }
+}
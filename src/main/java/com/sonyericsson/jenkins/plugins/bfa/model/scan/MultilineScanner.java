@@ -0,0 +1,269 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.google.common.base.Joiner;
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates many multi-line indications against the same windows of a log, so that the log only has to be read
+ * once for all of them.
+ *
+ * Every indication keeps its own state: once it has matched, it is not evaluated against later windows.
+ * Each indication also has its own overlap, the part of the previous window it is evaluated against again so that
+ * matches crossing a window boundary are found. It is {@link FailureReader#OVERLAP_BYTES} by default, smaller for
+ * expressions whose span can be bounded, see {@link SpanAnalyzer}, and what the indication declares if it declares
+ * a span, see {@link MultilineBuildLogIndication#getMaxSpan()}.
+ * Not thread safe, one scanner should be used by one thread.
+ */
+public final class MultilineScanner {
+
+    private static final Logger logger = Logger.getLogger(MultilineScanner.class.getName());
+
+    /**
+     * Chars allowed for the rest of the first and the last line of a match of a bounded expression, which the
+     * compiled multi-line pattern includes in the match.
+     */
+    private static final int LINE_CONTEXT = 500;
+
+    private final Run build;
+    private final String currentFile;
+    private final List<Indication> indications;
+    private final Matcher[] matchers;
+    private final FoundIndication[] found;
+    private final boolean[] timedOut;
+    private boolean interrupted = false;
+    private final int[] overlaps;
+    private final long[] scannedTo;
+    private final int maxOverlap;
+    private final BudgetedCharSequence budgeted = new BudgetedCharSequence("", null);
+    private int remaining;
+    private ScanWatchdog.Deadline deadline = null;
+
+    /**
+     * Standard constructor.
+     *
+     * @param build the build being scanned, used in the found indications.
+     * @param currentFile the name of the file being scanned, used in the found indications.
+     * @param indications the indications to look for.
+     */
+    public MultilineScanner(Run build, String currentFile, List<? extends Indication> indications) {
+        this.build = build;
+        this.currentFile = currentFile;
+        this.indications = new ArrayList<Indication>(indications);
+        this.matchers = new Matcher[indications.size()];
+        this.found = new FoundIndication[indications.size()];
+        this.timedOut = new boolean[indications.size()];
+        this.remaining = indications.size();
+        this.overlaps = new int[indications.size()];
+        this.scannedTo = new long[indications.size()];
+        int max = 0;
+        for (int i = 0; i < overlaps.length; i++) {
+            overlaps[i] = overlap(this.indications.get(i));
+            max = Math.max(max, overlaps[i]);
+        }
+        this.maxOverlap = max;
+    }
+
+    /**
+     * The overlap needed by an indication.
+     *
+     * @param indication the indication.
+     * @return the number of chars of the previous window to evaluate again.
+     */
+    static int overlap(Indication indication) {
+        if (!(indication instanceof MultilineBuildLogIndication)) {
+            return FailureReader.OVERLAP_BYTES;
+        }
+        MultilineBuildLogIndication multiline = (MultilineBuildLogIndication)indication;
+        if (multiline.getMaxSpan() > 0) {
+            return multiline.getMaxSpan();
+        }
+        int span = multiline.getExpressionSpan();
+        if (span == SpanAnalyzer.UNBOUNDED) {
+            return FailureReader.OVERLAP_BYTES;
+        }
+        return Math.min(FailureReader.OVERLAP_BYTES, span + 2 * LINE_CONTEXT);
+    }
+
+    /**
+     * The largest overlap of the indications, the number of chars the window must keep when it slides.
+     *
+     * @return the overlap.
+     */
+    public int getMaxOverlap() {
+        return maxOverlap;
+    }
+
+    /**
+     * The number of indications looked for.
+     *
+     * @return the number of indications.
+     */
+    public int size() {
+        return indications.size();
+    }
+
+    /**
+     * Sets the deadline touched after each evaluated regular expression. Expressions give up when it expires.
+     *
+     * @param deadline the deadline, or null for no timeout.
+     */
+    public void setDeadline(ScanWatchdog.Deadline deadline) {
+        this.deadline = deadline;
+        budgeted.setDeadline(deadline);
+    }
+
+    /**
+     * Evaluates all indications not yet found against a window of the log. Each indication is evaluated against
+     * the chars it hasn't seen yet, plus its overlap.
+     *
+     * @param window the window, must not change during the call.
+     * @return true if all indications have been found.
+     */
+    public boolean matchWindow(SearchWindow window) {
+        for (int i = 0; i < found.length; i++) {
+            if (found[i] != null) {
+                continue;
+            }
+            Indication indication = indications.get(i);
+            CharSequence input = budgeted.reset(window.from(scannedTo[i] - overlaps[i]));
+            scannedTo[i] = window.getEnd();
+            try {
+                Matcher matcher = matcher(i, input);
+                if (matcher.find()) {
+                    found[i] = new FoundIndication(build, matcher.pattern().pattern(), currentFile,
+                            removeConsoleNotes(matcher.group()), -1);
+                    remaining--;
+                }
+            } catch (RuntimeException e) {
+                if (BudgetedCharSequence.isInterrupt(e)) {
+                    interrupted = true;
+                    return isComplete();
+                } else if (BudgetedCharSequence.isTimeout(e)) {
+                    timedOut[i] = true;
+                    logger.warning("Timeout scanning for indication '" + indication.toString() + "' for file "
+                            + currentFile);
+                } else {
+                    // This is not a timeout exception
+                    throw e;
+                }
+            }
+            if (deadline != null) {
+                deadline.touch();
+            }
+        }
+        return isComplete();
+    }
+
+    /**
+     * Gets the reusable matcher of an indication, reset to the given input.
+     *
+     * @param index the index of the indication.
+     * @param input the input.
+     * @return the matcher.
+     */
+    private Matcher matcher(int index, CharSequence input) {
+        Matcher matcher = matchers[index];
+        if (matcher == null) {
+            Pattern pattern = indications.get(index).getPattern();
+            matcher = pattern.matcher(input);
+            matchers[index] = matcher;
+        } else {
+            matcher.reset(input);
+        }
+        return matcher;
+    }
+
+    /**
+     * Tells if all indications have been found.
+     *
+     * @return true if there is nothing left to look for.
+     */
+    public boolean isComplete() {
+        return remaining == 0;
+    }
+
+    /**
+     * The found indication for the indication at the given index of the list given to the constructor.
+     *
+     * @param index the index.
+     * @return the found indication, or null if it wasn't found.
+     */
+    public FoundIndication getFound(int index) {
+        return found[index];
+    }
+
+    /**
+     * Tells if the indication at the given index of the list given to the constructor timed out on some window.
+     *
+     * @param index the index.
+     * @return true if it timed out.
+     */
+    public boolean isTimedOut(int index) {
+        return timedOut[index];
+    }
+
+    /**
+     * Tells if the thread was interrupted while evaluating an indication, which then tells nothing about whether
+     * the indications would have timed out.
+     *
+     * @return true if interrupted.
+     */
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
+    /**
+     * @param input the input string from which to remove any console notes
+     * @return the input string less console notes. Note the returned string may not contain the same line endings
+     * as the input string.
+     */
+    private static String removeConsoleNotes(final String input) {
+        final List<String> cleanLines = new LinkedList<String>();
+        final Scanner lineTokenizer = new Scanner(input);
+        try {
+            lineTokenizer.useDelimiter(Pattern.compile("[\\n\\r]"));
+            while (lineTokenizer.hasNext()) {
+                cleanLines.add(ConsoleNote.removeNotes(lineTokenizer.next()));
+            }
+        } finally {
+            lineTokenizer.close();
+        }
+        return Joiner.on('\n').join(cleanLines);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes patterns that are just a literal, optionally surrounded by <code>.*</code> and anchors, and provides
+ * plain string matchers for them.
+ *
+ * The recognized shapes are <code>.*literal.*</code>, <code>literal.*</code>, <code>.*literal</code> and
+ * <code>literal</code>, each optionally with <code>^</code>, <code>$</code> and lazy <code>.*?</code>.
+ * Since <code>.</code> doesn't match line terminators, lines that contain one are handed to the regular expression
+ * so that the result is always the same as {@link java.util.regex.Matcher#matches()}.
+ */
+public final class PatternClassifier {
+
+    private static final String ANY = ".*";
+    private static final String ANY_LAZY = ".*?";
+
+    /**
+     * Utility class.
+     */
+    private PatternClassifier() {
+    }
+
+    /**
+     * The shapes a pattern can have.
+     */
+    public enum Shape {
+        /** The line contains the literal. */
+        CONTAINS,
+        /** The line starts with the literal. */
+        STARTS_WITH,
+        /** The line ends with the literal. */
+        ENDS_WITH,
+        /** The line is the literal. */
+        EQUALS,
+        /** Anything else, needs the regular expression engine. */
+        REGEX
+    }
+
+    /**
+     * Gets a matcher for the pattern, specialized if the pattern has a trivial shape.
+     *
+     * @param pattern the pattern.
+     * @return the matcher.
+     */
+    public static IndicationMatcher getMatcher(Pattern pattern) {
+        IndicationMatcher matcher = getSpecializedMatcher(pattern);
+        if (matcher == null) {
+            return new RegexIndicationMatcher(pattern);
+        }
+        return matcher;
+    }
+
+    /**
+     * Gets a specialized matcher for the pattern, if it has a trivial shape.
+     *
+     * @param pattern the pattern.
+     * @return the thread safe matcher, or null if the pattern needs the regular expression engine.
+     */
+    public static IndicationMatcher getSpecializedMatcher(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return null;
+        }
+        String regex = pattern.pattern();
+        boolean anyBefore = false;
+        boolean anyAfter = false;
+        if (regex.startsWith("^")) {
+            regex = regex.substring(1);
+        }
+        if (regex.startsWith(ANY_LAZY)) {
+            regex = regex.substring(ANY_LAZY.length());
+            anyBefore = true;
+        } else if (regex.startsWith(ANY)) {
+            regex = regex.substring(ANY.length());
+            anyBefore = true;
+        }
+        if (regex.endsWith("$") && !isLiteral(regex, regex.length() - 1)) {
+            regex = regex.substring(0, regex.length() - 1);
+        }
+        if (regex.endsWith(ANY_LAZY) && !isLiteral(regex, regex.length() - ANY_LAZY.length())) {
+            regex = regex.substring(0, regex.length() - ANY_LAZY.length());
+            anyAfter = true;
+        } else if (regex.endsWith(ANY) && !isLiteral(regex, regex.length() - ANY.length())) {
+            regex = regex.substring(0, regex.length() - ANY.length());
+            anyAfter = true;
+        }
+        String literal = toLiteral(regex);
+        if (literal == null || literal.isEmpty()
+                || Character.isLowSurrogate(literal.charAt(0))
+                || Character.isHighSurrogate(literal.charAt(literal.length() - 1))) {
+            // A lone surrogate at the edge could be part of a pair matched by the .* next to it
+            return null;
+        }
+        Shape shape;
+        if (anyBefore && anyAfter) {
+            shape = Shape.CONTAINS;
+        } else if (anyAfter) {
+            shape = Shape.STARTS_WITH;
+        } else if (anyBefore) {
+            shape = Shape.ENDS_WITH;
+        } else {
+            shape = Shape.EQUALS;
+        }
+        return new LiteralMatcher(shape, literal, pattern);
+    }
+
+    /**
+     * Gets the shape of the pattern.
+     *
+     * @param pattern the pattern.
+     * @return the shape.
+     */
+    public static Shape classify(Pattern pattern) {
+        IndicationMatcher matcher = getSpecializedMatcher(pattern);
+        if (matcher == null) {
+            return Shape.REGEX;
+        }
+        return ((LiteralMatcher)matcher).shape;
+    }
+
+    /**
+     * Tells if the character at the index is taken literally, either because it is escaped by a backslash or because
+     * it is inside a <code>\Q</code> quote. A quote without <code>\E</code> runs to the end of the expression.
+     *
+     * @param regex the expression.
+     * @param index the index.
+     * @return true if it is a literal character.
+     */
+    private static boolean isLiteral(String regex, int index) {
+        int i = 0;
+        while (i < index) {
+            if (regex.charAt(i) != '\\' || i + 1 >= regex.length()) {
+                i++;
+            } else if (regex.charAt(i + 1) == 'Q') {
+                int end = regex.indexOf("\\E", i + 2);
+                if (end < 0 || index < end + 2) {
+                    return true;
+                }
+                i = end + 2;
+            } else if (index == i + 1) {
+                return true;
+            } else {
+                i += 2;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts an expression consisting only of literal characters into the text it matches.
+     *
+     * @param regex the expression.
+     * @return the text, or null if the expression contains anything but literals.
+     */
+    static String toLiteral(String regex) {
+        StringBuilder literal = new StringBuilder(regex.length());
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+                char e = regex.charAt(i + 1);
+                if (e == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (end < 0) {
+                        literal.append(regex, i + 2, regex.length());
+                        i = regex.length();
+                    } else {
+                        literal.append(regex, i + 2, end);
+                        i = end + 2;
+                    }
+                    continue;
+                }
+                if (e < '\u0080' && !Character.isLetterOrDigit(e)) {
+                    literal.append(e);
+                } else if (e == 't') {
+                    literal.append('\t');
+                } else {
+                    return null;
+                }
+                i += 2;
+                continue;
+            }
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                return null;
+            }
+            literal.append(c);
+            i++;
+        }
+        return literal.toString();
+    }
+
+    /**
+     * Tells if the text contains a character that <code>.</code> doesn't match.
+     *
+     * @param text the text.
+     * @return true if there is a line terminator in the text.
+     */
+    private static boolean hasLineTerminator(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells if the literal occurs in the text at the given offset.
+     *
+     * @param text the text.
+     * @param offset the offset in the text.
+     * @param literal the literal.
+     * @return true if it occurs there.
+     */
+    private static boolean regionMatches(CharSequence text, int offset, String literal) {
+        if (offset < 0 || offset + literal.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (text.charAt(offset + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells if the literal occurs anywhere in the text.
+     *
+     * @param text the text.
+     * @param literal the literal.
+     * @return true if it occurs.
+     */
+    private static boolean contains(CharSequence text, String literal) {
+        if (text instanceof String) {
+            return ((String)text).contains(literal);
+        }
+        final char first = literal.charAt(0);
+        final int last = text.length() - literal.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.charAt(i) == first && regionMatches(text, i, literal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matcher for a literal with a trivial shape.
+     */
+    private static final class LiteralMatcher extends IndicationMatcher {
+        private final Shape shape;
+        private final String literal;
+        private final Pattern pattern;
+
+        /**
+         * Standard constructor.
+         *
+         * @param shape the shape.
+         * @param literal the literal.
+         * @param pattern the original pattern, used for lines with line terminators.
+         */
+        LiteralMatcher(Shape shape, String literal, Pattern pattern) {
+            this.shape = shape;
+            this.literal = literal;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(CharSequence line) {
+            if (hasLineTerminator(line)) {
+                return pattern.matcher(line).matches();
+            }
+            switch (shape) {
+                case CONTAINS:
+                    return contains(line, literal);
+                case STARTS_WITH:
+                    return regionMatches(line, 0, literal);
+                case ENDS_WITH:
+                    return regionMatches(line, line.length() - literal.length(), literal);
+                default:
+                    return line.length() == literal.length() && regionMatches(line, 0, literal);
+            }
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return shape + " " + literal;
+        }
+    }
+}
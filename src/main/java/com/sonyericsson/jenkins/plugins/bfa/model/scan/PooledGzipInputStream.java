@@ -0,0 +1,293 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads gzip compressed data, like {@link java.util.zip.GZIPInputStream}, with an {@link Inflater} taken from a
+ * pool instead of a new one per stream. An Inflater holds native memory until it is ended, and a new one is
+ * otherwise allocated for every compressed log that is scanned.
+ *
+ * Concatenated gzip members are read one after the other, as one stream.
+ */
+public final class PooledGzipInputStream extends InflaterInputStream {
+
+    /**
+     * The maximum number of idle Inflaters kept in the pool.
+     */
+    static final int POOL_SIZE = 8;
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final int MAGIC = 0x8b1f;
+    private static final int DEFLATED = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int HEADER_SKIPPED_BYTES = 6;
+    private static final int TRAILER_SIZE = 8;
+    private static final int BYTE_BITS = 8;
+    private static final long INT_MASK = 0xffffffffL;
+
+    private static final Queue<Inflater> POOL = new ConcurrentLinkedQueue<Inflater>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final InputStream source;
+    private final CRC32 crc = new CRC32();
+    private boolean endOfStream = false;
+    private boolean closed = false;
+
+    /**
+     * Standard constructor, reads the header of the first member.
+     *
+     * @param in the compressed data, closed with this stream.
+     * @throws IOException if the header can't be read or is not a gzip header.
+     */
+    public PooledGzipInputStream(InputStream in) throws IOException {
+        super(in, borrow(), BUFFER_SIZE);
+        this.source = in;
+        try {
+            readHeader(in);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes an Inflater from the pool, or creates one if the pool is empty.
+     *
+     * @return the Inflater.
+     */
+    private static Inflater borrow() {
+        Inflater inflater = POOL.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        POOLED.decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * Puts an Inflater back into the pool, or ends it if the pool is full.
+     *
+     * @param inflater the Inflater.
+     */
+    private static void giveBack(Inflater inflater) {
+        inflater.reset();
+        if (POOLED.incrementAndGet() <= POOL_SIZE) {
+            POOL.offer(inflater);
+        } else {
+            POOLED.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    /**
+     * The number of idle Inflaters in the pool.
+     *
+     * @return the number of Inflaters.
+     */
+    static int getPooledCount() {
+        return POOLED.get();
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (!endOfStream) {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                crc.update(bytes, offset, read);
+                return read;
+            } else if (read == 0) {
+                return 0;
+            }
+            endOfStream = readTrailer();
+        }
+        return -1;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (endOfStream) {
+            return 0;
+        }
+        return super.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            endOfStream = true;
+            giveBack(inf);
+            source.close();
+        }
+    }
+
+    /**
+     * Reads a member header, see RFC 1952.
+     *
+     * @param stream where to read it from.
+     * @throws IOException if the header is broken.
+     */
+    private void readHeader(InputStream stream) throws IOException {
+        if (readShort(stream) != MAGIC) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (readByte(stream) != DEFLATED) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readByte(stream);
+        // Modification time, extra flags and operating system
+        skip(stream, HEADER_SKIPPED_BYTES);
+        if ((flags & FEXTRA) != 0) {
+            skip(stream, readShort(stream));
+        }
+        if ((flags & FNAME) != 0) {
+            skipString(stream);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipString(stream);
+        }
+        if ((flags & FHCRC) != 0) {
+            readShort(stream);
+        }
+        crc.reset();
+    }
+
+    /**
+     * Reads the trailer of the current member and the header of the next member, if there is one.
+     *
+     * @return true if the end of the stream has been reached.
+     * @throws IOException if the trailer doesn't match the data.
+     */
+    private boolean readTrailer() throws IOException {
+        // The inflater may have been given more than the member, the rest comes first
+        InputStream rest = in;
+        int remaining = inf.getRemaining();
+        if (remaining > 0) {
+            rest = new SequenceInputStream(new ByteArrayInputStream(buf, len - remaining, remaining),
+                    new FilterInputStream(in) {
+                        @Override
+                        public void close() {
+                        }
+                    });
+        }
+        if (readInt(rest) != crc.getValue() || readInt(rest) != (inf.getBytesWritten() & INT_MASK)) {
+            throw new ZipException("Corrupt gzip trailer");
+        }
+        if (remaining <= TRAILER_SIZE && in.available() <= 0) {
+            return true;
+        }
+        in = rest;
+        try {
+            readHeader(in);
+        } catch (IOException e) {
+            // Trailing garbage is ignored, like java.util.zip.GZIPInputStream does
+            return true;
+        }
+        inf.reset();
+        return false;
+    }
+
+    /**
+     * Reads an unsigned byte.
+     *
+     * @param stream the stream.
+     * @return the byte.
+     * @throws IOException at the end of the stream.
+     */
+    private static int readByte(InputStream stream) throws IOException {
+        int b = stream.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    /**
+     * Reads an unsigned little endian short.
+     *
+     * @param stream the stream.
+     * @return the short.
+     * @throws IOException at the end of the stream.
+     */
+    private static int readShort(InputStream stream) throws IOException {
+        return readByte(stream) | (readByte(stream) << BYTE_BITS);
+    }
+
+    /**
+     * Reads an unsigned little endian int.
+     *
+     * @param stream the stream.
+     * @return the int.
+     * @throws IOException at the end of the stream.
+     */
+    private static long readInt(InputStream stream) throws IOException {
+        return (readShort(stream) | ((long)readShort(stream) << (2 * BYTE_BITS))) & INT_MASK;
+    }
+
+    /**
+     * Skips bytes.
+     *
+     * @param stream the stream.
+     * @param count the number of bytes to skip.
+     * @throws IOException at the end of the stream.
+     */
+    private static void skip(InputStream stream, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readByte(stream);
+        }
+    }
+
+    /**
+     * Skips a zero terminated string.
+     *
+     * @param stream the stream.
+     * @throws IOException at the end of the stream.
+     */
+    private static void skipString(InputStream stream) throws IOException {
+        int b = readByte(stream);
+        while (b != 0) {
+            b = readByte(stream);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import hudson.model.Run;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the scanners read instead of the log of a build while it is being scanned, like only a part of the log, see
+ * {@link LogWindow}, or a decompressed copy of it, see {@link SpooledLog}.
+ *
+ * The input of a build is registered with {@link #attach(Run, ScanInput)} for the duration of the scan, and
+ * {@link LogLineSource#open(Run)} and {@link LogLineSource#openReader(Run)} read it instead of the log.
+ */
+public abstract class ScanInput implements Closeable {
+
+    private static final Map<Run, ScanInput> ACTIVE = new ConcurrentHashMap<Run, ScanInput>();
+
+    /**
+     * The lines of the input, from the first one. Each call returns a new source.
+     *
+     * @return the lines, to be closed by the caller.
+     * @throws IOException if the input can't be opened.
+     */
+    public abstract LogLineSource lines() throws IOException;
+
+    /**
+     * The characters of the input, from the first one. Each call returns a new reader.
+     *
+     * @return a reader, to be closed by the caller.
+     * @throws IOException if the input can't be opened.
+     */
+    public abstract Reader reader() throws IOException;
+
+    /**
+     * Tells if some part of the log is left out of the input.
+     *
+     * @return true if the log is only scanned partially.
+     */
+    public boolean isPartial() {
+        return false;
+    }
+
+    /**
+     * The line of the log that a line of the input is. An input that leaves out a part of the log numbers its lines
+     * as if the part wasn't there.
+     *
+     * @param line the 1-based number of the line in the input, or -1 if not known.
+     * @return the number of the line in the log, or -1 if it is not known.
+     */
+    public int toLogLine(int line) {
+        return line;
+    }
+
+    /**
+     * The plain file holding the whole input, for scanners that split it into chunks,
+     * see {@link ChunkedLogScanner}.
+     *
+     * @return the file, or null if the input isn't one plain file.
+     */
+    public File getFile() {
+        return null;
+    }
+
+    /**
+     * Releases what the input holds once the scan is done.
+     *
+     * @throws IOException if so.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * The input the build is being scanned from.
+     *
+     * @param build the build.
+     * @return the input, or null if the log is scanned as it is.
+     */
+    public static ScanInput get(Run build) {
+        return ACTIVE.get(build);
+    }
+
+    /**
+     * Makes the scans of the build read the input, until {@link #detach(Run)} is called.
+     *
+     * @param build the build.
+     * @param input the input.
+     */
+    public static void attach(Run build, ScanInput input) {
+        ACTIVE.put(build, input);
+    }
+
+    /**
+     * Makes the scans of the build read its log again.
+     *
+     * @param build the build.
+     */
+    public static void detach(Run build) {
+        ACTIVE.remove(build);
+    }
+}
@@ -0,0 +1,742 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled plan for scanning log lines for many single-line indications at once.
+ *
+ * The patterns of all indications are grouped into buckets, and each bucket is combined into one alternation
+ * that is matched against the line. Only when a bucket matches are its individual patterns evaluated, to find out
+ * which of the indications it was. Since almost all lines of a build log match none of the indications, this
+ * replaces one regex evaluation per indication and line with one per bucket and line.
+ *
+ * Patterns that contain a required literal, as found by {@link LiteralExtractor}, are not put in any bucket. Instead
+ * an {@link AhoCorasick} prefilter over all such literals is run on the line, and only the patterns whose literal
+ * occurs in it are evaluated.
+ *
+ * Indications with a trivial shape, see {@link PatternClassifier}, are evaluated with plain string operations
+ * instead of the regular expression.
+ *
+ * Indications quarantined for timing out too often, see {@link IndicationQuarantine}, are left out of the plan.
+ *
+ * A plan is immutable and can be shared between threads, the state of a scan is kept in a {@link Session}.
+ */
+public final class ScanPlan {
+
+    private static final Logger logger = Logger.getLogger(ScanPlan.class.getName());
+
+    /**
+     * The maximum number of patterns combined into one alternation.
+     * Small enough that a matching bucket is cheap to resolve, large enough to keep the number of buckets low.
+     */
+    static final int BUCKET_SIZE = 32;
+
+    /**
+     * Constructs that make a pattern unsafe to embed into a larger alternation: back references and named groups
+     * (group numbers and names change or clash), quoting that might swallow the closing parenthesis and the
+     * comments flag that might comment it out.
+     */
+    private static final Pattern NOT_COMBINABLE = Pattern.compile(
+            "\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\\\Q|\\(\\?[a-zA-Z]*x");
+
+    private final List<Entry> entries;
+    private final List<Bucket> buckets;
+    private final AhoCorasick prefilter;
+    private final int[][] literalEntries;
+    private final int prefilteredCount;
+
+    /**
+     * Private constructor, use {@link #compile(List)}.
+     *
+     * @param entries the entries of the plan.
+     * @param buckets the buckets of the plan.
+     * @param literals the distinct required literals, indexed by the literal id of the entries.
+     */
+    private ScanPlan(List<Entry> entries, List<Bucket> buckets, List<String> literals) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.buckets = Collections.unmodifiableList(buckets);
+        for (int b = 0; b < buckets.size(); b++) {
+            for (int index : buckets.get(b).members) {
+                entries.get(index).bucket = b;
+            }
+        }
+        List<List<Integer>> byLiteral = new ArrayList<List<Integer>>(literals.size());
+        for (int i = 0; i < literals.size(); i++) {
+            byLiteral.add(new ArrayList<Integer>());
+        }
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.literalId >= 0) {
+                byLiteral.get(entry.literalId).add(entry.index);
+                count++;
+            }
+        }
+        this.literalEntries = new int[literals.size()][];
+        for (int i = 0; i < literals.size(); i++) {
+            List<Integer> indexes = byLiteral.get(i);
+            literalEntries[i] = new int[indexes.size()];
+            for (int j = 0; j < indexes.size(); j++) {
+                literalEntries[i][j] = indexes.get(j);
+            }
+        }
+        this.prefilteredCount = count;
+        if (literals.isEmpty()) {
+            this.prefilter = null;
+        } else {
+            this.prefilter = AhoCorasick.build(literals);
+        }
+    }
+
+    /**
+     * Compiles a scan plan for all indications of the given causes that are not quarantined.
+     *
+     * @param causes the causes to scan for.
+     * @return the plan.
+     */
+    public static ScanPlan compile(List<FailureCause> causes) {
+        IndicationQuarantine quarantine = IndicationQuarantine.getInstance();
+        List<Entry> entries = new ArrayList<Entry>();
+        List<String> literals = new ArrayList<String>();
+        Map<String, Integer> literalIds = new HashMap<String, Integer>();
+        for (FailureCause cause : causes) {
+            for (Indication indication : cause.getIndications()) {
+                if (quarantine.isQuarantined(cause, indication)) {
+                    continue;
+                }
+                Pattern pattern = indication.getPattern();
+                String literal = getRequiredLiteral(indication, pattern);
+                int literalId = -1;
+                if (literal != null) {
+                    Integer id = literalIds.get(literal);
+                    if (id == null) {
+                        id = literals.size();
+                        literals.add(literal);
+                        literalIds.put(literal, id);
+                    }
+                    literalId = id;
+                }
+                entries.add(new Entry(entries.size(), cause, indication, pattern, literalId,
+                        getSpecializedMatcher(indication, pattern)));
+            }
+        }
+
+        List<Bucket> buckets = new ArrayList<Bucket>();
+        List<Entry> pending = new ArrayList<Entry>(BUCKET_SIZE);
+        for (Entry entry : entries) {
+            if (entry.literalId >= 0) {
+                continue;
+            }
+            if (isCombinable(entry.pattern)) {
+                pending.add(entry);
+                if (pending.size() == BUCKET_SIZE) {
+                    addCombined(buckets, pending);
+                    pending.clear();
+                }
+            } else {
+                buckets.add(new Bucket(new int[]{entry.index}, entry.pattern));
+            }
+        }
+        if (!pending.isEmpty()) {
+            addCombined(buckets, pending);
+        }
+        return new ScanPlan(entries, buckets, literals);
+    }
+
+    /**
+     * Gets the specialized matcher of the indication, if the pattern allows one.
+     *
+     * @param indication the indication.
+     * @param pattern the pattern of the indication.
+     * @return the thread safe matcher, or null if the regular expression is needed.
+     */
+    private static IndicationMatcher getSpecializedMatcher(Indication indication, Pattern pattern) {
+        if (indication instanceof BuildLogIndication) {
+            return ((BuildLogIndication)indication).getSpecializedMatcher();
+        }
+        return PatternClassifier.getSpecializedMatcher(pattern);
+    }
+
+    /**
+     * Gets the literal that every line matching the indication must contain.
+     *
+     * @param indication the indication.
+     * @param pattern the pattern of the indication.
+     * @return the literal, or null if there is none.
+     */
+    private static String getRequiredLiteral(Indication indication, Pattern pattern) {
+        if (indication instanceof BuildLogIndication) {
+            return ((BuildLogIndication)indication).getRequiredLiteral();
+        }
+        return LiteralExtractor.extract(pattern);
+    }
+
+    /**
+     * Checks if the pattern can be embedded into an alternation without changing its meaning.
+     *
+     * @param pattern the pattern.
+     * @return true if it can be combined with other patterns.
+     */
+    private static boolean isCombinable(Pattern pattern) {
+        return pattern.flags() == 0 && !NOT_COMBINABLE.matcher(pattern.pattern()).find();
+    }
+
+    /**
+     * Adds a bucket for the given entries, combining their patterns into one alternation.
+     * Falls back to one bucket per entry should the combined pattern for some reason not compile.
+     *
+     * @param buckets the list to add to.
+     * @param members the entries to put in the bucket.
+     */
+    private static void addCombined(List<Bucket> buckets, List<Entry> members) {
+        if (members.size() == 1) {
+            Entry entry = members.get(0);
+            buckets.add(new Bucket(new int[]{entry.index}, entry.pattern));
+            return;
+        }
+        int[] indexes = new int[members.size()];
+        StringBuilder combined = new StringBuilder();
+        for (int i = 0; i < members.size(); i++) {
+            Entry entry = members.get(i);
+            indexes[i] = entry.index;
+            if (i > 0) {
+                combined.append('|');
+            }
+            combined.append("(?:").append(entry.pattern.pattern()).append(')');
+        }
+        try {
+            buckets.add(new Bucket(indexes, Pattern.compile(combined.toString())));
+        } catch (PatternSyntaxException e) {
+            logger.fine("Could not combine patterns, scanning them one by one: " + e.getMessage());
+            for (Entry entry : members) {
+                buckets.add(new Bucket(new int[]{entry.index}, entry.pattern));
+            }
+        }
+    }
+
+    /**
+     * The number of indications in this plan.
+     *
+     * @return the number of indications.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * The number of indications that are only evaluated on lines containing their required literal.
+     *
+     * @return the number of prefiltered indications.
+     */
+    public int getPrefilteredCount() {
+        return prefilteredCount;
+    }
+
+    /**
+     * The number of regular expressions evaluated per line when nothing matches.
+     *
+     * @return the number of buckets.
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Starts a new scan using this plan.
+     *
+     * @param build the build being scanned, used in the found indications.
+     * @param currentFile the name of the file being scanned, used in the found indications.
+     * @return a new session.
+     */
+    public Session newSession(Run build, String currentFile) {
+        return new Session(build, currentFile);
+    }
+
+    /**
+     * Merges the results of sessions that scanned consecutive parts of the same file, as if the whole file had been
+     * scanned by one session. Line numbers are shifted by the number of lines of the preceding parts.
+     * A session that stopped before the end of its part ends the scan, like it would have for a single session;
+     * the results of the sessions after it are not used.
+     *
+     * @param sessions the sessions, in the order of the parts of the file they scanned.
+     * @return the found failure causes.
+     */
+    public List<FoundFailureCause> merge(List<Session> sessions) {
+        int[] lineOf = new int[entries.size()];
+        String[] textOf = new String[entries.size()];
+        List<Integer> order = new ArrayList<Integer>();
+        BitSet found = new BitSet(entries.size());
+        int lineOffset = 0;
+        for (int chunk = 0; chunk < sessions.size(); chunk++) {
+            Session session = sessions.get(chunk);
+            for (int i = 0; i < session.foundCount; i++) {
+                int index = session.foundOrder[i];
+                if (!found.get(index)) {
+                    found.set(index);
+                    lineOf[index] = session.foundLines[index] + lineOffset;
+                    textOf[index] = session.foundTexts[index];
+                    order.add(index);
+                }
+            }
+            if (!session.isEndReached()) {
+                break;
+            }
+            lineOffset += session.getLinesRead();
+        }
+        Session first = sessions.get(0);
+        return toFoundFailureCauses(first.build, first.currentFile, order, lineOf, textOf);
+    }
+
+    /**
+     * Reports to the {@link IndicationQuarantine} which indications timed out during a scan.
+     * An indication times out in the scan if it timed out in any of the sessions. Nothing is reported if any of the
+     * sessions was interrupted, since the scan then tells nothing about the indications.
+     *
+     * @param sessions the sessions of the scan.
+     */
+    public void recordTimeouts(List<Session> sessions) {
+        BitSet timedOut = new BitSet(entries.size());
+        for (Session session : sessions) {
+            if (session.interrupted) {
+                return;
+            }
+            timedOut.or(session.timedOut);
+        }
+        IndicationQuarantine quarantine = IndicationQuarantine.getInstance();
+        for (Entry entry : entries) {
+            quarantine.record(entry.cause, entry.indication, timedOut.get(entry.index));
+        }
+    }
+
+    /**
+     * Groups found entries per cause, keeping the order in which the causes were first found.
+     *
+     * @param build the build.
+     * @param currentFile the file name.
+     * @param order the indexes of the found entries, in the order they were found.
+     * @param lines the line numbers of the found entries, by index.
+     * @param texts the matching lines of the found entries, by index.
+     * @return the found failure causes.
+     */
+    private List<FoundFailureCause> toFoundFailureCauses(Run build, String currentFile, List<Integer> order,
+                                                         int[] lines, String[] texts) {
+        Map<FailureCause, List<FoundIndication>> result = new LinkedHashMap<FailureCause, List<FoundIndication>>();
+        for (int index : order) {
+            Entry entry = entries.get(index);
+            List<FoundIndication> indications = result.get(entry.cause);
+            if (indications == null) {
+                indications = new ArrayList<FoundIndication>();
+                result.put(entry.cause, indications);
+            }
+            indications.add(new FoundIndication(build, entry.pattern.pattern(), currentFile,
+                    texts[index], lines[index]));
+        }
+        List<FoundFailureCause> foundFailureCauses = new ArrayList<FoundFailureCause>(result.size());
+        for (Map.Entry<FailureCause, List<FoundIndication>> entry : result.entrySet()) {
+            foundFailureCauses.add(new FoundFailureCause(entry.getKey(), entry.getValue()));
+        }
+        return foundFailureCauses;
+    }
+
+    /**
+     * One indication of a cause together with its pattern.
+     */
+    private static final class Entry {
+        private final int index;
+        private final FailureCause cause;
+        private final Indication indication;
+        private final Pattern pattern;
+        private final int literalId;
+        private final IndicationMatcher specialized;
+        private int bucket = -1;
+
+        /**
+         * Standard constructor.
+         *
+         * @param index the index in the plan.
+         * @param cause the cause.
+         * @param indication the indication.
+         * @param pattern the pattern of the indication.
+         * @param literalId the id of the required literal of the pattern, or -1 if it has none.
+         * @param specialized the specialized matcher of the pattern, or null if it has none.
+         */
+        Entry(int index, FailureCause cause, Indication indication, Pattern pattern, int literalId,
+              IndicationMatcher specialized) {
+            this.index = index;
+            this.cause = cause;
+            this.indication = indication;
+            this.pattern = pattern;
+            this.literalId = literalId;
+            this.specialized = specialized;
+        }
+    }
+
+    /**
+     * A group of entries that are matched as one.
+     */
+    private static final class Bucket {
+        private final int[] members;
+        private final Pattern gate;
+
+        /**
+         * Standard constructor.
+         *
+         * @param members the indexes of the entries in this bucket.
+         * @param gate the pattern matching a line if any of the entries does.
+         */
+        Bucket(int[] members, Pattern gate) {
+            this.members = members;
+            this.gate = gate;
+        }
+    }
+
+    /**
+     * The state of one scan of a log using the plan.
+     * Each indication is reported at its first occurrence only and once all indications have been found the
+     * session is {@link #isComplete()} and the rest of the log does not need to be read.
+     *
+     * Not thread safe, one session should be used by one thread. Only {@link #abandon()} may be called from
+     * another thread.
+     */
+    public final class Session {
+        private final Run build;
+        private final String currentFile;
+        private ScanWatchdog.Deadline deadline = null;
+        private final BitSet found = new BitSet(entries.size());
+        private final BitSet timedOut = new BitSet(entries.size());
+        private final int[] foundOrder = new int[entries.size()];
+        private final int[] foundLines = new int[entries.size()];
+        private final String[] foundTexts = new String[entries.size()];
+        private int foundCount = 0;
+        private int linesRead = 0;
+        private boolean endReached = false;
+        private volatile boolean abandoned = false;
+        private boolean interrupted = false;
+        private final BudgetedCharSequence budgeted = new BudgetedCharSequence("", null);
+        private final int[] remainingInBucket = new int[buckets.size()];
+        private final BitSet hits = new BitSet();
+        private final Matcher[] gateMatchers = new Matcher[buckets.size()];
+        private final IndicationMatcher[] entryMatchers = new IndicationMatcher[entries.size()];
+        private int remaining = entries.size();
+        private int remainingPrefiltered = prefilteredCount;
+
+        /**
+         * Standard constructor.
+         *
+         * @param build the build.
+         * @param currentFile the file name.
+         */
+        private Session(Run build, String currentFile) {
+            this.build = build;
+            this.currentFile = currentFile;
+            for (int i = 0; i < buckets.size(); i++) {
+                remainingInBucket[i] = buckets.get(i).members.length;
+            }
+        }
+
+        /**
+         * Matches one line against all indications not yet found.
+         *
+         * @param line the line.
+         * @param lineNumber the 1-based number of the line in the file.
+         * @return true if the session is complete after this line.
+         */
+        public boolean matchLine(String line, int lineNumber) {
+            return matchLine(null, line, lineNumber);
+        }
+
+        /**
+         * Matches one line read from a source against all indications not yet found.
+         * The line is only turned into a String if it matches some indication.
+         *
+         * @param source the source the line was read from, or null if the line is a String.
+         * @param line the line, as returned by {@link LogLineSource#readLine()}.
+         * @param lineNumber the 1-based number of the line in the file.
+         * @return true if the session is complete after this line.
+         */
+        public boolean matchLine(LogLineSource source, CharSequence line, int lineNumber) {
+            linesRead = lineNumber;
+            CharSequence input = budgeted.reset(line);
+            if (remainingPrefiltered > 0) {
+                hits.clear();
+                if (prefilter.search(line, hits)) {
+                    for (int id = hits.nextSetBit(0); id >= 0; id = hits.nextSetBit(id + 1)) {
+                        for (int index : literalEntries[id]) {
+                            matchEntry(index, input, source, line, lineNumber);
+                        }
+                    }
+                }
+            }
+            for (int b = 0; b < gateMatchers.length && remaining > 0; b++) {
+                if (remainingInBucket[b] == 0) {
+                    continue;
+                }
+                Bucket bucket = buckets.get(b);
+                if (bucket.members.length == 1) {
+                    matchEntry(bucket.members[0], input, source, line, lineNumber);
+                    continue;
+                }
+                boolean gateMatched;
+                try {
+                    gateMatched = gateMatcher(b, input).matches();
+                } catch (RuntimeException e) {
+                    if (BudgetedCharSequence.isInterrupt(e)) {
+                        interrupted = true;
+                        return isComplete();
+                    } else if (!BudgetedCharSequence.isTimeout(e)) {
+                        // This is not a timeout exception
+                        throw e;
+                    }
+                    // Some pattern in the bucket is too expensive for this line, find out which one
+                    gateMatched = true;
+                }
+                touch();
+                if (gateMatched) {
+                    for (int index : bucket.members) {
+                        matchEntry(index, input, source, line, lineNumber);
+                    }
+                }
+            }
+            return isComplete();
+        }
+
+        /**
+         * Matches one entry against the line, recording it if it is found.
+         *
+         * @param index the index of the entry.
+         * @param input the budgeted line.
+         * @param source the source of the line, or null.
+         * @param line the line.
+         * @param lineNumber the line number.
+         */
+        private void matchEntry(int index, CharSequence input, LogLineSource source, CharSequence line,
+                                int lineNumber) {
+            if (found.get(index) || interrupted) {
+                return;
+            }
+            Entry entry = entries.get(index);
+            try {
+                CharSequence target = input;
+                if (entry.specialized != null) {
+                    // Plain string operations can't run away, no need to check the deadline
+                    target = line;
+                }
+                if (entryMatcher(index).matches(target)) {
+                    found.set(index);
+                    remaining--;
+                    if (entry.bucket >= 0) {
+                        remainingInBucket[entry.bucket]--;
+                    } else {
+                        remainingPrefiltered--;
+                    }
+                    foundOrder[foundCount++] = index;
+                    foundLines[index] = lineNumber;
+                    if (source == null) {
+                        foundTexts[index] = ConsoleNote.removeNotes(line.toString());
+                    } else {
+                        foundTexts[index] = source.getMatchingText();
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (BudgetedCharSequence.isInterrupt(e)) {
+                    interrupted = true;
+                } else if (BudgetedCharSequence.isTimeout(e)) {
+                    timedOut.set(index);
+                    logger.warning("Timeout scanning for indication '" + entry.indication.toString() + "'"
+                            + " for file " + currentFile + ":" + lineNumber);
+                } else {
+                    // This is not a timeout exception
+                    throw e;
+                }
+            }
+            touch();
+        }
+
+        /**
+         * Gets the reusable matcher of a bucket, reset to the given input.
+         *
+         * @param bucket the bucket index.
+         * @param input the input.
+         * @return the matcher.
+         */
+        private Matcher gateMatcher(int bucket, CharSequence input) {
+            Matcher matcher = gateMatchers[bucket];
+            if (matcher == null) {
+                matcher = buckets.get(bucket).gate.matcher(input);
+                gateMatchers[bucket] = matcher;
+                return matcher;
+            }
+            return matcher.reset(input);
+        }
+
+        /**
+         * Gets the matcher of an entry, creating a regular expression matcher for this session if needed.
+         *
+         * @param index the entry index.
+         * @return the matcher.
+         */
+        private IndicationMatcher entryMatcher(int index) {
+            IndicationMatcher matcher = entryMatchers[index];
+            if (matcher == null) {
+                Entry entry = entries.get(index);
+                if (entry.specialized != null) {
+                    matcher = entry.specialized;
+                } else {
+                    matcher = new RegexIndicationMatcher(entry.pattern);
+                }
+                entryMatchers[index] = matcher;
+            }
+            return matcher;
+        }
+
+        /**
+         * Reports progress to the deadline, if any.
+         */
+        private void touch() {
+            if (deadline != null) {
+                deadline.touch();
+            }
+        }
+
+        /**
+         * The plan this session scans with.
+         *
+         * @return the plan.
+         */
+        public ScanPlan getPlan() {
+            return ScanPlan.this;
+        }
+
+        /**
+         * Sets the deadline touched after each evaluated regular expression. Expressions give up when it expires.
+         *
+         * @param deadline the deadline, or null for no timeout.
+         */
+        public void setDeadline(ScanWatchdog.Deadline deadline) {
+            this.deadline = deadline;
+            budgeted.setDeadline(deadline);
+        }
+
+        /**
+         * The number of lines matched so far, i.e. the number of the last line passed to
+         * {@link #matchLine(String, int)}.
+         *
+         * @return the number of lines read.
+         */
+        public int getLinesRead() {
+            return linesRead;
+        }
+
+        /**
+         * Marks that the whole input has been matched.
+         */
+        public void markEndReached() {
+            endReached = true;
+        }
+
+        /**
+         * Marks that the scan stopped because the thread was interrupted, see {@link #recordTimeouts(List)}.
+         */
+        public void markInterrupted() {
+            interrupted = true;
+        }
+
+        /**
+         * Tells if the scan stopped because the thread was interrupted, either while evaluating an indication or
+         * between lines, see {@link #markInterrupted()}.
+         *
+         * @return true if interrupted.
+         */
+        public boolean isInterrupted() {
+            return interrupted;
+        }
+
+        /**
+         * Tells if the whole input has been matched, as opposed to the scan stopping early.
+         *
+         * @return true if the end was reached.
+         */
+        public boolean isEndReached() {
+            return endReached;
+        }
+
+        /**
+         * Asks the thread scanning with this session to stop, because its result is not needed anymore.
+         */
+        public void abandon() {
+            abandoned = true;
+        }
+
+        /**
+         * Tells if {@link #abandon()} has been called.
+         *
+         * @return true if the scan should stop.
+         */
+        public boolean isAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * Tells if all indications of the plan have been found.
+         *
+         * @return true if there is nothing more to look for.
+         */
+        public boolean isComplete() {
+            return remaining == 0;
+        }
+
+        /**
+         * The causes found so far, in the order they were first found, each with its indications in the order
+         * they were found.
+         *
+         * @return the found failure causes.
+         */
+        public List<FoundFailureCause> getFoundFailureCauses() {
+            List<Integer> order = new ArrayList<Integer>(foundCount);
+            for (int i = 0; i < foundCount; i++) {
+                order.add(foundOrder[i]);
+            }
+            return toFoundFailureCauses(build, currentFile, order, foundLines, foundTexts);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import hudson.model.Run;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The found causes of recent scans, reused for builds whose log is identical to the log of a scanned build, like
+ * retries and reruns of flaky jobs.
+ *
+ * A result is keyed by a hash of the content of the log and the serial of the {@link ScanSnapshot} it was scanned
+ * with, see {@link #key(File, ScanSnapshot)}. Any change to the causes or to the quarantined indications publishes a
+ * new snapshot, so it makes all earlier results miss. The cache holds a bounded
+ * number of results and evicts the least recently used one first.
+ *
+ * The hash covers the whole log and not only its tail, since a result holds the indications found anywhere in the
+ * log, with their lines. Hashing costs one more read of the log on every miss, so logs larger than
+ * {@link #MAX_LOG_SIZE} are not looked up at all, see {@link #isCacheable(File)}. Logs that differ in build numbers,
+ * timestamps or paths never hit, so the cache pays off for jobs that print none of those, like flaky test retries.
+ */
+public final class ScanResultCache {
+
+    /**
+     * The size of the largest log that is hashed to look up an earlier result, in bytes.
+     */
+    public static final long MAX_LOG_SIZE = 4L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int HEX_RADIX = 16;
+    private static final int BYTE_MASK = 0xff;
+    private static final int PERCENT = 100;
+
+    private static final ScanResultCache INSTANCE = new ScanResultCache();
+
+    private final LinkedHashMap<String, List<FoundFailureCause>> results =
+            new LinkedHashMap<String, List<FoundFailureCause>>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Package private for tests, use {@link #getInstance()}.
+     */
+    ScanResultCache() {
+    }
+
+    /**
+     * The cache used by all scans.
+     *
+     * @return the cache.
+     */
+    public static ScanResultCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Tells if the log is small enough to be hashed, see {@link #MAX_LOG_SIZE}.
+     *
+     * @param log the log file.
+     * @return true if results for the log are looked up and kept.
+     */
+    public static boolean isCacheable(File log) {
+        return log.length() <= MAX_LOG_SIZE;
+    }
+
+    /**
+     * The key of the result of scanning a log with a snapshot: a hash of the bytes of the log, followed by the
+     * serial of the snapshot, see {@link ScanSnapshot#getSerial()}.
+     *
+     * @param log the log file.
+     * @param snapshot the snapshot the log is scanned with.
+     * @return the key.
+     * @throws IOException if the log can't be read.
+     */
+    public static String key(File log, ScanSnapshot snapshot) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(log)) {
+            int read = in.read(buffer);
+            while (read >= 0) {
+                digest.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        StringBuilder key = hex(digest.digest(), new StringBuilder());
+        return key.append(':').append(snapshot.getSerial()).toString();
+    }
+
+    /**
+     * Creates the digest used for the keys.
+     *
+     * @return the digest.
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Appends bytes as hexadecimal digits.
+     *
+     * @param bytes the bytes.
+     * @param builder where to append them.
+     * @return the builder.
+     */
+    private static StringBuilder hex(byte[] bytes, StringBuilder builder) {
+        for (byte b : bytes) {
+            int value = b & BYTE_MASK;
+            builder.append(Character.forDigit(value / HEX_RADIX, HEX_RADIX));
+            builder.append(Character.forDigit(value % HEX_RADIX, HEX_RADIX));
+        }
+        return builder;
+    }
+
+    /**
+     * Looks up the result of an earlier scan of an identical log.
+     *
+     * @param key the key, see {@link #key(File, ScanSnapshot)}.
+     * @param build the build to give the result to.
+     * @return a copy of the found causes for the build, or null if there is no result for the key.
+     */
+    public synchronized List<FoundFailureCause> get(String key, Run build) {
+        List<FoundFailureCause> found = results.get(key);
+        if (found == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return rebase(found, build);
+    }
+
+    /**
+     * Keeps the result of a scan, evicting the least recently used results beyond the capacity.
+     *
+     * @param key the key, see {@link #key(File, ScanSnapshot)}.
+     * @param found the found causes, copied.
+     * @param capacity the maximum number of results to keep.
+     */
+    public synchronized void put(String key, List<FoundFailureCause> found, int capacity) {
+        results.put(key, rebase(found, null));
+        trim(capacity);
+    }
+
+    /**
+     * Evicts the least recently used results beyond the capacity.
+     *
+     * @param capacity the maximum number of results to keep.
+     */
+    private void trim(int capacity) {
+        while (results.size() > Math.max(capacity, 0)) {
+            results.remove(results.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Copies found causes for a build.
+     *
+     * @param found the found causes.
+     * @param build the build, or null.
+     * @return the copies.
+     */
+    private static List<FoundFailureCause> rebase(List<FoundFailureCause> found, Run build) {
+        List<FoundFailureCause> copies = new ArrayList<FoundFailureCause>(found.size());
+        for (FoundFailureCause cause : found) {
+            copies.add(cause.rebase(build));
+        }
+        return copies;
+    }
+
+    /**
+     * The number of results in the cache.
+     *
+     * @return the number of results.
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * The number of scans that reused an earlier result.
+     *
+     * @return the number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * The number of scans that found no earlier result.
+     *
+     * @return the number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * The share of the lookups that reused an earlier result.
+     *
+     * @return the hit rate in percent, 0 if there has been no lookup.
+     */
+    public synchronized int getHitRate() {
+        long lookups = hits + misses;
+        if (lookups == 0) {
+            return 0;
+        }
+        return (int)(hits * PERCENT / lookups);
+    }
+
+    /**
+     * Removes all results and resets the statistics.
+     */
+    public synchronized void clear() {
+        results.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
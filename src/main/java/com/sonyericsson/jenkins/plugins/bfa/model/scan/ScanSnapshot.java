@@ -0,0 +1,310 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Everything a scan needs from the knowledge base, compiled ahead of the scans.
+ *
+ * The causes are split by the engine that scans them: causes with single-line indications only are scanned
+ * through one {@link ScanPlan}, with its buckets and prefilter tables, and the multi-line indications of the other
+ * causes through a {@link MultilineScanner}. Compiling a snapshot also compiles the pattern of every indication,
+ * so that scans using the snapshot never compile a regular expression. Knowledge bases compile a new snapshot
+ * whenever their causes change, see {@link com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase#getScanSnapshot()},
+ * preferably outside of the scans, and publish it by replacing a single reference.
+ *
+ * A snapshot is immutable and can be shared between threads. A scan takes one snapshot when it starts and uses it
+ * until it is done, so it sees one version of the knowledge base even if it changes meanwhile.
+ *
+ * Quarantined indications, see {@link IndicationQuarantine}, are left out. A snapshot compiled before an indication
+ * was quarantined or released is no longer {@link #isCurrent()} and should be compiled again.
+ *
+ * Every snapshot has a {@link #getSerial()} of its own, so that results of scans can be kept for as long as the
+ * snapshot they were found with is used, see {@link ScanResultCache}.
+ *
+ * Incremental rescans scan for a few causes only, see {@link #filter(Collection)}. The filtered snapshots are kept
+ * with the snapshot they come from, so that rescanning many builds for the same changes compiles them once.
+ */
+public final class ScanSnapshot {
+
+    /**
+     * The number of filtered snapshots kept, see {@link #filter(Collection)}.
+     */
+    static final int FILTERED_CAPACITY = 8;
+
+    private static final AtomicLong SERIALS = new AtomicLong();
+
+    private final long serial = SERIALS.incrementAndGet();
+    private final List<FailureCause> causes;
+    private final Long revision;
+    private final long quarantineGeneration;
+    private final List<FailureCause> singleLineCauses;
+    private final List<FailureCause> notOnlySingleLineCauses;
+    private final ScanPlan singleLinePlan;
+    private final List<Indication> multilineIndications;
+    private final Map<Set<String>, ScanSnapshot> filtered = new LinkedHashMap<Set<String>, ScanSnapshot>();
+
+    /**
+     * Private constructor, use {@link #compile(Collection, Long)}.
+     *
+     * @param causes all causes.
+     * @param revision the revision of the knowledge base the causes were read in.
+     * @param quarantineGeneration the generation of the quarantine when compiling.
+     * @param singleLineCauses the causes with single-line indications only.
+     * @param notOnlySingleLineCauses the other causes.
+     * @param multilineIndications the multi-line indications of the other causes that are not quarantined.
+     */
+    private ScanSnapshot(List<FailureCause> causes, Long revision, long quarantineGeneration,
+                         List<FailureCause> singleLineCauses, List<FailureCause> notOnlySingleLineCauses,
+                         List<Indication> multilineIndications) {
+        this.causes = Collections.unmodifiableList(causes);
+        this.revision = revision;
+        this.quarantineGeneration = quarantineGeneration;
+        this.singleLineCauses = Collections.unmodifiableList(singleLineCauses);
+        this.notOnlySingleLineCauses = Collections.unmodifiableList(notOnlySingleLineCauses);
+        this.multilineIndications = Collections.unmodifiableList(multilineIndications);
+        this.singleLinePlan = ScanPlan.compile(singleLineCauses);
+    }
+
+    /**
+     * Compiles a snapshot of the given causes.
+     *
+     * @param causes the causes to scan for.
+     * @param revision the revision of the knowledge base the causes were read in, or null if not known.
+     * @return the snapshot.
+     */
+    public static ScanSnapshot compile(Collection<FailureCause> causes, Long revision) {
+        IndicationQuarantine quarantine = IndicationQuarantine.getInstance();
+        // Read before the quarantine is consulted, so that a change meanwhile makes the snapshot outdated
+        long generation = quarantine.getGeneration();
+        List<FailureCause> all = new ArrayList<FailureCause>(causes);
+        List<FailureCause> singleLine = new ArrayList<FailureCause>();
+        List<FailureCause> notOnlySingleLine = new ArrayList<FailureCause>();
+        List<Indication> multiline = new ArrayList<Indication>();
+        for (FailureCause cause : all) {
+            boolean atLeastOneMultiline = false;
+            for (Indication indication : cause.getIndications()) {
+                if (indication instanceof MultilineBuildLogIndication) {
+                    atLeastOneMultiline = true;
+                    break;
+                }
+            }
+            if (!atLeastOneMultiline) {
+                singleLine.add(cause);
+                continue;
+            }
+            notOnlySingleLine.add(cause);
+            for (Indication indication : cause.getIndications()) {
+                precompile(indication);
+                if (indication instanceof MultilineBuildLogIndication
+                        && !quarantine.isQuarantined(cause, indication)) {
+                    multiline.add(indication);
+                }
+            }
+        }
+        return new ScanSnapshot(all, revision, generation, singleLine, notOnlySingleLine, multiline);
+    }
+
+    /**
+     * Compiles what the scanners lazily derive from the pattern of an indication that is not in the
+     * {@link ScanPlan}, which compiles the indications it holds itself.
+     *
+     * @param indication the indication.
+     */
+    private static void precompile(Indication indication) {
+        indication.getPattern();
+        if (indication instanceof MultilineBuildLogIndication) {
+            ((MultilineBuildLogIndication)indication).getExpressionSpan();
+        } else if (indication instanceof BuildLogIndication) {
+            ((BuildLogIndication)indication).getRequiredLiteral();
+            ((BuildLogIndication)indication).getSpecializedMatcher();
+        }
+    }
+
+    /**
+     * Compiles this snapshot again from the same causes, to take changes in the {@link IndicationQuarantine}
+     * into account. The patterns of the indications are already compiled, only the plans are rebuilt.
+     *
+     * @return the new snapshot.
+     */
+    public ScanSnapshot recompile() {
+        return compile(causes, revision);
+    }
+
+    /**
+     * A snapshot of the causes of this snapshot with the given ids only, for the same revision. The patterns of the
+     * indications are already compiled, only the plans are built, and only the first time the same ids are asked
+     * for. At most {@link #FILTERED_CAPACITY} filtered snapshots are kept, the least recently used is dropped first.
+     *
+     * @param ids the ids of the causes to keep.
+     * @return the filtered snapshot, this snapshot if it has no other causes.
+     */
+    public ScanSnapshot filter(Collection<String> ids) {
+        Set<String> key = new HashSet<String>(ids);
+        synchronized (filtered) {
+            ScanSnapshot snapshot = filtered.remove(key);
+            if (snapshot == null) {
+                List<FailureCause> kept = keep(causes, key);
+                if (kept.size() == causes.size()) {
+                    return this;
+                }
+                snapshot = new ScanSnapshot(kept, revision, quarantineGeneration, keep(singleLineCauses, key),
+                        keep(notOnlySingleLineCauses, key), keepIndications(kept));
+            }
+            filtered.put(key, snapshot);
+            while (filtered.size() > FILTERED_CAPACITY) {
+                filtered.remove(filtered.keySet().iterator().next());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * The causes with the given ids.
+     *
+     * @param from the causes.
+     * @param ids the ids.
+     * @return the causes, in the same order.
+     */
+    private static List<FailureCause> keep(List<FailureCause> from, Set<String> ids) {
+        List<FailureCause> kept = new ArrayList<FailureCause>();
+        for (FailureCause cause : from) {
+            if (ids.contains(cause.getId())) {
+                kept.add(cause);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * The multi-line indications of this snapshot that belong to the given causes.
+     *
+     * @param kept the causes.
+     * @return the indications, in the order of their causes.
+     */
+    private List<Indication> keepIndications(List<FailureCause> kept) {
+        Set<Indication> all = Collections.newSetFromMap(new IdentityHashMap<Indication, Boolean>());
+        all.addAll(multilineIndications);
+        List<Indication> indications = new ArrayList<Indication>();
+        for (FailureCause cause : kept) {
+            for (Indication indication : cause.getIndications()) {
+                if (all.contains(indication)) {
+                    indications.add(indication);
+                }
+            }
+        }
+        return indications;
+    }
+
+    /**
+     * Tells if the quarantined indications are still the ones left out of this snapshot.
+     *
+     * @return true if the snapshot can be used, false if it should be compiled again.
+     */
+    public boolean isCurrent() {
+        return quarantineGeneration == IndicationQuarantine.getInstance().getGeneration();
+    }
+
+    /**
+     * A number that no other snapshot compiled since the start has, filtered ones included. A snapshot is compiled
+     * anew whenever the causes or the quarantined indications change, so scans with the same serial scan for the
+     * same indications.
+     *
+     * @return the serial.
+     */
+    public long getSerial() {
+        return serial;
+    }
+
+    /**
+     * All causes of the snapshot.
+     *
+     * @return the causes.
+     */
+    public List<FailureCause> getCauses() {
+        return causes;
+    }
+
+    /**
+     * The revision of the knowledge base the causes were read in, see
+     * {@link com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase#getRevision()}.
+     *
+     * @return the revision, or null if it is not known.
+     */
+    public Long getRevision() {
+        return revision;
+    }
+
+    /**
+     * The causes that only have single-line indications.
+     *
+     * @return the causes.
+     */
+    public List<FailureCause> getSingleLineCauses() {
+        return singleLineCauses;
+    }
+
+    /**
+     * The plan scanning for the indications of the {@link #getSingleLineCauses()}.
+     *
+     * @return the plan.
+     */
+    public ScanPlan getSingleLinePlan() {
+        return singleLinePlan;
+    }
+
+    /**
+     * The causes with at least one multi-line indication.
+     *
+     * @return the causes.
+     */
+    public List<FailureCause> getNotOnlySingleLineCauses() {
+        return notOnlySingleLineCauses;
+    }
+
+    /**
+     * The multi-line indications of the {@link #getNotOnlySingleLineCauses()} that are not quarantined, in the
+     * order of their causes.
+     *
+     * @return the indications.
+     */
+    public List<Indication> getMultilineIndications() {
+        return multilineIndications;
+    }
+}
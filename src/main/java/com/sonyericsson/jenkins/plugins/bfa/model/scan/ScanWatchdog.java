@@ -0,0 +1,204 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the timeouts of all running scans with one scheduled task, instead of one timer thread per scan.
+ *
+ * A scan gets a {@link Deadline} and touches it every time it makes progress, typically after every evaluated
+ * regular expression. When a deadline hasn't been touched within its timeout, the watchdog marks it as expired, and
+ * the {@link BudgetedCharSequence} the scan evaluates its expressions against makes the running expression give up.
+ * The deadline is no longer expired once it is touched again. Nothing is interrupted, so the scanning threads can
+ * safely do interruptible I/O.
+ */
+public final class ScanWatchdog {
+
+    /**
+     * How often the deadlines are checked, which is also how late a timeout may be noticed.
+     */
+    private static final long TICK_MILLIS = 100;
+
+    private static final ScanWatchdog INSTANCE = new ScanWatchdog();
+
+    private final Set<Deadline> deadlines = Collections.newSetFromMap(new ConcurrentHashMap<Deadline, Boolean>());
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * Use {@link #getInstance()}.
+     */
+    private ScanWatchdog() {
+    }
+
+    /**
+     * The watchdog shared by all scans.
+     *
+     * @return the watchdog.
+     */
+    public static ScanWatchdog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts watching a scan. The returned deadline must be closed when the scan is done.
+     *
+     * @param timeout the time in milliseconds the scan may go without touching the deadline.
+     * @return the deadline of the scan.
+     */
+    public Deadline watch(long timeout) {
+        Deadline deadline = new Deadline(this, TimeUnit.MILLISECONDS.toNanos(timeout));
+        deadlines.add(deadline);
+        start();
+        return deadline;
+    }
+
+    /**
+     * Starts the scheduled check, the first time a scan is watched.
+     */
+    private synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "BFA-scan-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check(System.nanoTime());
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks all deadlines.
+     *
+     * @param now the current {@link System#nanoTime()}.
+     */
+    void check(long now) {
+        for (Deadline deadline : deadlines) {
+            deadline.check(now);
+        }
+    }
+
+    /**
+     * The number of scans being watched.
+     *
+     * @return the number of open deadlines.
+     */
+    int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * The deadline of one scan.
+     *
+     * Only the scanning thread may touch the deadline, the watchdog only reads the number of touches. The deadline
+     * expires for a given number of touches, so a touch racing with the watchdog never leaves it expired.
+     */
+    public static final class Deadline implements Closeable {
+        private final ScanWatchdog watchdog;
+        private final long timeout;
+        private final AtomicLong touches = new AtomicLong();
+        private volatile long expiredAt = -1;
+        // Only used by the watchdog thread
+        private long seenTouches = 0;
+        private long lastProgress;
+
+        /**
+         * Standard constructor.
+         *
+         * @param watchdog the watchdog watching this deadline.
+         * @param timeout the timeout in nanoseconds.
+         */
+        private Deadline(ScanWatchdog watchdog, long timeout) {
+            this.watchdog = watchdog;
+            this.timeout = timeout;
+            this.lastProgress = System.nanoTime();
+        }
+
+        /**
+         * Reports progress, restarting the countdown to the timeout.
+         */
+        public void touch() {
+            // Single writer, no need for an atomic increment
+            touches.lazySet(touches.get() + 1);
+        }
+
+        /**
+         * The number of times the deadline has been touched.
+         *
+         * @return the number of touches.
+         */
+        long getTouches() {
+            return touches.get();
+        }
+
+        /**
+         * Tells if the scan has gone longer than the timeout without touching the deadline.
+         *
+         * @return true if the deadline has expired.
+         */
+        public boolean isExpired() {
+            return expiredAt == touches.get();
+        }
+
+        /**
+         * Checks if the deadline has expired.
+         *
+         * @param now the current {@link System#nanoTime()}.
+         */
+        void check(long now) {
+            long current = touches.get();
+            if (current != seenTouches) {
+                seenTouches = current;
+                lastProgress = now;
+            } else if (now - lastProgress >= timeout) {
+                expiredAt = current;
+            }
+        }
+
+        /**
+         * Stops watching the scan.
+         */
+        @Override
+        public void close() {
+            watchdog.deadlines.remove(this);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The part of a log that the multi-line patterns are evaluated against, kept in a circular char buffer.
+ *
+ * Characters are appended at the end and discarded from the start without moving the others, and the patterns see
+ * the buffered characters through a {@link CharSequence} view, so sliding the window over the log doesn't copy it.
+ * Positions are counted in chars from the start of the log.
+ */
+public final class SearchWindow {
+
+    private final char[] buffer;
+    private final int mask;
+    private final int capacity;
+    private final View view = new View();
+    private long start = 0;
+    private long end = 0;
+
+    /**
+     * Standard constructor.
+     *
+     * @param capacity the maximum number of chars in the window.
+     */
+    public SearchWindow(int capacity) {
+        this.capacity = capacity;
+        int size = Integer.highestOneBit(Math.max(1, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new char[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * The maximum number of chars in the window.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The position of the first char of the window.
+     *
+     * @return the position in the log.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * The position after the last char of the window.
+     *
+     * @return the position in the log.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * The number of chars in the window.
+     *
+     * @return the length.
+     */
+    public int length() {
+        return (int)(end - start);
+    }
+
+    /**
+     * Reads chars from the reader until the window is full or the reader ends, the way a single
+     * {@link Reader#read(char[], int, int)} would for the old window buffer.
+     *
+     * @param reader the reader.
+     * @return the number of chars read, or -1 if the reader has ended.
+     * @throws IOException if the reader fails.
+     */
+    public int fill(Reader reader) throws IOException {
+        int total = 0;
+        int free = capacity - length();
+        while (free > 0) {
+            int offset = (int)(end & mask);
+            // The free space may wrap around the end of the buffer, then it takes two reads
+            int wanted = Math.min(free, buffer.length - offset);
+            int read = reader.read(buffer, offset, wanted);
+            if (read < 0) {
+                if (total == 0) {
+                    return -1;
+                }
+                break;
+            }
+            end += read;
+            total += read;
+            free -= read;
+            if (read < wanted) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Discards chars from the start of the window so that at most the given number of chars is kept.
+     *
+     * @param keep the number of chars to keep.
+     */
+    public void keepLast(int keep) {
+        if (length() > keep) {
+            start = end - keep;
+        }
+    }
+
+    /**
+     * A view of the window from the given position to its end. The view is only valid until the window changes,
+     * and the same view object is returned by every call.
+     *
+     * @param from the position in the log of the first char of the view.
+     * @return the view.
+     */
+    public CharSequence from(long from) {
+        view.offset = Math.max(start, Math.min(from, end));
+        view.length = (int)(end - view.offset);
+        return view;
+    }
+
+    @Override
+    public String toString() {
+        return from(start).toString();
+    }
+
+    /**
+     * A view of a part of the window.
+     */
+    private final class View implements CharSequence {
+        private long offset;
+        private int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return buffer[(int)((offset + index) & mask)];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException(from + "-" + to);
+            }
+            return copy(offset + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return copy(offset, length);
+        }
+
+        /**
+         * Copies a part of the buffer.
+         *
+         * @param position the position in the log of the first char.
+         * @param count the number of chars.
+         * @return the chars.
+         */
+        private String copy(long position, int count) {
+            char[] chars = new char[count];
+            int first = (int)(position & mask);
+            int head = Math.min(count, buffer.length - first);
+            System.arraycopy(buffer, first, chars, 0, head);
+            System.arraycopy(buffer, 0, chars, head, count - head);
+            return new String(chars);
+        }
+    }
+}
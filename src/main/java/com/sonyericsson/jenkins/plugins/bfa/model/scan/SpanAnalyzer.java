@@ -0,0 +1,409 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+/**
+ * Finds the maximum number of characters a match of a regular expression can span.
+ *
+ * Like {@link LiteralExtractor} the analysis is conservative: anything that can repeat without bound, back references
+ * and constructs it does not understand make the span {@link #UNBOUNDED}. Characters that may be supplementary code
+ * points count as two chars, and lookarounds count as if they were part of the match, since the matcher needs to see
+ * the text they look at.
+ */
+public final class SpanAnalyzer {
+
+    /**
+     * The span of expressions whose matches can be of any length.
+     */
+    public static final int UNBOUNDED = -1;
+
+    /**
+     * Spans above this are considered unbounded, this also keeps the arithmetic from overflowing.
+     */
+    private static final int MAX_SPAN = 1 << 20;
+
+    /**
+     * Utility class.
+     */
+    private SpanAnalyzer() {
+    }
+
+    /**
+     * Finds the maximum number of chars a match of the regular expression can span.
+     *
+     * @param regex the regular expression.
+     * @return the maximum span, or {@link #UNBOUNDED}.
+     */
+    public static int maxSpan(String regex) {
+        Parser parser = new Parser(regex);
+        try {
+            int span = parser.alternation();
+            if (parser.pos < regex.length()) {
+                // An unbalanced )
+                return UNBOUNDED;
+            }
+            return span;
+        } catch (UnsupportedOperationException e) {
+            return UNBOUNDED;
+        }
+    }
+
+    /**
+     * Adds two spans.
+     *
+     * @param a the first span.
+     * @param b the second span.
+     * @return the sum.
+     */
+    private static int add(int a, int b) {
+        if (a + b > MAX_SPAN) {
+            throw new UnsupportedOperationException();
+        }
+        return a + b;
+    }
+
+    /**
+     * Recursive descent over the expression, computing the span of each part.
+     * Throws {@link UnsupportedOperationException} when the span is unbounded or the expression can't be analyzed.
+     */
+    private static final class Parser {
+        private final String regex;
+        private int pos = 0;
+
+        /**
+         * Standard constructor.
+         *
+         * @param regex the expression to parse.
+         */
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * Parses alternatives up to the end of the expression or of the current group.
+         *
+         * @return the largest span of the alternatives.
+         */
+        int alternation() {
+            int span = sequence();
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                span = Math.max(span, sequence());
+            }
+            return span;
+        }
+
+        /**
+         * Parses a sequence of quantified atoms.
+         *
+         * @return the sum of their spans.
+         */
+        private int sequence() {
+            int span = 0;
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                int atom = atom();
+                span = add(span, quantified(atom));
+            }
+            return span;
+        }
+
+        /**
+         * Parses one atom.
+         *
+         * @return the span of the atom.
+         */
+        private int atom() {
+            char c = regex.charAt(pos);
+            switch (c) {
+                case '\\':
+                    return escape();
+                case '[':
+                    skipClass();
+                    return 2;
+                case '(':
+                    return group();
+                case '^':
+                case '$':
+                    pos++;
+                    return 0;
+                case '.':
+                    pos++;
+                    return 2;
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    // A quantifier without an atom
+                    throw new UnsupportedOperationException();
+                default:
+                    int cp = regex.codePointAt(pos);
+                    pos += Character.charCount(cp);
+                    return Character.charCount(cp);
+            }
+        }
+
+        /**
+         * Parses a group, including lookarounds and inline flags.
+         *
+         * @return the span of the group.
+         */
+        private int group() {
+            pos++;
+            if (regex.startsWith("?", pos)) {
+                pos++;
+                if (regex.startsWith("<", pos) && !regex.startsWith("<=", pos) && !regex.startsWith("<!", pos)) {
+                    // Named group
+                    int end = regex.indexOf('>', pos);
+                    if (end < 0) {
+                        throw new UnsupportedOperationException();
+                    }
+                    pos = end + 1;
+                } else if (regex.startsWith("<=", pos) || regex.startsWith("<!", pos)) {
+                    pos += 2;
+                } else if (pos < regex.length() && ":=!>".indexOf(regex.charAt(pos)) >= 0) {
+                    pos++;
+                } else {
+                    return flags();
+                }
+            }
+            int span = alternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw new UnsupportedOperationException();
+            }
+            pos++;
+            return span;
+        }
+
+        /**
+         * Parses inline flags, (?i) or (?i:...), after the (?.
+         *
+         * @return the span of the group, 0 for flags without a group.
+         */
+        private int flags() {
+            while (pos < regex.length() && (Character.isLetter(regex.charAt(pos)) || regex.charAt(pos) == '-')) {
+                if (regex.charAt(pos) == 'x') {
+                    // Comments mode changes the meaning of white space and #
+                    throw new UnsupportedOperationException();
+                }
+                pos++;
+            }
+            if (pos >= regex.length()) {
+                throw new UnsupportedOperationException();
+            }
+            char c = regex.charAt(pos++);
+            if (c == ')') {
+                return 0;
+            }
+            if (c != ':') {
+                throw new UnsupportedOperationException();
+            }
+            int span = alternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw new UnsupportedOperationException();
+            }
+            pos++;
+            return span;
+        }
+
+        /**
+         * Parses an escape sequence.
+         *
+         * @return the span of the escape.
+         */
+        private int escape() {
+            if (pos + 1 >= regex.length()) {
+                throw new UnsupportedOperationException();
+            }
+            char e = regex.charAt(pos + 1);
+            pos += 2;
+            if (e == 'Q') {
+                int end = regex.indexOf("\\E", pos);
+                int length;
+                if (end < 0) {
+                    length = regex.length() - pos;
+                    pos = regex.length();
+                } else {
+                    length = end - pos;
+                    pos = end + 2;
+                }
+                return length;
+            }
+            if (e < '\u0080' && !Character.isLetterOrDigit(e)) {
+                return 1;
+            }
+            switch (e) {
+                case 't': case 'n': case 'r': case 'f': case 'a': case 'e':
+                    return 1;
+                case 'b': case 'B': case 'A': case 'G': case 'Z': case 'z':
+                    return 0;
+                case 'd': case 'D': case 's': case 'S': case 'w': case 'W':
+                case 'h': case 'H': case 'v': case 'V': case 'R':
+                    return 2;
+                case 'p':
+                case 'P':
+                    if (pos < regex.length() && regex.charAt(pos) == '{') {
+                        skipPast('}');
+                    } else {
+                        pos++;
+                    }
+                    return 2;
+                case 'x':
+                    if (pos < regex.length() && regex.charAt(pos) == '{') {
+                        skipPast('}');
+                    } else {
+                        pos += 2;
+                    }
+                    return 2;
+                case 'u':
+                    pos += 4;
+                    return 1;
+                case 'c':
+                    pos++;
+                    return 1;
+                case '0':
+                    while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') {
+                        pos++;
+                    }
+                    return 1;
+                default:
+                    // Back references and grapheme clusters can be of any length
+                    throw new UnsupportedOperationException();
+            }
+        }
+
+        /**
+         * Moves past the next occurrence of the given character.
+         *
+         * @param c the character.
+         */
+        private void skipPast(char c) {
+            int end = regex.indexOf(c, pos);
+            if (end < 0) {
+                throw new UnsupportedOperationException();
+            }
+            pos = end + 1;
+        }
+
+        /**
+         * Moves past a character class, including nested classes.
+         */
+        private void skipClass() {
+            int depth = 0;
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                if (c == '\\') {
+                    if (pos + 1 < regex.length() && regex.charAt(pos + 1) == 'Q') {
+                        int end = regex.indexOf("\\E", pos + 2);
+                        if (end < 0) {
+                            throw new UnsupportedOperationException();
+                        }
+                        pos = end + 2;
+                        continue;
+                    }
+                    pos += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    depth++;
+                    pos++;
+                    // A ] directly after the opening bracket (or its negation) is a literal
+                    if (pos < regex.length() && regex.charAt(pos) == '^') {
+                        pos++;
+                    }
+                    if (pos < regex.length() && regex.charAt(pos) == ']') {
+                        pos++;
+                    }
+                    continue;
+                }
+                pos++;
+                if (c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Applies the quantifier following an atom, if any, including a lazy or possessive modifier.
+         *
+         * @param atom the span of the atom.
+         * @return the span of the quantified atom.
+         */
+        private int quantified(int atom) {
+            if (pos >= regex.length()) {
+                return atom;
+            }
+            int span;
+            char c = regex.charAt(pos);
+            if (c == '?') {
+                span = atom;
+                pos++;
+            } else if (c == '*' || c == '+') {
+                if (atom > 0) {
+                    throw new UnsupportedOperationException();
+                }
+                span = 0;
+                pos++;
+            } else if (c == '{') {
+                int end = regex.indexOf('}', pos);
+                if (end < 0) {
+                    throw new UnsupportedOperationException();
+                }
+                String bounds = regex.substring(pos + 1, end);
+                int comma = bounds.indexOf(',');
+                String max = bounds;
+                if (comma >= 0) {
+                    max = bounds.substring(comma + 1);
+                }
+                if (max.trim().isEmpty()) {
+                    if (atom > 0) {
+                        throw new UnsupportedOperationException();
+                    }
+                    span = 0;
+                } else {
+                    long times;
+                    try {
+                        times = Long.parseLong(max.trim());
+                    } catch (NumberFormatException e) {
+                        throw new UnsupportedOperationException();
+                    }
+                    if (atom * times > MAX_SPAN) {
+                        throw new UnsupportedOperationException();
+                    }
+                    span = (int)(atom * times);
+                }
+                pos = end + 1;
+            } else {
+                return atom;
+            }
+            if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                pos++;
+            }
+            return span;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import hudson.Functions;
+import hudson.model.Run;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A compressed log, decompressed once into a temporary file for the duration of a scan.
+ *
+ * The single line and the multi-line indications are scanned by different threads, each reading the whole log,
+ * and every other indication type reads it again. Each of them decompressing the log on its own through
+ * {@link Run#getLogReader()} costs much more than reading the decompressed copy, which is also memory mapped and
+ * split into chunks like a plain log when possible.
+ */
+public final class SpooledLog extends ScanInput {
+
+    private static final Logger logger = Logger.getLogger(SpooledLog.class.getName());
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File file;
+    private final Charset charset;
+    private MappedLogFile mapped;
+
+    /**
+     * Private constructor, use {@link #inflate(Run)}.
+     *
+     * @param file the decompressed copy.
+     * @param charset the charset of the log.
+     */
+    private SpooledLog(File file, Charset charset) {
+        this.file = file;
+        this.charset = charset;
+    }
+
+    /**
+     * Tells if the log of the build is a compressed file.
+     *
+     * @param build the build.
+     * @return true if the log is gzip compressed.
+     */
+    public static boolean isCompressed(Run build) {
+        File log = build.getLogFile();
+        return log != null && log.isFile() && log.getName().endsWith(".gz");
+    }
+
+    /**
+     * Decompresses the log of the build into a temporary file.
+     *
+     * @param build the build.
+     * @return the decompressed log, to be closed once the scan is done, or null if the log is not compressed.
+     * @throws IOException if the log can't be decompressed.
+     */
+    public static SpooledLog inflate(Run build) throws IOException {
+        if (!isCompressed(build)) {
+            return null;
+        }
+        File copy = File.createTempFile("bfa-log", ".tmp");
+        boolean done = false;
+        try (InputStream in = new PooledGzipInputStream(new FileInputStream(build.getLogFile()));
+             OutputStream out = new FileOutputStream(copy)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = in.read(buffer);
+            while (read >= 0) {
+                out.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+            done = true;
+        } finally {
+            if (!done && !copy.delete()) {
+                logger.log(Level.WARNING, "Failed to delete {0}", copy);
+            }
+        }
+        return new SpooledLog(copy, build.getCharset());
+    }
+
+    /**
+     * Maps the copy into memory, unless it has to be read as a stream, see {@link MappedLogFile#open(Run)}.
+     *
+     * @return the mapped copy, or null.
+     * @throws IOException if the copy can't be mapped.
+     */
+    private synchronized MappedLogFile map() throws IOException {
+        if (mapped == null && !Functions.isWindows() && ChunkedLogScanner.isLineAligned(charset)) {
+            mapped = MappedLogFile.map(file, charset, 0, file.length());
+        }
+        return mapped;
+    }
+
+    @Override
+    public LogLineSource lines() throws IOException {
+        MappedLogFile map = map();
+        if (map != null) {
+            return map.lines();
+        }
+        return new LogLineSource.ReaderLineSource(reader());
+    }
+
+    @Override
+    public Reader reader() throws IOException {
+        MappedLogFile map = map();
+        if (map != null) {
+            return map.reader();
+        }
+        return new InputStreamReader(new FileInputStream(file), charset);
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            mapped = null;
+        }
+        if (!file.delete()) {
+            logger.log(Level.WARNING, "Failed to delete {0}", file);
+        }
+    }
+}
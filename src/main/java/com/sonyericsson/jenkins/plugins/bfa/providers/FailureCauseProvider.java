@@ -60,6 +60,7 @@ public class FailureCauseProvider extends MQDataProvider {
                     foundIndicationJSONObject.put("pattern", indication.getPattern());
                     foundIndicationJSONObject.put("matchingString", indication.getMatchingString());
                     foundIndicationJSONObject.put("matchingLine", indication.getMatchingLine());
+                    foundIndicationJSONObject.put("partialScan", indication.isPartialScan());
                     foundIndicationsJSONArray.add(foundIndicationJSONObject);
                 }
                 failureCauseJSONObject.put("indications", foundIndicationsJSONArray);
@@ -309,6 +309,16 @@ public class ScanOnDemandBaseAction implements Action {
         @Nonnull
         abstract Iterator<Run> getRuns(Job job);
 
+        /**
+         * If the builds keep what they were found with before and are only scanned for the causes added or edited
+         * since, instead of being scanned from scratch.
+         *
+         * @return true if so, false by default.
+         */
+        boolean isIncremental() {
+            return false;
+        }
+
         /**
          * Sets this scan mode as the default for this user on future page visits.
          */
@@ -366,17 +376,19 @@ public class ScanOnDemandBaseAction implements Action {
             Iterator<Run> runIterator = getRuns(action.getProject());
             while (runIterator.hasNext()) {
                 Run run = runIterator.next();
-                FailureCauseBuildAction fcba = run.getAction(FailureCauseBuildAction.class);
-                if (fcba != null) {
-                    run.getActions().remove(fcba); //TODO Replace instead
-                }
-                FailureCauseMatrixBuildAction fcmba = run.getAction(FailureCauseMatrixBuildAction.class);
-                if (run instanceof MatrixBuild
-                        && fcmba != null) {
-                    run.getActions().remove(fcmba); //TODO Replace instead
-                    action.removeRunActions((MatrixBuild)run);
+                if (!isIncremental()) {
+                    FailureCauseBuildAction fcba = run.getAction(FailureCauseBuildAction.class);
+                    if (fcba != null) {
+                        run.getActions().remove(fcba); //TODO Replace instead
+                    }
+                    FailureCauseMatrixBuildAction fcmba = run.getAction(FailureCauseMatrixBuildAction.class);
+                    if (run instanceof MatrixBuild
+                            && fcmba != null) {
+                        run.getActions().remove(fcmba); //TODO Replace instead
+                        action.removeRunActions((MatrixBuild)run);
+                    }
                 }
-                ScanOnDemandTask task = new ScanOnDemandTask(run);
+                ScanOnDemandTask task = new ScanOnDemandTask(run, isIncremental());
                 ScanOnDemandQueue.queue(task);
             }
             response.sendRedirect2(Functions.joinPath("/", request.getContextPath(), getParent().getProject().getUrl()));
@@ -464,4 +476,49 @@ public class ScanOnDemandBaseAction implements Action {
             };
         }
     }
+
+    /**
+     * ScanMode that scans already scanned builds for only the causes added or edited since they were scanned.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class Changed extends ScanMode {
+
+        /**
+         * The {@link #getUrlName()} of this ScanMode.
+         */
+        static final String URL = "changed";
+
+        @Nonnull
+        @Override
+        public String getUrlName() {
+            return URL;
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return Messages.ScanOnDemandBaseAction_Changed_DisplayName();
+        }
+
+        @Override
+        boolean isIncremental() {
+            return true;
+        }
+
+        @Nonnull
+        @Override
+        Iterator<Run> getRuns(Job job) {
+            return new Iterators.FilterIterator<Run>(job.getBuilds().iterator()) {
+                @Override
+                protected boolean filter(Run run) {
+                    final Result result = run.getResult();
+                    return result != null
+                            && PluginImpl.needToAnalyze(result)
+                            && !(run instanceof MatrixBuild)
+                            && !run.getActions(FailureCauseBuildAction.class).isEmpty();
+                }
+            };
+        }
+    }
 }
@@ -28,6 +28,7 @@ import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseBuildAction;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseMatrixBuildAction;
 import com.sonyericsson.jenkins.plugins.bfa.BuildFailureScanner;
 import com.sonyericsson.jenkins.plugins.bfa.PluginImpl;
+import com.sonyericsson.jenkins.plugins.bfa.ScanQueue;
 import hudson.matrix.MatrixBuild;
 import hudson.matrix.MatrixRun;
 import hudson.model.Run;
@@ -50,6 +51,7 @@ public class ScanOnDemandTask implements Runnable {
 
     private static final Logger logger = Logger.getLogger(ScanOnDemandTask.class.getName());
     private Run build;
+    private boolean incremental;
 
     /**
      * SODExecutor constructor.
@@ -57,11 +59,27 @@ public class ScanOnDemandTask implements Runnable {
      * @param build the build to analyze.
      */
     public ScanOnDemandTask(final Run build) {
+        this(build, false);
+    }
+
+    /**
+     * Constructor for a task that may only scan for the causes added or edited since the build was last scanned.
+     *
+     * @param build the build to analyze.
+     * @param incremental true to scan only for the changed causes, see
+     *                    {@link BuildFailureScanner#rescanChanged(Run, PrintStream)}.
+     */
+    public ScanOnDemandTask(final Run build, boolean incremental) {
         this.build = build;
+        this.incremental = incremental;
     }
 
     @Override
     public void run() {
+        if (ScanQueue.getInstance().isPending(build)) {
+            logger.log(Level.FINE, "{0} is already queued for scanning", build.getFullDisplayName());
+            return;
+        }
         try {
             if (build instanceof MatrixBuild) {
                 List<MatrixRun> runs = ((MatrixBuild)build).getRuns();
@@ -112,8 +130,12 @@ public class ScanOnDemandTask implements Runnable {
                 FileOutputStream fos = new FileOutputStream(file, true);
                 PrintStream buildLog = new PrintStream(fos, true, "UTF8")
         ) {
-            PluginImpl.getInstance().getKnowledgeBase().removeBuildfailurecause(run);
-            BuildFailureScanner.scanIfNotScanned(run, buildLog);
+            if (incremental) {
+                BuildFailureScanner.rescanChanged(run, buildLog);
+            } else {
+                PluginImpl.getInstance().getKnowledgeBase().removeBuildfailurecause(run);
+                BuildFailureScanner.scanIfNotScanned(run, buildLog);
+            }
             run.save();
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Could not get the causes from the knowledge base", e);
@@ -25,6 +25,7 @@
 package com.sonyericsson.jenkins.plugins.bfa.statistics;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import hudson.model.Cause;
@@ -51,6 +52,51 @@ public class Statistics {
     private String result;
     private UpstreamCause upstreamCause;
     private List<FailureCauseStatistics> failureCauseStatisticsList;
+    private String id;
+    private long rescannedAt;
+
+    /**
+     * The id the statistics are saved with, assigned when they are collected so that saving them again after a
+     * partial failure doesn't duplicate them.
+     *
+     * @return the id, or null to let the knowledge base assign one.
+     */
+    @JsonIgnore
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the id the statistics are saved with.
+     *
+     * @param id the id.
+     * @see #getId()
+     */
+    void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * When the build was scanned again for these statistics, in milliseconds since the epoch. The statistics of a
+     * scan again replace the statistics of an earlier scan of the build, see
+     * {@link com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase#saveStatistics(Statistics)}.
+     *
+     * @return the time, or 0 if the statistics are from the first scan of the build.
+     */
+    @JsonIgnore
+    public long getRescannedAt() {
+        return rescannedAt;
+    }
+
+    /**
+     * Sets when the build was scanned again for these statistics.
+     *
+     * @param rescannedAt the time in milliseconds since the epoch.
+     * @see #getRescannedAt()
+     */
+    void setRescannedAt(long rescannedAt) {
+        this.rescannedAt = rescannedAt;
+    }
 
     /**
      * Getter for the project name.
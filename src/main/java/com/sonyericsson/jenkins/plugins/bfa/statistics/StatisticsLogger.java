@@ -25,8 +25,8 @@
 package com.sonyericsson.jenkins.plugins.bfa.statistics;
 
 import com.sonyericsson.jenkins.plugins.bfa.PluginImpl;
-import com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase;
 import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
 import com.sonyericsson.jenkins.plugins.bfa.utils.BfaUtils;
 
 import hudson.model.AbstractBuild;
@@ -34,16 +34,13 @@ import hudson.model.Cause;
 import hudson.model.Node;
 import hudson.model.Result;
 import hudson.model.Run;
+import org.bson.types.ObjectId;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.TimeZone;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Main singleton entrance for logging statistics.
@@ -52,10 +49,7 @@ import java.util.logging.Logger;
  */
 public final class StatisticsLogger {
 
-    private static final Logger logger = Logger.getLogger(StatisticsLogger.class.getName());
     private static StatisticsLogger instance;
-    private ExecutorService queueExecutor;
-
 
     /**
      * Private Constructor.
@@ -63,12 +57,6 @@ public final class StatisticsLogger {
      * @see #getInstance()
      */
     private StatisticsLogger() {
-        queueExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable target) {
-                return new Thread(target, "BFA StatisticsLogger Queue");
-            }
-        });
     }
 
     /**
@@ -86,86 +74,93 @@ public final class StatisticsLogger {
     /**
      * Logs a found indication asynchronously to the statistics database.
      *
+     * The statistics of the build are collected right away, and only they are queued to the
+     * {@link StatisticsWriter}, so that the build can be garbage collected while they wait to be saved.
+     *
      * @param build the build.
      * @param causes the list of causes.
+     * @return the id of the statistics logged, see {@link Statistics#getId()}, or null if statistics are disabled.
      */
-    public void log(Run build, List<FoundFailureCause> causes) {
+    public String log(Run build, List<FoundFailureCause> causes) {
         if (PluginImpl.getInstance().getKnowledgeBase().isEnableStatistics()) {
-            queueExecutor.submit(new LoggingWork(build, causes));
+            Statistics statistics = snapshot(build, causes);
+            StatisticsWriter.getInstance().add(statistics);
+            return statistics.getId();
         }
+        return null;
     }
 
     /**
-     * The actual work to be performed in {@link #log} at a future time.
+     * Logs the statistics of a build scanned again asynchronously, to replace the statistics logged for an earlier
+     * scan of it. They are queued like any other statistics, so they replace the earlier ones once both are saved,
+     * whichever is saved first.
+     *
+     * @param build the build.
+     * @param id the id of the statistics logged for the build, or null if the build was scanned before the
+     *           statistics had ids, in which case the statistics of the build are replaced.
+     * @param rescannedAt when the build was scanned again, in milliseconds since the epoch.
+     * @param causes the list of causes.
      */
-    static class LoggingWork implements Runnable {
-
-        List<FoundFailureCause> causes;
-        Run build;
-
-        /**
-         * Standard Constructor.
-         *
-         * @param build the build to log for.
-         * @param causes the causes to log.
-         */
-        LoggingWork(Run build, List<FoundFailureCause> causes) {
-            this.build = build;
-            this.causes = causes;
+    public void logRescan(Run build, String id, long rescannedAt, List<FoundFailureCause> causes) {
+        if (PluginImpl.getInstance().getKnowledgeBase().isEnableStatistics()) {
+            Statistics statistics = snapshot(build, causes);
+            statistics.setId(id);
+            statistics.setRescannedAt(rescannedAt);
+            StatisticsWriter.getInstance().add(statistics);
         }
+    }
 
-        @Override
-        public void run() {
-            String projectName = build.getParent().getFullName();
-            int buildNumber = build.getNumber();
-            String displayName = build.getDisplayName();
-            Date startingTime = build.getTime();
-            long duration = build.getDuration();
-            List<String> triggerCauses = new LinkedList<String>();
-            for (Object o : build.getCauses()) {
-                triggerCauses.add(o.getClass().getSimpleName());
-            }
-            String nodeName = "NoNodeInformation";
-            if (build instanceof AbstractBuild) {
-                AbstractBuild abstractBuild = (AbstractBuild)build;
-                Node node = abstractBuild.getBuiltOn();
-                if (node != null) {
-                    nodeName = node.getNodeName();
-                }
-            }
-            int timeZoneOffset = TimeZone.getDefault().getRawOffset();
-            String master;
-
-
-            String result = "Running";
-            final Result buildResult = build.getResult();
-            if (buildResult != null) {
-                result = buildResult.toString();
-            }
-            List<FailureCauseStatistics> failureCauseStatistics = new LinkedList<FailureCauseStatistics>();
-            List<String> causeIds = new LinkedList<String>();
-            for (FoundFailureCause cause : causes) {
-                FailureCauseStatistics stats = new FailureCauseStatistics(cause.getId(), cause.getIndications());
-                failureCauseStatistics.add(stats);
-                causeIds.add(cause.getId());
+    /**
+     * Collects the statistics of a build. The statistics hold no reference to the build or to its actions, and get
+     * the id they are saved with right away.
+     *
+     * @param build the build.
+     * @param causes the causes found in the build.
+     * @return the statistics.
+     */
+    static Statistics snapshot(Run build, List<FoundFailureCause> causes) {
+        String projectName = build.getParent().getFullName();
+        int buildNumber = build.getNumber();
+        String displayName = build.getDisplayName();
+        Date startingTime = build.getTime();
+        long duration = build.getDuration();
+        List<String> triggerCauses = new ArrayList<String>();
+        for (Object o : build.getCauses()) {
+            triggerCauses.add(o.getClass().getSimpleName());
+        }
+        String nodeName = "NoNodeInformation";
+        if (build instanceof AbstractBuild) {
+            AbstractBuild abstractBuild = (AbstractBuild)build;
+            Node node = abstractBuild.getBuiltOn();
+            if (node != null) {
+                nodeName = node.getNodeName();
             }
+        }
+        int timeZoneOffset = TimeZone.getDefault().getRawOffset();
 
-            master = BfaUtils.getMasterName();
-            Cause.UpstreamCause uc = (Cause.UpstreamCause)build.getCause(Cause.UpstreamCause.class);
-            Statistics.UpstreamCause suc = new Statistics.UpstreamCause(uc);
-            Statistics obj = new Statistics(projectName, buildNumber, displayName, startingTime, duration,
-                                            triggerCauses, nodeName, master, timeZoneOffset, result, suc,
-                                            failureCauseStatistics);
-
-            PluginImpl p = PluginImpl.getInstance();
-            KnowledgeBase kb = p.getKnowledgeBase();
-            try {
-                kb.saveStatistics(obj);
-            } catch (Exception e) {
-                logger.log(Level.WARNING, "Couldn't save statistics: ", e);
+        String result = "Running";
+        final Result buildResult = build.getResult();
+        if (buildResult != null) {
+            result = buildResult.toString();
+        }
+        List<FailureCauseStatistics> failureCauseStatistics = new ArrayList<FailureCauseStatistics>(causes.size());
+        for (FoundFailureCause cause : causes) {
+            List<FoundIndication> indications = new ArrayList<FoundIndication>(cause.getIndications().size());
+            for (FoundIndication indication : cause.getIndications()) {
+                // Without the reference to the build
+                indications.add(indication.rebase(null));
             }
-
-            kb.updateLastSeen(causeIds, startingTime);
+            failureCauseStatistics.add(new FailureCauseStatistics(cause.getId(),
+                    Collections.unmodifiableList(indications)));
         }
+
+        String master = BfaUtils.getMasterName();
+        Cause.UpstreamCause uc = (Cause.UpstreamCause)build.getCause(Cause.UpstreamCause.class);
+        Statistics.UpstreamCause suc = new Statistics.UpstreamCause(uc);
+        Statistics statistics = new Statistics(projectName, buildNumber, displayName, startingTime, duration,
+                Collections.unmodifiableList(triggerCauses), nodeName, master, timeZoneOffset, result, suc,
+                Collections.unmodifiableList(failureCauseStatistics));
+        statistics.setId(new ObjectId().toHexString());
+        return statistics;
     }
 }
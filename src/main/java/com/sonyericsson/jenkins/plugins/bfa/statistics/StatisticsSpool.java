@@ -0,0 +1,482 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.statistics;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only spool on disk for the statistics that could not be saved to the knowledge base, until they can be.
+ *
+ * The spool is a directory of numbered segment files. Records are appended to the newest segment, and a new segment
+ * is started once it holds {@link #SEGMENT_RECORDS} records. Segments are read back oldest first, one whole segment
+ * at a time, and deleted once their records are saved. Every record carries a checksum, so a record torn by a crash
+ * while it was written is detected, and dropped with the rest of its segment.
+ *
+ * A segment is deleted only after its records are saved, so a crash in between replays it on the next start. The
+ * records keep the id they are saved with, see {@link Statistics#getId()}, so the replay doesn't duplicate them.
+ *
+ * The spool is meant for one thread, the one of the {@link StatisticsWriter}.
+ */
+final class StatisticsSpool {
+
+    private static final Logger logger = Logger.getLogger(StatisticsSpool.class.getName());
+
+    /**
+     * The number of records after which a new segment is started.
+     */
+    static final int SEGMENT_RECORDS = 1000;
+
+    /**
+     * The first bytes of every segment, followed by the version of the format.
+     */
+    private static final int MAGIC = 0x42464153;
+    private static final int VERSION = 1;
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".spool";
+    private static final String SEQUENCE_FORMAT = "%012d";
+
+    private final File directory;
+    private final List<File> segments = new ArrayList<File>();
+    private final List<Integer> counts = new ArrayList<Integer>();
+    private int size = 0;
+    private int newestRecords = 0;
+    private boolean newestSealed = true;
+    private long sequence = 0;
+
+    /**
+     * Opens the spool, picking up the segments left by a previous run.
+     *
+     * @param directory the directory of the segments, created when needed.
+     */
+    StatisticsSpool(File directory) {
+        this.directory = directory;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                try {
+                    sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                int records = read(file).size();
+                segments.add(file);
+                counts.add(records);
+                size += records;
+            }
+        }
+        if (!segments.isEmpty()) {
+            logger.log(Level.INFO, "{0} spooled statistics are waiting to be saved", size);
+        }
+    }
+
+    /**
+     * The number of records in the spool.
+     *
+     * @return the count.
+     */
+    synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Tells if the spool holds no records.
+     *
+     * @return true if so.
+     */
+    synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Appends records to the newest segment, or to a new one if the newest is full or being replayed. The records
+     * are synced to disk before this returns.
+     *
+     * @param stats the records.
+     * @throws IOException if the records could not be written.
+     */
+    synchronized void append(List<Statistics> stats) throws IOException {
+        if (stats.isEmpty()) {
+            return;
+        }
+        if (newestSealed || newestRecords >= SEGMENT_RECORDS) {
+            startSegment();
+        }
+        File newest = segments.get(segments.size() - 1);
+        FileOutputStream file = new FileOutputStream(newest, true);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            for (Statistics stat : stats) {
+                byte[] record = encode(stat);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                out.writeInt(record.length);
+                out.writeLong(crc.getValue());
+                out.write(record);
+            }
+            out.flush();
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        newestRecords += stats.size();
+        counts.set(counts.size() - 1, newestRecords);
+        size += stats.size();
+    }
+
+    /**
+     * Creates a new empty segment, which becomes the newest.
+     *
+     * @throws IOException if the segment could not be created.
+     */
+    private void startSegment() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        sequence++;
+        File segment = new File(directory, PREFIX + String.format(SEQUENCE_FORMAT, sequence) + SUFFIX);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(segment));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } finally {
+            out.close();
+        }
+        segments.add(segment);
+        counts.add(0);
+        newestRecords = 0;
+        newestSealed = false;
+    }
+
+    /**
+     * Reads the records of the oldest segment. Records appended from now on go to a new segment.
+     *
+     * @return the records, empty if the spool is empty.
+     */
+    synchronized List<Statistics> readOldest() {
+        if (segments.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (segments.size() == 1) {
+            newestSealed = true;
+        }
+        return read(segments.get(0));
+    }
+
+    /**
+     * Deletes the oldest segment, once its records are saved.
+     */
+    synchronized void removeOldest() {
+        if (segments.isEmpty()) {
+            return;
+        }
+        File oldest = segments.remove(0);
+        size -= counts.remove(0);
+        if (!oldest.delete()) {
+            logger.log(Level.WARNING, "Could not delete the spooled statistics {0}, they may be saved twice", oldest);
+        }
+        if (segments.isEmpty()) {
+            newestSealed = true;
+        }
+    }
+
+    /**
+     * Reads the records of a segment, up to the first one that is torn or corrupt.
+     *
+     * @param segment the segment.
+     * @return the records.
+     */
+    private static List<Statistics> read(File segment) {
+        List<Statistics> stats = new ArrayList<Statistics>();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+            int version = 0;
+            if (in.readInt() == MAGIC) {
+                version = in.readInt();
+            }
+            if (version != VERSION) {
+                logger.log(Level.WARNING, "Ignoring {0}, it is not a statistics spool segment", segment);
+                return stats;
+            }
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > segment.length()) {
+                    throw new IOException("Invalid record length " + length);
+                }
+                long checksum = in.readLong();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if (crc.getValue() != checksum) {
+                    throw new IOException("Checksum mismatch");
+                }
+                stats.add(decode(record));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Dropping the end of the spooled statistics " + segment + " from record "
+                    + stats.size() + ", it is torn or corrupt", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logger.log(Level.FINE, "Could not close " + segment, e);
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Encodes a record.
+     *
+     * @param stat the record.
+     * @return the bytes of the record.
+     * @throws IOException if so.
+     */
+    static byte[] encode(Statistics stat) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, stat.getId());
+        out.writeLong(stat.getRescannedAt());
+        writeString(out, stat.getProjectName());
+        out.writeInt(stat.getBuildNumber());
+        writeString(out, stat.getDisplayName());
+        Date startingTime = stat.getStartingTime();
+        out.writeBoolean(startingTime != null);
+        if (startingTime != null) {
+            out.writeLong(startingTime.getTime());
+        }
+        out.writeLong(stat.getDuration());
+        List<String> triggerCauses = stat.getTriggerCauses();
+        out.writeInt(size(triggerCauses));
+        if (triggerCauses != null) {
+            for (String triggerCause : triggerCauses) {
+                writeString(out, triggerCause);
+            }
+        }
+        writeString(out, stat.getSlaveHostName());
+        writeString(out, stat.getMaster());
+        out.writeInt(stat.getTimeZoneOffset());
+        writeString(out, stat.getResult());
+        Statistics.UpstreamCause upstreamCause = stat.getUpstreamCause();
+        out.writeBoolean(upstreamCause != null);
+        if (upstreamCause != null) {
+            writeString(out, upstreamCause.getUpstreamProject());
+            out.writeInt(upstreamCause.getUpstreamBuild());
+        }
+        List<FailureCauseStatistics> causes = stat.getFailureCauseStatisticsList();
+        out.writeInt(size(causes));
+        if (causes != null) {
+            for (FailureCauseStatistics cause : causes) {
+                writeString(out, cause.getId());
+                List<FoundIndication> indications = cause.getIndications();
+                out.writeInt(size(indications));
+                if (indications != null) {
+                    for (FoundIndication indication : indications) {
+                        writeString(out, indication.getPattern());
+                        writeString(out, indication.getMatchingFile());
+                        writeString(out, indication.getMatchingString());
+                        int matchingLine = indication.getMatchingLine();
+                        out.writeBoolean(matchingLine >= 0);
+                        if (matchingLine >= 0) {
+                            out.writeInt(matchingLine);
+                        }
+                    }
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a record written by {@link #encode(Statistics)}.
+     *
+     * @param record the bytes of the record.
+     * @return the record.
+     * @throws IOException if so.
+     */
+    static Statistics decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String statisticsId = readString(in);
+        long rescannedAt = in.readLong();
+        String projectName = readString(in);
+        int buildNumber = in.readInt();
+        String displayName = readString(in);
+        Date startingTime = null;
+        if (in.readBoolean()) {
+            startingTime = new Date(in.readLong());
+        }
+        long duration = in.readLong();
+        List<String> triggerCauses = readStrings(in);
+        String slaveHostName = readString(in);
+        String master = readString(in);
+        int timeZoneOffset = in.readInt();
+        String result = readString(in);
+        Statistics.UpstreamCause upstreamCause = null;
+        if (in.readBoolean()) {
+            upstreamCause = new Statistics.UpstreamCause(readString(in), in.readInt());
+        }
+        int causeCount = in.readInt();
+        List<FailureCauseStatistics> causes = null;
+        if (causeCount >= 0) {
+            causes = new ArrayList<FailureCauseStatistics>(causeCount);
+            for (int i = 0; i < causeCount; i++) {
+                String id = readString(in);
+                int indicationCount = in.readInt();
+                List<FoundIndication> indications = null;
+                if (indicationCount >= 0) {
+                    indications = new ArrayList<FoundIndication>(indicationCount);
+                    for (int j = 0; j < indicationCount; j++) {
+                        indications.add(readIndication(in));
+                    }
+                }
+                causes.add(new FailureCauseStatistics(id, indications));
+            }
+        }
+        Statistics stat = new Statistics(projectName, buildNumber, displayName, startingTime, duration,
+                triggerCauses, slaveHostName, master, timeZoneOffset, result, upstreamCause, causes);
+        stat.setId(statisticsId);
+        stat.setRescannedAt(rescannedAt);
+        return stat;
+    }
+
+    /**
+     * Reads a found indication written by {@link #encode(Statistics)}.
+     *
+     * @param in the stream.
+     * @return the indication.
+     * @throws IOException if so.
+     */
+    private static FoundIndication readIndication(DataInputStream in) throws IOException {
+        String pattern = readString(in);
+        String matchingFile = readString(in);
+        String matchingString = readString(in);
+        Integer matchingLine = null;
+        if (in.readBoolean()) {
+            matchingLine = in.readInt();
+        }
+        return new FoundIndication(pattern, matchingFile, matchingString, matchingLine);
+    }
+
+    /**
+     * The size of a list that may be null.
+     *
+     * @param list the list.
+     * @return its size, -1 for null.
+     */
+    private static int size(List<?> list) {
+        if (list == null) {
+            return -1;
+        }
+        return list.size();
+    }
+
+    /**
+     * Writes a string that may be null and longer than {@link DataOutputStream#writeUTF(String)} allows.
+     *
+     * @param out the stream.
+     * @param value the string.
+     * @throws IOException if so.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the stream.
+     * @return the string.
+     * @throws IOException if so.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a list of strings that may be null.
+     *
+     * @param in the stream.
+     * @return the strings.
+     * @throws IOException if so.
+     */
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        List<String> strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+}
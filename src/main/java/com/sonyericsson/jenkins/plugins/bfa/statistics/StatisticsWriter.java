@@ -0,0 +1,514 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.statistics;
+
+import com.sonyericsson.jenkins.plugins.bfa.PluginImpl;
+import com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves statistics to the knowledge base in batches, on a thread of its own.
+ *
+ * A batch is written when it holds {@link #BATCH_SIZE} records, or when its oldest record has waited
+ * {@link #FLUSH_INTERVAL} milliseconds, whichever comes first. All the records of a batch are saved with
+ * {@link KnowledgeBase#saveStatistics(List)}, and the causes they contain are marked as last seen with one
+ * {@link KnowledgeBase#updateLastSeen(Map)}, at the latest starting time of their builds in the batch.
+ *
+ * A backlog, like after an outage, is thus written a hundred records at a time instead of one by one.
+ *
+ * A batch that can't be saved is appended to a {@link StatisticsSpool} under {@code JENKINS_HOME} instead of being
+ * lost, and so are the batches of the next {@link #RETRY_INTERVAL} milliseconds, without trying the knowledge base.
+ * Once a batch is saved again, the spooled records are replayed into the knowledge base one segment at a time.
+ * Every record carries the id it is saved with, see {@link Statistics#getId()}, so a batch that was saved in part
+ * before it failed is not duplicated when it is saved again. The record of a build scanned again replaces the earlier
+ * record of the build, whichever of them is saved first, see {@link StatisticsLogger#logRescan}.
+ *
+ * At most {@link #QUEUE_CAPACITY} records wait in memory. A record that doesn't fit is spilled to the spool right
+ * away, and if even that fails, the oldest waiting record is dropped to make room for it.
+ */
+public final class StatisticsWriter {
+
+    private static final Logger logger = Logger.getLogger(StatisticsWriter.class.getName());
+
+    /**
+     * The maximum number of records written at once.
+     */
+    static final int BATCH_SIZE = 100;
+
+    /**
+     * The longest time a record waits for its batch to fill up, in milliseconds.
+     */
+    static final long FLUSH_INTERVAL = 1000;
+
+    /**
+     * The maximum number of records waiting in memory.
+     */
+    static final int QUEUE_CAPACITY = 10000;
+
+    /**
+     * How long batches go straight to the spool after a batch could not be saved, in milliseconds.
+     */
+    static final long RETRY_INTERVAL = 30000;
+
+    /**
+     * The directory of the spool, under {@code JENKINS_HOME}.
+     */
+    private static final String SPOOL_DIRECTORY = "bfa-statistics-spool";
+
+    /**
+     * How long a shutdown waits for the records left to be written, in milliseconds.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
+    private static final StatisticsWriter INSTANCE =
+            new StatisticsWriter(BATCH_SIZE, FLUSH_INTERVAL, QUEUE_CAPACITY, null);
+
+    private final int batchSize;
+    private final long flushInterval;
+    private final int capacity;
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private volatile long lastBatchLag = 0;
+    private volatile boolean stopping = false;
+    private volatile boolean backingOff = false;
+    private volatile long retryAt = 0;
+    private StatisticsSpool spool;
+    private Thread thread = null;
+
+    /**
+     * Package private for tests, use {@link #getInstance()}.
+     *
+     * @param batchSize the maximum number of records written at once.
+     * @param flushInterval the longest time a record waits for its batch to fill up, in milliseconds.
+     * @param capacity the maximum number of records waiting in memory.
+     * @param spool the spool, or null for the one under {@code JENKINS_HOME}.
+     */
+    StatisticsWriter(int batchSize, long flushInterval, int capacity, StatisticsSpool spool) {
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.capacity = capacity;
+        this.queue = new LinkedBlockingQueue<Entry>(capacity);
+        this.spool = spool;
+    }
+
+    /**
+     * The writer used for all statistics.
+     *
+     * @return the writer.
+     */
+    public static StatisticsWriter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a record to be saved with the next batch.
+     *
+     * @param stat the record.
+     */
+    public void add(Statistics stat) {
+        offer(stat);
+        start();
+    }
+
+    /**
+     * Queues a record without starting the writer thread, spilling it to the spool if the queue is full, or dropping
+     * the oldest record waiting if even that fails. Package private for tests.
+     *
+     * @param stat the record.
+     */
+    void offer(Statistics stat) {
+        Entry entry = new Entry(stat, System.nanoTime());
+        if (queue.offer(entry)) {
+            return;
+        }
+        overflowed.incrementAndGet();
+        try {
+            getSpool().append(Collections.singletonList(stat));
+            return;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Statistics queue full and could not spool, dropping the oldest record: ", e);
+        }
+        while (!queue.offer(entry)) {
+            if (queue.poll() != null) {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The number of records waiting to be saved.
+     *
+     * @return the queue depth.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * The maximum number of records waiting in memory.
+     *
+     * @return the capacity of the queue.
+     */
+    public int getQueueCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The number of records that did not fit in the queue so far, and were spilled to the spool or made room by
+     * dropping the oldest.
+     *
+     * @return the count.
+     */
+    public long getOverflowed() {
+        return overflowed.get();
+    }
+
+    /**
+     * The number of records saved so far.
+     *
+     * @return the count.
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * The number of records in the spool, waiting for the knowledge base to be back.
+     *
+     * @return the count.
+     */
+    public int getSpooled() {
+        return getSpool().getSize();
+    }
+
+    /**
+     * The number of records that were lost so far, because they could neither be saved nor spooled.
+     *
+     * @return the count.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * The number of records saved per second of writing, over all batches so far.
+     *
+     * @return the throughput, 0 if nothing was written yet.
+     */
+    public long getThroughput() {
+        long nanos = writeNanos.get();
+        if (nanos <= 0) {
+            return 0;
+        }
+        return written.get() * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    /**
+     * How long the oldest record still waiting has waited so far.
+     *
+     * @return the lag in milliseconds, 0 if no record is waiting.
+     */
+    public long getLag() {
+        Entry oldest = queue.peek();
+        if (oldest == null) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queued);
+    }
+
+    /**
+     * How long the oldest record of the last batch waited until it was saved.
+     *
+     * @return the lag in milliseconds.
+     */
+    public long getLastBatchLag() {
+        return lastBatchLag;
+    }
+
+    /**
+     * Starts the writer thread if records spooled by a previous run are waiting to be saved.
+     */
+    public void resume() {
+        if (!getSpool().isEmpty()) {
+            start();
+        }
+    }
+
+    /**
+     * The spool, opened the first time it is needed.
+     *
+     * @return the spool.
+     */
+    private synchronized StatisticsSpool getSpool() {
+        if (spool == null) {
+            spool = new StatisticsSpool(new File(Jenkins.getInstance().getRootDir(), SPOOL_DIRECTORY));
+        }
+        return spool;
+    }
+
+    /**
+     * Starts the writer thread the first time a record is queued.
+     */
+    private synchronized void start() {
+        if (thread == null) {
+            stopping = false;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "BFA StatisticsWriter");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread once it has saved the records left, or after {@link #SHUTDOWN_TIMEOUT}.
+     */
+    public synchronized void shutdown() {
+        if (thread != null) {
+            stopping = true;
+            try {
+                thread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!queue.isEmpty()) {
+                logger.log(Level.WARNING, "{0} statistics were not saved because of the shutdown", queue.size());
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Writes batches until the writer is stopped, and then the records left.
+     */
+    private void work() {
+        while (!stopping) {
+            try {
+                List<Entry> batch = nextBatch();
+                KnowledgeBase knowledgeBase = PluginImpl.getInstance().getKnowledgeBase();
+                if (!batch.isEmpty()) {
+                    flush(batch, knowledgeBase);
+                }
+                replay(knowledgeBase);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Unexpected failure while saving statistics", e);
+            }
+        }
+        List<Entry> rest = new ArrayList<Entry>();
+        queue.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += batchSize) {
+            flush(rest.subList(i, Math.min(i + batchSize, rest.size())), PluginImpl.getInstance().getKnowledgeBase());
+        }
+    }
+
+    /**
+     * Waits for the next batch: up to the flush interval for a first record, and then until the batch is full or the
+     * first record has waited the flush interval.
+     *
+     * @return the batch, empty if no record came.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    List<Entry> nextBatch() throws InterruptedException {
+        List<Entry> batch = new ArrayList<Entry>(batchSize);
+        Entry first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - batch.size());
+        long deadline = first.queued + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        while (batch.size() < batchSize) {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0) {
+                break;
+            }
+            Entry next = queue.poll(wait, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+        return batch;
+    }
+
+    /**
+     * Saves a batch of records, or spools it if the knowledge base is unavailable.
+     *
+     * @param batch the records.
+     * @param knowledgeBase the knowledge base to save to.
+     */
+    void flush(List<Entry> batch, KnowledgeBase knowledgeBase) {
+        List<Statistics> stats = new ArrayList<Statistics>(batch.size());
+        for (Entry entry : batch) {
+            stats.add(entry.stat);
+        }
+        long start = System.nanoTime();
+        if (isBackingOff(start) || !save(stats, knowledgeBase)) {
+            spool(stats);
+        }
+        long end = System.nanoTime();
+        writeNanos.addAndGet(end - start);
+        lastBatchLag = TimeUnit.NANOSECONDS.toMillis(end - batch.get(0).queued);
+    }
+
+    /**
+     * Saves the records of the oldest segment of the spool, unless the knowledge base is unavailable.
+     *
+     * @param knowledgeBase the knowledge base to save to.
+     */
+    void replay(KnowledgeBase knowledgeBase) {
+        StatisticsSpool segments = getSpool();
+        if (segments.isEmpty() || isBackingOff(System.nanoTime())) {
+            return;
+        }
+        List<Statistics> stats = segments.readOldest();
+        if (stats.isEmpty() || save(stats, knowledgeBase)) {
+            segments.removeOldest();
+            if (!stats.isEmpty()) {
+                logger.log(Level.INFO, "Saved {0} spooled statistics", stats.size());
+            }
+        }
+    }
+
+    /**
+     * Saves records, and marks the causes they contain as last seen. If the records can't be saved, the knowledge
+     * base is left alone for {@link #RETRY_INTERVAL}.
+     *
+     * @param stats the records.
+     * @param knowledgeBase the knowledge base to save to.
+     * @return true if the records were saved.
+     */
+    private boolean save(List<Statistics> stats, KnowledgeBase knowledgeBase) {
+        try {
+            knowledgeBase.saveStatistics(stats);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Couldn't save statistics, spooling them until the knowledge base is back: ", e);
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_INTERVAL);
+            backingOff = true;
+            return false;
+        }
+        written.addAndGet(stats.size());
+        Map<String, Date> lastSeen = new HashMap<String, Date>();
+        for (Statistics stat : stats) {
+            addLastSeen(lastSeen, stat);
+        }
+        try {
+            knowledgeBase.updateLastSeen(lastSeen);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Couldn't update when the causes were last seen: ", e);
+        }
+        return true;
+    }
+
+    /**
+     * Appends records to the spool. They are lost if even that fails.
+     *
+     * @param stats the records.
+     */
+    private void spool(List<Statistics> stats) {
+        try {
+            getSpool().append(stats);
+        } catch (IOException e) {
+            failed.addAndGet(stats.size());
+            logger.log(Level.SEVERE, "Couldn't spool statistics, they are lost: ", e);
+        }
+    }
+
+    /**
+     * Tells if the knowledge base should be left alone after a failure to save.
+     *
+     * @param now the current {@link System#nanoTime()}.
+     * @return true if records should go straight to the spool.
+     */
+    private boolean isBackingOff(long now) {
+        if (backingOff && now - retryAt >= 0) {
+            backingOff = false;
+        }
+        return backingOff;
+    }
+
+    /**
+     * Records the starting time of the build as the time its causes were last seen, unless a later build of the
+     * batch saw them already.
+     *
+     * @param lastSeen the time each cause was last seen, by cause id.
+     * @param stat the record of the build.
+     */
+    private static void addLastSeen(Map<String, Date> lastSeen, Statistics stat) {
+        Date seen = stat.getStartingTime();
+        List<FailureCauseStatistics> causes = stat.getFailureCauseStatisticsList();
+        if (seen == null || causes == null) {
+            return;
+        }
+        for (FailureCauseStatistics cause : causes) {
+            Date previous = lastSeen.get(cause.getId());
+            if (previous == null || seen.after(previous)) {
+                lastSeen.put(cause.getId(), seen);
+            }
+        }
+    }
+
+    /**
+     * A record waiting to be saved.
+     */
+    static final class Entry {
+        private final Statistics stat;
+        private final long queued;
+
+        /**
+         * Standard constructor.
+         *
+         * @param stat the record.
+         * @param queued when the record was queued, in {@link System#nanoTime()}.
+         */
+        Entry(Statistics stat, long queued) {
+            this.stat = stat;
+            this.queued = queued;
+        }
+    }
+}
@@ -73,6 +73,11 @@ public class Renderer {
      */
     private String noFailureText = "";
 
+    /**
+     * Text to include while the build is waiting to be scanned in the background.
+     */
+    private String pendingText = "Build failure analysis pending";
+
     /**
      * @param includeIndications When true, the indication numbers and links into the console log are included
      * in the token replacement text.
@@ -110,6 +115,20 @@ public class Renderer {
         this.noFailureText = noFailureText;
     }
 
+    /**
+     * @param pendingText Text to return when the build has not been scanned yet.
+     */
+    public void setPendingText(String pendingText) {
+        this.pendingText = pendingText;
+    }
+
+    /**
+     * @return the text to return when the build has not been scanned yet.
+     */
+    public String getPendingText() {
+        return pendingText;
+    }
+
     /**
      * Append the either the html or plain text given to the StringBuilder, depending on "useHtmlFormat" value.
      * @param stringBuilder The {@link StringBuilder} to append to.
@@ -23,6 +23,7 @@
  */
 package com.sonyericsson.jenkins.plugins.bfa.tokens;
 
+import com.sonyericsson.jenkins.plugins.bfa.ScanQueue;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseBuildAction;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseMatrixBuildAction;
 import com.sonyericsson.jenkins.plugins.bfa.sod.ScanOnDemandTask;
@@ -87,6 +88,14 @@ public class Token extends DataBoundTokenMacro {
         this.renderer.setNoFailureText(noFailureText);
     }
 
+    /**
+     * @param pendingText Text to return when the build is still waiting to be scanned in the background.
+     */
+    @Parameter
+    public void setPendingText(final String pendingText) {
+        this.renderer.setPendingText(pendingText);
+    }
+
     @Override
     public boolean acceptsMacroName(final String macroName) {
         return "BUILD_FAILURE_ANALYZER".equals(macroName);
@@ -113,6 +122,11 @@ public class Token extends DataBoundTokenMacro {
      */
     private String evaluate(final Run<?, ?> run) {
 
+        // The scan queue attaches the causes once it gets to the build.
+        if (ScanQueue.getInstance().isPending(run)) {
+            return renderer.getPendingText();
+        }
+
         // Scan the build now.
         new ScanOnDemandTask(run).run();
 
@@ -68,6 +68,38 @@ l.layout(permission: PluginImpl.VIEW_PERMISSION, norefresh: true) {
       }
     }
 
+    def degradedReason = management.getDegradedReason()
+    if (degradedReason != null) {
+      div(class: "warning", style: "margin-top: 10px; margin-bottom: 10px") {
+        text(_("Degraded", degradedReason))
+      }
+    }
+
+    def queueSize = management.getScanQueueSize()
+    if (queueSize > 0) {
+      div(class: "info", style: "margin-top: 10px; margin-bottom: 10px") {
+        text(_("ScanQueue", queueSize))
+      }
+    }
+
+    def scanCache = management.getScanResultCache()
+    if (PluginImpl.getInstance().getScanCacheSize() > 0 && scanCache.hits + scanCache.misses > 0) {
+      div(class: "info", style: "margin-top: 10px; margin-bottom: 10px") {
+        text(_("ScanCache", scanCache.hitRate, scanCache.hits, scanCache.hits + scanCache.misses))
+      }
+    }
+
+    def statisticsWriter = management.getStatisticsWriter()
+    def spooled = statisticsWriter.spooled
+    if (statisticsWriter.queueSize > 0 || statisticsWriter.failed > 0 || spooled > 0
+            || statisticsWriter.overflowed > 0) {
+      div(class: "info", style: "margin-top: 10px; margin-bottom: 10px") {
+        text(_("StatisticsWriter", statisticsWriter.queueSize, statisticsWriter.lag, statisticsWriter.written,
+                statisticsWriter.throughput, statisticsWriter.failed, spooled, statisticsWriter.queueCapacity,
+                statisticsWriter.overflowed))
+      }
+    }
+
     def removedCause = request.getSession(true).getAttribute(CauseManagement.SESSION_REMOVED_FAILURE_CAUSE)
     if ( removedCause != null) {
       div(class: "info", style: "margin-top: 10px; margin-bottom: 10px") {
@@ -100,6 +132,16 @@ l.layout(permission: PluginImpl.VIEW_PERMISSION, norefresh: true) {
                         href: "detailedgraphs",
                         alt: _("Graphs/statistics")) { text(_("Graphs/Statistics")) }
             }
+            if (PluginImpl.getInstance().getKnowledgeBase().isEnableStatistics()) {
+                a(style: "font-weight: bold; "
+                        + "font-size: larger; "
+                        + "padding-top: 5px; "
+                        + "padding-bottom: 5px; "
+                        + "padding-right: 20px; "
+                        + "float: right;",
+                        href: "indexes",
+                        alt: _("Statistics indexes")) { text(_("Statistics Indexes")) }
+            }
         }
     }
 
@@ -129,6 +171,12 @@ l.layout(permission: PluginImpl.VIEW_PERMISSION, norefresh: true) {
             } else {
               text(cause.getName())
             }
+            def quarantined = management.getQuarantinedPatterns(cause.getId())
+            if (!quarantined.isEmpty()) {
+              div(class: "warning", title: quarantined.join("\n")) {
+                text(_("Quarantined", quarantined.size()))
+              }
+            }
           }
           td{
             text(cause.getCategoriesAsString())
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.CauseManagement
+import com.sonyericsson.jenkins.plugins.bfa.CauseManagement
+import com.sonyericsson.jenkins.plugins.bfa.PluginImpl
+
+import java.text.DateFormat
+
+def l = namespace(lib.LayoutTagLib)
+
+l.layout(permission: PluginImpl.UPDATE_PERMISSION, norefresh: true) {
+  l.header(title: _("Failure Cause Management - Statistics Indexes"))
+
+  def management = CauseManagement.getInstance();
+
+  l.side_panel() {
+    if (!management.isUnderTest()) {
+      include(management.getOwner(), "sidepanel.jelly")
+    }
+  }
+
+  l.main_panel() {
+    h1(_("Statistics Indexes"))
+
+    def indexes = management.getStatisticsIndexes()
+    if (indexes == null) {
+      p(_("NotManaged"))
+      return
+    }
+
+    def missing = indexes.findAll { !it.present }
+    if (!missing.isEmpty()) {
+      div(class: "warning", style: "margin-top: 10px; margin-bottom: 10px") {
+        text(_("Missing", missing.collect { it.name }.join(", ")))
+      }
+    }
+
+    def dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT)
+    table(cellpadding: "2", cellspacing: "0", border: "1", class: "sortable pane bigtable", width: "90%",
+            style: "width: 90%; white-space: normal", id: "statisticsIndexesTable") {
+      tr {
+        th{text(_("Name"))}
+        th{text(_("Keys"))}
+        th{text(_("Managed"))}
+        th{text(_("Uses"))}
+        th{text(_("Since"))}
+      }
+      indexes.each{ index ->
+        tr {
+          td{
+            text(index.name)
+            if (!index.present) {
+              div(class: "warning") { text(_("NotCreated")) }
+            }
+          }
+          td{ code(index.keys) }
+          td{ text(index.managed ? _("Yes") : _("No")) }
+          td{ text(index.ops != null ? index.ops : "") }
+          td{ text(index.since != null ? dateFormat.format(index.since) : "") }
+        }
+      }
+    }
+  }
+}
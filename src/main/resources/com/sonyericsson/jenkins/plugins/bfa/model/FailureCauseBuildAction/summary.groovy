@@ -130,6 +130,9 @@ def displayCauses(cause, indent, links) {
                                 , class: "model-link") {
                             text(_("Indication") + " " + (index++))
                         }
+                        if (indication.partialScan) {
+                            text(" " + _("(partial scan)"))
+                        }
                         text(" ")
                     }
                 }
@@ -38,6 +38,7 @@ import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
 import com.sonyericsson.jenkins.plugins.bfa.statistics.FailureCauseStatistics;
 import com.sonyericsson.jenkins.plugins.bfa.statistics.Statistics;
 import com.sonyericsson.jenkins.plugins.bfa.test.utils.PrintToLogBuilder;
@@ -63,6 +64,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.powermock.reflect.Whitebox;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -79,9 +81,11 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -800,6 +804,94 @@ public class BuildFailureScannerHudsonTest {
         assertNull(action);
     }
 
+    /**
+     * Tests that the end of a log exceeding the max log size is scanned when configured, and that the found
+     * indications are flagged as found in a partial scan, without a line number.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testScanEndOfOversizedLog() throws Exception {
+        PluginImpl.getInstance().setMaxLogSize(1);
+        PluginImpl.getInstance().setOversizedLogTailSize(1);
+        FreeStyleProject project = createProject(createHugeString(1024 * 1024) + "\n" + BUILD_LOG);
+        configureCauseAndIndication();
+        QueueTaskFuture<FreeStyleBuild> future = project.scheduleBuild2(0, new Cause.UserIdCause());
+        FreeStyleBuild build = future.get(10, TimeUnit.SECONDS);
+        jenkins.assertBuildStatus(Result.FAILURE, build);
+        FailureCauseBuildAction action = build.getAction(FailureCauseBuildAction.class);
+        assertNotNull(action);
+        assertEquals(1, action.getFoundFailureCauses().size());
+        FoundIndication indication = action.getFoundFailureCauses().get(0).getIndications().get(0);
+        assertTrue(indication.isPartialScan());
+        // The line of the end of the log is not known
+        assertEquals(-1, indication.getMatchingLine());
+    }
+
+    /**
+     * Tests that rescanning for changed causes only adds what a newly added cause finds, and keeps what was found
+     * before.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testRescanChanged() throws Exception {
+        FreeStyleProject project = createProject();
+        configureCauseAndIndication();
+        QueueTaskFuture<FreeStyleBuild> future = project.scheduleBuild2(0, new Cause.UserIdCause());
+        FreeStyleBuild build = future.get(10, TimeUnit.SECONDS);
+        jenkins.assertBuildStatus(Result.FAILURE, build);
+        FailureCauseBuildAction action = build.getAction(FailureCauseBuildAction.class);
+        assertNotNull(action.getScannedAt());
+        assertNotNull(action.getKnowledgeBaseRevision());
+        FoundFailureCause found = action.getFoundFailureCauses().get(0);
+
+        FailureCause added = new FailureCause("Added", "");
+        added.addIndication(new BuildLogIndication(".*detail.*"));
+        PluginImpl.getInstance().getKnowledgeBase().addCause(added);
+
+        PrintStream scanLog = new PrintStream(new ByteArrayOutputStream(), true, "UTF8");
+        BuildFailureScanner.rescanChanged(build, scanLog);
+        assertEquals(2, action.getFoundFailureCauses().size());
+        assertSame(found, action.getFoundFailureCauses().get(0));
+        assertEquals(added.getId(), action.getFoundFailureCauses().get(1).getId());
+
+        // Nothing has changed since
+        BuildFailureScanner.rescanChanged(build, scanLog);
+        assertEquals(2, action.getFoundFailureCauses().size());
+        assertSame(found, action.getFoundFailureCauses().get(0));
+    }
+
+    /**
+     * Tests that rescanning for changed causes drops and restores the causes in the fallback categories like a full
+     * scan: a generic cause dropped for a specific one is found again once the specific one no longer matches.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testRescanChangedWithFallbackCategories() throws Exception {
+        PluginImpl.getInstance().setFallbackCategoriesAsString("Generic");
+        FailureCause genericFailureCause = configureCauseAndIndication(
+                "Generic Error", "an error", "", "Generic", new BuildLogIndication(".*Generic Error.*"));
+        FailureCause specificFailureCause = configureCauseAndIndication(
+                "Specific Error", "an error", "", "Specific", new BuildLogIndication(".*Specific Error.*"));
+        FreeStyleProject project = createProject("Generic Error\nSpecific Error");
+        QueueTaskFuture<FreeStyleBuild> future = project.scheduleBuild2(0, new Cause.UserIdCause());
+        FreeStyleBuild build = future.get(10, TimeUnit.SECONDS);
+        jenkins.assertBuildStatus(Result.FAILURE, build);
+        FailureCauseBuildAction action = build.getAction(FailureCauseBuildAction.class);
+        assertFalse(findCauseInList(action.getFoundFailureCauses(), genericFailureCause));
+        assertTrue(findCauseInList(action.getFoundFailureCauses(), specificFailureCause));
+
+        specificFailureCause.getIndications().clear();
+        specificFailureCause.addIndication(new BuildLogIndication(".*Other Error.*"));
+        PluginImpl.getInstance().getKnowledgeBase().saveCause(specificFailureCause);
+        PrintStream scanLog = new PrintStream(new ByteArrayOutputStream(), true, "UTF8");
+        BuildFailureScanner.rescanChanged(build, scanLog);
+        assertTrue(findCauseInList(action.getFoundFailureCauses(), genericFailureCause));
+        assertFalse(findCauseInList(action.getFoundFailureCauses(), specificFailureCause));
+    }
+
     /**
      * Tests that scanner result presents when build log size is less than max log size.
      *
@@ -871,6 +963,7 @@ public class BuildFailureScannerHudsonTest {
         KnowledgeBase base = mock(KnowledgeBase.class);
         when(base.isEnableStatistics()).thenReturn(true);
         when(base.getCauses()).thenReturn(causes);
+        when(base.getScanSnapshot()).thenReturn(ScanSnapshot.compile(causes, null));
         when(base.isEnableStatistics()).thenReturn(true);
         doAnswer(new Answer() {
             @Override
@@ -879,6 +972,7 @@ public class BuildFailureScannerHudsonTest {
                 return null;
             }
         }).when(base).saveStatistics(Matchers.<Statistics>any());
+        doCallRealMethod().when(base).saveStatistics(Matchers.<List<Statistics>>any());
         Whitebox.setInternalState(PluginImpl.getInstance(), KnowledgeBase.class, base);
         FreeStyleProject project = createProject();
         QueueTaskFuture<FreeStyleBuild> future = project.scheduleBuild2(0, new Cause.UserIdCause());
@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//CS IGNORE MagicNumber FOR NEXT 300 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link ScanQueue}.
+ */
+public class ScanQueueTest {
+
+    /**
+     * Holds the builds pending on shutdown.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private ScanQueue queue;
+    private CountDownLatch release;
+    private List<String> scanned;
+
+    /**
+     * Creates a fresh queue for every test.
+     */
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), ScanQueue.FILE_NAME);
+        queue = new ScanQueue(file, 100);
+        release = new CountDownLatch(1);
+        scanned = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    /**
+     * Stops the workers.
+     */
+    @After
+    public void tearDown() {
+        release.countDown();
+        queue.shutdown();
+    }
+
+    /**
+     * Tests that nothing is queued when the queue is disabled.
+     */
+    @Test
+    public void testDisabled() {
+        Run run = run("job#1", Result.FAILURE);
+        assertFalse(queue.offer(run, scan("job#1"), 0, 1));
+        assertFalse(queue.isPending(run));
+        assertEquals(0, queue.getQueueSize());
+    }
+
+    /**
+     * Tests that failed builds are scanned before unstable ones and those before the rest, and in the order they
+     * were queued otherwise.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testPriority() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        assertTrue(queue.offer(run("blocker#1", Result.SUCCESS), new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(release);
+            }
+        }, 10, 1));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch done = new CountDownLatch(5);
+        queue.offer(run("job#1", Result.SUCCESS), scan("job#1", done), 10, 1);
+        queue.offer(run("job#2", Result.UNSTABLE), scan("job#2", done), 10, 1);
+        queue.offer(run("job#3", Result.FAILURE), scan("job#3", done), 10, 1);
+        queue.offer(run("job#4", Result.ABORTED), scan("job#4", done), 10, 1);
+        queue.offer(run("job#5", Result.FAILURE), scan("job#5", done), 10, 1);
+        assertEquals(5, queue.getQueueSize());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("job#3", "job#5", "job#2", "job#1", "job#4"), scanned);
+    }
+
+    /**
+     * Tests that the queue refuses builds once it is full, and that a build stays pending until its scan is done.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testBackpressure() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        Run blocker = run("blocker#1", Result.FAILURE);
+        assertTrue(queue.offer(blocker, new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(release);
+            }
+        }, 2, 1));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch done = new CountDownLatch(2);
+        Run first = run("job#1", Result.FAILURE);
+        Run second = run("job#2", Result.FAILURE);
+        Run third = run("job#3", Result.FAILURE);
+        assertTrue(queue.offer(first, scan("job#1", done), 2, 1));
+        assertTrue(queue.offer(second, scan("job#2", done), 2, 1));
+        assertFalse(queue.offer(third, scan("job#3", done), 2, 1));
+        assertTrue(queue.isPending(blocker));
+        assertTrue(queue.isPending(first));
+        assertTrue(queue.isPending(second));
+        assertFalse(queue.isPending(third));
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // The scan is done when the latch is counted down, the build is no longer pending right after that
+        long deadline = System.currentTimeMillis() + 10000;
+        while (queue.isPending(second) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(queue.isPending(blocker));
+        assertFalse(queue.isPending(first));
+        assertFalse(queue.isPending(second));
+        assertEquals(Arrays.asList("job#1", "job#2"), scanned);
+    }
+
+    /**
+     * Tests that the builds still pending when the shutdown gives up waiting are saved, and read back only once.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testShutdownSavesPending() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch never = new CountDownLatch(1);
+        assertTrue(queue.offer(run("blocker#1", Result.FAILURE), new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(never);
+            }
+        }, 10, 1));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        queue.offer(run("job#2", Result.SUCCESS), scan("job#2"), 10, 1);
+        queue.offer(run("job#1", Result.FAILURE), scan("job#1"), 10, 1);
+
+        queue.shutdown();
+        assertTrue(file.isFile());
+        assertTrue(scanned.isEmpty());
+
+        assertEquals(Arrays.asList("blocker#1", "job#1", "job#2"), queue.takeUnscanned());
+        assertFalse(file.exists());
+        assertTrue(queue.takeUnscanned().isEmpty());
+    }
+
+    /**
+     * Tests that nothing is saved when the queue finishes within the shutdown timeout.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testShutdownFinishesQueue() throws Exception {
+        queue = new ScanQueue(file, 10000);
+        queue.offer(run("job#1", Result.FAILURE), scan("job#1"), 10, 1);
+        queue.offer(run("job#2", Result.FAILURE), scan("job#2"), 10, 1);
+
+        queue.shutdown();
+        assertEquals(Arrays.asList("job#1", "job#2"), scanned);
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Tests the ranks of the results.
+     */
+    @Test
+    public void testRank() {
+        assertTrue(ScanQueue.rank(Result.FAILURE) < ScanQueue.rank(Result.UNSTABLE));
+        assertTrue(ScanQueue.rank(Result.UNSTABLE) < ScanQueue.rank(Result.SUCCESS));
+        assertEquals(ScanQueue.rank(Result.SUCCESS), ScanQueue.rank(Result.ABORTED));
+        assertEquals(ScanQueue.rank(Result.SUCCESS), ScanQueue.rank(null));
+    }
+
+    /**
+     * A mocked build.
+     *
+     * @param id the externalizable id.
+     * @param result the result.
+     * @return the build.
+     */
+    private static Run run(String id, Result result) {
+        Run run = mock(Run.class);
+        when(run.getExternalizableId()).thenReturn(id);
+        when(run.getResult()).thenReturn(result);
+        return run;
+    }
+
+    /**
+     * A scan that records the build as scanned.
+     *
+     * @param id the id to record.
+     * @return the scan.
+     */
+    private Runnable scan(String id) {
+        return scan(id, new CountDownLatch(1));
+    }
+
+    /**
+     * A scan that records the build as scanned and counts down a latch.
+     *
+     * @param id the id to record.
+     * @param done the latch.
+     * @return the scan.
+     */
+    private Runnable scan(final String id, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                scanned.add(id);
+                done.countDown();
+            }
+        };
+    }
+
+    /**
+     * Waits for a latch without throwing.
+     *
+     * @param latch the latch.
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCauseModification;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
 import hudson.util.CopyOnWriteList;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,16 +38,19 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.UUID;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -189,4 +193,86 @@ public class LocalFileKnowledgeBaseTest {
 
         assertSame(existingCause, kb.getCause(existingCause.getId()));
     }
+
+    /**
+     * Tests that {@link LocalFileKnowledgeBase#convertFrom(KnowledgeBase)} copies nothing from a knowledge base
+     * running degraded, which only has partial causes to give.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testConvertFromDegraded() throws Exception {
+        LocalFileKnowledgeBase kb = new LocalFileKnowledgeBase();
+        KnowledgeBase old = mock(KnowledgeBase.class);
+        when(old.getDegradedReason()).thenReturn("unreachable");
+        when(old.getCauseNames()).thenReturn(oldCauses.getView());
+        when(old.getCause(eq(existingCause.getId()))).thenReturn(existingCause);
+
+        try {
+            kb.convertFrom(old);
+            fail("A degraded knowledge base should not be converted");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("unreachable"));
+        }
+        assertNull(kb.getCause(existingCause.getId()));
+    }
+
+    //CS IGNORE MagicNumber FOR NEXT 40 LINES. REASON: TestData.
+
+    /**
+     * Tests {@link LocalFileKnowledgeBase#getRevision()} and {@link LocalFileKnowledgeBase#getChangesSince(long)}.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testChangesSince() throws Exception {
+        LocalFileKnowledgeBase kb = new LocalFileKnowledgeBase(oldCauses);
+        assertEquals(0, kb.getRevision());
+        assertTrue(kb.getChangesSince(0).isEmpty());
+
+        FailureCause added = kb.addCause(new FailureCause("added", "description"));
+        kb.saveCause(existingCause);
+        long revision = kb.getRevision();
+        assertEquals(2, revision);
+        KnowledgeBaseChanges changes = kb.getChangesSince(0);
+        assertEquals(Collections.singleton(added.getId()), changes.getAdded());
+        assertEquals(Collections.singleton(existingCause.getId()), changes.getModified());
+        assertTrue(changes.getRemoved().isEmpty());
+
+        kb.removeCause(added.getId());
+        kb.saveCause(existingCause);
+        changes = kb.getChangesSince(revision);
+        assertEquals(4, changes.getRevision());
+        assertTrue(changes.getAdded().isEmpty());
+        assertEquals(Collections.singleton(existingCause.getId()), changes.getModified());
+        assertEquals(Collections.singleton(added.getId()), changes.getRemoved());
+
+        changes = kb.getChangesSince(0);
+        assertTrue(changes.getAdded().isEmpty());
+        assertEquals(Collections.singleton(added.getId()), changes.getRemoved());
+        assertTrue(kb.getChangesSince(4).isEmpty());
+        assertNull(kb.getChangesSince(5));
+    }
+
+    /**
+     * Tests that {@link LocalFileKnowledgeBase#getScanSnapshot()} returns the same snapshot until a cause is saved.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testScanSnapshot() throws Exception {
+        LocalFileKnowledgeBase kb = new LocalFileKnowledgeBase(oldCauses);
+        ScanSnapshot snapshot = kb.getScanSnapshot();
+        assertSame(snapshot, kb.getScanSnapshot());
+        assertEquals(Long.valueOf(0), snapshot.getRevision());
+        assertEquals(oldCauses.size(), snapshot.getCauses().size());
+
+        FailureCause added = kb.addCause(new FailureCause("added", "description"));
+        ScanSnapshot next = kb.getScanSnapshot();
+        assertNotSame(snapshot, next);
+        assertEquals(Long.valueOf(1), next.getRevision());
+        assertTrue(next.getCauses().contains(added));
+        assertFalse(snapshot.getCauses().contains(added));
+        assertSame(next, kb.getScanSnapshot());
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.db;
+
+import com.mongodb.MongoSocketOpenException;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterConnectionMode;
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ClusterType;
+import com.mongodb.connection.ServerConnectionState;
+import com.mongodb.connection.ServerDescription;
+import com.mongodb.connection.ServerType;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link MongoCircuitBreaker}.
+ */
+public class MongoCircuitBreakerTest {
+
+    private static final ServerAddress ADDRESS = new ServerAddress();
+
+    /**
+     * Tests that the circuit opens when the server can't be reached, fails fast while open, and closes when the
+     * server answers again.
+     */
+    @Test
+    public void testOpenAndClose() {
+        MongoCircuitBreaker breaker = new MongoCircuitBreaker();
+        breaker.update(cluster(ServerDescription.builder().address(ADDRESS)
+                .state(ServerConnectionState.CONNECTING).build()));
+        assertFalse("A server not probed yet should not open the circuit", breaker.isOpen());
+        breaker.check();
+
+        breaker.update(cluster(ServerDescription.builder().address(ADDRESS)
+                .state(ServerConnectionState.CONNECTING)
+                .exception(new MongoSocketOpenException("Connection refused", ADDRESS)).build()));
+        assertTrue(breaker.isOpen());
+        assertNotNull(breaker.getOpenedSince());
+        assertEquals("Connection refused", breaker.getReason());
+        try {
+            breaker.check();
+            fail("The operation should fail fast");
+        } catch (KnowledgeBaseUnavailableException e) {
+            assertEquals(1, breaker.getRejected());
+        }
+
+        breaker.update(cluster(ServerDescription.builder().address(ADDRESS)
+                .state(ServerConnectionState.CONNECTED).type(ServerType.STANDALONE).ok(true).build()));
+        assertFalse(breaker.isOpen());
+        assertNull(breaker.getOpenedSince());
+        assertNull(breaker.getReason());
+        breaker.check();
+    }
+
+    /**
+     * Creates the description of a cluster of one server.
+     *
+     * @param server the server.
+     * @return the description.
+     */
+    private static ClusterDescription cluster(ServerDescription server) {
+        return new ClusterDescription(ClusterConnectionMode.SINGLE, ClusterType.STANDALONE,
+                Collections.singletonList(server));
+    }
+}
@@ -27,6 +27,7 @@ package com.sonyericsson.jenkins.plugins.bfa.db;
 
 import com.mongodb.DBObject;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.ScanSnapshot;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mongojack.DBCursor;
@@ -35,23 +36,34 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.when;
 
-//CS IGNORE MagicNumber FOR NEXT 100 LINES. REASON: TestData.
+//CS IGNORE MagicNumber FOR NEXT 300 LINES. REASON: TestData.
 
 /**
  * Tests for the Mongo cache.
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(JacksonDBCollection.class)
+@PrepareForTest({JacksonDBCollection.class, MongoDBKnowledgeBase.class })
 public class MongoDBKnowledgeBaseCacheTest {
 
     /**
@@ -66,7 +78,7 @@ public class MongoDBKnowledgeBaseCacheTest {
         JacksonDBCollection<FailureCause, String> collection = mock(JacksonDBCollection.class);
         when(cursor.next()).thenReturn(mockedCause);
         when(cursor.hasNext()).thenReturn(true, false);
-        doReturn(cursor).when(collection).find(any(DBObject.class));
+        doReturn(cursor).when(collection).find(any(DBObject.class), any(DBObject.class));
         MongoDBKnowledgeBaseCache cache = new MongoDBKnowledgeBaseCache(collection);
         cache.start();
         while (cache.getCauses() == null) {
@@ -84,4 +96,134 @@ public class MongoDBKnowledgeBaseCacheTest {
         Thread.sleep(1000);
         assertNull("Updater thread should be null", Whitebox.getInternalState(cache, "updaterThread"));
     }
+
+    /**
+     * Tests that a refresh does nothing when nothing has changed, and reads only the changed causes otherwise.
+     * Every refresh that reads causes publishes a snapshot of them.
+     */
+    @Test
+    public void testIncrementalRefresh() {
+        FailureCause first = new FailureCause("first", "first", "", "", null, "one", null, null);
+        FailureCause second = new FailureCause("second", "second", "", "", null, "two", null, null);
+        FailureCause edited = new FailureCause("first", "edited", "", "", null, "one", null, null);
+        FailureCause added = new FailureCause("added", "added", "", "", null, "three", null, null);
+        first.setRevision(1L);
+        DBCursor<FailureCause> all = mock(DBCursor.class);
+        when(all.hasNext()).thenReturn(true, true, false);
+        when(all.next()).thenReturn(first, second);
+        DBCursor<FailureCause> changed = mock(DBCursor.class);
+        when(changed.hasNext()).thenReturn(true, true, false);
+        when(changed.next()).thenReturn(edited, added);
+        JacksonDBCollection<FailureCause, String> collection = mock(JacksonDBCollection.class);
+        doReturn(all).doReturn(changed).when(collection).find(any(DBObject.class), any(DBObject.class));
+        doReturn(Arrays.asList("one", "two")).when(collection).distinct("categories");
+        MongoDBKnowledgeBase knowledgeBase = mock(MongoDBKnowledgeBase.class);
+        when(knowledgeBase.getRevision()).thenReturn(1L);
+
+        MongoDBKnowledgeBaseCache cache = new MongoDBKnowledgeBaseCache(collection, knowledgeBase);
+        cache.refresh();
+        assertEquals(Arrays.asList(first, second), cache.getCauses());
+        ScanSnapshot snapshot = cache.getScanSnapshot();
+        assertEquals(Arrays.asList(first, second), snapshot.getCauses());
+
+        when(collection.getCount(any(DBObject.class))).thenReturn(2L);
+        cache.refresh();
+        verify(collection, times(1)).find(any(DBObject.class), eq(MongoDBKnowledgeBaseCache.SCAN_PROJECTION));
+        verify(knowledgeBase, never()).getChangesSince(anyLong());
+        assertSame(snapshot, cache.getScanSnapshot());
+
+        when(knowledgeBase.getRevision()).thenReturn(3L);
+        when(knowledgeBase.getChangesSince(1L)).thenReturn(new KnowledgeBaseChanges(3,
+                Collections.singleton("added"), Collections.singleton("first"), Collections.singleton("second")));
+        cache.refresh();
+        verify(collection, times(2)).find(any(DBObject.class), eq(MongoDBKnowledgeBaseCache.SCAN_PROJECTION));
+        assertEquals(Arrays.asList(edited, added), cache.getCauses());
+        assertEquals(Arrays.asList(edited, added), cache.getScanSnapshot().getCauses());
+        assertEquals(Long.valueOf(3), cache.getScanSnapshot().getRevision());
+        assertEquals(Arrays.asList("one", "two", "three"), cache.getCategories());
+        verify(collection, times(1)).distinct("categories");
+    }
+
+    /**
+     * Tests that a change that took its revision before a change written first is not skipped: the cache waits at
+     * the revision below the missing one until it is written, or until it has been missing for too long.
+     */
+    @Test
+    public void testInterleavedChanges() {
+        FailureCause first = new FailureCause("first", "first", "", "", null, "one", null, null);
+        first.setRevision(2L);
+        FailureCause second = new FailureCause("second", "second", "", "", null, "one", null, null);
+        second.setRevision(1L);
+        FailureCause editedFirst = new FailureCause("first", "edited first", "", "", null, "one", null, null);
+        FailureCause editedSecond = new FailureCause("second", "edited second", "", "", null, "one", null, null);
+        DBCursor<FailureCause> all = mock(DBCursor.class);
+        when(all.hasNext()).thenReturn(true, true, false);
+        when(all.next()).thenReturn(first, second);
+        DBCursor<FailureCause> secondWritten = mock(DBCursor.class);
+        when(secondWritten.hasNext()).thenReturn(true, false);
+        when(secondWritten.next()).thenReturn(editedSecond);
+        DBCursor<FailureCause> bothWritten = mock(DBCursor.class);
+        when(bothWritten.hasNext()).thenReturn(true, true, false);
+        when(bothWritten.next()).thenReturn(editedFirst, editedSecond);
+        JacksonDBCollection<FailureCause, String> collection = mock(JacksonDBCollection.class);
+        doReturn(all).doReturn(secondWritten).doReturn(bothWritten)
+                .when(collection).find(any(DBObject.class), any(DBObject.class));
+        doReturn(Collections.singletonList("one")).when(collection).distinct("categories");
+        when(collection.getCount(any(DBObject.class))).thenReturn(2L);
+        MongoDBKnowledgeBase knowledgeBase = mock(MongoDBKnowledgeBase.class);
+        when(knowledgeBase.getRevision()).thenReturn(2L);
+        MongoDBKnowledgeBaseCache cache = new MongoDBKnowledgeBaseCache(collection, knowledgeBase);
+        cache.refresh();
+        assertEquals(Long.valueOf(2), cache.getScanSnapshot().getRevision());
+
+        // The edit of the first cause takes revision 3, the edit of the second one takes 4 and is written first
+        when(knowledgeBase.getRevision()).thenReturn(4L);
+        when(knowledgeBase.getChangesSince(2L)).thenReturn(new KnowledgeBaseChanges(4, Collections.<String>emptySet(),
+                Collections.singleton("second"), Collections.<String>emptySet(), Collections.singleton(3L)),
+                new KnowledgeBaseChanges(4, Collections.<String>emptySet(), new HashSet<String>(Arrays.asList(
+                        "first", "second")), Collections.<String>emptySet()));
+        cache.refresh();
+        assertEquals(Arrays.asList(first, editedSecond), cache.getCauses());
+        assertEquals("The cache should wait for the missing revision",
+                Long.valueOf(2), cache.getScanSnapshot().getRevision());
+
+        cache.refresh();
+        verify(knowledgeBase, times(2)).getChangesSince(2L);
+        assertEquals(Arrays.asList(editedFirst, editedSecond), cache.getCauses());
+        assertEquals(Long.valueOf(4), cache.getScanSnapshot().getRevision());
+
+        // Revision 5 is overwritten by revision 6 of the same cause and never shows up
+        when(knowledgeBase.getRevision()).thenReturn(6L);
+        KnowledgeBaseChanges overwritten = new KnowledgeBaseChanges(6, Collections.<String>emptySet(),
+                Collections.<String>emptySet(), Collections.<String>emptySet(), Collections.singleton(5L));
+        when(knowledgeBase.getChangesSince(4L)).thenReturn(overwritten);
+        cache.refresh();
+        assertEquals(Long.valueOf(4), cache.getScanSnapshot().getRevision());
+        Map<Long, Long> missingSince = Whitebox.getInternalState(cache, "missingSince");
+        missingSince.put(5L, System.currentTimeMillis() - MongoDBKnowledgeBaseCache.MISSING_REVISION_TIMEOUT);
+        cache.refresh();
+        assertEquals("The cache should give up on the missing revision",
+                Long.valueOf(6), cache.getScanSnapshot().getRevision());
+    }
+
+    /**
+     * Tests that equal categories of different causes are read into the same strings.
+     */
+    @Test
+    public void testInternedCategories() {
+        FailureCause first = new FailureCause("first", "first", "", "", null, new String("shared"), null, null);
+        FailureCause second = new FailureCause("second", "second", "", "", null, new String("shared"), null, null);
+        assertNotSame(first.getCategories().get(0), second.getCategories().get(0));
+        DBCursor<FailureCause> all = mock(DBCursor.class);
+        when(all.hasNext()).thenReturn(true, true, false);
+        when(all.next()).thenReturn(first, second);
+        JacksonDBCollection<FailureCause, String> collection = mock(JacksonDBCollection.class);
+        doReturn(all).when(collection).find(any(DBObject.class), any(DBObject.class));
+
+        MongoDBKnowledgeBaseCache cache = new MongoDBKnowledgeBaseCache(collection);
+        cache.refresh();
+        List<FailureCause> causes = cache.getCauses();
+        assertEquals(Collections.singletonList("shared"), causes.get(0).getCategories());
+        assertSame(causes.get(0).getCategories().get(0), causes.get(1).getCategories().get(0));
+    }
 }
@@ -24,6 +24,13 @@
 
 package com.sonyericsson.jenkins.plugins.bfa.db;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkUpdateRequestBuilder;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteRequestBuilder;
+import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 import com.mongodb.MongoException;
 import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
@@ -33,6 +40,7 @@ import com.sonyericsson.jenkins.plugins.bfa.statistics.Statistics;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.bson.types.ObjectId;
 import org.mockito.Matchers;
 import org.mongojack.DBCursor;
 import org.mongojack.JacksonDBCollection;
@@ -41,20 +49,33 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -65,11 +86,14 @@ import static org.powermock.api.mockito.PowerMockito.when;
  * @author Tomas Westling &lt;tomas.westling@sonyericsson.com&gt;
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(JacksonDBCollection.class)
+@PrepareForTest({JacksonDBCollection.class, MongoDBKnowledgeBaseCache.class, BulkWriteException.class,
+        BulkWriteRequestBuilder.class, BulkUpdateRequestBuilder.class })
 public class MongoDBKnowledgeBaseTest {
 
     private JacksonDBCollection<FailureCause, String> collection;
     private JacksonDBCollection<Statistics, String> statisticsCollection;
+    private DBCollection dbCollection;
+    private DBCollection countersCollection;
     private MongoDBKnowledgeBase kb;
     private List<Indication> indications;
     private Indication indication;
@@ -87,6 +111,13 @@ public class MongoDBKnowledgeBaseTest {
         statisticsCollection = mock(JacksonDBCollection.class);
         Whitebox.setInternalState(kb, "jacksonCollection", collection);
         Whitebox.setInternalState(kb, "jacksonStatisticsCollection", statisticsCollection);
+        dbCollection = mock(DBCollection.class);
+        when(collection.getDbCollection()).thenReturn(dbCollection);
+        countersCollection = mock(DBCollection.class);
+        when(countersCollection.findAndModify(Matchers.<DBObject>any(), Matchers.<DBObject>any(),
+                Matchers.<DBObject>any(), anyBoolean(), Matchers.<DBObject>any(), anyBoolean(), anyBoolean()))
+                .thenReturn(new BasicDBObject(MongoDBKnowledgeBase.REVISION, 1L));
+        Whitebox.setInternalState(kb, "countersCollection", countersCollection);
         indications = new LinkedList<Indication>();
         indication = new BuildLogIndication("something");
         indications.add(indication);
@@ -144,6 +175,9 @@ public class MongoDBKnowledgeBaseTest {
         FailureCause addedCause = kb.addCause(mockedCause);
         assertNotNull(addedCause);
         assertSame(mockedCause, addedCause);
+        assertEquals("The revision should be written with the cause", Long.valueOf(1), mockedCause.getRevision());
+        assertEquals(Long.valueOf(1), mockedCause.getAddedRevision());
+        verify(dbCollection, never()).update(Matchers.<DBObject>any(), Matchers.<DBObject>any());
     }
 
     /**
@@ -163,6 +197,63 @@ public class MongoDBKnowledgeBaseTest {
         assertSame(mockedCause, addedCause);
     }
 
+    /**
+     * Tests that saving a cause writes a new revision with it and keeps the revision it was added in.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSaveCauseKeepsAddedRevision() throws Exception {
+        WriteResult<FailureCause, String> result = mock(WriteResult.class);
+        when(result.getSavedObject()).thenReturn(mockedCause);
+        MongoDBKnowledgeBaseCache cache = mock(MongoDBKnowledgeBaseCache.class);
+        Whitebox.setInternalState(kb, cache);
+        doReturn(result).when(collection).save(Matchers.<FailureCause>any());
+        when(dbCollection.findOne(Matchers.<DBObject>any(), Matchers.<DBObject>any()))
+                .thenReturn(new BasicDBObject(MongoDBKnowledgeBase.ADDED_REVISION, 0L));
+        kb.saveCause(mockedCause);
+        assertEquals(Long.valueOf(1), mockedCause.getRevision());
+        assertEquals(Long.valueOf(0), mockedCause.getAddedRevision());
+        verify(collection).save(same(mockedCause));
+        verify(dbCollection, never()).update(Matchers.<DBObject>any(), Matchers.<DBObject>any());
+    }
+
+    //CS IGNORE MagicNumber FOR NEXT 40 LINES. REASON: TestData.
+
+    /**
+     * Tests {@link MongoDBKnowledgeBase#getChangesSince(long)}, with revision 4 taken from the counter by a change
+     * that has not written its cause yet, while the changes that took revisions 5 and 6 after it have.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testGetChangesSince() throws Exception {
+        when(countersCollection.findOne(Matchers.<DBObject>any()))
+                .thenReturn(new BasicDBObject(MongoDBKnowledgeBase.REVISION, 6L));
+        BasicDBObject added = new BasicDBObject("_id", "added");
+        added.put(MongoDBKnowledgeBase.REVISION, 5L);
+        added.put(MongoDBKnowledgeBase.ADDED_REVISION, 5L);
+        BasicDBObject modified = new BasicDBObject("_id", "modified");
+        modified.put(MongoDBKnowledgeBase.REVISION, 3L);
+        BasicDBObject removed = new BasicDBObject("_id", "removed");
+        removed.put(MongoDBKnowledgeBase.REVISION, 6L);
+        removed.put(MongoDBKnowledgeBase.ADDED_REVISION, 1L);
+        removed.put("_removed", new BasicDBObject("by", "user"));
+        com.mongodb.DBCursor cursor = mock(com.mongodb.DBCursor.class);
+        when(cursor.hasNext()).thenReturn(true, true, true, false);
+        when(cursor.next()).thenReturn(added, modified, removed);
+        when(dbCollection.find(Matchers.<DBObject>any(), Matchers.<DBObject>any())).thenReturn(cursor);
+
+        assertEquals(6, kb.getRevision());
+        KnowledgeBaseChanges changes = kb.getChangesSince(2);
+        assertEquals(6, changes.getRevision());
+        assertEquals("The change in flight should be missing", Collections.singleton(4L), changes.getMissing());
+        assertEquals(Collections.singleton("added"), changes.getAdded());
+        assertEquals(Collections.singleton("modified"), changes.getModified());
+        assertEquals(Collections.singleton("removed"), changes.getRemoved());
+        assertNull(kb.getChangesSince(7));
+    }
+
     /**
      * Tests fetching statistics.
      *
@@ -185,6 +276,31 @@ public class MongoDBKnowledgeBaseTest {
         assertSame(mockedStatistics, fetchedStatistics.get(0));
     }
 
+    /**
+     * Tests that causes are resolved from the cache when it has them, and that the others are read with one query.
+     */
+    @Test
+    public void testResolveCauses() {
+        String otherId = "222222222222222222222222";
+        FailureCause other = new FailureCause(otherId, "removed", "", "", null, "category", null, null);
+        MongoDBKnowledgeBaseCache cache = mock(MongoDBKnowledgeBaseCache.class);
+        when(cache.getCause("id")).thenReturn(mockedCause);
+        Whitebox.setInternalState(kb, "cache", cache);
+        DBCursor<FailureCause> cursor = mock(DBCursor.class);
+        when(cursor.hasNext()).thenReturn(true, false);
+        when(cursor.next()).thenReturn(other);
+        doReturn(cursor).when(collection).find(Matchers.<DBObject>any(), Matchers.<DBObject>any());
+
+        Map<String, FailureCause> causes = kb.resolveCauses(Arrays.asList("id", otherId, "id"));
+        assertEquals(2, causes.size());
+        assertSame(mockedCause, causes.get("id"));
+        assertSame(other, causes.get(otherId));
+        DBObject query = new BasicDBObject("_id", new BasicDBObject("$in",
+                Collections.singletonList(new ObjectId(otherId))));
+        verify(collection, times(1)).find(Matchers.<DBObject>any(), Matchers.<DBObject>any());
+        verify(collection).find(eq(query), Matchers.<DBObject>any());
+    }
+
     /**
      * Tests that the mongo exception caused by the collection gets thrown from the knowledgebase.
      *
@@ -195,4 +311,108 @@ public class MongoDBKnowledgeBaseTest {
         when(collection.find(Matchers.<DBObject>any(), Matchers.<DBObject>any())).thenThrow(MongoException.class);
         kb.getCauseNames();
     }
+
+    /**
+     * Tests that statistics already saved by an earlier, partly failed attempt don't fail the bulk insert, while
+     * other errors do.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSaveStatisticsAgain() throws Exception {
+        DBCollection statistics = mock(DBCollection.class);
+        BulkWriteOperation bulk = mock(BulkWriteOperation.class);
+        when(statistics.initializeUnorderedBulkOperation()).thenReturn(bulk);
+        Whitebox.setInternalState(kb, "statisticsCollection", statistics);
+        BulkWriteException duplicate = mock(BulkWriteException.class);
+        //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: TestData.
+        when(duplicate.getWriteErrors()).thenReturn(Collections.singletonList(
+                new BulkWriteError(11000, "duplicate key", new BasicDBObject(), 0)));
+        when(bulk.execute()).thenThrow(duplicate);
+
+        kb.saveStatistics(Arrays.asList(mockedStatistics, mockedStatistics));
+        verify(bulk, times(2)).insert(Matchers.<DBObject>any());
+
+        BulkWriteException other = mock(BulkWriteException.class);
+        //CS IGNORE MagicNumber FOR NEXT 2 LINES. REASON: TestData.
+        when(other.getWriteErrors()).thenReturn(Arrays.asList(
+                new BulkWriteError(11000, "duplicate key", new BasicDBObject(), 0),
+                new BulkWriteError(121, "validation failed", new BasicDBObject(), 1)));
+        when(bulk.execute()).thenThrow(other);
+        try {
+            kb.saveStatistics(Collections.singletonList(mockedStatistics));
+            fail("Errors other than duplicate keys should fail the save");
+        } catch (BulkWriteException e) {
+            assertSame(other, e);
+        }
+    }
+
+    /**
+     * Tests that the statistics of a build scanned again replace the ones with the same id unless those are from a
+     * later scan, and replace the ones of the same build when they have no id.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSaveRescannedStatistics() throws Exception {
+        DBCollection statistics = mock(DBCollection.class);
+        BulkWriteOperation bulk = mock(BulkWriteOperation.class);
+        when(statistics.initializeUnorderedBulkOperation()).thenReturn(bulk);
+        Whitebox.setInternalState(kb, "statisticsCollection", statistics);
+        BulkWriteRequestBuilder byId = mock(BulkWriteRequestBuilder.class);
+        BulkUpdateRequestBuilder upsert = mock(BulkUpdateRequestBuilder.class);
+        when(byId.upsert()).thenReturn(upsert);
+        BulkWriteRequestBuilder byBuild = mock(BulkWriteRequestBuilder.class);
+        String id = new ObjectId().toHexString();
+        //CS IGNORE MagicNumber FOR NEXT 4 LINES. REASON: TestData.
+        BasicDBObject idQuery = new BasicDBObject("_id", new ObjectId(id));
+        idQuery.put("rescannedAt", new BasicDBObject("$not", new BasicDBObject("$gte", 5L)));
+        BasicDBObject buildQuery = new BasicDBObject("projectName", "projectName").append("buildNumber", 1)
+                .append("master", "master").append("rescannedAt", new BasicDBObject("$not",
+                        new BasicDBObject("$gte", 5L)));
+        when(bulk.find(eq(idQuery))).thenReturn(byId);
+        when(bulk.find(eq(buildQuery))).thenReturn(byBuild);
+        Statistics rescanned = new Statistics("projectName", 1, "", null, 1, null, "nodeName", "master", 0, "result",
+                null, null);
+        Whitebox.setInternalState(rescanned, "id", id);
+        Whitebox.setInternalState(rescanned, "rescannedAt", 5L);
+        Statistics rescannedWithoutId = new Statistics("projectName", 1, "", null, 1, null, "nodeName", "master", 0,
+                "result", null, null);
+        Whitebox.setInternalState(rescannedWithoutId, "rescannedAt", 5L);
+
+        kb.saveStatistics(Arrays.asList(mockedStatistics, rescanned, rescannedWithoutId));
+        verify(bulk).insert(Matchers.<DBObject>any());
+        verify(upsert).replaceOne(Matchers.<DBObject>any());
+        verify(byBuild).replaceOne(Matchers.<DBObject>any());
+        verify(byBuild, never()).upsert();
+    }
+
+    /**
+     * Tests that the causes are read from the cache and that edits fail fast while the database is unreachable.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testDegraded() throws Exception {
+        MongoDBKnowledgeBaseCache cache = mock(MongoDBKnowledgeBaseCache.class);
+        when(cache.getCauses()).thenReturn(Collections.singletonList(mockedCause));
+        when(cache.getCause("id")).thenReturn(mockedCause);
+        Whitebox.setInternalState(kb, "cache", cache);
+        MongoCircuitBreaker breaker = mock(MongoCircuitBreaker.class);
+        when(breaker.isOpen()).thenReturn(true);
+        when(breaker.getReason()).thenReturn("Connection refused");
+        doThrow(new KnowledgeBaseUnavailableException("unreachable")).when(breaker).check();
+        Whitebox.setInternalState(kb, "circuitBreaker", breaker);
+
+        assertEquals("Connection refused", kb.getDegradedReason());
+        assertSame(mockedCause, kb.getCause("id"));
+        assertEquals(Collections.singletonList(mockedCause), new LinkedList<FailureCause>(kb.getShallowCauses()));
+        verify(collection, times(0)).findOneById(anyString());
+        try {
+            kb.saveCause(mockedCause);
+            fail("The save should fail fast");
+        } catch (KnowledgeBaseUnavailableException e) {
+            verify(collection, times(0)).save(any(FailureCause.class));
+        }
+    }
 }
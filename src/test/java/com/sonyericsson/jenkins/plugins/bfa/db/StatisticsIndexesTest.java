@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.db;
+
+import com.mongodb.AggregationOutput;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.doThrow;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link StatisticsIndexes}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({AggregationOutput.class })
+public class StatisticsIndexesTest {
+
+    private DBCollection collection;
+    private List<DBObject> existing;
+
+    /**
+     * Sets up a collection with the default index and the first managed index, created from the shell.
+     */
+    @Before
+    public void setUp() {
+        collection = mock(DBCollection.class);
+        existing = new ArrayList<DBObject>();
+        existing.add(new BasicDBObject("name", "_id_").append("key", new BasicDBObject("_id", 1)));
+        StatisticsIndexes.Index first = StatisticsIndexes.MANAGED.get(0);
+        BasicDBObject keys = new BasicDBObject();
+        for (String field : first.getKeys().keySet()) {
+            keys.append(field, 1.0);
+        }
+        existing.add(new BasicDBObject("name", "byhand").append("key", keys));
+        when(collection.getIndexInfo()).thenReturn(existing);
+    }
+
+    /**
+     * Tests that only the missing managed indexes are created, and that a failure to create one doesn't stop the
+     * others.
+     */
+    @Test
+    public void testEnsure() {
+        StatisticsIndexes.Index failing = StatisticsIndexes.MANAGED.get(1);
+        doThrow(new MongoException("not authorized")).when(collection)
+                .createIndex(eq(failing.getKeys()), Matchers.<DBObject>any());
+
+        int created = StatisticsIndexes.ensure(collection);
+
+        assertEquals(StatisticsIndexes.MANAGED.size() - 2, created);
+        verify(collection, never()).createIndex(eq(StatisticsIndexes.MANAGED.get(0).getKeys()),
+                Matchers.<DBObject>any());
+        for (StatisticsIndexes.Index index : StatisticsIndexes.MANAGED.subList(1, StatisticsIndexes.MANAGED.size())) {
+            verify(collection).createIndex(index.getKeys(),
+                    new BasicDBObject("name", index.getName()).append("background", true));
+        }
+    }
+
+    /**
+     * Tests the status of the indexes, with their usage summed over the servers and the missing ones last.
+     */
+    @Test
+    public void testGetStatus() {
+        Date early = new Date(1000);
+        Date late = new Date(2000);
+        AggregationOutput output = mock(AggregationOutput.class);
+        when(output.results()).thenReturn(Arrays.<DBObject>asList(
+                new BasicDBObject("name", "byhand").append("accesses",
+                        new BasicDBObject("ops", 3L).append("since", late)),
+                new BasicDBObject("name", "byhand").append("accesses",
+                        new BasicDBObject("ops", 4L).append("since", early)),
+                new BasicDBObject("name", "_id_").append("accesses",
+                        new BasicDBObject("ops", 0L).append("since", early))));
+        when(collection.aggregate(any(DBObject.class))).thenReturn(output);
+
+        List<StatisticsIndexes.IndexStatus> status = StatisticsIndexes.getStatus(collection);
+
+        assertEquals(1 + StatisticsIndexes.MANAGED.size(), status.size());
+        assertEquals("_id_", status.get(0).getName());
+        assertFalse(status.get(0).isManaged());
+        assertEquals(Long.valueOf(0), status.get(0).getOps());
+        assertEquals("byhand", status.get(1).getName());
+        assertTrue(status.get(1).isManaged());
+        assertTrue(status.get(1).isPresent());
+        assertEquals(Long.valueOf(7), status.get(1).getOps());
+        assertEquals(early, status.get(1).getSince());
+        for (int i = 2; i < status.size(); i++) {
+            assertEquals(StatisticsIndexes.MANAGED.get(i - 1).getName(), status.get(i).getName());
+            assertTrue(status.get(i).isManaged());
+            assertFalse(status.get(i).isPresent());
+            assertNull(status.get(i).getOps());
+        }
+    }
+
+    /**
+     * Tests that the indexes are still listed when the server can't tell their usage.
+     */
+    @Test
+    public void testGetStatusWithoutUsage() {
+        when(collection.aggregate(any(DBObject.class))).thenThrow(new MongoException("unrecognized stage"));
+
+        List<StatisticsIndexes.IndexStatus> status = StatisticsIndexes.getStatus(collection);
+
+        assertEquals(1 + StatisticsIndexes.MANAGED.size(), status.size());
+        assertNull(status.get(1).getOps());
+        assertNull(status.get(1).getSince());
+        verify(collection, times(1)).getIndexInfo();
+    }
+
+    /**
+     * Tests the comparison of index keys.
+     */
+    @Test
+    public void testSameKeys() {
+        DBObject keys = new BasicDBObject("a", 1).append("b", -1);
+        assertTrue(StatisticsIndexes.sameKeys(keys, new BasicDBObject("a", 1.0).append("b", -1L)));
+        assertFalse(StatisticsIndexes.sameKeys(keys, new BasicDBObject("a", 1).append("b", 1)));
+        assertFalse(StatisticsIndexes.sameKeys(keys, new BasicDBObject("b", -1).append("a", 1)));
+        assertFalse(StatisticsIndexes.sameKeys(keys, new BasicDBObject("a", 1)));
+        assertFalse(StatisticsIndexes.sameKeys(new BasicDBObject("a", "hashed"), new BasicDBObject("a", 1)));
+        assertFalse(StatisticsIndexes.sameKeys(keys, null));
+    }
+}
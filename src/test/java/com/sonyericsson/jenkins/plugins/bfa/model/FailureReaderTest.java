@@ -40,6 +40,7 @@ import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
 import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.scan.MultilineScanner;
 import hudson.model.Run;
 import org.junit.Test;
 import org.powermock.api.mockito.PowerMockito;
@@ -135,6 +136,11 @@ public class FailureReaderTest {
     /**
      * Test of timeout on abusive line. Should timeout on two lines
      * each timeout between 1 and 2 seconds.
+     * The literal is put in a group since {@link com.sonyericsson.jenkins.plugins.bfa.model.scan.LiteralExtractor}
+     * only finds literals at the top level of the expression and
+     * {@link com.sonyericsson.jenkins.plugins.bfa.model.scan.PatternClassifier} only specializes bare literals.
+     * Otherwise the lines would be prefiltered on the literal or matched without the regex, and the regex would never
+     * be evaluated on the abusive line.
      * @throws Exception if so
      */
     @Test
@@ -143,8 +149,11 @@ public class FailureReaderTest {
         ZipInputStream zipStream = new ZipInputStream(resStream);
         zipStream.getNextEntry();
         BufferedReader br = new QuadrupleDupleLineReader(new BufferedReader(new InputStreamReader(zipStream)));
+        BuildLogIndication abusive = new BuildLogIndication(".*(scan for me please).*");
+        assertNull(abusive.getRequiredLiteral());
+        assertNull(abusive.getSpecializedMatcher());
         long startTime = System.currentTimeMillis();
-        FoundIndication indication = scan(new BuildLogIndication(".*scan for me please.*"), br, "test");
+        FoundIndication indication = scan(abusive, br, "test");
         long elapsedTime = System.currentTimeMillis() - startTime;
         br.close();
         assertTrue("Unexpected time to parse log: " + elapsedTime, elapsedTime >= 1000 && elapsedTime <= 5000);
@@ -153,6 +162,8 @@ public class FailureReaderTest {
 
     /**
      * Test of timeout on abusive file. Should timeout on entire scan.
+     * The literal is put in a group for the same reason as in {@link #testScanOneFileWithLineTimeout()}, so that
+     * the regex is evaluated on every line.
      * @throws Exception if so
      */
     @Test
@@ -165,8 +176,11 @@ public class FailureReaderTest {
             inStream = new SequenceInputStream(inStream, zipStream);
         }
         BufferedReader br = new QuadrupleDupleLineReader(new BufferedReader(new InputStreamReader(inStream)));
+        BuildLogIndication abusive = new BuildLogIndication(".*(non existing string)");
+        assertNull(abusive.getRequiredLiteral());
+        assertNull(abusive.getSpecializedMatcher());
         long startTime = System.currentTimeMillis();
-        FoundIndication indication = scan(new BuildLogIndication(".*non existing string"), br, "test");
+        FoundIndication indication = scan(abusive, br, "test");
         long elapsedTime = System.currentTimeMillis() - startTime;
         br.close();
         assertTrue("Unexpected time to parse log: " + elapsedTime, elapsedTime >= 10000 && elapsedTime <= 12000);
@@ -189,6 +203,29 @@ public class FailureReaderTest {
         assertNotNull("Expected to find an indication", indication);
     }
 
+    /**
+     * Tests that several multi-line indications are found in one pass, also when they are in different windows of
+     * the log.
+     * @throws Exception if so
+     */
+    @Test
+    public void testScanMultiLinePatterns() throws Exception {
+        StringBuilder log = new StringBuilder("first line\nsecond line\n");
+        for (int i = 0; i < 5000; i++) {
+            log.append("filler line ").append(i).append('\n');
+        }
+        log.append("third line\nfourth line\n");
+        List<Indication> indications = new ArrayList<Indication>();
+        indications.add(new MultilineBuildLogIndication("(?s)third line.*fourth line"));
+        indications.add(new MultilineBuildLogIndication("(?s)first line.*second line"));
+        indications.add(new MultilineBuildLogIndication("non existing string"));
+        MultilineScanner scanner = new MultilineScanner(null, "test", indications);
+        FailureReader.scanMultiLinePatterns(scanner, new StringReader(log.toString()), "test");
+        assertEquals("third line\nfourth line", scanner.getFound(0).getMatchingString());
+        assertEquals("first line\nsecond line", scanner.getFound(1).getMatchingString());
+        assertNull(scanner.getFound(2));
+    }
+
     /**
      * Test of timeout on abusive line.
      * @throws Exception if so
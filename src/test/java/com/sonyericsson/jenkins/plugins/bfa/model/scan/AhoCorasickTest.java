@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AhoCorasick}.
+ */
+public class AhoCorasickTest {
+
+    /**
+     * Tests the classic example with overlapping literals.
+     */
+    @Test
+    public void testOverlapping() {
+        AhoCorasick automaton = AhoCorasick.build(Arrays.asList("he", "she", "his", "hers"));
+        BitSet hits = new BitSet();
+        assertTrue(automaton.search("ushers", hits));
+        assertEquals(BitSet.valueOf(new long[]{0b1011}), hits);
+    }
+
+    /**
+     * Tests that literals found through failure links are reported.
+     */
+    @Test
+    public void testSuffixLiterals() {
+        AhoCorasick automaton = AhoCorasick.build(Arrays.asList("abcd", "bc", "c"));
+        BitSet hits = new BitSet();
+        assertTrue(automaton.search("xabcx", hits));
+        assertFalse(hits.get(0));
+        assertTrue(hits.get(1));
+        assertTrue(hits.get(2));
+    }
+
+    /**
+     * Tests text without any of the literals, and literals outside of ASCII.
+     */
+    @Test
+    public void testNoMatchAndUnicode() {
+        AhoCorasick automaton = AhoCorasick.build(Arrays.asList("Fehler", "\u00e9chec"));
+        BitSet hits = new BitSet();
+        assertFalse(automaton.search("all good", hits));
+        assertTrue(hits.isEmpty());
+        assertTrue(automaton.search("la compilation a rencontr\u00e9 un \u00e9chec", hits));
+        assertTrue(hits.get(1));
+    }
+}
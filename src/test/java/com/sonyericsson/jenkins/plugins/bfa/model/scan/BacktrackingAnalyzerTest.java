@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.sonyericsson.jenkins.plugins.bfa.model.scan.BacktrackingAnalyzer.analyze;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link BacktrackingAnalyzer}.
+ */
+public class BacktrackingAnalyzerTest {
+
+    /**
+     * Tests that repetitions of repetitions are reported, once for the innermost one.
+     */
+    @Test
+    public void testNestedQuantifiers() {
+        assertEquals(Collections.singletonList("Nested quantifier: (.*a)+"), analyze("(.*a)+.*b"));
+        assertEquals(Collections.singletonList("Nested quantifier: (\\w+\\s?)*"), analyze("^(\\w+\\s?)*$"));
+        assertEquals(Collections.singletonList("Nested quantifier: (?:x+x+){2,}"), analyze("(?:x+x+){2,}y"));
+        assertEquals(Collections.singletonList("Nested quantifier: (a+)+"), analyze("((a+)+)*"));
+        assertEquals(Arrays.asList("Nested quantifier: (a*)*", "Nested quantifier: (b+){1,10}"),
+                analyze("(a*)*c(b+){1,10}"));
+    }
+
+    /**
+     * Tests that repeated alternations whose alternatives can match the same text are reported.
+     */
+    @Test
+    public void testAmbiguousAlternations() {
+        assertEquals(Collections.singletonList("Repeated alternatives that can match the same text: (\\w|\\d)+"),
+                analyze("(\\w|\\d)+"));
+        assertEquals(Collections.singletonList("Repeated alternatives that can match the same text: (a|ab)*"),
+                analyze("x(a|ab)*y"));
+        assertEquals(Collections.singletonList("Repeated alternatives that can match the same text: (?i:A|a)*"),
+                analyze("(?i:A|a)*"));
+        assertEquals(Collections.singletonList("Repeated alternatives that can match the same text: (|x)+"),
+                analyze("(|x)+"));
+    }
+
+    /**
+     * Tests expressions that don't backtrack catastrophically, or that can't be analyzed.
+     */
+    @Test
+    public void testNotReported() {
+        assertEquals(Collections.emptyList(), analyze("^ERROR: .* failed$"));
+        assertEquals(Collections.emptyList(), analyze(".*a.*b.*c"));
+        assertEquals(Collections.emptyList(), analyze("(foo|bar)+"));
+        assertEquals(Collections.emptyList(), analyze("(ab?)+"));
+        assertEquals(Collections.emptyList(), analyze("(a+){1}"));
+        assertEquals(Collections.emptyList(), analyze("(a+)?"));
+        assertEquals(Collections.emptyList(), analyze("(a+)++"));
+        assertEquals(Collections.emptyList(), analyze("(?>a+)+"));
+        assertEquals(Collections.emptyList(), analyze("(\\w|\\d)?"));
+        assertEquals(Collections.emptyList(), analyze("(?=a+)+b"));
+        assertEquals(Collections.emptyList(), analyze("[(.*)+]"));
+        assertEquals(Collections.emptyList(), analyze("\\Q(.*)+\\E"));
+        assertEquals(Collections.emptyList(), analyze("(?x)(a+)+"));
+        assertEquals(Collections.emptyList(), analyze("(a+"));
+        assertEquals(Collections.emptyList(), analyze(null));
+    }
+}
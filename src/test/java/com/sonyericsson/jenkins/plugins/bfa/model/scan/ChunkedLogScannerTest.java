@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link ChunkedLogScanner}.
+ */
+public class ChunkedLogScannerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Temporary folder for the log files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    /**
+     * Creates the executor.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    /**
+     * Stops the executor.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Creates a cause with the given single-line indications.
+     *
+     * @param name the name of the cause.
+     * @param patterns the patterns of the indications.
+     * @return the cause.
+     */
+    private static FailureCause cause(String name, String... patterns) {
+        FailureCause cause = new FailureCause(name, name);
+        for (String pattern : patterns) {
+            cause.addIndication(new BuildLogIndication(pattern));
+        }
+        return cause;
+    }
+
+    /**
+     * Writes a log file.
+     *
+     * @param content the content.
+     * @return the file.
+     * @throws Exception if so.
+     */
+    private File write(String content) throws Exception {
+        File file = folder.newFile();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8)) {
+            writer.write(content);
+        }
+        return file;
+    }
+
+    /**
+     * Tests that the chunk boundaries are at line starts and cover the whole file.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testBoundaries() throws Exception {
+        File file = write("aaaa\nbbbb\ncccc\r\ndddd");
+        assertArrayEquals(new long[]{0, 5, 10, 16, 20}, new ChunkedLogScanner(executor, 2).findBoundaries(file));
+        assertArrayEquals(new long[]{0, 10, 16, 20}, new ChunkedLogScanner(executor, 6).findBoundaries(file));
+        assertArrayEquals(new long[]{0, 20}, new ChunkedLogScanner(executor, 100).findBoundaries(file));
+        assertArrayEquals(new long[]{0, 0}, new ChunkedLogScanner(executor, 2).findBoundaries(write("")));
+    }
+
+    /**
+     * Tests that a chunked scan finds the first occurrences with their line numbers in the whole file,
+     * in the same order as a scan of the whole file.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSameAsSequential() throws Exception {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; i <= 1000; i++) {
+            log.append("line ").append(i);
+            if (i == 200 || i == 800) {
+                log.append(" Connection refused");
+            }
+            if (i == 700) {
+                log.append(" error: cannot find symbol \u00e9");
+            }
+            if (i == 900) {
+                log.append(" BUILD FAILURE");
+            }
+            log.append('\n');
+        }
+        File file = write(log.toString());
+        List<FailureCause> causes = Arrays.asList(
+                cause("compile", ".*error: cannot find symbol.*", ".*BUILD FAILURE.*"),
+                cause("network", ".*(Connection) refused.*"),
+                cause("never", ".*never found.*"));
+        ScanPlan plan = ScanPlan.compile(causes);
+
+        List<FoundFailureCause> found = new ChunkedLogScanner(executor, 1000)
+                .scan(plan, null, file, UTF8, "log");
+
+        assertEquals(2, found.size());
+        assertEquals("network", found.get(0).getName());
+        assertEquals(1, found.get(0).getIndications().size());
+        assertEquals(200, (int)found.get(0).getIndications().get(0).getMatchingLine());
+        List<FoundIndication> indications = found.get(1).getIndications();
+        assertEquals("compile", found.get(1).getName());
+        assertEquals(700, (int)indications.get(0).getMatchingLine());
+        assertEquals("line 700 error: cannot find symbol \u00e9", indications.get(0).getMatchingString());
+        assertEquals(900, (int)indications.get(1).getMatchingLine());
+    }
+
+    /**
+     * Tests that only line aligned charsets are accepted.
+     */
+    @Test
+    public void testLineAligned() {
+        assertTrue(ChunkedLogScanner.isLineAligned(UTF8));
+        assertTrue(ChunkedLogScanner.isLineAligned(Charset.forName("ISO-8859-1")));
+        assertFalse(ChunkedLogScanner.isLineAligned(Charset.forName("UTF-16")));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link IndicationQuarantine}.
+ */
+public class IndicationQuarantineTest {
+
+    /**
+     * Tests that an indication is quarantined after timing out in {@link IndicationQuarantine#STRIKES} scans in a
+     * row, and that a scan without a timeout starts the count over. The generation only goes up when an indication
+     * is quarantined or released.
+     */
+    @Test
+    public void testStrikes() {
+        IndicationQuarantine quarantine = new IndicationQuarantine();
+        FailureCause cause = new FailureCause("slow", "slow");
+        cause.setId("slow-id");
+        Indication slow = new BuildLogIndication("(.*a)+.*b");
+        Indication fast = new BuildLogIndication("ERROR");
+
+        for (int i = 1; i < IndicationQuarantine.STRIKES; i++) {
+            quarantine.record(cause, slow, true);
+        }
+        quarantine.record(cause, slow, false);
+        for (int i = 1; i < IndicationQuarantine.STRIKES; i++) {
+            quarantine.record(cause, slow, true);
+            quarantine.record(cause, fast, false);
+        }
+        assertFalse(quarantine.isQuarantined(cause, slow));
+        assertFalse(quarantine.isQuarantined("slow-id"));
+        assertEquals(0, quarantine.getGeneration());
+
+        quarantine.record(cause, slow, true);
+        assertTrue(quarantine.isQuarantined(cause, slow));
+        assertEquals(1, quarantine.getGeneration());
+        assertFalse(quarantine.isQuarantined(cause, fast));
+        assertTrue(quarantine.isQuarantined("slow-id"));
+        assertEquals(Collections.singletonList("(.*a)+.*b"), quarantine.getQuarantinedPatterns("slow-id"));
+
+        quarantine.release("slow-id");
+        assertFalse(quarantine.isQuarantined(cause, slow));
+        assertEquals(2, quarantine.getGeneration());
+        assertEquals(Collections.emptyList(), quarantine.getQuarantinedPatterns("slow-id"));
+    }
+
+    /**
+     * Tests that causes without an id are never quarantined.
+     */
+    @Test
+    public void testUnsavedCause() {
+        IndicationQuarantine quarantine = new IndicationQuarantine();
+        FailureCause cause = new FailureCause("new", "new");
+        Indication slow = new BuildLogIndication("(.*a)+.*b");
+        for (int i = 0; i < IndicationQuarantine.STRIKES; i++) {
+            quarantine.record(cause, slow, true);
+        }
+        assertFalse(quarantine.isQuarantined(cause, slow));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link LiteralExtractor}.
+ */
+public class LiteralExtractorTest {
+
+    /**
+     * Tests the common shapes of indications.
+     */
+    @Test
+    public void testSimpleLiterals() {
+        assertEquals("OutOfMemoryError", LiteralExtractor.extract(".*OutOfMemoryError.*"));
+        assertEquals("Could not resolve dependencies", LiteralExtractor.extract(".*Could not resolve dependencies.*"));
+        assertEquals("BUILD FAILED", LiteralExtractor.extract("^BUILD FAILED$"));
+        assertEquals(" error: ", LiteralExtractor.extract(".*\\d+ error: .*"));
+    }
+
+    /**
+     * Tests that the longest of several literal runs is picked.
+     */
+    @Test
+    public void testLongestRun() {
+        assertEquals(" cannot find symbol", LiteralExtractor.extract(".*error: [a-z]+ cannot find symbol.*"));
+        assertEquals("Exception in thread \"", LiteralExtractor.extract("Exception in thread \"(.*)\" .*"));
+    }
+
+    /**
+     * Tests that escapes and quoting are turned into the characters they match.
+     */
+    @Test
+    public void testEscapes() {
+        assertEquals("[ERROR] Failed (x)", LiteralExtractor.extract(".*\\[ERROR\\] Failed \\(x\\).*"));
+        assertEquals("a.b*c", LiteralExtractor.extract(".*\\Qa.b*c\\E.*"));
+        assertEquals("tab\there", LiteralExtractor.extract(".*tab\\there.*"));
+    }
+
+    /**
+     * Tests that a quantifier only applies to the character before it.
+     */
+    @Test
+    public void testQuantifiers() {
+        assertEquals("colo", LiteralExtractor.extract(".*colou?r.*"));
+        assertEquals("foo", LiteralExtractor.extract("fooo*bar"));
+        assertEquals("fooo", LiteralExtractor.extract("fooo+bar"));
+        assertEquals("abc", LiteralExtractor.extract("abc{2,3}d"));
+        assertEquals("ab", LiteralExtractor.extract("abc{0,3}d"));
+        assertEquals("long literal", LiteralExtractor.extract("(optional)?long literal"));
+    }
+
+    /**
+     * Tests that expressions we can't be sure about give no literal.
+     */
+    @Test
+    public void testNoLiteral() {
+        assertNull(LiteralExtractor.extract(".*(foo|bar).*"));
+        assertNull(LiteralExtractor.extract("foo|bar"));
+        assertNull(LiteralExtractor.extract("(?i).*error.*"));
+        assertNull(LiteralExtractor.extract(".*\\x41BC.*"));
+        assertNull(LiteralExtractor.extract(".*[a-z]+.*"));
+        assertNull(LiteralExtractor.extract(""));
+        assertNull(LiteralExtractor.extract(Pattern.compile(".*error.*", Pattern.CASE_INSENSITIVE)));
+    }
+
+    /**
+     * Tests that groups, classes and inline flags scoped to a group are skipped.
+     */
+    @Test
+    public void testSkippedConstructs() {
+        assertEquals(" failed", LiteralExtractor.extract("(?i:Test) failed"));
+        assertEquals("after", LiteralExtractor.extract("[\\]a(]after"));
+        assertEquals("after", LiteralExtractor.extract("(a(b)[)])after"));
+        assertEquals("name", LiteralExtractor.extract("(?<g>x)\\k<g>name"));
+    }
+
+    /**
+     * Tests that every text matching the pattern contains the extracted literal.
+     */
+    @Test
+    public void testLiteralIsRequired() {
+        String[][] cases = {
+            {".*colou?r.*", "my color"},
+            {"fooo*bar", "foobar"},
+            {"fooo+bar", "fooooobar"},
+            {"abc{0,3}d", "abd"},
+            {".*\\[ERROR\\] Failed \\(x\\).*", "[ERROR] Failed (x)!"},
+        };
+        for (String[] c : cases) {
+            String literal = LiteralExtractor.extract(c[0]);
+            assertEquals(c[0], true, Pattern.compile(c[0]).matcher(c[1]).matches());
+            assertEquals(c[0], true, c[1].contains(literal));
+        }
+    }
+}
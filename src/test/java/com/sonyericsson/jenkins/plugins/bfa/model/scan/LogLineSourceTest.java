@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
+import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import hudson.console.ConsoleNote;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link LogLineSource.ReaderLineSource} and {@link LogLineSource.BufferedReaderLineSource}.
+ */
+public class LogLineSourceTest {
+
+    /**
+     * A reader returning at most a few characters per read, to cross the buffer boundaries in odd places.
+     */
+    private static class TrickleReader extends Reader {
+        private final Reader reader;
+        private final int max;
+        private boolean closed = false;
+
+        /**
+         * Standard constructor.
+         *
+         * @param text the text to read.
+         * @param max the maximum number of characters per read.
+         */
+        TrickleReader(String text, int max) {
+            this.reader = new StringReader(text);
+            this.max = max;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return reader.read(cbuf, off, Math.min(len, max));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads all lines of a source.
+     *
+     * @param lines the source.
+     * @return the lines.
+     * @throws IOException if so.
+     */
+    private static List<String> readAll(LogLineSource lines) throws IOException {
+        List<String> result = new ArrayList<String>();
+        CharSequence line;
+        while ((line = lines.readLine()) != null) {
+            result.add(line.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Tests that the lines are split like {@link BufferedReader#readLine()} does, also when line terminators and
+     * lines cross the boundaries of the internal buffer.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testLinesLikeBufferedReader() throws Exception {
+        char[] longLine = new char[20000];
+        Arrays.fill(longLine, 'x');
+        String[] contents = {
+            "",
+            "single",
+            "a\nb\n",
+            "a\r\nb\rc\n\nd",
+            "\n\r\n\r",
+            "\r",
+            "first\n" + new String(longLine) + "\r\nlast",
+        };
+        for (String content : contents) {
+            List<String> expected = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader(new StringReader(content));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                expected.add(line);
+            }
+            assertEquals(expected, readAll(new LogLineSource.ReaderLineSource(new StringReader(content))));
+            for (int max = 1; max <= 3; max++) {
+                assertEquals(expected, readAll(new LogLineSource.ReaderLineSource(new TrickleReader(content, max))));
+            }
+        }
+    }
+
+    /**
+     * Tests that the matching text is the current line without console notes.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testMatchingText() throws Exception {
+        String note = ConsoleNote.PREAMBLE_STR + "AAA" + ConsoleNote.POSTAMBLE_STR;
+        LogLineSource lines = new LogLineSource.ReaderLineSource(new StringReader("one\r\n" + note + "two\n"));
+        assertEquals("one", lines.readLine().toString());
+        assertEquals("one", lines.getMatchingText());
+        lines.readLine();
+        assertEquals("two", lines.getMatchingText());
+        assertNull(lines.readLine());
+    }
+
+    /**
+     * Scans the lines of a source with a plan of the given patterns.
+     *
+     * @param lines the source.
+     * @param patterns the patterns, one cause each.
+     * @return the found indications, as line number and matching text, in the order of the patterns.
+     * @throws IOException if so.
+     */
+    private static List<String> scan(LogLineSource lines, String... patterns) throws IOException {
+        List<FailureCause> causes = new ArrayList<FailureCause>();
+        for (String pattern : patterns) {
+            FailureCause cause = new FailureCause(pattern, pattern);
+            cause.addIndication(new BuildLogIndication(pattern));
+            causes.add(cause);
+        }
+        ScanPlan.Session session = ScanPlan.compile(causes).newSession(null, "log");
+        FailureReader.scanSingleLinePatterns(session, lines, "log");
+        List<String> found = new ArrayList<String>();
+        for (FailureCause cause : causes) {
+            for (FoundFailureCause foundCause : session.getFoundFailureCauses()) {
+                if (foundCause.getName().equals(cause.getName())) {
+                    FoundIndication indication = foundCause.getIndications().get(0);
+                    found.add(indication.getMatchingLine() + ":" + indication.getMatchingString());
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Tests that a scan through the reused lines of a {@link LogLineSource.ReaderLineSource} finds the same lines
+     * and reports the same texts as a scan through the Strings of a {@link LogLineSource.BufferedReaderLineSource},
+     * also for matches on long lines, on lines with console notes and on the last line.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testScanLikeBufferedReader() throws Exception {
+        char[] padding = new char[20000];
+        Arrays.fill(padding, 'x');
+        String note = ConsoleNote.PREAMBLE_STR + "AAA" + ConsoleNote.POSTAMBLE_STR;
+        String log = "start\r\n"
+                + new String(padding) + " long ERROR here\n"
+                + note + "[WARN] noted\r"
+                + "\r\n"
+                + "build FAILED";
+        String[] patterns = {".*long ERROR.*", ".*\\[WARN\\] noted", ".*FAILED", "^start$", ".*missing.*"};
+        List<String> expected = scan(new LogLineSource.BufferedReaderLineSource(
+                new BufferedReader(new StringReader(log))), patterns);
+        assertEquals(Arrays.asList("2:" + new String(padding) + " long ERROR here", "3:[WARN] noted",
+                "5:build FAILED", "1:start"), expected);
+        assertEquals(expected, scan(new LogLineSource.ReaderLineSource(new StringReader(log)), patterns));
+        for (int max = 1; max <= 3; max++) {
+            assertEquals(expected, scan(new LogLineSource.ReaderLineSource(new TrickleReader(log, max)), patterns));
+        }
+    }
+
+    /**
+     * Tests that closing the source closes the reader.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testClose() throws Exception {
+        TrickleReader reader = new TrickleReader("line\n", 1);
+        LogLineSource lines = new LogLineSource.ReaderLineSource(reader);
+        assertEquals("line", lines.readLine().toString());
+        lines.close();
+        assertTrue(reader.closed);
+    }
+}
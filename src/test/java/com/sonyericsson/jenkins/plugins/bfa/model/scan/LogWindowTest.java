@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link LogWindow}.
+ */
+public class LogWindowTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Temporary folder for the log files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a log file.
+     *
+     * @param content the content.
+     * @return the file.
+     * @throws IOException if so.
+     */
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(UTF8));
+        }
+        return file;
+    }
+
+    /**
+     * Reads all lines of a source.
+     *
+     * @param lines the source.
+     * @return the lines.
+     * @throws IOException if so.
+     */
+    private static List<String> readAll(LogLineSource lines) throws IOException {
+        List<String> result = new ArrayList<String>();
+        try {
+            CharSequence line = lines.readLine();
+            while (line != null) {
+                result.add(line.toString());
+                line = lines.readLine();
+            }
+        } finally {
+            lines.close();
+        }
+        return result;
+    }
+
+    /**
+     * Tests that the start and the end are extended and shortened to whole lines.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testWholeLines() throws Exception {
+        File file = write("first\nsecond\nthird\nfourth\nfifth\n");
+        LogWindow window = LogWindow.create(file, UTF8, 3, 9);
+        assertTrue(window.isPartial());
+        assertEquals("first\n".length(), window.getHeadSize());
+        assertEquals("fifth\n".length(), window.getTailSize());
+        assertEquals(Arrays.asList("first", "fifth"), readAll(window.lines()));
+
+        // On a line start already
+        window = LogWindow.create(file, UTF8, 6, 6);
+        assertEquals(Arrays.asList("first", "fifth"), readAll(window.lines()));
+    }
+
+    /**
+     * Tests windows with only a start or only an end.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testOnePart() throws Exception {
+        File file = write("first\nsecond\nthird\nfourth\nfifth");
+        assertEquals(Arrays.asList("first", "second"), readAll(LogWindow.create(file, UTF8, 8, 0).lines()));
+        assertEquals(Arrays.asList("fourth", "fifth"), readAll(LogWindow.create(file, UTF8, 0, 12).lines()));
+    }
+
+    /**
+     * Tests that a window larger than the log covers all of it.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testOverlap() throws Exception {
+        File file = write("first\nsecond\nthird\n");
+        LogWindow window = LogWindow.create(file, UTF8, 10, 15);
+        assertFalse(window.isPartial());
+        assertEquals(Arrays.asList("first", "second", "third"), readAll(window.lines()));
+
+        window = LogWindow.create(file, UTF8, 100, 100);
+        assertFalse(window.isPartial());
+        assertEquals(Arrays.asList("first", "second", "third"), readAll(window.lines()));
+    }
+
+    /**
+     * Tests that the reader returns the start directly followed by the end, and that the file can be read again.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testReader() throws Exception {
+        File file = write("\u00e5 first\nsecond\r\nthird\nfourth \u00e4\n");
+        LogWindow window = LogWindow.create(file, UTF8, 4, 10);
+        for (int i = 0; i < 2; i++) {
+            StringBuilder text = new StringBuilder();
+            try (Reader reader = window.reader()) {
+                char[] buffer = new char[3];
+                int read = reader.read(buffer, 0, buffer.length);
+                while (read >= 0) {
+                    text.append(buffer, 0, read);
+                    read = reader.read(buffer, 0, buffer.length);
+                }
+            }
+            assertEquals("\u00e5 first\nfourth \u00e4\n", text.toString());
+        }
+    }
+
+    /**
+     * Tests that compressed logs and logs in charsets that can't be split at byte level get no window.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testUnsupported() throws Exception {
+        File file = write("first\nsecond\n");
+        assertNull(LogWindow.create(file, Charset.forName("UTF-16"), 1, 1));
+        File compressed = folder.newFile("log.gz");
+        assertNull(LogWindow.create(compressed, UTF8, 1, 1));
+        assertNull(LogWindow.create(new File(folder.getRoot(), "missing"), UTF8, 1, 1));
+    }
+
+    /**
+     * Tests that the lines of the start keep their numbers and that the lines of the end have none, also with
+     * other line terminators than '\n' in the start.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testToLogLine() throws Exception {
+        String head = "first\nsecond\r\nthird\rfourth\n";
+        File file = write(head + "fifth\nsixth\n");
+        LogWindow window = LogWindow.create(file, UTF8, head.length(), "sixth\n".length());
+        assertTrue(window.isPartial());
+        assertEquals(Arrays.asList("first", "second", "third", "fourth", "sixth"), readAll(window.lines()));
+        assertEquals(4, window.getHeadLines());
+        assertEquals(1, window.toLogLine(1));
+        assertEquals(4, window.toLogLine(4));
+        assertEquals(-1, window.toLogLine(5));
+        assertEquals(-1, window.toLogLine(-1));
+
+        // Nothing is left out, the numbers are the lines of the log
+        window = LogWindow.create(file, UTF8, head.length(), 100);
+        assertFalse(window.isPartial());
+        assertEquals(6, window.toLogLine(6));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import hudson.console.ConsoleNote;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link MappedLogFile}.
+ */
+public class MappedLogFileTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Temporary folder for the log files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a log file.
+     *
+     * @param content the content.
+     * @param charset the charset.
+     * @return the file.
+     * @throws IOException if so.
+     */
+    private File write(String content, Charset charset) throws IOException {
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(charset));
+        }
+        return file;
+    }
+
+    /**
+     * Reads all lines of a source.
+     *
+     * @param lines the source.
+     * @return the lines.
+     * @throws IOException if so.
+     */
+    private static List<String> readAll(LogLineSource lines) throws IOException {
+        List<String> result = new ArrayList<String>();
+        CharSequence line;
+        while ((line = lines.readLine()) != null) {
+            result.add(line.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Reads all characters of a reader.
+     *
+     * @param reader the reader.
+     * @return the characters.
+     * @throws IOException if so.
+     */
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[3];
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) >= 0) {
+            result.append(buffer, 0, read);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Tests that the lines are split like {@link BufferedReader#readLine()} does.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testLinesLikeBufferedReader() throws Exception {
+        String[] contents = {
+            "",
+            "single",
+            "a\nb\n",
+            "a\r\nb\rc\n\nd",
+            "\n\r\n\r",
+            "caf\u00e9 \u4e16\u754c\nna\u00efve\r\n",
+        };
+        for (String content : contents) {
+            File file = write(content, UTF8);
+            List<String> expected = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader(new StringReader(content));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                expected.add(line);
+            }
+            MappedLogFile mapped = MappedLogFile.map(file, UTF8, 0, file.length());
+            assertEquals(content, expected, readAll(mapped.lines()));
+            assertEquals(content, content, readAll(mapped.reader()));
+        }
+    }
+
+    /**
+     * Tests that a single-byte charset is decoded.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSingleByteCharset() throws Exception {
+        Charset latin1 = Charset.forName("ISO-8859-1");
+        File file = write("gr\u00fcn\nbl\u00e5\n", latin1);
+        LogLineSource lines = MappedLogFile.map(file, latin1, 0, file.length()).lines();
+        assertEquals("gr\u00fcn", lines.readLine().toString());
+        assertEquals("bl\u00e5", lines.readLine().toString());
+        assertNull(lines.readLine());
+    }
+
+    /**
+     * Tests that only a part of the file can be mapped.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testPart() throws Exception {
+        File file = write("one\ntwo\nthree\n", UTF8);
+        MappedLogFile mapped = MappedLogFile.map(file, UTF8, 4, 8);
+        List<String> lines = readAll(mapped.lines());
+        assertEquals(1, lines.size());
+        assertEquals("two", lines.get(0));
+    }
+
+    /**
+     * Tests that the matching text of a line has its console notes removed, like
+     * {@link ConsoleNote#removeNotes(String)} does.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testMatchingTextWithoutNotes() throws Exception {
+        String note = ConsoleNote.PREAMBLE_STR + "AAAbase64==" + ConsoleNote.POSTAMBLE_STR;
+        String[] contents = {
+            "plain \u00e9",
+            note + "[ERROR] " + note + "failed",
+            "unterminated " + ConsoleNote.PREAMBLE_STR + "AAA",
+        };
+        for (String content : contents) {
+            File file = write(content + "\nnext\n", UTF8);
+            LogLineSource lines = MappedLogFile.map(file, UTF8, 0, file.length()).lines();
+            assertEquals(content, lines.readLine().toString());
+            assertEquals(ConsoleNote.removeNotes(content), lines.getMatchingText());
+            assertEquals("next", lines.readLine().toString());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureReader;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+import hudson.console.ConsoleNote;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link MultilineScanner}.
+ */
+public class MultilineScannerTest {
+
+    /**
+     * Appends text to a window.
+     *
+     * @param window the window.
+     * @param text the text.
+     * @return the window.
+     * @throws IOException if so.
+     */
+    private static SearchWindow append(SearchWindow window, String text) throws IOException {
+        assertEquals(text.length(), window.fill(new StringReader(text)));
+        return window;
+    }
+
+    /**
+     * Tests that every indication is found in the window where it first matches, and that found indications are no
+     * longer evaluated against later windows.
+     */
+    @Test
+    public void testEachIndicationFoundOnce() throws Exception {
+        MultilineScanner scanner = new MultilineScanner(null, "log", Arrays.<Indication>asList(
+                new BuildLogIndication("(?s)first.*second"),
+                new BuildLogIndication("third\\s+fourth"),
+                new BuildLogIndication("never")));
+        ScanWatchdog.Deadline deadline = ScanWatchdog.getInstance().watch(60000);
+        scanner.setDeadline(deadline);
+        assertEquals(3, scanner.size());
+
+        SearchWindow window = new SearchWindow(100);
+        assertFalse(scanner.matchWindow(append(window, "first\nsecond\nthird")));
+        assertEquals(3, deadline.getTouches());
+        FoundIndication first = scanner.getFound(0);
+        assertNotNull(first);
+        assertEquals("first\nsecond", first.getMatchingString());
+        assertNull(scanner.getFound(1));
+
+        assertFalse(scanner.matchWindow(append(window, "\nfourth\nfirst\nsecond again")));
+        assertEquals(5, deadline.getTouches());
+        assertEquals("third\nfourth", scanner.getFound(1).getMatchingString());
+        assertEquals("the first found indication is kept", first, scanner.getFound(0));
+        assertNull(scanner.getFound(2));
+        assertFalse(scanner.isComplete());
+        deadline.close();
+    }
+
+    /**
+     * Tests that the scanner is complete once all indications are found.
+     */
+    @Test
+    public void testComplete() throws Exception {
+        MultilineScanner scanner = new MultilineScanner(null, "log", Arrays.<Indication>asList(
+                new BuildLogIndication("one"),
+                new BuildLogIndication("two")));
+        SearchWindow window = new SearchWindow(100);
+        assertFalse(scanner.matchWindow(append(window, "one")));
+        window.keepLast(0);
+        assertTrue(scanner.matchWindow(append(window, "two")));
+        assertTrue(scanner.isComplete());
+    }
+
+    /**
+     * Tests that console notes are removed from the matching string, line by line.
+     */
+    @Test
+    public void testMatchingStringWithoutNotes() throws Exception {
+        String note = ConsoleNote.PREAMBLE_STR + "AAA" + ConsoleNote.POSTAMBLE_STR;
+        MultilineScanner scanner = new MultilineScanner(null, "log", Arrays.<Indication>asList(
+                new BuildLogIndication("(?s)ERROR.*failed")));
+        assertTrue(scanner.matchWindow(append(new SearchWindow(100), note + "ERROR\n" + note + "build failed")));
+        assertEquals("ERROR\nbuild failed", scanner.getFound(0).getMatchingString());
+    }
+
+    /**
+     * Tests the overlap of different kinds of indications.
+     */
+    @Test
+    public void testOverlap() {
+        assertEquals(FailureReader.OVERLAP_BYTES, MultilineScanner.overlap(new BuildLogIndication("ERROR")));
+        assertEquals(FailureReader.OVERLAP_BYTES,
+                MultilineScanner.overlap(new MultilineBuildLogIndication("ERROR.*failed")));
+        // 7 chars, at most 5 digits that may be two chars each, and the rest of the first and last line
+        assertEquals(17 + 1000, MultilineScanner.overlap(new MultilineBuildLogIndication("ERROR: \\d{1,5}")));
+        MultilineBuildLogIndication declared = new MultilineBuildLogIndication("ERROR.*failed");
+        declared.setMaxSpan(20000);
+        assertEquals(20000, MultilineScanner.overlap(declared));
+
+        MultilineScanner scanner = new MultilineScanner(null, "log", Arrays.<Indication>asList(
+                new MultilineBuildLogIndication("ERROR: \\d{1,5}"), declared));
+        assertEquals(20000, scanner.getMaxOverlap());
+    }
+
+    /**
+     * Tests that a match crossing the boundary between two windows is found thanks to the overlap of a bounded
+     * expression.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testMatchAcrossWindows() throws Exception {
+        MultilineScanner scanner = new MultilineScanner(null, "log", Arrays.<Indication>asList(
+                new MultilineBuildLogIndication("ERROR: \\d{1,5} failed")));
+        int overlap = scanner.getMaxOverlap();
+        char[] filler = new char[2 * overlap];
+        Arrays.fill(filler, 'x');
+        SearchWindow window = new SearchWindow(4 * overlap);
+        assertFalse(scanner.matchWindow(append(window, new String(filler) + "\nfirst ERROR: 12")));
+        window.keepLast(overlap);
+        assertTrue(scanner.matchWindow(append(window, "345 failed in module\nnext line\n")));
+        assertEquals("first ERROR: 12345 failed in module", scanner.getFound(0).getMatchingString());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link PatternClassifier}.
+ */
+public class PatternClassifierTest {
+
+    /**
+     * Tests that the trivial shapes are recognized.
+     */
+    @Test
+    public void testShapes() {
+        assertEquals(PatternClassifier.Shape.CONTAINS, classify(".*OutOfMemoryError.*"));
+        assertEquals(PatternClassifier.Shape.CONTAINS, classify("^.*?Connection refused.*?$"));
+        assertEquals(PatternClassifier.Shape.STARTS_WITH, classify("^BUILD FAILED.*"));
+        assertEquals(PatternClassifier.Shape.STARTS_WITH, classify("\\[ERROR\\] .*"));
+        assertEquals(PatternClassifier.Shape.ENDS_WITH, classify(".*exit code 1$"));
+        assertEquals(PatternClassifier.Shape.ENDS_WITH, classify(".*costs \\$"));
+        assertEquals(PatternClassifier.Shape.EQUALS, classify("^Killed$"));
+        assertEquals(PatternClassifier.Shape.EQUALS, classify("\\Q(a+b)\\E"));
+    }
+
+    /**
+     * Tests that anything else is left to the regular expression engine.
+     */
+    @Test
+    public void testRegexShapes() {
+        assertEquals(PatternClassifier.Shape.REGEX, classify(".*error \\d+.*"));
+        assertEquals(PatternClassifier.Shape.REGEX, classify(".*(foo|bar).*"));
+        assertEquals(PatternClassifier.Shape.REGEX, classify(".*foo\\.*"));
+        assertEquals(PatternClassifier.Shape.REGEX, classify(".*"));
+        assertEquals(PatternClassifier.Shape.REGEX, classify(".*+foo"));
+        assertNull(PatternClassifier.getSpecializedMatcher(Pattern.compile(".*foo.*", Pattern.CASE_INSENSITIVE)));
+    }
+
+    /**
+     * Tests that the specialized matchers give the same result as the regular expression for a range of lines,
+     * including lines with characters that <code>.</code> doesn't match.
+     */
+    @Test
+    public void testSameResultAsRegex() {
+        String[] patterns = {
+            ".*fail.*", "^fail.*", ".*fail$", "fail", ".*?fail.*?", "^.*fail.*$", ".*\\Qa.b\\E.*", ".*foo\\$.*",
+        };
+        String[] lines = {
+            "fail", "failed", "it failed", "a fail", "nothing", "", "FAIL", "fai", "a.b", "axb", "foo$", " fail",
+            "fail\u0085", "fa il", "x\rfail", "fail\n",
+        };
+        for (String regex : patterns) {
+            Pattern pattern = Pattern.compile(regex);
+            IndicationMatcher matcher = PatternClassifier.getMatcher(pattern);
+            for (String line : lines) {
+                assertEquals(regex + " on '" + line + "'", pattern.matcher(line).matches(), matcher.matches(line));
+            }
+        }
+    }
+
+    /**
+     * Tests that anchors and <code>.*</code> inside a <code>\Q</code> quote without <code>\E</code> are kept as
+     * part of the literal.
+     */
+    @Test
+    public void testUnterminatedQuote() {
+        assertSameResult("\\Qfoo$", "foo");
+        assertSameResult("\\Qfoo$", "foo$");
+        assertSameResult("\\Qa.*", "abc");
+        assertSameResult("\\Qa.*", "a.*");
+        assertSameResult(".*\\Qfoo.*", "xfoo");
+        assertSameResult(".*\\Qfoo.*", "xfoo.*");
+        assertEquals(PatternClassifier.Shape.EQUALS, classify("\\Qfoo$"));
+        assertEquals(PatternClassifier.Shape.ENDS_WITH, classify(".*\\Qfoo.*"));
+        assertEquals(PatternClassifier.Shape.STARTS_WITH, classify("\\Qa.*\\E.*"));
+    }
+
+    /**
+     * Asserts that the matcher for the expression gives the same result as the regular expression on the line.
+     *
+     * @param regex the expression.
+     * @param line the line.
+     */
+    private static void assertSameResult(String regex, String line) {
+        Pattern pattern = Pattern.compile(regex);
+        assertEquals(regex + " on '" + line + "'", pattern.matcher(line).matches(),
+                PatternClassifier.getMatcher(pattern).matches(line));
+    }
+
+    /**
+     * Shorthand for classifying a regular expression.
+     *
+     * @param regex the expression.
+     * @return the shape.
+     */
+    private static PatternClassifier.Shape classify(String regex) {
+        return PatternClassifier.classify(Pattern.compile(regex));
+    }
+}
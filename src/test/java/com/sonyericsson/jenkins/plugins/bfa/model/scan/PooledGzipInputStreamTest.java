@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link PooledGzipInputStream}.
+ */
+public class PooledGzipInputStreamTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Compresses some bytes.
+     *
+     * @param data the bytes.
+     * @return the compressed bytes.
+     * @throws IOException if so.
+     */
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a stream to the end, in small pieces.
+     *
+     * @param in the stream.
+     * @return the bytes read.
+     * @throws IOException if so.
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[1000];
+            int read = in.read(buffer);
+            while (read >= 0) {
+                out.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Tests that compressed data is read back as it was written.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] data = new byte[300000];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            // Compressible, but not only repetitions
+            data[i] = (byte)('a' + random.nextInt(4));
+        }
+        assertArrayEquals(data, readAll(new PooledGzipInputStream(new ByteArrayInputStream(gzip(data)))));
+        assertArrayEquals(new byte[0],
+                readAll(new PooledGzipInputStream(new ByteArrayInputStream(gzip(new byte[0])))));
+    }
+
+    /**
+     * Tests that concatenated members are read as one stream.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testConcatenatedMembers() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip("first\n".getBytes(UTF8)));
+        compressed.write(gzip("second\n".getBytes(UTF8)));
+        compressed.write(gzip("third\n".getBytes(UTF8)));
+        byte[] read = readAll(new PooledGzipInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+        assertEquals("first\nsecond\nthird\n", new String(read, UTF8));
+    }
+
+    /**
+     * Tests that the optional header fields are skipped.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testHeaderFields() throws Exception {
+        byte[] plain = gzip("text".getBytes(UTF8));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(plain, 0, 3);
+        // FEXTRA and FNAME
+        compressed.write(4 | 8);
+        compressed.write(plain, 4, 6);
+        compressed.write(new byte[]{2, 0, 'x', 'y'});
+        compressed.write("log\0".getBytes(UTF8));
+        compressed.write(plain, 10, plain.length - 10);
+        byte[] read = readAll(new PooledGzipInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+        assertEquals("text", new String(read, UTF8));
+    }
+
+    /**
+     * Tests that data that is not gzip compressed and a broken trailer are reported.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testCorrupt() throws Exception {
+        try {
+            new PooledGzipInputStream(new ByteArrayInputStream("plain text".getBytes(UTF8)));
+            fail("Not compressed");
+        } catch (ZipException e) {
+            assertTrue(e.getMessage().contains("gzip"));
+        }
+        byte[] compressed = gzip("text".getBytes(UTF8));
+        compressed[compressed.length - 8]++;
+        try {
+            readAll(new PooledGzipInputStream(new ByteArrayInputStream(compressed)));
+            fail("Broken checksum");
+        } catch (ZipException e) {
+            assertTrue(e.getMessage().contains("trailer"));
+        }
+    }
+
+    /**
+     * Tests that the Inflaters are reused, and that the pool doesn't grow beyond its size.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testPool() throws Exception {
+        byte[] compressed = gzip("text".getBytes(UTF8));
+        readAll(new PooledGzipInputStream(new ByteArrayInputStream(compressed)));
+        int pooled = PooledGzipInputStream.getPooledCount();
+        assertTrue(pooled >= 1);
+        readAll(new PooledGzipInputStream(new ByteArrayInputStream(compressed)));
+        assertEquals(pooled, PooledGzipInputStream.getPooledCount());
+
+        InputStream[] streams = new InputStream[PooledGzipInputStream.POOL_SIZE + 2];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = new PooledGzipInputStream(new ByteArrayInputStream(compressed));
+        }
+        for (InputStream stream : streams) {
+            assertEquals("text", new String(readAll(stream), UTF8));
+        }
+        assertEquals(PooledGzipInputStream.POOL_SIZE, PooledGzipInputStream.getPooledCount());
+    }
+}
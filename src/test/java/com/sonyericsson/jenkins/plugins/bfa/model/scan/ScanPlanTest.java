@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link ScanPlan}.
+ */
+public class ScanPlanTest {
+
+    /**
+     * Creates a cause with the given single-line indications.
+     *
+     * @param name the name of the cause.
+     * @param patterns the patterns of the indications.
+     * @return the cause.
+     */
+    private static FailureCause cause(String name, String... patterns) {
+        FailureCause cause = new FailureCause(name, name);
+        for (String pattern : patterns) {
+            cause.addIndication(new BuildLogIndication(pattern));
+        }
+        return cause;
+    }
+
+    /**
+     * Feeds the lines to a new session of the plan.
+     *
+     * @param plan the plan.
+     * @param lines the lines.
+     * @return the found causes.
+     */
+    private static List<FoundFailureCause> scan(ScanPlan plan, String... lines) {
+        ScanPlan.Session session = plan.newSession(null, "log");
+        for (int i = 0; i < lines.length; i++) {
+            if (session.matchLine(lines[i], i + 1)) {
+                break;
+            }
+        }
+        return session.getFoundFailureCauses();
+    }
+
+    /**
+     * Tests that causes are reported in the order they are found, with correct line numbers and every indication
+     * only at its first occurrence.
+     */
+    @Test
+    public void testFirstOccurrenceAndLineNumbers() {
+        FailureCause compile = cause("compile", ".*error: cannot find symbol.*", ".*BUILD FAILURE.*");
+        FailureCause network = cause("network", ".*Connection refused.*");
+        ScanPlan plan = ScanPlan.compile(Arrays.asList(compile, network));
+
+        List<FoundFailureCause> found = scan(plan,
+                "Starting",
+                "java.net.ConnectException: Connection refused",
+                "Foo.java:3: error: cannot find symbol",
+                "Bar.java:7: error: cannot find symbol",
+                "BUILD FAILURE");
+
+        assertEquals(2, found.size());
+        assertEquals("network", found.get(0).getName());
+        assertEquals(2, (int)found.get(0).getIndications().get(0).getMatchingLine());
+
+        List<FoundIndication> indications = found.get(1).getIndications();
+        assertEquals("compile", found.get(1).getName());
+        assertEquals(2, indications.size());
+        assertEquals(3, (int)indications.get(0).getMatchingLine());
+        assertEquals("Foo.java:3: error: cannot find symbol", indications.get(0).getMatchingString());
+        assertEquals(5, (int)indications.get(1).getMatchingLine());
+    }
+
+    /**
+     * Tests that many patterns spread over the prefilter and several buckets, and patterns that can't be combined,
+     * are all found.
+     */
+    @Test
+    public void testManyPatterns() {
+        List<FailureCause> causes = new ArrayList<FailureCause>();
+        for (int i = 0; i < ScanPlan.BUCKET_SIZE * 6; i++) {
+            if (i % 2 == 0) {
+                causes.add(cause("cause" + i, ".*marker" + i + "\\b.*"));
+            } else {
+                // No required literal outside of the group
+                causes.add(cause("cause" + i, ".*(marker" + i + ")\\b.*"));
+            }
+        }
+        causes.add(cause("backref", "(ab)\\1"));
+        causes.add(cause("flags", "(?x) .*fl ags # comment"));
+        causes.add(cause("quoted", "\\Q(x)"));
+        ScanPlan plan = ScanPlan.compile(causes);
+        assertEquals(causes.size(), plan.size());
+        // every other marker and the quoted pattern
+        assertEquals(ScanPlan.BUCKET_SIZE * 3 + 1, plan.getPrefilteredCount());
+        assertTrue(plan.getBucketCount() < plan.size() - plan.getPrefilteredCount());
+
+        List<FoundFailureCause> found = scan(plan, "nothing", "a marker70 here", "abab", "some flags", "(x)",
+                "marker1 and marker2");
+        assertEquals(6, found.size());
+        assertEquals("cause70", found.get(0).getName());
+        assertEquals("backref", found.get(1).getName());
+        assertEquals("flags", found.get(2).getName());
+        assertEquals("quoted", found.get(3).getName());
+        // prefiltered indications are evaluated before the buckets
+        assertEquals("cause2", found.get(4).getName());
+        assertEquals("cause1", found.get(5).getName());
+    }
+
+    /**
+     * Tests that a line containing the required literal but not matching the pattern is not reported.
+     */
+    @Test
+    public void testPrefilterStillEvaluatesPattern() {
+        ScanPlan plan = ScanPlan.compile(Arrays.asList(cause("exit", ".*exit code \\d+.*")));
+        assertEquals(1, plan.getPrefilteredCount());
+        assertEquals(0, plan.getBucketCount());
+
+        List<FoundFailureCause> found = scan(plan, "exit code unknown", "no exit here", "process exit code 2");
+        assertEquals(1, found.size());
+        assertEquals(3, (int)found.get(0).getIndications().get(0).getMatchingLine());
+    }
+
+    /**
+     * Tests that the session reports completion once everything has been found.
+     */
+    @Test
+    public void testComplete() {
+        ScanPlan plan = ScanPlan.compile(Arrays.asList(cause("a", "a"), cause("b", "b")));
+        ScanPlan.Session session = plan.newSession(null, "log");
+        assertFalse(session.matchLine("a", 1));
+        assertFalse(session.matchLine("c", 2));
+        assertTrue(session.matchLine("b", 3));
+        assertTrue(session.isComplete());
+    }
+
+    /**
+     * Tests that an indication timing out in a number of scans in a row is left out of later plans.
+     */
+    @Test
+    public void testQuarantine() {
+        FailureCause cause = cause("slow", "(x+x+)+[yz]", ".*fast.*");
+        cause.setId("quarantine-test");
+        ScanWatchdog watchdog = ScanWatchdog.getInstance();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            line.append('x');
+        }
+        try {
+            for (int scan = 0; scan < IndicationQuarantine.STRIKES; scan++) {
+                ScanPlan plan = ScanPlan.compile(Collections.singletonList(cause));
+                assertEquals(2, plan.size());
+                ScanPlan.Session session = plan.newSession(null, "log");
+                ScanWatchdog.Deadline deadline = watchdog.watch(1000);
+                try {
+                    session.setDeadline(deadline);
+                    watchdog.check(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+                    assertTrue(deadline.isExpired());
+                    session.matchLine(line.toString(), 1);
+                } finally {
+                    deadline.close();
+                }
+                plan.recordTimeouts(Collections.singletonList(session));
+            }
+            ScanPlan plan = ScanPlan.compile(Collections.singletonList(cause));
+            assertEquals(1, plan.size());
+            List<FoundFailureCause> found = scan(plan, line.toString(), "fast");
+            assertEquals(1, found.size());
+        } finally {
+            IndicationQuarantine.getInstance().release("quarantine-test");
+        }
+    }
+
+    /**
+     * Tests that an interrupted scan neither counts as a timeout nor as a clean scan of the indications.
+     */
+    @Test
+    public void testInterruptNotRecorded() {
+        FailureCause cause = cause("slow", "(x+x+)+[yz]", ".*fast.*");
+        cause.setId("interrupt-test");
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            line.append('x');
+        }
+        try {
+            for (int scan = 0; scan < IndicationQuarantine.STRIKES; scan++) {
+                ScanPlan plan = ScanPlan.compile(Collections.singletonList(cause));
+                ScanPlan.Session session = plan.newSession(null, "log");
+                Thread.currentThread().interrupt();
+                try {
+                    session.matchLine(line.toString(), 1);
+                } finally {
+                    Thread.interrupted();
+                }
+                assertTrue(session.isInterrupted());
+                plan.recordTimeouts(Collections.singletonList(session));
+            }
+            assertEquals(2, ScanPlan.compile(Collections.singletonList(cause)).size());
+        } finally {
+            IndicationQuarantine.getInstance().release("interrupt-test");
+        }
+    }
+}
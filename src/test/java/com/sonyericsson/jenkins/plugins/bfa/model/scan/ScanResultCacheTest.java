@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.FoundFailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import hudson.model.Run;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link ScanResultCache}.
+ */
+public class ScanResultCacheTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Temporary folder for the log files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a log file.
+     *
+     * @param content the content.
+     * @return the file.
+     * @throws IOException if so.
+     */
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(UTF8));
+        }
+        return file;
+    }
+
+    /**
+     * A cause with one indication.
+     *
+     * @param pattern the pattern of the indication.
+     * @return the cause.
+     */
+    private static FailureCause cause(String pattern) {
+        FailureCause cause = new FailureCause("name", "description");
+        cause.setId("id");
+        cause.addIndication(new BuildLogIndication(pattern));
+        return cause;
+    }
+
+    /**
+     * A found cause with one indication.
+     *
+     * @param build the build.
+     * @return the found cause.
+     */
+    private static List<FoundFailureCause> found(Run build) {
+        FoundIndication indication = new FoundIndication(build, "ERROR", "log", "ERROR here", 3);
+        return Collections.singletonList(
+                new FoundFailureCause(cause("ERROR"), Collections.singletonList(indication)));
+    }
+
+    /**
+     * Tests that identical logs scanned with the same snapshot get the same key, and that a different log or
+     * another snapshot, even of the same causes, gets another key.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testKey() throws Exception {
+        File log = write("line\nERROR here\n");
+        ScanSnapshot snapshot = ScanSnapshot.compile(Collections.singletonList(cause("ERROR")), 1L);
+        String key = ScanResultCache.key(log, snapshot);
+        assertEquals(key, ScanResultCache.key(write("line\nERROR here\n"), snapshot));
+        assertNotEquals(key, ScanResultCache.key(write("line\nERROR there\n"), snapshot));
+        assertNotEquals(key, ScanResultCache.key(log, snapshot.recompile()));
+        assertNotEquals(key, ScanResultCache.key(log, snapshot.filter(Collections.<String>emptyList())));
+    }
+
+    /**
+     * Tests that logs larger than {@link ScanResultCache#MAX_LOG_SIZE} are not hashed.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testCacheable() throws Exception {
+        File log = write("line\n");
+        assertTrue(ScanResultCache.isCacheable(log));
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(ScanResultCache.MAX_LOG_SIZE + 1);
+        }
+        assertFalse(ScanResultCache.isCacheable(log));
+    }
+
+    /**
+     * Tests that a hit returns a copy of the result for the new build, and that the hit rate is counted.
+     */
+    @Test
+    public void testRebase() {
+        ScanResultCache cache = new ScanResultCache();
+        Run first = mock(Run.class);
+        Run second = mock(Run.class);
+        assertNull(cache.get("key", first));
+        cache.put("key", found(first), 10);
+
+        List<FoundFailureCause> reused = cache.get("key", second);
+        assertNotNull(reused);
+        assertEquals(1, reused.size());
+        FoundIndication indication = reused.get(0).getIndications().get(0);
+        assertSame(second, indication.getBuild());
+        assertEquals("ERROR here", indication.getMatchingString());
+        assertEquals(3, indication.getMatchingLine());
+        assertEquals("name", reused.get(0).getName());
+        assertNotSame(reused.get(0), cache.get("key", second).get(0));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(66, cache.getHitRate());
+    }
+
+    /**
+     * Tests that the least recently used result is evicted first.
+     */
+    @Test
+    public void testEviction() {
+        ScanResultCache cache = new ScanResultCache();
+        Run build = mock(Run.class);
+        cache.put("a", found(build), 2);
+        cache.put("b", found(build), 2);
+        // a is now more recently used than b
+        assertNotNull(cache.get("a", build));
+        cache.put("c", found(build), 2);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a", build));
+        assertNull(cache.get("b", build));
+        assertNotNull(cache.get("c", build));
+
+        cache.put("d", found(build), 1);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("d", build));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitRate());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.FailureCause;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.BuildLogIndication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.Indication;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.MultilineBuildLogIndication;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 150 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link ScanSnapshot}.
+ */
+public class ScanSnapshotTest {
+
+    /**
+     * Tests that the causes are split by engine, with the single-line ones compiled into one plan.
+     */
+    @Test
+    public void testCompile() {
+        FailureCause singleLine = new FailureCause("single", "single");
+        singleLine.addIndication(new BuildLogIndication(".*ERROR.*"));
+        singleLine.addIndication(new BuildLogIndication(".*FATAL.*"));
+        FailureCause mixed = new FailureCause("mixed", "mixed");
+        Indication multiline = new MultilineBuildLogIndication("first.*\\n.*second");
+        mixed.addIndication(new BuildLogIndication(".*WARN.*"));
+        mixed.addIndication(multiline);
+
+        ScanSnapshot snapshot = ScanSnapshot.compile(Arrays.asList(singleLine, mixed), 7L);
+        assertEquals(Arrays.asList(singleLine, mixed), snapshot.getCauses());
+        assertEquals(Long.valueOf(7), snapshot.getRevision());
+        assertEquals(Collections.singletonList(singleLine), snapshot.getSingleLineCauses());
+        assertEquals(2, snapshot.getSingleLinePlan().size());
+        assertEquals(Collections.singletonList(mixed), snapshot.getNotOnlySingleLineCauses());
+        assertEquals(Collections.singletonList(multiline), snapshot.getMultilineIndications());
+        assertTrue(snapshot.isCurrent());
+    }
+
+    /**
+     * Tests that a snapshot is outdated once an indication in it is quarantined, and that compiling it again leaves
+     * the indication out.
+     */
+    @Test
+    public void testQuarantine() {
+        FailureCause cause = new FailureCause("slow", "slow");
+        cause.setId("snapshot-slow-id");
+        Indication slow = new MultilineBuildLogIndication("(.*a)+.*b");
+        cause.addIndication(slow);
+        IndicationQuarantine quarantine = IndicationQuarantine.getInstance();
+        try {
+            ScanSnapshot snapshot = ScanSnapshot.compile(Collections.singletonList(cause), null);
+            assertEquals(Collections.singletonList(slow), snapshot.getMultilineIndications());
+            for (int i = 0; i < IndicationQuarantine.STRIKES; i++) {
+                quarantine.record(cause, slow, true);
+            }
+            assertFalse(snapshot.isCurrent());
+
+            ScanSnapshot recompiled = snapshot.recompile();
+            assertNotSame(snapshot, recompiled);
+            assertTrue(recompiled.isCurrent());
+            assertSame(snapshot.getCauses().get(0), recompiled.getCauses().get(0));
+            assertEquals(Collections.emptyList(), recompiled.getMultilineIndications());
+        } finally {
+            quarantine.release("snapshot-slow-id");
+        }
+    }
+
+    /**
+     * Tests that a filtered snapshot keeps only the given causes, for the same revision, and is reused for the same
+     * ids.
+     */
+    @Test
+    public void testFilter() {
+        FailureCause singleLine = new FailureCause("single", "single");
+        singleLine.setId("single-id");
+        singleLine.addIndication(new BuildLogIndication(".*ERROR.*"));
+        FailureCause other = new FailureCause("other", "other");
+        other.setId("other-id");
+        other.addIndication(new BuildLogIndication(".*FATAL.*"));
+        FailureCause mixed = new FailureCause("mixed", "mixed");
+        mixed.setId("mixed-id");
+        Indication multiline = new MultilineBuildLogIndication("first.*\\n.*second");
+        mixed.addIndication(multiline);
+        ScanSnapshot snapshot = ScanSnapshot.compile(Arrays.asList(singleLine, other, mixed), 7L);
+
+        ScanSnapshot filtered = snapshot.filter(Arrays.asList("mixed-id", "single-id", "removed-id"));
+        assertEquals(Arrays.asList(singleLine, mixed), filtered.getCauses());
+        assertEquals(Long.valueOf(7), filtered.getRevision());
+        assertEquals(Collections.singletonList(singleLine), filtered.getSingleLineCauses());
+        assertEquals(1, filtered.getSingleLinePlan().size());
+        assertEquals(Collections.singletonList(multiline), filtered.getMultilineIndications());
+        assertSame(filtered, snapshot.filter(Arrays.asList("single-id", "mixed-id", "removed-id")));
+        assertSame(snapshot, snapshot.filter(Arrays.asList("single-id", "other-id", "mixed-id")));
+        assertEquals(Collections.emptyList(), snapshot.filter(Collections.<String>emptyList()).getCauses());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link ScanWatchdog} and {@link BudgetedCharSequence}.
+ */
+public class ScanWatchdogTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Tests that a deadline expires when it isn't touched within its timeout, and is no longer expired once touched.
+     */
+    @Test
+    public void testExpiry() {
+        ScanWatchdog watchdog = ScanWatchdog.getInstance();
+        ScanWatchdog.Deadline deadline = watchdog.watch(1000);
+        long start = System.nanoTime();
+        watchdog.check(start);
+        assertFalse(deadline.isExpired());
+        watchdog.check(start + 2 * SECOND);
+        assertTrue(deadline.isExpired());
+
+        deadline.touch();
+        assertFalse(deadline.isExpired());
+        // The watchdog notices the touch, the countdown starts over
+        watchdog.check(start + 3 * SECOND);
+        assertFalse(deadline.isExpired());
+        watchdog.check(start + 3 * SECOND + SECOND / 2);
+        assertFalse(deadline.isExpired());
+        watchdog.check(start + 5 * SECOND);
+        assertTrue(deadline.isExpired());
+
+        int size = watchdog.size();
+        deadline.close();
+        assertEquals(size - 1, watchdog.size());
+    }
+
+    /**
+     * Tests that the sequence only gives up after checking, at most {@link BudgetedCharSequence#STEPS} accesses
+     * after the deadline has expired.
+     */
+    @Test
+    public void testBudget() {
+        ScanWatchdog watchdog = ScanWatchdog.getInstance();
+        ScanWatchdog.Deadline deadline = watchdog.watch(1000);
+        char[] chars = new char[BudgetedCharSequence.STEPS];
+        Arrays.fill(chars, 'a');
+        BudgetedCharSequence sequence = new BudgetedCharSequence(new String(chars), deadline);
+        for (int i = 0; i < chars.length; i++) {
+            sequence.charAt(i);
+        }
+        watchdog.check(System.nanoTime() + 2 * SECOND);
+        try {
+            for (int i = 0; i < chars.length; i++) {
+                sequence.charAt(i);
+            }
+            fail("The sequence should have given up");
+        } catch (RuntimeException e) {
+            assertTrue(BudgetedCharSequence.isTimeout(e));
+        } finally {
+            deadline.close();
+        }
+    }
+
+    /**
+     * Tests that a runaway regular expression gives up once the scheduled check finds the deadline expired.
+     */
+    @Test
+    public void testRunawayExpression() {
+        ScanWatchdog.Deadline deadline = ScanWatchdog.getInstance().watch(200);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            line.append("x,");
+        }
+        BudgetedCharSequence sequence = new BudgetedCharSequence(line, deadline);
+        long start = System.currentTimeMillis();
+        try {
+            // Takes many seconds without a timeout
+            Pattern.compile("(.*?,){11}P").matcher(sequence).find();
+            fail("The expression should have given up");
+        } catch (RuntimeException e) {
+            assertTrue(BudgetedCharSequence.isTimeout(e));
+        } finally {
+            deadline.close();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Unexpected time to give up: " + elapsed, elapsed < 5000);
+    }
+
+    /**
+     * Tests that the sequence gives up when the thread is interrupted, without clearing the interrupt.
+     */
+    @Test
+    public void testInterrupt() {
+        char[] chars = new char[BudgetedCharSequence.STEPS];
+        BudgetedCharSequence sequence = new BudgetedCharSequence(new String(chars), null);
+        Thread.currentThread().interrupt();
+        try {
+            for (int i = 0; i < chars.length; i++) {
+                sequence.charAt(i);
+            }
+            fail("The sequence should have given up");
+        } catch (RuntimeException e) {
+            assertTrue(BudgetedCharSequence.isInterrupt(e));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link SearchWindow}.
+ */
+public class SearchWindowTest {
+
+    /**
+     * Tests that the window always holds the expected part of the text while sliding over it, also when the buffer
+     * wraps around.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSlide() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append((char)('a' + i % 26));
+        }
+        String text = builder.toString();
+        // 11 chars in a buffer of 16, so that most windows wrap around the end of the buffer
+        SearchWindow window = new SearchWindow(11);
+        assertEquals(11, window.getCapacity());
+        StringReader reader = new StringReader(text);
+        int read;
+        while ((read = window.fill(reader)) != -1) {
+            assertTrue(read > 0);
+            assertEquals(window.getEnd() - window.getStart(), window.length());
+            String expected = text.substring((int)window.getStart(), (int)window.getEnd());
+            assertEquals(expected, window.toString());
+            CharSequence view = window.from(window.getStart() + 2);
+            assertEquals(expected.substring(2), view.toString());
+            for (int i = 0; i < view.length(); i++) {
+                assertEquals(expected.charAt(i + 2), view.charAt(i));
+            }
+            assertEquals(expected.substring(3, 5), view.subSequence(1, 3).toString());
+            window.keepLast(4);
+        }
+        assertEquals(text.length(), window.getEnd());
+    }
+
+    /**
+     * Tests that a view starting before the window starts at the window start.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testFromBeforeStart() throws Exception {
+        SearchWindow window = new SearchWindow(10);
+        window.fill(new StringReader("0123456789abc"));
+        window.keepLast(3);
+        window.fill(new StringReader("abc"));
+        assertEquals("789abc", window.from(-100).toString());
+        assertEquals("", window.from(100).toString());
+    }
+
+    /**
+     * Tests that regular expressions find matches in a wrapped window, like in a String.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testMatch() throws Exception {
+        SearchWindow window = new SearchWindow(12);
+        window.fill(new StringReader("xxxxxxxxxxxx"));
+        window.keepLast(2);
+        window.fill(new StringReader("\nERROR: 42\n"));
+        Matcher matcher = Pattern.compile("(?m)^ERROR: (\\d+)$").matcher(window.from(window.getStart()));
+        assertTrue(matcher.find());
+        assertEquals("ERROR: 42", matcher.group());
+        assertEquals("42", matcher.group(1));
+    }
+}
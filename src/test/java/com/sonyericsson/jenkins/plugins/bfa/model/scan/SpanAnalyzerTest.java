@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import org.junit.Test;
+
+import static com.sonyericsson.jenkins.plugins.bfa.model.scan.SpanAnalyzer.UNBOUNDED;
+import static com.sonyericsson.jenkins.plugins.bfa.model.scan.SpanAnalyzer.maxSpan;
+import static org.junit.Assert.assertEquals;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link SpanAnalyzer}.
+ */
+public class SpanAnalyzerTest {
+
+    /**
+     * Tests expressions whose span can be bounded.
+     */
+    @Test
+    public void testBounded() {
+        assertEquals(5, maxSpan("ERROR"));
+        assertEquals(5, maxSpan("^ERROR\\b$"));
+        assertEquals(4, maxSpan("a.b"));
+        assertEquals(13, maxSpan("ERROR: \\d{1,3}"));
+        assertEquals(6, maxSpan("(?i)colou?r"));
+        assertEquals(6, maxSpan("(cat|horse)s?"));
+        assertEquals(11, maxSpan("(?:ab){5}c"));
+        assertEquals(3, maxSpan("\\Q.*+\\E?"));
+        assertEquals(2, maxSpan("[^\\]*]"));
+        assertEquals(7, maxSpan("failed(?=\\n)"));
+        assertEquals(6, maxSpan("(?<name>x)\\ty\\u0041\\x{41}"));
+        assertEquals(0, maxSpan(""));
+        assertEquals(0, maxSpan("(?:)*"));
+    }
+
+    /**
+     * Tests expressions whose span can't be bounded, or that can't be analyzed.
+     */
+    @Test
+    public void testUnbounded() {
+        assertEquals(UNBOUNDED, maxSpan("ERROR.*failed"));
+        assertEquals(UNBOUNDED, maxSpan("a+"));
+        assertEquals(UNBOUNDED, maxSpan("a{2,}"));
+        assertEquals(UNBOUNDED, maxSpan("(a|b*)"));
+        assertEquals(UNBOUNDED, maxSpan("(a)\\1"));
+        assertEquals(UNBOUNDED, maxSpan("(?x)a b"));
+        assertEquals(UNBOUNDED, maxSpan("a{100000}{100000}"));
+        assertEquals(UNBOUNDED, maxSpan("a)"));
+        assertEquals(UNBOUNDED, maxSpan("(a"));
+    }
+}
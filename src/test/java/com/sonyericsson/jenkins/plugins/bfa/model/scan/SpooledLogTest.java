@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.model.scan;
+
+import hudson.model.Run;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link SpooledLog} and {@link ScanInput}.
+ */
+public class SpooledLogTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String LOG = "first\nsecond\r\nthird";
+
+    /**
+     * Temporary folder for the log files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Run build;
+
+    /**
+     * Makes sure no input is left attached.
+     */
+    @After
+    public void tearDown() {
+        if (build != null) {
+            ScanInput.detach(build);
+        }
+    }
+
+    /**
+     * Mocks a build with a log file.
+     *
+     * @param name the name of the log file.
+     * @param compressed true to compress the log.
+     * @return the build.
+     * @throws IOException if so.
+     */
+    private Run build(String name, boolean compressed) throws IOException {
+        File file = folder.newFile(name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (compressed) {
+                try (OutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(LOG.getBytes(UTF8));
+                }
+            } else {
+                out.write(LOG.getBytes(UTF8));
+            }
+        }
+        build = mock(Run.class);
+        when(build.getLogFile()).thenReturn(file);
+        when(build.getCharset()).thenReturn(UTF8);
+        return build;
+    }
+
+    /**
+     * Reads all lines of a source.
+     *
+     * @param lines the source.
+     * @return the lines.
+     * @throws IOException if so.
+     */
+    private static List<String> readAll(LogLineSource lines) throws IOException {
+        List<String> result = new ArrayList<String>();
+        try {
+            CharSequence line = lines.readLine();
+            while (line != null) {
+                result.add(line.toString());
+                line = lines.readLine();
+            }
+        } finally {
+            lines.close();
+        }
+        return result;
+    }
+
+    /**
+     * Tests that a compressed log is decompressed into a file that all scanners read, and that the file is
+     * removed once closed.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testInflate() throws Exception {
+        Run run = build("log.gz", true);
+        assertTrue(SpooledLog.isCompressed(run));
+        SpooledLog spool = SpooledLog.inflate(run);
+        File copy = spool.getFile();
+        assertEquals(LOG.length(), copy.length());
+
+        ScanInput.attach(run, spool);
+        assertSame(spool, ScanInput.get(run));
+        assertEquals(Arrays.asList("first", "second", "third"), readAll(LogLineSource.open(run)));
+        assertEquals(Arrays.asList("first", "second", "third"), readAll(LogLineSource.open(run)));
+        StringBuilder text = new StringBuilder();
+        try (Reader reader = LogLineSource.openReader(run)) {
+            char[] buffer = new char[4];
+            int read = reader.read(buffer);
+            while (read >= 0) {
+                text.append(buffer, 0, read);
+                read = reader.read(buffer);
+            }
+        }
+        assertEquals(LOG, text.toString());
+        assertFalse(spool.isPartial());
+
+        ScanInput.detach(run);
+        assertNull(ScanInput.get(run));
+        spool.close();
+        assertFalse(copy.exists());
+    }
+
+    /**
+     * Tests that a plain log is not copied.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testPlain() throws Exception {
+        Run run = build("log", false);
+        assertFalse(SpooledLog.isCompressed(run));
+        assertNull(SpooledLog.inflate(run));
+    }
+}
@@ -30,6 +30,7 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Job;
 import hudson.model.Result;
+import hudson.model.Run;
 import hudson.util.RunList;
 import com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase;
 import com.sonyericsson.jenkins.plugins.bfa.db.LocalFileKnowledgeBase;
@@ -55,6 +56,7 @@ import org.powermock.reflect.Whitebox;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 
 //CS IGNORE MagicNumber FOR NEXT 300 LINES. REASON: TestData.
@@ -247,6 +249,38 @@ public class ScanOnDemandTaskTest {
         assertEquals("Nonscanned buils", 0, Lists.newArrayList(action.getRuns(mockproject)).size());
     }
 
+    /**
+     * Tests that scanning for changed causes only finds the failed builds that have already been scanned, and not
+     * matrix builds.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testChangedFindsOnlyScannedBuilds() throws Exception {
+        mockproject = PowerMockito.mock(AbstractProject.class);
+
+        List<FoundFailureCause> foundFailureCauses = new ArrayList<FoundFailureCause>();
+        foundFailureCauses.add(new FoundFailureCause(configureCauseAndIndication()));
+        List<FailureCauseBuildAction> failureCauseBuildActions = new ArrayList<FailureCauseBuildAction>();
+        failureCauseBuildActions.add(new FailureCauseBuildAction(foundFailureCauses));
+        AbstractBuild scanned = PowerMockito.mock(AbstractBuild.class);
+        AbstractBuild nonScanned = PowerMockito.mock(AbstractBuild.class);
+        MatrixBuild matrixBuild = PowerMockito.mock(MatrixBuild.class);
+        PowerMockito.when(scanned.getResult()).thenReturn(Result.FAILURE);
+        PowerMockito.when(nonScanned.getResult()).thenReturn(Result.FAILURE);
+        PowerMockito.when(matrixBuild.getResult()).thenReturn(Result.FAILURE);
+        PowerMockito.when(scanned.getActions(FailureCauseBuildAction.class)).thenReturn(failureCauseBuildActions);
+        PowerMockito.when(matrixBuild.getActions(FailureCauseBuildAction.class)).thenReturn(failureCauseBuildActions);
+
+        RunList<AbstractBuild> builds = new RunList<AbstractBuild>(Collections.<Job>emptyList());
+        Whitebox.setInternalState(builds, "base", Arrays.asList(scanned, nonScanned, matrixBuild));
+        PowerMockito.when(mockproject.getBuilds()).thenReturn(builds);
+        ScanOnDemandBaseAction.Changed action = new ScanOnDemandBaseAction.Changed();
+        List<Run> runs = Lists.newArrayList(action.getRuns(mockproject));
+        assertEquals(1, runs.size());
+        assertSame(scanned, runs.get(0));
+    }
+
     /**
      * Convenience method for a standard cause that finds ERROR in the build log.
      *
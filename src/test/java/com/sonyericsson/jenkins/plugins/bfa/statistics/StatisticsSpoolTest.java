@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.statistics;
+
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link StatisticsSpool}.
+ */
+public class StatisticsSpoolTest {
+
+    /**
+     * The directory of the spool.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that a record is read back as it was written, including its id, nulls and long strings.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testEncodeDecode() throws Exception {
+        char[] longLine = new char[100000];
+        Arrays.fill(longLine, 'x');
+        List<FoundIndication> indications = Arrays.asList(
+                new FoundIndication("pattern", "log", new String(longLine), 42),
+                new FoundIndication("multi", "log", "line", null));
+        Statistics stat = new Statistics("project", 7, "#7", new Date(1234), 99, Arrays.asList("UserIdCause"),
+                "node", "master", 3600000, "FAILURE", new Statistics.UpstreamCause("upstream", 3),
+                Arrays.asList(new FailureCauseStatistics("id", indications)));
+        stat.setId("5f3a1c2b9d8e7f6a5b4c3d2e");
+        stat.setRescannedAt(5678);
+
+        Statistics copy = StatisticsSpool.decode(StatisticsSpool.encode(stat));
+
+        assertEquals("5f3a1c2b9d8e7f6a5b4c3d2e", copy.getId());
+        assertEquals(5678, copy.getRescannedAt());
+        assertEquals("project", copy.getProjectName());
+        assertEquals(7, copy.getBuildNumber());
+        assertEquals("#7", copy.getDisplayName());
+        assertEquals(new Date(1234), copy.getStartingTime());
+        assertEquals(99, copy.getDuration());
+        assertEquals(Arrays.asList("UserIdCause"), copy.getTriggerCauses());
+        assertEquals("node", copy.getSlaveHostName());
+        assertEquals("master", copy.getMaster());
+        assertEquals(3600000, copy.getTimeZoneOffset());
+        assertEquals("FAILURE", copy.getResult());
+        assertEquals("upstream", copy.getUpstreamCause().getUpstreamProject());
+        assertEquals(3, copy.getUpstreamCause().getUpstreamBuild());
+        assertEquals("id", copy.getFailureCauseStatisticsList().get(0).getId());
+        FoundIndication indication = copy.getFailureCauseStatisticsList().get(0).getIndications().get(0);
+        assertEquals("pattern", indication.getPattern());
+        assertEquals("log", indication.getMatchingFile());
+        assertEquals(new String(longLine), indication.getMatchingString());
+        assertEquals(42, indication.getMatchingLine());
+        assertEquals(-1, copy.getFailureCauseStatisticsList().get(0).getIndications().get(1).getMatchingLine());
+
+        Statistics empty = StatisticsSpool.decode(StatisticsSpool.encode(
+                new Statistics(null, 1, null, null, 0, null, null, null, 0, null, null, null)));
+        assertNull(empty.getId());
+        assertNull(empty.getProjectName());
+        assertNull(empty.getStartingTime());
+        assertNull(empty.getTriggerCauses());
+        assertNull(empty.getUpstreamCause());
+        assertNull(empty.getFailureCauseStatisticsList());
+    }
+
+    /**
+     * Tests that segments are rolled, read oldest first, and picked up again by a new spool.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSegments() throws Exception {
+        File directory = new File(folder.getRoot(), "spool");
+        StatisticsSpool spool = new StatisticsSpool(directory);
+        assertTrue(spool.isEmpty());
+        spool.append(statistics(0, StatisticsSpool.SEGMENT_RECORDS));
+        spool.append(statistics(StatisticsSpool.SEGMENT_RECORDS, 1));
+        assertEquals(StatisticsSpool.SEGMENT_RECORDS + 1, spool.getSize());
+        assertEquals(2, directory.list().length);
+
+        StatisticsSpool reopened = new StatisticsSpool(directory);
+        assertEquals(StatisticsSpool.SEGMENT_RECORDS + 1, reopened.getSize());
+        List<Statistics> oldest = reopened.readOldest();
+        assertEquals(StatisticsSpool.SEGMENT_RECORDS, oldest.size());
+        assertEquals(0, oldest.get(0).getBuildNumber());
+        reopened.removeOldest();
+        assertEquals(1, reopened.getSize());
+
+        // Appends go to a new segment, the one being replayed is left alone
+        reopened.append(statistics(StatisticsSpool.SEGMENT_RECORDS + 1, 1));
+        assertEquals(1, reopened.readOldest().size());
+        reopened.removeOldest();
+        assertEquals(StatisticsSpool.SEGMENT_RECORDS + 1, reopened.readOldest().get(0).getBuildNumber());
+        reopened.removeOldest();
+        assertTrue(reopened.isEmpty());
+        assertEquals(0, reopened.getSize());
+        assertEquals(0, directory.list().length);
+    }
+
+    /**
+     * Tests that a record torn by a crash is dropped, and the records before it are kept.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testTornRecord() throws Exception {
+        File directory = new File(folder.getRoot(), "spool");
+        StatisticsSpool spool = new StatisticsSpool(directory);
+        spool.append(statistics(0, 3));
+        File segment = directory.listFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        StatisticsSpool reopened = new StatisticsSpool(directory);
+        assertEquals(2, reopened.getSize());
+        assertEquals(2, reopened.readOldest().size());
+    }
+
+    /**
+     * Creates the statistics of builds with consecutive numbers.
+     *
+     * @param first the number of the first build.
+     * @param count the number of builds.
+     * @return the statistics.
+     */
+    private static List<Statistics> statistics(int first, int count) {
+        List<Statistics> stats = new ArrayList<Statistics>();
+        for (int i = first; i < first + count; i++) {
+            stats.add(new Statistics("project", i, "", new Date(), 1, null, "node", "master", 0, "FAILURE", null,
+                    Collections.<FailureCauseStatistics>emptyList()));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.jenkins.plugins.bfa.statistics;
+
+import com.sonyericsson.jenkins.plugins.bfa.db.KnowledgeBase;
+import com.sonyericsson.jenkins.plugins.bfa.model.indication.FoundIndication;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Matchers;
+import org.powermock.reflect.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: TestData.
+
+/**
+ * Tests for {@link StatisticsWriter}.
+ */
+public class StatisticsWriterTest {
+
+    /**
+     * The directory of the spool.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Creates a writer with a spool of its own.
+     *
+     * @param batchSize the maximum number of records written at once.
+     * @param flushInterval the longest time a record waits for its batch to fill up, in milliseconds.
+     * @return the writer.
+     * @throws Exception if so.
+     */
+    private StatisticsWriter writer(int batchSize, long flushInterval) throws Exception {
+        return new StatisticsWriter(batchSize, flushInterval, 100, new StatisticsSpool(folder.newFolder()));
+    }
+
+    /**
+     * Tests that a batch is cut at the batch size, and that a batch that doesn't fill up is written after the flush
+     * interval.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testNextBatch() throws Exception {
+        StatisticsWriter writer = writer(2, 200);
+        writer.offer(statistics(1, new Date(), "a"));
+        writer.offer(statistics(2, new Date(), "a"));
+        writer.offer(statistics(3, new Date(), "a"));
+        assertEquals(3, writer.getQueueSize());
+
+        assertEquals(2, writer.nextBatch().size());
+        long start = System.currentTimeMillis();
+        assertEquals(1, writer.nextBatch().size());
+        assertEquals(0, writer.getQueueSize());
+        assertTrue(writer.nextBatch().isEmpty());
+        assertTrue("Waited too long: " + (System.currentTimeMillis() - start),
+                System.currentTimeMillis() - start < 5000);
+    }
+
+    /**
+     * Tests that a batch is saved at once, and that the causes are marked as last seen at the latest starting time of
+     * their builds.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testFlush() throws Exception {
+        StatisticsWriter writer = writer(10, 10000);
+        Date early = new Date(1000);
+        Date late = new Date(2000);
+        Statistics first = statistics(1, late, "a", "b");
+        Statistics second = statistics(2, early, "a", "c");
+        List<StatisticsWriter.Entry> batch = Arrays.asList(new StatisticsWriter.Entry(first, System.nanoTime()),
+                new StatisticsWriter.Entry(second, System.nanoTime()));
+        KnowledgeBase knowledgeBase = mock(KnowledgeBase.class);
+
+        writer.flush(batch, knowledgeBase);
+
+        verify(knowledgeBase).saveStatistics(Arrays.asList(first, second));
+        Map<String, Date> lastSeen = new HashMap<String, Date>();
+        lastSeen.put("a", late);
+        lastSeen.put("b", late);
+        lastSeen.put("c", early);
+        verify(knowledgeBase).updateLastSeen(lastSeen);
+        assertEquals(2, writer.getWritten());
+        assertEquals(0, writer.getFailed());
+    }
+
+    /**
+     * Tests that a batch that can't be saved is spooled, that the next batches go straight to the spool, and that the
+     * spool is replayed once the knowledge base is back.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSpoolAndReplay() throws Exception {
+        StatisticsWriter writer = writer(10, 10000);
+        Date seen = new Date(1000);
+        KnowledgeBase knowledgeBase = mock(KnowledgeBase.class);
+        doThrow(new RuntimeException("down")).when(knowledgeBase).saveStatistics(Matchers.<List<Statistics>>any());
+
+        writer.flush(Collections.singletonList(new StatisticsWriter.Entry(statistics(1, seen, "a"),
+                System.nanoTime())), knowledgeBase);
+        assertEquals(1, writer.getSpooled());
+        assertEquals(0, writer.getWritten());
+        assertEquals(0, writer.getFailed());
+
+        KnowledgeBase back = mock(KnowledgeBase.class);
+        writer.flush(Collections.singletonList(new StatisticsWriter.Entry(statistics(2, seen, "b"),
+                System.nanoTime())), back);
+        writer.replay(back);
+        verify(back, never()).saveStatistics(Matchers.<List<Statistics>>any());
+        assertEquals(2, writer.getSpooled());
+
+        Whitebox.setInternalState(writer, "retryAt", System.nanoTime());
+        writer.replay(back);
+        verify(back).saveStatistics(Matchers.<List<Statistics>>any());
+        Map<String, Date> lastSeen = new HashMap<String, Date>();
+        lastSeen.put("a", seen);
+        lastSeen.put("b", seen);
+        verify(back).updateLastSeen(lastSeen);
+        assertEquals(0, writer.getSpooled());
+        assertEquals(2, writer.getWritten());
+    }
+
+    /**
+     * Tests that a record that doesn't fit in the queue is spilled to the spool, and that the oldest record is dropped
+     * when it can't be.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testOverflow() throws Exception {
+        StatisticsWriter writer = new StatisticsWriter(10, 10000, 2, new StatisticsSpool(folder.newFolder()));
+        writer.offer(statistics(1, new Date(), "a"));
+        writer.offer(statistics(2, new Date(), "a"));
+        writer.offer(statistics(3, new Date(), "a"));
+        assertEquals(2, writer.getQueueSize());
+        assertEquals(1, writer.getSpooled());
+        assertEquals(1, writer.getOverflowed());
+        assertEquals(0, writer.getFailed());
+
+        // The spool can't create its directory where there is a file
+        StatisticsWriter full = new StatisticsWriter(10, 10000, 2, new StatisticsSpool(folder.newFile()));
+        full.offer(statistics(1, new Date(), "a"));
+        full.offer(statistics(2, new Date(), "a"));
+        full.offer(statistics(3, new Date(), "a"));
+        assertEquals(2, full.getQueueSize());
+        assertEquals(1, full.getFailed());
+        List<StatisticsWriter.Entry> batch = full.nextBatch();
+        assertEquals(2, batch.size());
+    }
+
+    /**
+     * Creates the statistics of a build.
+     *
+     * @param buildNumber the number of the build.
+     * @param startingTime when the build started.
+     * @param causeIds the ids of the causes found in the build.
+     * @return the statistics.
+     */
+    private static Statistics statistics(int buildNumber, Date startingTime, String... causeIds) {
+        List<FailureCauseStatistics> causes = new ArrayList<FailureCauseStatistics>();
+        for (String id : causeIds) {
+            causes.add(new FailureCauseStatistics(id, Collections.<FoundIndication>emptyList()));
+        }
+        return new Statistics("project", buildNumber, "", startingTime, 1, null, "node", "master", 0, "FAILURE",
+                null, causes);
+    }
+}